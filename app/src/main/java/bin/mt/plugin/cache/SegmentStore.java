@@ -0,0 +1,724 @@
+package bin.mt.plugin.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only key/value store for translation results.
+ *
+ * Records are appended to segment files ({@code seg-NNNNN.dat}); a memory-mapped
+ * open-addressing hash table ({@code index.bin}) maps each key to the location of its
+ * latest record, so a lookup costs one hash probe plus one page read and nothing is
+ * parsed onto the heap at open. Overwrites and removals leave superseded records
+ * behind; once they make up most of the data, sealed segments are compacted on a
+ * background thread by copying their live records forward and deleting the file.
+ * Sealed segments are mapped once; the active one is still growing and is read through
+ * its file channel instead, so fresh records never force a remap.
+ *
+ * <pre>
+ * record: magic(1) type(1) keyLength(4) valueLength(4) crc32(4) key value
+ * slot:   location(8) hash(4) reserved(4)     location = segmentId &lt;&lt; 40 | offset
+ * </pre>
+ *
+ * Instances are process-wide per directory and thread-safe.
+ */
+public final class SegmentStore {
+
+    /**
+     * Callback for {@link #forEach(Visitor)}.
+     */
+    public interface Visitor {
+        void visit(String key, String value);
+    }
+
+    private static final byte RECORD_MAGIC = 0x5A;
+    private static final byte TYPE_PUT = 0;
+    private static final byte TYPE_REMOVE = 1;
+    private static final int RECORD_HEADER = 14;
+
+    private static final int INDEX_MAGIC = 0x544B4958; // "TKIX"
+    private static final int INDEX_VERSION = 1;
+    private static final int INDEX_HEADER = 64;
+    private static final int SLOT_BYTES = 16;
+    private static final int MIN_CAPACITY = 1024;
+    private static final long EMPTY = 0L;
+    private static final long DELETED = -1L;
+
+    private static final int H_CAPACITY = 8;
+    private static final int H_LIVE = 12;
+    private static final int H_DELETED = 16;
+    private static final int H_GARBAGE = 24;
+    private static final int H_COVERED = 32;
+    private static final int H_TOTAL = 40;
+
+    private static final long SEGMENT_MAX_BYTES = 4L * 1024 * 1024;
+    private static final long COMPACT_MIN_GARBAGE = 1024 * 1024;
+    private static final int SEGMENT_SHIFT = 40;
+    private static final long OFFSET_MASK = (1L << SEGMENT_SHIFT) - 1;
+    private static final int READ_BUFFER_BYTES = 4096;
+
+    private static final Map<String, SegmentStore> INSTANCES = new HashMap<>();
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "TranslateKit-compactor");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    private final File directory;
+    private final File indexFile;
+    private final TreeMap<Integer, MappedByteBuffer> segments = new TreeMap<>();
+
+    private MappedByteBuffer index;
+    private int capacity;
+    private int activeSegment;
+    private FileChannel activeChannel;
+    private long activeLength;
+    // Records of the growing active segment are read into this buffer instead of being mapped
+    private ByteBuffer activeReadBuffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+    private boolean compactionQueued;
+
+    private SegmentStore(File directory) {
+        this.directory = directory;
+        this.indexFile = new File(directory, "index.bin");
+    }
+
+    /**
+     * Open (or reuse) the process-wide store kept in the given directory.
+     */
+    public static SegmentStore open(File directory) throws IOException {
+        if (directory == null) {
+            throw new IOException("Store directory unavailable");
+        }
+        synchronized (INSTANCES) {
+            String path = directory.getAbsolutePath();
+            SegmentStore store = INSTANCES.get(path);
+            if (store == null) {
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    throw new IOException("Cannot create " + path);
+                }
+                store = new SegmentStore(directory);
+                store.load();
+                INSTANCES.put(path, store);
+            }
+            return store;
+        }
+    }
+
+    // ── Public API ──────────────────────────────────────────────────────────
+
+    public String get(String key) throws IOException {
+        if (key == null) return null;
+        byte[] value = get(key.getBytes(StandardCharsets.UTF_8));
+        return value != null ? new String(value, StandardCharsets.UTF_8) : null;
+    }
+
+    public synchronized byte[] get(byte[] key) throws IOException {
+        int slot = findSlot(key, hash(key));
+        if (slot < 0) return null;
+        return readValue(slotLocation(slot));
+    }
+
+    public void put(String key, String value) throws IOException {
+        put(key.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public synchronized void put(byte[] key, byte[] value) throws IOException {
+        long location = append(TYPE_PUT, key, value);
+        applyPut(key, hash(key), location);
+        setCovered(location + RECORD_HEADER + key.length + value.length);
+        maybeScheduleCompaction();
+    }
+
+    public void remove(String key) throws IOException {
+        if (key != null) remove(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public synchronized void remove(byte[] key) throws IOException {
+        int slot = findSlot(key, hash(key));
+        if (slot < 0) return;
+        long location = append(TYPE_REMOVE, key, new byte[0]);
+        applyRemove(key, hash(key), location);
+        setCovered(location + RECORD_HEADER + key.length);
+        maybeScheduleCompaction();
+    }
+
+    public synchronized int size() {
+        return index.getInt(H_LIVE);
+    }
+
+    /**
+     * @return Bytes used by segment files on disk
+     */
+    public synchronized long diskBytes() {
+        return index.getLong(H_TOTAL);
+    }
+
+    /**
+     * @return Bytes held by superseded records awaiting compaction
+     */
+    public synchronized long garbageBytes() {
+        return index.getLong(H_GARBAGE);
+    }
+
+    /**
+     * Visit every live entry. Entries written from the visitor are not guaranteed to be seen.
+     */
+    public synchronized void forEach(Visitor visitor) throws IOException {
+        for (int slot = 0; slot < capacity; slot++) {
+            long location = slotLocation(slot);
+            if (location == EMPTY || location == DELETED) continue;
+            ByteBuffer record = recordAt(location);
+            int keyLength = record.getInt(2);
+            int valueLength = record.getInt(6);
+            byte[] key = new byte[keyLength];
+            byte[] value = new byte[valueLength];
+            record.position(RECORD_HEADER);
+            record.get(key);
+            record.get(value);
+            visitor.visit(new String(key, StandardCharsets.UTF_8), new String(value, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Force appended records and the index to storage.
+     */
+    public synchronized void flush() throws IOException {
+        if (activeChannel != null) {
+            activeChannel.force(false);
+        }
+        index.force();
+    }
+
+    /**
+     * Remove every entry and delete all segment files.
+     */
+    public synchronized void clear() throws IOException {
+        closeActive();
+        segments.clear();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith("seg-")) {
+                    file.delete();
+                }
+            }
+        }
+        activeSegment = 1;
+        openActive();
+        File temp = new File(directory, "index.tmp");
+        createIndex(temp, MIN_CAPACITY);
+        if (!temp.renameTo(indexFile)) {
+            throw new IOException("Cannot replace " + indexFile);
+        }
+        index = mapIndex(indexFile);
+        capacity = MIN_CAPACITY;
+        setCovered(location(activeSegment, 0));
+    }
+
+    /**
+     * Compact now, on the calling thread. The active segment is sealed first if it holds
+     * superseded records, so small stores that never filled a segment shrink as well.
+     */
+    public void compact() throws IOException {
+        List<Integer> sealed;
+        synchronized (this) {
+            compactionQueued = false;
+            if (activeLength > 0) {
+                MappedByteBuffer active = mapSegment(activeSegment);
+                if (liveBytes(activeSegment, active) < active.capacity()) {
+                    rollSegment();
+                }
+            }
+            sealed = new ArrayList<>(segments.headMap(activeSegment).keySet());
+        }
+        // One segment per lock hold so lookups are not blocked for the whole run
+        for (int segment : sealed) {
+            synchronized (this) {
+                compactSegment(segment);
+            }
+        }
+    }
+
+    // ── Index ───────────────────────────────────────────────────────────────
+
+    private int findSlot(byte[] key, int hash) throws IOException {
+        int mask = capacity - 1;
+        for (int i = hash & mask, probes = 0; probes < capacity; i = (i + 1) & mask, probes++) {
+            long location = slotLocation(i);
+            if (location == EMPTY) return -1;
+            if (location != DELETED && slotHash(i) == hash && keyEquals(location, key)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void applyPut(byte[] key, int hash, long location) throws IOException {
+        int existing = findSlot(key, hash);
+        if (existing >= 0) {
+            addGarbage(recordSize(slotLocation(existing)));
+            setSlot(existing, location, hash);
+        } else {
+            ensureCapacity();
+            int mask = capacity - 1;
+            int i = hash & mask;
+            while (true) {
+                long current = slotLocation(i);
+                if (current == EMPTY || current == DELETED) {
+                    if (current == DELETED) {
+                        index.putInt(H_DELETED, index.getInt(H_DELETED) - 1);
+                    }
+                    setSlot(i, location, hash);
+                    index.putInt(H_LIVE, index.getInt(H_LIVE) + 1);
+                    break;
+                }
+                i = (i + 1) & mask;
+            }
+        }
+    }
+
+    private void applyRemove(byte[] key, int hash, long tombstoneLocation) throws IOException {
+        int slot = findSlot(key, hash);
+        // The tombstone itself is garbage once its target record is compacted away
+        addGarbage(RECORD_HEADER + key.length);
+        if (slot < 0) return;
+        addGarbage(recordSize(slotLocation(slot)));
+        setSlot(slot, DELETED, 0);
+        index.putInt(H_LIVE, index.getInt(H_LIVE) - 1);
+        index.putInt(H_DELETED, index.getInt(H_DELETED) + 1);
+    }
+
+    private void ensureCapacity() throws IOException {
+        int used = index.getInt(H_LIVE) + index.getInt(H_DELETED) + 1;
+        if (used * 10L <= capacity * 7L) return;
+        int live = index.getInt(H_LIVE) + 1;
+        int newCapacity = capacity;
+        while (live * 10L > newCapacity * 5L) newCapacity <<= 1;
+        rebuildIndex(newCapacity);
+    }
+
+    private void rebuildIndex(int newCapacity) throws IOException {
+        File temp = new File(directory, "index.tmp");
+        createIndex(temp, newCapacity);
+        MappedByteBuffer rebuilt = mapIndex(temp);
+        int mask = newCapacity - 1;
+        int live = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            long location = slotLocation(slot);
+            if (location == EMPTY || location == DELETED) continue;
+            int hash = slotHash(slot);
+            int i = hash & mask;
+            while (rebuilt.getLong(INDEX_HEADER + i * SLOT_BYTES) != EMPTY) {
+                i = (i + 1) & mask;
+            }
+            rebuilt.putLong(INDEX_HEADER + i * SLOT_BYTES, location);
+            rebuilt.putInt(INDEX_HEADER + i * SLOT_BYTES + 8, hash);
+            live++;
+        }
+        rebuilt.putInt(H_LIVE, live);
+        rebuilt.putLong(H_GARBAGE, index.getLong(H_GARBAGE));
+        rebuilt.putLong(H_COVERED, index.getLong(H_COVERED));
+        rebuilt.putLong(H_TOTAL, index.getLong(H_TOTAL));
+        rebuilt.force();
+        if (!temp.renameTo(indexFile)) {
+            throw new IOException("Cannot replace " + indexFile);
+        }
+        index = rebuilt;
+        capacity = newCapacity;
+    }
+
+    private long slotLocation(int slot) {
+        return index.getLong(INDEX_HEADER + slot * SLOT_BYTES);
+    }
+
+    private int slotHash(int slot) {
+        return index.getInt(INDEX_HEADER + slot * SLOT_BYTES + 8);
+    }
+
+    private void setSlot(int slot, long location, int hash) {
+        index.putLong(INDEX_HEADER + slot * SLOT_BYTES, location);
+        index.putInt(INDEX_HEADER + slot * SLOT_BYTES + 8, hash);
+    }
+
+    private void addGarbage(long bytes) {
+        index.putLong(H_GARBAGE, index.getLong(H_GARBAGE) + bytes);
+    }
+
+    private void setCovered(long location) {
+        index.putLong(H_COVERED, location);
+    }
+
+    private static void createIndex(File file, int capacity) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            raf.setLength(INDEX_HEADER + (long) capacity * SLOT_BYTES);
+            raf.seek(0);
+            raf.writeInt(INDEX_MAGIC);
+            raf.writeInt(INDEX_VERSION);
+            raf.writeInt(capacity);
+        }
+    }
+
+    private static MappedByteBuffer mapIndex(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+        }
+    }
+
+    // ── Segments ────────────────────────────────────────────────────────────
+
+    private long append(byte type, byte[] key, byte[] value) throws IOException {
+        if (activeLength >= SEGMENT_MAX_BYTES) {
+            rollSegment();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(key);
+        crc.update(value);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + key.length + value.length);
+        record.put(RECORD_MAGIC).put(type).putInt(key.length).putInt(value.length)
+                .putInt((int) crc.getValue()).put(key).put(value);
+        record.flip();
+        long offset = activeLength;
+        while (record.hasRemaining()) {
+            activeChannel.write(record, offset + record.position());
+        }
+        activeLength += record.capacity();
+        index.putLong(H_TOTAL, index.getLong(H_TOTAL) + record.capacity());
+        return location(activeSegment, offset);
+    }
+
+    private void rollSegment() throws IOException {
+        closeActive();
+        segments.put(activeSegment, mapSegment(activeSegment));
+        activeSegment++;
+        openActive();
+    }
+
+    private void openActive() throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(segmentFile(activeSegment), "rw");
+        activeChannel = raf.getChannel();
+        activeLength = raf.length();
+        segments.put(activeSegment, null); // read through the channel until sealed
+    }
+
+    private void closeActive() throws IOException {
+        if (activeChannel != null) {
+            activeChannel.close();
+            activeChannel = null;
+        }
+    }
+
+    private File segmentFile(int segment) {
+        return new File(directory, String.format(Locale.US, "seg-%05d.dat", segment));
+    }
+
+    private MappedByteBuffer mapSegment(int segment) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(segmentFile(segment), "r")) {
+            return raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        }
+    }
+
+    /**
+     * A view positioned at 0 on the record at the given location. A record of the active
+     * segment is only valid until the next call.
+     */
+    private ByteBuffer recordAt(long location) throws IOException {
+        int segment = (int) (location >>> SEGMENT_SHIFT);
+        int offset = (int) (location & OFFSET_MASK);
+        ByteBuffer record;
+        if (segment == activeSegment) {
+            record = readActiveRecord(offset);
+        } else {
+            // Sealed segments no longer grow and are mapped once
+            MappedByteBuffer buffer = segments.get(segment);
+            if (buffer == null) {
+                buffer = mapSegment(segment);
+                segments.put(segment, buffer);
+            }
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            record = view.slice();
+        }
+        if (record.get(0) != RECORD_MAGIC) {
+            throw new IOException("Corrupt record at " + segment + ":" + offset);
+        }
+        return record;
+    }
+
+    /**
+     * Read a record of the active segment through its channel into the shared read buffer,
+     * which grows to the largest record seen.
+     */
+    private ByteBuffer readActiveRecord(int offset) throws IOException {
+        ByteBuffer buffer = activeReadBuffer;
+        buffer.clear();
+        buffer.limit(RECORD_HEADER);
+        readFully(buffer, offset);
+        int keyLength = buffer.getInt(2);
+        int valueLength = buffer.getInt(6);
+        if (keyLength < 0 || valueLength < 0 || offset + RECORD_HEADER + (long) keyLength + valueLength > activeLength) {
+            throw new IOException("Corrupt record at " + activeSegment + ":" + offset);
+        }
+        int size = RECORD_HEADER + keyLength + valueLength;
+        if (size > buffer.capacity()) {
+            ByteBuffer larger = ByteBuffer.allocate(Integer.highestOneBit(size) << 1);
+            buffer.flip();
+            larger.put(buffer);
+            buffer = larger;
+            activeReadBuffer = larger;
+        }
+        buffer.limit(size);
+        readFully(buffer, offset + RECORD_HEADER);
+        buffer.position(0);
+        return buffer;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        long next = position;
+        while (buffer.hasRemaining()) {
+            int read = activeChannel.read(buffer, next);
+            if (read < 0) {
+                throw new IOException("Unexpected end of segment " + activeSegment);
+            }
+            next += read;
+        }
+    }
+
+    private int recordSize(long location) throws IOException {
+        ByteBuffer record = recordAt(location);
+        return RECORD_HEADER + record.getInt(2) + record.getInt(6);
+    }
+
+    private boolean keyEquals(long location, byte[] key) throws IOException {
+        ByteBuffer record = recordAt(location);
+        if (record.getInt(2) != key.length) return false;
+        for (int i = 0; i < key.length; i++) {
+            if (record.get(RECORD_HEADER + i) != key[i]) return false;
+        }
+        return true;
+    }
+
+    private byte[] readValue(long location) throws IOException {
+        ByteBuffer record = recordAt(location);
+        int keyLength = record.getInt(2);
+        byte[] value = new byte[record.getInt(6)];
+        record.position(RECORD_HEADER + keyLength);
+        record.get(value);
+        return value;
+    }
+
+    private static long location(int segment, long offset) {
+        return ((long) segment << SEGMENT_SHIFT) | offset;
+    }
+
+    // ── Recovery ────────────────────────────────────────────────────────────
+
+    private void load() throws IOException {
+        List<Integer> ids = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if (name.startsWith("seg-") && name.endsWith(".dat")) {
+                    try {
+                        ids.add(Integer.parseInt(name.substring(4, name.length() - 4)));
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+            }
+        }
+        Integer[] sorted = ids.toArray(new Integer[0]);
+        Arrays.sort(sorted);
+
+        boolean indexValid = false;
+        if (indexFile.exists() && indexFile.length() >= INDEX_HEADER + (long) MIN_CAPACITY * SLOT_BYTES) {
+            index = mapIndex(indexFile);
+            capacity = index.getInt(H_CAPACITY);
+            indexValid = index.getInt(0) == INDEX_MAGIC && index.getInt(4) == INDEX_VERSION
+                    && Integer.bitCount(capacity) == 1
+                    && indexFile.length() == INDEX_HEADER + (long) capacity * SLOT_BYTES;
+        }
+        if (!indexValid) {
+            createIndex(indexFile, MIN_CAPACITY);
+            index = mapIndex(indexFile);
+            capacity = MIN_CAPACITY;
+        }
+
+        for (int id : sorted) {
+            segments.put(id, null);
+        }
+        activeSegment = sorted.length > 0 ? sorted[sorted.length - 1] : 1;
+        openActive();
+
+        // Replay records written after the last index update (all of them for a new index)
+        long covered = indexValid ? index.getLong(H_COVERED) : 0L;
+        if (!indexValid) {
+            index.putLong(H_TOTAL, 0);
+        }
+        int coveredSegment = (int) (covered >>> SEGMENT_SHIFT);
+        for (int id : sorted) {
+            if (id < coveredSegment) continue;
+            long start = id == coveredSegment ? (covered & OFFSET_MASK) : 0;
+            replaySegment(id, start);
+        }
+        setCovered(location(activeSegment, activeLength));
+        for (int id : sorted) {
+            if (id != activeSegment) {
+                segments.put(id, mapSegment(id));
+            }
+        }
+    }
+
+    private void replaySegment(int segment, long start) throws IOException {
+        File file = segmentFile(segment);
+        long length = file.length();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            long offset = start;
+            while (offset + RECORD_HEADER <= length) {
+                raf.seek(offset);
+                byte magic = raf.readByte();
+                byte type = raf.readByte();
+                int keyLength = raf.readInt();
+                int valueLength = raf.readInt();
+                int crc = raf.readInt();
+                long end = offset + RECORD_HEADER + (long) keyLength + valueLength;
+                if (magic != RECORD_MAGIC || keyLength < 0 || valueLength < 0 || end > length) {
+                    break;
+                }
+                byte[] key = new byte[keyLength];
+                byte[] value = new byte[valueLength];
+                raf.readFully(key);
+                raf.readFully(value);
+                CRC32 check = new CRC32();
+                check.update(key);
+                check.update(value);
+                if ((int) check.getValue() != crc) {
+                    break;
+                }
+                long location = location(segment, offset);
+                if (type == TYPE_REMOVE) {
+                    applyRemove(key, hash(key), location);
+                } else {
+                    applyPut(key, hash(key), location);
+                }
+                offset = end;
+            }
+            if (offset < length) {
+                // Torn tail from an interrupted write: drop it
+                raf.setLength(offset);
+                if (segment == activeSegment) {
+                    activeLength = offset;
+                }
+            }
+            index.putLong(H_TOTAL, index.getLong(H_TOTAL) + (offset - start));
+        }
+    }
+
+    // ── Compaction ──────────────────────────────────────────────────────────
+
+    private void maybeScheduleCompaction() {
+        long garbage = index.getLong(H_GARBAGE);
+        if (compactionQueued || garbage < COMPACT_MIN_GARBAGE
+                || garbage * 2 < index.getLong(H_TOTAL) || segments.headMap(activeSegment).isEmpty()) {
+            return;
+        }
+        compactionQueued = true;
+        COMPACTOR.execute(() -> {
+            try {
+                compact();
+            } catch (IOException ignored) {
+                // Garbage stays on disk until the next attempt
+            }
+        });
+    }
+
+    private void compactSegment(int segment) throws IOException {
+        if (segment >= activeSegment || !segments.containsKey(segment)) return;
+        MappedByteBuffer buffer = segments.get(segment);
+        if (buffer == null) {
+            buffer = mapSegment(segment);
+        }
+        if (liveBytes(segment, buffer) == buffer.capacity()) {
+            return; // Nothing superseded here; copying would only churn the disk
+        }
+        long segmentBytes = buffer.capacity();
+        int offset = 0;
+        while (offset + RECORD_HEADER <= buffer.capacity() && buffer.get(offset) == RECORD_MAGIC) {
+            byte type = buffer.get(offset + 1);
+            int keyLength = buffer.getInt(offset + 2);
+            int valueLength = buffer.getInt(offset + 6);
+            int size = RECORD_HEADER + keyLength + valueLength;
+            // Tombstones are dropped: every older segment has already been compacted away
+            if (type == TYPE_PUT) {
+                byte[] key = new byte[keyLength];
+                ByteBuffer view = buffer.duplicate();
+                view.position(offset + RECORD_HEADER);
+                view.get(key);
+                int hash = hash(key);
+                int slot = findSlot(key, hash);
+                if (slot >= 0 && slotLocation(slot) == location(segment, offset)) {
+                    byte[] value = new byte[valueLength];
+                    view.get(value);
+                    long moved = append(TYPE_PUT, key, value);
+                    setSlot(slot, moved, hash);
+                    setCovered(moved + size);
+                    segmentBytes -= size;
+                }
+            }
+            offset += size;
+        }
+        segments.remove(segment);
+        index.putLong(H_TOTAL, index.getLong(H_TOTAL) - buffer.capacity());
+        index.putLong(H_GARBAGE, Math.max(0, index.getLong(H_GARBAGE) - segmentBytes));
+        segmentFile(segment).delete();
+    }
+
+    private long liveBytes(int segment, MappedByteBuffer buffer) throws IOException {
+        long live = 0;
+        int offset = 0;
+        while (offset + RECORD_HEADER <= buffer.capacity() && buffer.get(offset) == RECORD_MAGIC) {
+            int keyLength = buffer.getInt(offset + 2);
+            int size = RECORD_HEADER + keyLength + buffer.getInt(offset + 6);
+            if (buffer.get(offset + 1) == TYPE_PUT) {
+                byte[] key = new byte[keyLength];
+                ByteBuffer view = buffer.duplicate();
+                view.position(offset + RECORD_HEADER);
+                view.get(key);
+                int slot = findSlot(key, hash(key));
+                if (slot >= 0 && slotLocation(slot) == location(segment, offset)) {
+                    live += size;
+                }
+            }
+            offset += size;
+        }
+        return live;
+    }
+
+    private static int hash(byte[] key) {
+        int h = 0x811C9DC5;
+        for (byte b : key) {
+            h ^= b & 0xFF;
+            h *= 0x01000193;
+        }
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        return h;
+    }
+}
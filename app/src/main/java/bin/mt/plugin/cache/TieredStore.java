@@ -0,0 +1,227 @@
+package bin.mt.plugin.cache;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Byte-bounded in-heap LRU tier in front of a {@link SegmentStore}.
+ *
+ * Reads are served from the heap when possible; disk misses are remembered too, so a
+ * string looked up repeatedly during a job reaches the disk at most once. Writes land in
+ * the heap tier and are written behind: on {@link #flush()}, on a background thread once
+ * enough dirty bytes accumulate, or synchronously when a dirty entry is evicted. Entry
+ * sizes are estimated from string lengths, so the budget bounds heap use rather than
+ * entry count.
+ */
+public final class TieredStore {
+
+    /**
+     * Point-in-time counters for the heap tier.
+     */
+    public static final class Stats {
+        public final long heapHits;
+        public final long diskHits;
+        public final long misses;
+        public final long evictions;
+        public final long evictedBytes;
+        public final long writesBehind;
+        public final long heapBytes;
+        public final long maxHeapBytes;
+        public final int heapEntries;
+
+        Stats(long heapHits, long diskHits, long misses, long evictions, long evictedBytes,
+              long writesBehind, long heapBytes, long maxHeapBytes, int heapEntries) {
+            this.heapHits = heapHits;
+            this.diskHits = diskHits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.evictedBytes = evictedBytes;
+            this.writesBehind = writesBehind;
+            this.heapBytes = heapBytes;
+            this.maxHeapBytes = maxHeapBytes;
+            this.heapEntries = heapEntries;
+        }
+    }
+
+    private static final class Entry {
+        final String value; // ABSENT or REMOVED for negative entries
+        final int bytes;
+        boolean dirty;
+
+        Entry(String value, int bytes, boolean dirty) {
+            this.value = value;
+            this.bytes = bytes;
+            this.dirty = dirty;
+        }
+    }
+
+    // Identity sentinels: a known-missing key and a removal not yet written to disk
+    private static final String ABSENT = new String("");
+    private static final String REMOVED = new String("");
+
+    private static final int ENTRY_OVERHEAD = 96; // map node, Entry, two String headers
+    private static final long WRITE_BEHIND_BYTES = 256 * 1024;
+
+    private static final ExecutorService WRITER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "TranslateKit-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final SegmentStore store;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long maxHeapBytes;
+    private long heapBytes;
+    private long dirtyBytes;
+    private boolean writeQueued;
+
+    private long heapHits;
+    private long diskHits;
+    private long misses;
+    private long evictions;
+    private long evictedBytes;
+    private long writesBehind;
+
+    public TieredStore(SegmentStore store, long maxHeapBytes) {
+        this.store = store;
+        this.maxHeapBytes = Math.max(0, maxHeapBytes);
+    }
+
+    public SegmentStore getStore() {
+        return store;
+    }
+
+    /**
+     * Change the heap budget, evicting immediately if it shrank.
+     */
+    public synchronized void setMaxHeapBytes(long maxHeapBytes) throws IOException {
+        this.maxHeapBytes = Math.max(0, maxHeapBytes);
+        evict();
+    }
+
+    public synchronized String get(String key) throws IOException {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            heapHits++;
+            return entry.value == ABSENT || entry.value == REMOVED ? null : entry.value;
+        }
+        String value = store.get(key);
+        if (value != null) {
+            diskHits++;
+        } else {
+            misses++;
+        }
+        insert(key, value != null ? value : ABSENT, false);
+        return value;
+    }
+
+    /**
+     * Store a value. Writing the value the heap tier already holds is a no-op and does not
+     * count as a lookup.
+     */
+    public synchronized void put(String key, String value) throws IOException {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.value != ABSENT && entry.value != REMOVED && entry.value.equals(value)) {
+            return;
+        }
+        insert(key, value, true);
+    }
+
+    public synchronized void remove(String key) throws IOException {
+        insert(key, REMOVED, true);
+    }
+
+    /**
+     * Write every dirty entry to the segment store.
+     */
+    public synchronized void flush() throws IOException {
+        writeQueued = false;
+        if (dirtyBytes == 0) {
+            return;
+        }
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            if (entry.dirty) {
+                writeThrough(e.getKey(), entry);
+                dirtyBytes -= entry.bytes;
+            }
+        }
+    }
+
+    /**
+     * Remove every entry from both tiers, discarding pending changes.
+     */
+    public synchronized void clear() throws IOException {
+        entries.clear();
+        heapBytes = 0;
+        dirtyBytes = 0;
+        store.clear();
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(heapHits, diskHits, misses, evictions, evictedBytes,
+                writesBehind, heapBytes, maxHeapBytes, entries.size());
+    }
+
+    private void insert(String key, String value, boolean dirty) throws IOException {
+        int bytes = ENTRY_OVERHEAD + 2 * (key.length() + value.length());
+        Entry previous = entries.put(key, new Entry(value, bytes, dirty));
+        if (previous != null) {
+            heapBytes -= previous.bytes;
+            if (previous.dirty) dirtyBytes -= previous.bytes;
+        }
+        heapBytes += bytes;
+        if (dirty) {
+            dirtyBytes += bytes;
+            scheduleWriteBehind();
+        }
+        evict();
+    }
+
+    private void evict() throws IOException {
+        if (heapBytes <= maxHeapBytes) {
+            return;
+        }
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (heapBytes > maxHeapBytes && iterator.hasNext()) {
+            Map.Entry<String, Entry> eldest = iterator.next();
+            Entry entry = eldest.getValue();
+            if (entry.dirty) {
+                writeThrough(eldest.getKey(), entry);
+                dirtyBytes -= entry.bytes;
+            }
+            iterator.remove();
+            heapBytes -= entry.bytes;
+            evictions++;
+            evictedBytes += entry.bytes;
+        }
+    }
+
+    private void writeThrough(String key, Entry entry) throws IOException {
+        if (entry.value == REMOVED) {
+            store.remove(key);
+        } else {
+            store.put(key, entry.value);
+        }
+        entry.dirty = false;
+        writesBehind++;
+    }
+
+    private void scheduleWriteBehind() {
+        if (writeQueued || dirtyBytes < WRITE_BEHIND_BYTES) {
+            return;
+        }
+        writeQueued = true;
+        WRITER.execute(() -> {
+            try {
+                flush();
+            } catch (IOException ignored) {
+                // Entries stay dirty and are retried on the next flush
+            }
+        });
+    }
+}
@@ -2,10 +2,13 @@ package bin.mt.plugin.gemini;
 
 import android.content.SharedPreferences;
 import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.annotation.NonNull;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
 
 import bin.mt.plugin.api.LocalString;
 import bin.mt.plugin.api.drawable.MaterialIcons;
@@ -20,12 +23,19 @@ import bin.mt.plugin.api.util.AsyncTask;
  * 
  * Shows a floating menu when text is selected in the editor,
  * allowing quick AI-powered translation of the selected text.
+ * The reply is streamed and previewed in the progress dialog
+ * until it replaces the selection.
  * 
  * @author TranslateKit
  * @version 1.0.0
  */
 public class AITranslateFloatingMenu extends BaseTextEditorFloatingMenu {
     
+    private static final String SYSTEM_PROMPT =
+            "You are a professional translator. Translate text accurately and return only the translation.";
+    // Characters of the streamed translation previewed in the loading dialog
+    private static final int PREVIEW_CHARS = 240;
+    
     private LocalString localString;
     
     @NonNull
@@ -68,32 +78,54 @@ public class AITranslateFloatingMenu extends BaseTextEditorFloatingMenu {
         String targetLanguage = prefs.getString(GeminiConstants.PREF_DEFAULT_TARGET_LANG, "en");
         String selectedEngine = prefs.getString(GeminiConstants.PREF_DEFAULT_ENGINE, GeminiConstants.DEFAULT_ENGINE);
         
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
         new AsyncTask(getContext()) {
             LoadingDialog loadingDialog;
+            String loadingMessage;
             String translatedText;
             Exception error;
+            // Latest streamed text not yet previewed; updates are coalesced into one per UI frame
+            final AtomicReference<String> pendingText = new AtomicReference<>();
+            volatile boolean finished;
             
             @Override
             protected void beforeThread() throws Exception {
                 String engineName = getEngineDisplayName(selectedEngine);
+                loadingMessage = localString != null 
+                        ? localString.get("translating_with") + " " + engineName + "..."
+                        : "Translating with " + engineName + "...";
                 loadingDialog = new LoadingDialog(pluginUI)
-                        .setMessage(localString != null 
-                            ? localString.get("translating_with") + " " + engineName + "..."
-                            : "Translating with " + engineName + "...")
+                        .setMessage(loadingMessage)
                         .showDelay(200);
             }
             
             @Override
             protected void onThread() throws Exception {
                 try {
-                    translatedText = performTranslation(selectedText, "auto", targetLanguage, prefs);
+                    translatedText = performTranslation(selectedText, "auto", targetLanguage, prefs, textSoFar -> {
+                        if (pendingText.getAndSet(textSoFar) == null) {
+                            mainHandler.post(this::showPendingText);
+                        }
+                    });
                 } catch (Exception e) {
                     error = e;
                 }
             }
             
+            private void showPendingText() {
+                String latest = pendingText.getAndSet(null);
+                if (latest == null || finished || loadingDialog == null) {
+                    return;
+                }
+                // Preview the tail of the translation while it streams in
+                String preview = latest.length() > PREVIEW_CHARS
+                        ? "…" + latest.substring(latest.length() - PREVIEW_CHARS) : latest;
+                loadingDialog.setMessage(loadingMessage + "\n\n" + preview.trim());
+            }
+            
             @Override
             protected void afterThread() throws Exception {
+                finished = true;
                 if (error != null) {
                     pluginUI.showToast(localString != null 
                         ? localString.get("error_translation_failed") + ": " + error.getMessage()
@@ -113,6 +145,7 @@ public class AITranslateFloatingMenu extends BaseTextEditorFloatingMenu {
             
             @Override
             protected void onException(Exception e) {
+                finished = true;
                 pluginUI.showToast(localString != null 
                     ? localString.get("error_translation_failed") + ": " + e.getMessage()
                     : "Translation failed: " + e.getMessage());
@@ -141,21 +174,15 @@ public class AITranslateFloatingMenu extends BaseTextEditorFloatingMenu {
         }
     }
     
-    private String performTranslation(String text, String sourceLang, String targetLang, SharedPreferences prefs) throws IOException {
+    private String performTranslation(String text, String sourceLang, String targetLang, SharedPreferences prefs,
+                                      StreamingTranslator.Listener listener) throws IOException {
         String selectedEngine = prefs.getString(GeminiConstants.PREF_DEFAULT_ENGINE, GeminiConstants.DEFAULT_ENGINE);
         int timeout = readIntPreference(prefs, GeminiConstants.PREF_TIMEOUT, GeminiConstants.DEFAULT_TIMEOUT);
         
         String prompt = buildTranslationPrompt(text, sourceLang, targetLang);
         
-        switch (selectedEngine) {
-            case GeminiConstants.ENGINE_OPENAI:
-                return translateWithOpenAI(prompt, sourceLang, targetLang, prefs, timeout);
-            case GeminiConstants.ENGINE_CLAUDE:
-                return translateWithClaude(prompt, sourceLang, targetLang, prefs, timeout);
-            case GeminiConstants.ENGINE_GEMINI:
-            default:
-                return translateWithGemini(prompt, prefs, timeout);
-        }
+        return StreamingTranslator.translate(selectedEngine != null ? selectedEngine : GeminiConstants.DEFAULT_ENGINE,
+                prompt, SYSTEM_PROMPT, prefs, timeout, listener);
     }
     
     private String buildTranslationPrompt(String text, String sourceLang, String targetLang) {
@@ -175,183 +202,6 @@ public class AITranslateFloatingMenu extends BaseTextEditorFloatingMenu {
         return prompt.toString();
     }
     
-    private String translateWithGemini(String prompt, SharedPreferences prefs, int timeout) throws IOException {
-        String apiKey = prefs.getString(GeminiConstants.PREF_API_KEY, "");
-        String modelName = prefs.getString(GeminiConstants.PREF_MODEL_NAME, GeminiConstants.DEFAULT_MODEL);
-        
-        if (apiKey == null || apiKey.trim().isEmpty()) {
-            throw new IOException("Gemini API key not configured");
-        }
-        
-        org.json.JSONObject request = new org.json.JSONObject();
-        try {
-            org.json.JSONArray contents = new org.json.JSONArray();
-            org.json.JSONObject content = new org.json.JSONObject();
-            org.json.JSONArray parts = new org.json.JSONArray();
-            org.json.JSONObject part = new org.json.JSONObject();
-            part.put("text", prompt);
-            parts.put(part);
-            content.put("parts", parts);
-            contents.put(content);
-            request.put("contents", contents);
-            
-            org.json.JSONObject generationConfig = new org.json.JSONObject();
-            generationConfig.put("temperature", 0.1);
-            generationConfig.put("maxOutputTokens", 2048);
-            request.put("generationConfig", generationConfig);
-        } catch (org.json.JSONException e) {
-            throw new IOException("Failed to build request", e);
-        }
-        
-        String apiUrl = String.format("%s/%s:generateContent?key=%s",
-            GeminiConstants.API_BASE_URL, modelName, apiKey);
-        
-        GeminiHttpUtils.Request httpRequest = GeminiHttpUtils.post(apiUrl);
-        httpRequest.setTimeout(timeout);
-        httpRequest.jsonBody(request);
-        
-        org.json.JSONObject response = httpRequest.executeToJson();
-        return parseGeminiResponse(response);
-    }
-    
-    private String translateWithOpenAI(String prompt, String sourceLang, String targetLang, 
-                                       SharedPreferences prefs, int timeout) throws IOException {
-        String apiKey = prefs.getString(GeminiConstants.PREF_OPENAI_API_KEY, "");
-        String model = prefs.getString(GeminiConstants.PREF_OPENAI_MODEL, GeminiConstants.DEFAULT_OPENAI_MODEL);
-        String endpoint = prefs.getString(GeminiConstants.PREF_OPENAI_ENDPOINT, GeminiConstants.DEFAULT_OPENAI_ENDPOINT);
-        
-        if (apiKey == null || apiKey.trim().isEmpty()) {
-            throw new IOException("OpenAI API key not configured");
-        }
-        
-        org.json.JSONObject request = new org.json.JSONObject();
-        try {
-            request.put("model", model);
-            org.json.JSONArray messages = new org.json.JSONArray();
-            messages.put(new org.json.JSONObject()
-                    .put("role", "system")
-                    .put("content", "You are a professional translator. Translate text accurately and return only the translation."));
-            messages.put(new org.json.JSONObject()
-                    .put("role", "user")
-                    .put("content", prompt));
-            request.put("messages", messages);
-            request.put("temperature", 0.1);
-            request.put("max_tokens", 2048);
-        } catch (org.json.JSONException e) {
-            throw new IOException("Failed to build request", e);
-        }
-        
-        GeminiHttpUtils.Request httpRequest = GeminiHttpUtils.post(endpoint);
-        httpRequest.header("Authorization", "Bearer " + apiKey);
-        httpRequest.setTimeout(timeout);
-        httpRequest.jsonBody(request);
-        
-        org.json.JSONObject response = httpRequest.executeToJson();
-        return parseOpenAIResponse(response);
-    }
-    
-    private String translateWithClaude(String prompt, String sourceLang, String targetLang,
-                                       SharedPreferences prefs, int timeout) throws IOException {
-        String apiKey = prefs.getString(GeminiConstants.PREF_CLAUDE_API_KEY, "");
-        String model = prefs.getString(GeminiConstants.PREF_CLAUDE_MODEL, GeminiConstants.DEFAULT_CLAUDE_MODEL);
-        String endpoint = prefs.getString(GeminiConstants.PREF_CLAUDE_ENDPOINT, GeminiConstants.DEFAULT_CLAUDE_ENDPOINT);
-        
-        if (apiKey == null || apiKey.trim().isEmpty()) {
-            throw new IOException("Claude API key not configured");
-        }
-        
-        org.json.JSONObject request = new org.json.JSONObject();
-        try {
-            request.put("model", model);
-            request.put("max_tokens", 2048);
-            request.put("system", "You are a professional translator. Translate text accurately and return only the translation.");
-            
-            org.json.JSONArray messages = new org.json.JSONArray();
-            org.json.JSONObject userMessage = new org.json.JSONObject();
-            userMessage.put("role", "user");
-            org.json.JSONArray content = new org.json.JSONArray();
-            org.json.JSONObject textBlock = new org.json.JSONObject();
-            textBlock.put("type", "text");
-            textBlock.put("text", prompt);
-            content.put(textBlock);
-            userMessage.put("content", content);
-            messages.put(userMessage);
-            request.put("messages", messages);
-        } catch (org.json.JSONException e) {
-            throw new IOException("Failed to build request", e);
-        }
-        
-        GeminiHttpUtils.Request httpRequest = GeminiHttpUtils.post(endpoint);
-        httpRequest.header("x-api-key", apiKey);
-        httpRequest.header("anthropic-version", GeminiConstants.CLAUDE_API_VERSION);
-        httpRequest.setTimeout(timeout);
-        httpRequest.jsonBody(request);
-        
-        org.json.JSONObject response = httpRequest.executeToJson();
-        return parseClaudeResponse(response);
-    }
-    
-    private String parseGeminiResponse(org.json.JSONObject json) throws IOException {
-        try {
-            if (json.has("error")) {
-                org.json.JSONObject error = json.getJSONObject("error");
-                throw new IOException("API Error: " + error.optString("message", "Unknown error"));
-            }
-            
-            org.json.JSONArray candidates = json.optJSONArray("candidates");
-            if (candidates == null || candidates.length() == 0) {
-                throw new IOException("No translation returned");
-            }
-            
-            org.json.JSONObject candidate = candidates.getJSONObject(0);
-            org.json.JSONObject content = candidate.getJSONObject("content");
-            org.json.JSONArray parts = content.getJSONArray("parts");
-            
-            if (parts.length() == 0) {
-                throw new IOException("Empty translation response");
-            }
-            
-            return parts.getJSONObject(0).getString("text").trim();
-        } catch (org.json.JSONException e) {
-            throw new IOException("Failed to parse response", e);
-        }
-    }
-    
-    private String parseOpenAIResponse(org.json.JSONObject response) throws IOException {
-        try {
-            org.json.JSONArray choices = response.optJSONArray("choices");
-            if (choices == null || choices.length() == 0) {
-                throw new IOException("No response from OpenAI");
-            }
-            
-            org.json.JSONObject message = choices.getJSONObject(0).optJSONObject("message");
-            if (message == null) {
-                throw new IOException("Invalid OpenAI response");
-            }
-            
-            return message.optString("content", "").trim();
-        } catch (org.json.JSONException e) {
-            throw new IOException("Failed to parse OpenAI response", e);
-        }
-    }
-    
-    private String parseClaudeResponse(org.json.JSONObject response) throws IOException {
-        org.json.JSONArray contentArray = response.optJSONArray("content");
-        if (contentArray == null || contentArray.length() == 0) {
-            throw new IOException("No response from Claude");
-        }
-        
-        StringBuilder builder = new StringBuilder();
-        for (int i = 0; i < contentArray.length(); i++) {
-            org.json.JSONObject block = contentArray.optJSONObject(i);
-            if (block != null && block.has("text")) {
-                builder.append(block.optString("text"));
-            }
-        }
-        
-        return builder.toString().trim();
-    }
-    
     private int readIntPreference(SharedPreferences prefs, String key, int defaultValue) {
         try {
             return prefs.getInt(key, defaultValue);
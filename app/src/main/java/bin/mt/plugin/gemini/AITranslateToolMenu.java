@@ -2,15 +2,17 @@ package bin.mt.plugin.gemini;
 
 import android.content.SharedPreferences;
 import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
 import android.text.Editable;
 import android.text.TextUtils;
 import android.view.Gravity;
 
 import androidx.annotation.NonNull;
 
-import java.io.IOException;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 
 import bin.mt.plugin.api.LocalString;
 import bin.mt.plugin.api.drawable.MaterialIcons;
@@ -35,7 +37,8 @@ import bin.mt.plugin.api.util.AsyncTask;
  * 
  * Adds an "AI Translate" button to the editor toolbar,
  * providing a full translation dialog with engine selection,
- * source/target language options, and live translation preview.
+ * source/target language options, and live translation preview
+ * streamed into the output box as the model writes it.
  * 
  * @author TranslateKit
  * @version 1.0.0
@@ -57,6 +60,8 @@ public class AITranslateToolMenu extends BaseTextEditorToolMenu {
         GeminiConstants.ENGINE_CLAUDE
     );
     
+    private static final String SYSTEM_PROMPT = "You are a professional translator. Return only the translation.";
+    
     private LocalString localString;
     
     @NonNull
@@ -270,13 +275,18 @@ public class AITranslateToolMenu extends BaseTextEditorToolMenu {
     
     private void performTranslation(PluginUI pluginUI, String text, String sourceLang, 
                                     String targetLang, String engine, PluginEditText outputText) {
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
         new AsyncTask(getContext()) {
             LoadingDialog loadingDialog;
             String translatedText;
             Exception error;
+            // Latest streamed text not yet shown; updates are coalesced into one per UI frame
+            final AtomicReference<String> pendingText = new AtomicReference<>();
+            volatile boolean finished;
             
             @Override
             protected void beforeThread() throws Exception {
+                outputText.setText("");
                 loadingDialog = new LoadingDialog(pluginUI)
                         .setMessage(localString != null 
                             ? localString.get("translating") + "..."
@@ -292,26 +302,35 @@ public class AITranslateToolMenu extends BaseTextEditorToolMenu {
                     
                     String prompt = buildTranslationPrompt(text, sourceLang, targetLang);
                     
-                    switch (engine) {
-                        case GeminiConstants.ENGINE_OPENAI:
-                            translatedText = translateWithOpenAI(prompt, prefs, timeout);
-                            break;
-                        case GeminiConstants.ENGINE_CLAUDE:
-                            translatedText = translateWithClaude(prompt, prefs, timeout);
-                            break;
-                        case GeminiConstants.ENGINE_GEMINI:
-                        default:
-                            translatedText = translateWithGemini(prompt, prefs, timeout);
-                            break;
-                    }
+                    // Stream the reply into the output box as it arrives
+                    translatedText = StreamingTranslator.translate(engine, prompt, SYSTEM_PROMPT, prefs, timeout,
+                            textSoFar -> {
+                                if (pendingText.getAndSet(textSoFar) == null) {
+                                    mainHandler.post(this::showPendingText);
+                                }
+                            });
                 } catch (Exception e) {
                     error = e;
                 }
             }
             
+            private void showPendingText() {
+                String latest = pendingText.getAndSet(null);
+                if (latest == null || finished) {
+                    return;
+                }
+                if (loadingDialog != null) {
+                    loadingDialog.dismiss();
+                    loadingDialog = null;
+                }
+                outputText.setText(latest);
+            }
+            
             @Override
             protected void afterThread() throws Exception {
+                finished = true;
                 if (error != null) {
+                    outputText.setText("");
                     pluginUI.showToast(localString != null 
                         ? localString.get("error_translation_failed") + ": " + error.getMessage()
                         : "Translation failed: " + error.getMessage());
@@ -325,6 +344,7 @@ public class AITranslateToolMenu extends BaseTextEditorToolMenu {
             
             @Override
             protected void onException(Exception e) {
+                finished = true;
                 pluginUI.showToast("Error: " + e.getMessage());
             }
             
@@ -354,181 +374,6 @@ public class AITranslateToolMenu extends BaseTextEditorToolMenu {
         return prompt.toString();
     }
     
-    private String translateWithGemini(String prompt, SharedPreferences prefs, int timeout) throws IOException {
-        String apiKey = prefs.getString(GeminiConstants.PREF_API_KEY, "");
-        String modelName = prefs.getString(GeminiConstants.PREF_MODEL_NAME, GeminiConstants.DEFAULT_MODEL);
-        
-        if (apiKey == null || apiKey.trim().isEmpty()) {
-            throw new IOException("Gemini API key not configured");
-        }
-        
-        org.json.JSONObject request = new org.json.JSONObject();
-        try {
-            org.json.JSONArray contents = new org.json.JSONArray();
-            org.json.JSONObject content = new org.json.JSONObject();
-            org.json.JSONArray parts = new org.json.JSONArray();
-            org.json.JSONObject part = new org.json.JSONObject();
-            part.put("text", prompt);
-            parts.put(part);
-            content.put("parts", parts);
-            contents.put(content);
-            request.put("contents", contents);
-            
-            org.json.JSONObject generationConfig = new org.json.JSONObject();
-            generationConfig.put("temperature", 0.1);
-            generationConfig.put("maxOutputTokens", 2048);
-            request.put("generationConfig", generationConfig);
-        } catch (org.json.JSONException e) {
-            throw new IOException("Failed to build request", e);
-        }
-        
-        String apiUrl = String.format("%s/%s:generateContent?key=%s",
-            GeminiConstants.API_BASE_URL, modelName, apiKey);
-        
-        GeminiHttpUtils.Request httpRequest = GeminiHttpUtils.post(apiUrl);
-        httpRequest.setTimeout(timeout);
-        httpRequest.jsonBody(request);
-        
-        org.json.JSONObject response = httpRequest.executeToJson();
-        return parseGeminiResponse(response);
-    }
-    
-    private String translateWithOpenAI(String prompt, SharedPreferences prefs, int timeout) throws IOException {
-        String apiKey = prefs.getString(GeminiConstants.PREF_OPENAI_API_KEY, "");
-        String model = prefs.getString(GeminiConstants.PREF_OPENAI_MODEL, GeminiConstants.DEFAULT_OPENAI_MODEL);
-        String endpoint = prefs.getString(GeminiConstants.PREF_OPENAI_ENDPOINT, GeminiConstants.DEFAULT_OPENAI_ENDPOINT);
-        
-        if (apiKey == null || apiKey.trim().isEmpty()) {
-            throw new IOException("OpenAI API key not configured");
-        }
-        
-        org.json.JSONObject request = new org.json.JSONObject();
-        try {
-            request.put("model", model);
-            org.json.JSONArray messages = new org.json.JSONArray();
-            messages.put(new org.json.JSONObject()
-                    .put("role", "system")
-                    .put("content", "You are a professional translator. Return only the translation."));
-            messages.put(new org.json.JSONObject()
-                    .put("role", "user")
-                    .put("content", prompt));
-            request.put("messages", messages);
-            request.put("temperature", 0.1);
-            request.put("max_tokens", 2048);
-        } catch (org.json.JSONException e) {
-            throw new IOException("Failed to build request", e);
-        }
-        
-        GeminiHttpUtils.Request httpRequest = GeminiHttpUtils.post(endpoint);
-        httpRequest.header("Authorization", "Bearer " + apiKey);
-        httpRequest.setTimeout(timeout);
-        httpRequest.jsonBody(request);
-        
-        org.json.JSONObject response = httpRequest.executeToJson();
-        return parseOpenAIResponse(response);
-    }
-    
-    private String translateWithClaude(String prompt, SharedPreferences prefs, int timeout) throws IOException {
-        String apiKey = prefs.getString(GeminiConstants.PREF_CLAUDE_API_KEY, "");
-        String model = prefs.getString(GeminiConstants.PREF_CLAUDE_MODEL, GeminiConstants.DEFAULT_CLAUDE_MODEL);
-        String endpoint = prefs.getString(GeminiConstants.PREF_CLAUDE_ENDPOINT, GeminiConstants.DEFAULT_CLAUDE_ENDPOINT);
-        
-        if (apiKey == null || apiKey.trim().isEmpty()) {
-            throw new IOException("Claude API key not configured");
-        }
-        
-        org.json.JSONObject request = new org.json.JSONObject();
-        try {
-            request.put("model", model);
-            request.put("max_tokens", 2048);
-            request.put("system", "You are a professional translator. Return only the translation.");
-            
-            org.json.JSONArray messages = new org.json.JSONArray();
-            org.json.JSONObject userMessage = new org.json.JSONObject();
-            userMessage.put("role", "user");
-            org.json.JSONArray content = new org.json.JSONArray();
-            org.json.JSONObject textBlock = new org.json.JSONObject();
-            textBlock.put("type", "text");
-            textBlock.put("text", prompt);
-            content.put(textBlock);
-            userMessage.put("content", content);
-            messages.put(userMessage);
-            request.put("messages", messages);
-        } catch (org.json.JSONException e) {
-            throw new IOException("Failed to build request", e);
-        }
-        
-        GeminiHttpUtils.Request httpRequest = GeminiHttpUtils.post(endpoint);
-        httpRequest.header("x-api-key", apiKey);
-        httpRequest.header("anthropic-version", GeminiConstants.CLAUDE_API_VERSION);
-        httpRequest.setTimeout(timeout);
-        httpRequest.jsonBody(request);
-        
-        org.json.JSONObject response = httpRequest.executeToJson();
-        return parseClaudeResponse(response);
-    }
-    
-    private String parseGeminiResponse(org.json.JSONObject json) throws IOException {
-        try {
-            if (json.has("error")) {
-                org.json.JSONObject error = json.getJSONObject("error");
-                throw new IOException("API Error: " + error.optString("message", "Unknown error"));
-            }
-            
-            org.json.JSONArray candidates = json.optJSONArray("candidates");
-            if (candidates == null || candidates.length() == 0) {
-                throw new IOException("No translation returned");
-            }
-            
-            org.json.JSONObject candidate = candidates.getJSONObject(0);
-            org.json.JSONObject content = candidate.getJSONObject("content");
-            org.json.JSONArray parts = content.getJSONArray("parts");
-            
-            if (parts.length() == 0) {
-                throw new IOException("Empty translation response");
-            }
-            
-            return parts.getJSONObject(0).getString("text").trim();
-        } catch (org.json.JSONException e) {
-            throw new IOException("Failed to parse response", e);
-        }
-    }
-    
-    private String parseOpenAIResponse(org.json.JSONObject response) throws IOException {
-        try {
-            org.json.JSONArray choices = response.optJSONArray("choices");
-            if (choices == null || choices.length() == 0) {
-                throw new IOException("No response from OpenAI");
-            }
-            
-            org.json.JSONObject message = choices.getJSONObject(0).optJSONObject("message");
-            if (message == null) {
-                throw new IOException("Invalid OpenAI response");
-            }
-            
-            return message.optString("content", "").trim();
-        } catch (org.json.JSONException e) {
-            throw new IOException("Failed to parse OpenAI response", e);
-        }
-    }
-    
-    private String parseClaudeResponse(org.json.JSONObject response) throws IOException {
-        org.json.JSONArray contentArray = response.optJSONArray("content");
-        if (contentArray == null || contentArray.length() == 0) {
-            throw new IOException("No response from Claude");
-        }
-        
-        StringBuilder builder = new StringBuilder();
-        for (int i = 0; i < contentArray.length(); i++) {
-            org.json.JSONObject block = contentArray.optJSONObject(i);
-            if (block != null && block.has("text")) {
-                builder.append(block.optString("text"));
-            }
-        }
-        
-        return builder.toString().trim();
-    }
-    
     private int readIntPreference(SharedPreferences prefs, String key, int defaultValue) {
         try {
             return prefs.getInt(key, defaultValue);
@@ -0,0 +1,125 @@
+package bin.mt.plugin.gemini;
+
+import android.content.SharedPreferences;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Batch size learned per engine and model.
+ *
+ * The size grows additively while full batches come back complete and faster than the
+ * latency target, and shrinks multiplicatively when a reply misses items, is truncated or
+ * runs into rate limits, so each model settles near the largest batch it handles reliably.
+ * Requests already in flight when the size shrank belong to the same congestion episode, so
+ * their outcomes neither shrink it again nor grow it back.
+ * The learned size is kept in SharedPreferences together with the configured batch size it
+ * started from; changing that setting starts learning over.
+ */
+public class AdaptiveBatchSize {
+
+    private static final String SEPARATOR = "|";
+
+    private final String key;
+    private final int initialSize;
+    private int size;
+    private boolean changed;
+    private long lastShrinkNanos;
+
+    private AdaptiveBatchSize(String key, int initialSize, int size) {
+        this.key = key;
+        this.initialSize = initialSize;
+        this.size = size;
+        this.lastShrinkNanos = System.nanoTime(); // Every request of the job is sent after this
+    }
+
+    /**
+     * Load the learned size of an engine and model, or start from the configured batch size.
+     */
+    public static AdaptiveBatchSize load(SharedPreferences preferences, String engine, String model,
+                                         int initialSize) {
+        int initial = clamp(initialSize);
+        String key = engine + SEPARATOR + model;
+        JSONObject entry = read(preferences).optJSONObject(key);
+        int size = initial;
+        if (entry != null && entry.optInt("initial", -1) == initial) {
+            size = clamp(entry.optInt("size", initial));
+        }
+        return new AdaptiveBatchSize(key, initial, size);
+    }
+
+    public synchronized int get() {
+        return size;
+    }
+
+    /**
+     * Record a batch whose items all came back. Grows the size only if the batch was full,
+     * since a smaller batch says nothing about a larger one.
+     *
+     * @param startedNanos {@link System#nanoTime()} when the request was sent
+     * @return true if the size changed
+     */
+    public synchronized boolean onComplete(int items, long startedNanos, long latencyMs, long targetLatencyMs) {
+        if (startedNanos - lastShrinkNanos < 0) {
+            return false; // Sent before the last shrink, at a size already judged too large
+        }
+        if (items < size || latencyMs >= targetLatencyMs || size >= GeminiConstants.ADAPTIVE_BATCH_MAX_SIZE) {
+            return false;
+        }
+        size = clamp(size + GeminiConstants.ADAPTIVE_BATCH_GROWTH_STEP);
+        changed = true;
+        return true;
+    }
+
+    /**
+     * Record missing items, a truncated reply or a rate limit.
+     *
+     * @param startedNanos {@link System#nanoTime()} when the request was sent
+     * @return true if the size changed
+     */
+    public synchronized boolean onOverload(long startedNanos) {
+        if (startedNanos - lastShrinkNanos < 0) {
+            return false; // Sent before the last shrink, part of that episode
+        }
+        int shrunk = clamp((int) (size * GeminiConstants.ADAPTIVE_BATCH_SHRINK_FACTOR));
+        if (shrunk == size) {
+            return false;
+        }
+        size = shrunk;
+        changed = true;
+        lastShrinkNanos = System.nanoTime();
+        return true;
+    }
+
+    public synchronized void save(SharedPreferences preferences) {
+        if (!changed) {
+            return;
+        }
+        synchronized (AdaptiveBatchSize.class) {
+            JSONObject all = read(preferences);
+            try {
+                all.put(key, new JSONObject().put("size", size).put("initial", initialSize));
+            } catch (JSONException e) {
+                return;
+            }
+            preferences.edit().putString(GeminiConstants.PREF_ADAPTIVE_BATCH_STATE, all.toString()).apply();
+            changed = false;
+        }
+    }
+
+    private static int clamp(int size) {
+        return Math.max(GeminiConstants.ADAPTIVE_BATCH_MIN_SIZE, Math.min(GeminiConstants.ADAPTIVE_BATCH_MAX_SIZE, size));
+    }
+
+    private static JSONObject read(SharedPreferences preferences) {
+        String json = preferences.getString(GeminiConstants.PREF_ADAPTIVE_BATCH_STATE, null);
+        if (json == null || json.isEmpty()) {
+            return new JSONObject();
+        }
+        try {
+            return new JSONObject(json);
+        } catch (JSONException e) {
+            return new JSONObject();
+        }
+    }
+}
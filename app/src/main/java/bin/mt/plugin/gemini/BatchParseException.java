@@ -0,0 +1,15 @@
+package bin.mt.plugin.gemini;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a batch reply arrived but none of its numbered items could be read. The
+ * request itself worked, so the engine re-requests the items as a batch instead of
+ * translating each one on its own.
+ */
+public class BatchParseException extends IOException {
+
+    public BatchParseException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,192 @@
+package bin.mt.plugin.gemini;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Single-pass reader for numbered batch replies.
+ *
+ * One walk over the reply's lines recognises the {@code [N]}, {@code N.} and {@code N)}
+ * markers at once and collects the items of each format side by side, so no format costs a
+ * second scan and nothing is backtracked. A marker only counts at the start of a line; text
+ * up to the next marker of the same format belongs to the item, which keeps multi-line
+ * translations and lines that merely look like another format intact. Code fences end the
+ * open item, and commentary before the first marker, after a closing fence or after a blank
+ * line following the last item is skipped.
+ *
+ * The format that yields the most items wins. The format a model last answered in is kept
+ * per engine and model and wins ties, so a model that mixes styles is read consistently.
+ */
+public final class BatchResponseScanner {
+
+    /** Numbering style of a batch reply. */
+    public enum Format {
+        BRACKET("[N]"),
+        DOT("N."),
+        PAREN("N)");
+
+        public final String label;
+
+        Format(String label) {
+            this.label = label;
+        }
+    }
+
+    /** Items of the winning format, indexed by item (marker 1 is index 0). */
+    public static final class Result {
+        public final String[] items;
+        public final int found;
+        public final Format format;
+
+        Result(String[] items, int found, Format format) {
+            this.items = items;
+            this.found = found;
+            this.format = format;
+        }
+    }
+
+    // Item numbers with more digits would overflow
+    private static final int MAX_MARKER_DIGITS = 6;
+
+    private static final Map<String, Format> LAST_FORMAT = new ConcurrentHashMap<>();
+
+    private BatchResponseScanner() {
+    }
+
+    /**
+     * The format a model last answered in, or null if none was seen yet.
+     */
+    public static Format lastFormat(String modelKey) {
+        return LAST_FORMAT.get(modelKey);
+    }
+
+    public static void rememberFormat(String modelKey, Format format) {
+        LAST_FORMAT.put(modelKey, format);
+    }
+
+    /**
+     * Read the numbered items of a reply.
+     *
+     * @param preferred Format that wins ties, usually {@link #lastFormat}; may be null
+     */
+    public static Result scan(String reply, int count, Format preferred) {
+        Format[] formats = Format.values();
+        String[][] items = new String[formats.length][count];
+        int[] found = new int[formats.length];
+        int[] openIndex = new int[formats.length];
+        int[] openStart = new int[formats.length];
+        for (int f = 0; f < formats.length; f++) {
+            openIndex[f] = -1;
+        }
+        int[] marker = new int[2];
+
+        int length = reply.length();
+        int lineStart = 0;
+        while (lineStart <= length) {
+            int lineEnd = reply.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = length;
+            }
+            int p = lineStart;
+            while (p < lineEnd && (reply.charAt(p) == ' ' || reply.charAt(p) == '\t')) {
+                p++;
+            }
+
+            if (reply.startsWith("```", p)) {
+                for (int f = 0; f < formats.length; f++) {
+                    close(reply, lineStart, f, items, found, openIndex, openStart);
+                }
+            } else if (p == lineEnd || (p == lineEnd - 1 && reply.charAt(p) == '\r')) {
+                // A blank line after the last item starts trailing commentary
+                for (int f = 0; f < formats.length; f++) {
+                    if (openIndex[f] == count - 1) {
+                        close(reply, lineStart, f, items, found, openIndex, openStart);
+                    }
+                }
+            } else {
+                Format format = markerAt(reply, p, lineEnd, marker);
+                if (format != null) {
+                    int f = format.ordinal();
+                    close(reply, lineStart, f, items, found, openIndex, openStart);
+                    openIndex[f] = marker[0] - 1;
+                    openStart[f] = marker[1];
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        for (int f = 0; f < formats.length; f++) {
+            close(reply, length, f, items, found, openIndex, openStart);
+        }
+
+        int best = preferred != null ? preferred.ordinal() : 0;
+        for (int f = 0; f < formats.length; f++) {
+            if (found[f] > found[best]) {
+                best = f;
+            }
+        }
+        return new Result(items[best], found[best], formats[best]);
+    }
+
+    /**
+     * Recognise an item marker at {@code p}, the first non-blank character of a line ending at
+     * {@code lineEnd}.
+     *
+     * @param marker Receives the item number and the offset just past the marker
+     * @return The marker's format, or null if the line does not start with one
+     */
+    static Format markerAt(CharSequence text, int p, int lineEnd, int[] marker) {
+        if (p >= lineEnd) {
+            return null;
+        }
+        boolean bracket = text.charAt(p) == '[';
+        int digitsStart = bracket ? p + 1 : p;
+        int q = digitsStart;
+        int number = 0;
+        while (q < lineEnd && text.charAt(q) >= '0' && text.charAt(q) <= '9') {
+            if (q - digitsStart < MAX_MARKER_DIGITS) {
+                number = number * 10 + (text.charAt(q) - '0');
+            } else {
+                number = Integer.MAX_VALUE; // Still a marker, of an item that cannot exist
+            }
+            q++;
+        }
+        if (q == digitsStart || q >= lineEnd) {
+            return null;
+        }
+        char c = text.charAt(q);
+        Format format = null;
+        if (bracket && c == ']') {
+            format = Format.BRACKET;
+        } else if (!bracket && c == ')') {
+            format = Format.PAREN;
+        } else if (!bracket && c == '.'
+                && (q + 1 == lineEnd || Character.isWhitespace(text.charAt(q + 1)))) {
+            format = Format.DOT;
+        }
+        if (format != null) {
+            marker[0] = number;
+            marker[1] = q + 1;
+        }
+        return format;
+    }
+
+    private static void close(String reply, int end, int f, String[][] items, int[] found,
+                              int[] openIndex, int[] openStart) {
+        int index = openIndex[f];
+        if (index < 0) {
+            return;
+        }
+        openIndex[f] = -1;
+        if (index >= items[f].length || openStart[f] > end) {
+            return;
+        }
+        String value = reply.substring(openStart[f], end).trim();
+        if (value.isEmpty()) {
+            return;
+        }
+        if (items[f][index] == null) {
+            found[f]++;
+        }
+        items[f][index] = value;
+    }
+}
@@ -0,0 +1,229 @@
+package bin.mt.plugin.gemini;
+
+import java.io.IOException;
+
+/**
+ * Incremental check of a numbered batch reply while it streams in.
+ *
+ * Complete lines are read as they arrive, with the markers of {@link BatchResponseScanner}.
+ * The first marker fixes the format; after that items must come in order, starting at 1. The
+ * reply is given up on as soon as it goes off format:
+ * <ul>
+ *     <li>more than {@link #MAX_PREAMBLE_CHARS} of prose before the first item,</li>
+ *     <li>a skipped, repeated or out-of-range item number,</li>
+ *     <li>an item growing far beyond the length of its source text,</li>
+ *     <li>text after the blank line that ends the last item.</li>
+ * </ul>
+ * {@link #append} then throws {@link AbortException}, so the request is cut off instead of
+ * generating, and billing, the rest of a bad completion. The reply up to the last complete
+ * well-formed item is kept in {@link #acceptedText()}; the items after it are left for the
+ * repair rounds.
+ */
+public final class BatchStreamMonitor {
+
+    /**
+     * Thrown from {@link #append} when the reply went off format.
+     */
+    public static final class AbortException extends IOException {
+        AbortException(String reason) {
+            super(reason);
+        }
+    }
+
+    // Some models open with a short line such as "Here are the translations:"
+    static final int MAX_PREAMBLE_CHARS = 300;
+    // An item may be this many times longer than its source, and at least MIN_RUNAWAY_CHARS
+    private static final int RUNAWAY_FACTOR = 8;
+    private static final int MIN_RUNAWAY_CHARS = 400;
+
+    private final int count;
+    private final int[] itemLimits;
+    private final StringBuilder text = new StringBuilder();
+    private final int[] marker = new int[2];
+
+    private int lineStart;
+    private BatchResponseScanner.Format format;
+    private int lastNumber;
+    private int itemStart;
+    private int itemChars;
+    private int preambleChars;
+    private boolean lastItemClosed;
+    private int acceptedEnd;
+    private int acceptedItems;
+    private String abortReason;
+
+    /**
+     * @param sourceTexts The texts of the request, in item order
+     */
+    public BatchStreamMonitor(String[] sourceTexts) {
+        count = sourceTexts.length;
+        itemLimits = new int[count];
+        for (int i = 0; i < count; i++) {
+            int length = sourceTexts[i] != null ? sourceTexts[i].length() : 0;
+            itemLimits[i] = Math.max(MIN_RUNAWAY_CHARS, length * RUNAWAY_FACTOR);
+        }
+    }
+
+    /**
+     * Forget the reply so far, before a request is sent again.
+     */
+    public void reset() {
+        text.setLength(0);
+        lineStart = 0;
+        format = null;
+        lastNumber = 0;
+        itemStart = 0;
+        itemChars = 0;
+        preambleChars = 0;
+        lastItemClosed = false;
+        acceptedEnd = 0;
+        acceptedItems = 0;
+        abortReason = null;
+    }
+
+    /**
+     * Add a chunk of the reply and check the lines it completes.
+     *
+     * @throws AbortException If the reply went off format
+     */
+    public void append(CharSequence chunk) throws AbortException {
+        text.append(chunk);
+        int length = text.length();
+        int newline;
+        while (lineStart < length && (newline = text.indexOf("\n", lineStart)) >= 0) {
+            checkLine(lineStart, newline);
+            lineStart = newline + 1;
+        }
+        // A line still arriving can already be too long
+        if (!lastItemClosed) {
+            checkPendingLine(length - lineStart);
+        }
+    }
+
+    /**
+     * Check the incomplete last line, which either starts the next item or continues the
+     * current one (or the preamble, before the first item).
+     */
+    private void checkPendingLine(int pending) throws AbortException {
+        int p = lineStart;
+        int length = text.length();
+        while (p < length && isBlank(text.charAt(p))) {
+            p++;
+        }
+        int number = lastNumber + 1;
+        BatchResponseScanner.Format lineFormat = number <= count
+                ? BatchResponseScanner.markerAt(text, p, length, marker) : null;
+        if (lineFormat != null && (format == null || lineFormat == format) && marker[0] == number) {
+            if (length - marker[1] > itemLimits[number - 1]) {
+                abort("item " + number + " runs on", lineStart, lastNumber);
+            }
+        } else if (format == null) {
+            if (preambleChars + pending > MAX_PREAMBLE_CHARS) {
+                abort("prose instead of numbered items", lineStart, 0);
+            }
+        } else if (itemChars + pending > itemLimits[lastNumber - 1]) {
+            abort("item " + lastNumber + " runs on", itemStart, lastNumber - 1);
+        }
+    }
+
+    /**
+     * The whole reply received so far.
+     */
+    public String text() {
+        return text.toString();
+    }
+
+    /**
+     * The reply up to the end of its last well-formed item. After an abort this is what should
+     * be parsed; without one it is only a prefix of {@link #text()}.
+     */
+    public String acceptedText() {
+        return text.substring(0, acceptedEnd);
+    }
+
+    /**
+     * Complete items in {@link #acceptedText()}.
+     */
+    public int acceptedItems() {
+        return acceptedItems;
+    }
+
+    /**
+     * Why the reply was given up on, or null if it was not.
+     */
+    public String abortReason() {
+        return abortReason;
+    }
+
+    private void checkLine(int start, int end) throws AbortException {
+        int p = start;
+        while (p < end && isBlank(text.charAt(p))) {
+            p++;
+        }
+        if (p == end) {
+            // A blank line after the last item ends it, as in BatchResponseScanner
+            if (lastNumber == count) {
+                lastItemClosed = true;
+            }
+            return;
+        }
+        if (startsWithFence(p, end)) {
+            return;
+        }
+        BatchResponseScanner.Format lineFormat = BatchResponseScanner.markerAt(text, p, end, marker);
+        if (lineFormat != null && (format == null || lineFormat == format)) {
+            int number = marker[0];
+            if (format == null && number != 1) {
+                abort("first item numbered " + number, start, 0);
+            } else if (number > count) {
+                abort("item " + number + " beyond the " + count + " sent", start, lastNumber);
+            } else if (format != null && number <= lastNumber) {
+                abort("item " + number + " repeated", start, lastNumber);
+            } else if (number != lastNumber + 1) {
+                abort("items " + (lastNumber + 1) + "-" + (number - 1) + " skipped", start, lastNumber);
+            }
+            if (lastItemClosed) {
+                abort("text after the last item", start, count);
+            }
+            // The previous item is complete
+            format = lineFormat;
+            acceptedEnd = start;
+            acceptedItems = lastNumber;
+            lastNumber = number;
+            itemStart = start;
+            itemChars = end - marker[1];
+        } else if (format == null) {
+            preambleChars += end - start + 1;
+            if (preambleChars > MAX_PREAMBLE_CHARS) {
+                abort("prose instead of numbered items", start, 0);
+            }
+            return;
+        } else if (lastItemClosed) {
+            abort("text after the last item", start, count);
+        } else {
+            itemChars += end - start + 1;
+        }
+        if (itemChars > itemLimits[lastNumber - 1]) {
+            abort("item " + lastNumber + " runs on", itemStart, lastNumber - 1);
+        }
+    }
+
+    /**
+     * Give up on the reply, keeping it up to {@code keepEnd}, which holds {@code keepItems}
+     * complete items.
+     */
+    private void abort(String reason, int keepEnd, int keepItems) throws AbortException {
+        abortReason = reason;
+        acceptedEnd = keepEnd;
+        acceptedItems = keepItems;
+        throw new AbortException("Batch reply went off format: " + reason);
+    }
+
+    private boolean startsWithFence(int p, int end) {
+        return end - p >= 3 && text.charAt(p) == '`' && text.charAt(p + 1) == '`' && text.charAt(p + 2) == '`';
+    }
+
+    private static boolean isBlank(char c) {
+        return c == ' ' || c == '\t' || c == '\r';
+    }
+}
@@ -0,0 +1,168 @@
+package bin.mt.plugin.gemini;
+
+import android.content.SharedPreferences;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent hit/miss counters of the local translation caches, per engine and language pair.
+ *
+ * An engine records into its own instance during a job and {@link #save} merges the deltas
+ * into the JSON kept in SharedPreferences, so counters from concurrent or earlier jobs are
+ * never overwritten. Tokens saved are the {@link TokenEstimator} estimate of the prompt and output
+ * tokens a request for the served strings would have cost.
+ */
+public class CacheStatistics {
+
+    /**
+     * Totals for one engine and language pair.
+     */
+    public static class Row {
+        public final String engine;
+        public final String sourceLanguage;
+        public final String targetLanguage;
+        public final long hits;
+        public final long misses;
+        public final long callsSaved;
+        public final long tokensSaved;
+
+        Row(String engine, String sourceLanguage, String targetLanguage,
+            long hits, long misses, long callsSaved, long tokensSaved) {
+            this.engine = engine;
+            this.sourceLanguage = sourceLanguage;
+            this.targetLanguage = targetLanguage;
+            this.hits = hits;
+            this.misses = misses;
+            this.callsSaved = callsSaved;
+            this.tokensSaved = tokensSaved;
+        }
+
+        public double hitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0.0 : (double) hits / lookups;
+        }
+    }
+
+    private static final String SEPARATOR = "|";
+
+    // Pending deltas: hits, misses, calls saved, tokens saved
+    private final Map<String, long[]> pending = new HashMap<>();
+
+    public synchronized void record(String engine, String sourceLanguage, String targetLanguage,
+                                    int hits, int misses, int callsSaved, long tokensSaved) {
+        if (hits == 0 && misses == 0) {
+            return;
+        }
+        String key = engine + SEPARATOR + sourceLanguage + SEPARATOR + targetLanguage;
+        long[] delta = pending.get(key);
+        if (delta == null) {
+            delta = new long[4];
+            pending.put(key, delta);
+        }
+        delta[0] += hits;
+        delta[1] += misses;
+        delta[2] += callsSaved;
+        delta[3] += tokensSaved;
+    }
+
+    /**
+     * Merge recorded deltas into the persisted counters.
+     */
+    public synchronized void save(SharedPreferences preferences) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        synchronized (CacheStatistics.class) {
+            JSONObject all = read(preferences);
+            try {
+                for (Map.Entry<String, long[]> entry : pending.entrySet()) {
+                    JSONObject row = all.optJSONObject(entry.getKey());
+                    if (row == null) {
+                        row = new JSONObject();
+                    }
+                    long[] delta = entry.getValue();
+                    row.put("hits", row.optLong("hits") + delta[0]);
+                    row.put("misses", row.optLong("misses") + delta[1]);
+                    row.put("calls_saved", row.optLong("calls_saved") + delta[2]);
+                    row.put("tokens_saved", row.optLong("tokens_saved") + delta[3]);
+                    all.put(entry.getKey(), row);
+                }
+            } catch (JSONException e) {
+                return; // Counters are advisory; keep the deltas for the next save
+            }
+            preferences.edit().putString(GeminiConstants.PREF_CACHE_STATISTICS, all.toString()).apply();
+            pending.clear();
+        }
+    }
+
+    /**
+     * Load persisted counters, ordered by engine and language pair.
+     */
+    public static List<Row> load(SharedPreferences preferences) {
+        JSONObject all = read(preferences);
+        List<String> keys = new ArrayList<>();
+        Iterator<String> iterator = all.keys();
+        while (iterator.hasNext()) {
+            keys.add(iterator.next());
+        }
+        Collections.sort(keys);
+        List<Row> rows = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            String[] parts = key.split("\\|", 3);
+            JSONObject row = all.optJSONObject(key);
+            if (parts.length != 3 || row == null) {
+                continue;
+            }
+            rows.add(new Row(parts[0], parts[1], parts[2],
+                    row.optLong("hits"), row.optLong("misses"),
+                    row.optLong("calls_saved"), row.optLong("tokens_saved")));
+        }
+        return rows;
+    }
+
+    /**
+     * Drop the counters of a language pair for every engine, or all counters if both are null.
+     */
+    public static void clear(SharedPreferences preferences, String sourceLanguage, String targetLanguage) {
+        synchronized (CacheStatistics.class) {
+            if (sourceLanguage == null && targetLanguage == null) {
+                preferences.edit().remove(GeminiConstants.PREF_CACHE_STATISTICS).apply();
+                return;
+            }
+            JSONObject all = read(preferences);
+            String suffix = SEPARATOR + sourceLanguage + SEPARATOR + targetLanguage;
+            List<String> matching = new ArrayList<>();
+            Iterator<String> iterator = all.keys();
+            while (iterator.hasNext()) {
+                String key = iterator.next();
+                if (key.endsWith(suffix)) {
+                    matching.add(key);
+                }
+            }
+            for (String key : matching) {
+                all.remove(key);
+            }
+            preferences.edit().putString(GeminiConstants.PREF_CACHE_STATISTICS, all.toString()).apply();
+        }
+    }
+
+    private static JSONObject read(SharedPreferences preferences) {
+        String json = preferences.getString(GeminiConstants.PREF_CACHE_STATISTICS, null);
+        if (json == null || json.isEmpty()) {
+            return new JSONObject();
+        }
+        try {
+            return new JSONObject(json);
+        } catch (JSONException e) {
+            return new JSONObject();
+        }
+    }
+}
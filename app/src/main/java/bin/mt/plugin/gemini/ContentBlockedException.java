@@ -0,0 +1,15 @@
+package bin.mt.plugin.gemini;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a provider answers but withholds the translation because a safety or
+ * content filter blocked the prompt or the output. Retrying the same text is pointless,
+ * so the engine neither retries it nor keeps re-sending it in later jobs.
+ */
+public class ContentBlockedException extends IOException {
+
+    public ContentBlockedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,119 @@
+package bin.mt.plugin.gemini;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+
+import bin.mt.plugin.cache.SegmentStore;
+
+/**
+ * Negative cache of strings a model could not translate usably.
+ *
+ * A string is recorded per engine, model and target language when its translation failed
+ * placeholder validation or a content filter blocked it. Until its retry-after horizon
+ * passes the engine keeps the original text instead of paying for the same failure
+ * again; after that it is retried once on the single-item path, and each further failure
+ * multiplies the horizon. Entries are persisted in a {@link SegmentStore} next to the
+ * translation memory.
+ */
+public class FailureMemory {
+
+    /** Lookup outcome for a string. */
+    public enum State {
+        /** No recorded failure. */
+        NONE,
+        /** Failed recently; keep the original text. */
+        SUPPRESSED,
+        /** Failed before but the horizon passed; retry on the single-item path. */
+        RETRY
+    }
+
+    public static final String REASON_PLACEHOLDERS = "placeholders";
+    public static final String REASON_BLOCKED = "blocked";
+
+    private static final String STORE_DIR = "failure_memory";
+    private static final char KEY_SEPARATOR = '\u001F';
+
+    private final SegmentStore store;
+
+    private FailureMemory(SegmentStore store) {
+        this.store = store;
+    }
+
+    public static FailureMemory open(File directory) throws IOException {
+        if (directory == null) {
+            throw new IOException("Plugin files directory unavailable");
+        }
+        return new FailureMemory(SegmentStore.open(new File(directory, STORE_DIR)));
+    }
+
+    /**
+     * Build a key from the original (untokenized) text, since validation depends on the
+     * actual placeholders.
+     */
+    public static String buildKey(String engine, String model, String targetLanguage, String sourceText) {
+        return engine + KEY_SEPARATOR + model + KEY_SEPARATOR + targetLanguage
+                + KEY_SEPARATOR + TranslationMemory.normalize(sourceText);
+    }
+
+    public State getState(String key, long now) {
+        JSONObject entry = read(key);
+        if (entry == null) {
+            return State.NONE;
+        }
+        return now < entry.optLong("retry_after", 0L) ? State.SUPPRESSED : State.RETRY;
+    }
+
+    /**
+     * Record another failure and push the retry-after horizon out: the base delay, multiplied
+     * by {@link GeminiConstants#NEGATIVE_CACHE_BACKOFF_FACTOR} per earlier failure, capped.
+     */
+    public void recordFailure(String key, String reason, long now) {
+        JSONObject entry = read(key);
+        int failures = (entry != null ? entry.optInt("failures", 0) : 0) + 1;
+        long horizon = GeminiConstants.NEGATIVE_CACHE_BASE_RETRY_MS;
+        for (int i = 1; i < failures && horizon < GeminiConstants.NEGATIVE_CACHE_MAX_RETRY_MS; i++) {
+            horizon *= GeminiConstants.NEGATIVE_CACHE_BACKOFF_FACTOR;
+        }
+        horizon = Math.min(horizon, GeminiConstants.NEGATIVE_CACHE_MAX_RETRY_MS);
+        try {
+            JSONObject updated = new JSONObject();
+            updated.put("failures", failures);
+            updated.put("retry_after", now + horizon);
+            updated.put("reason", reason);
+            store.put(key, updated.toString());
+        } catch (JSONException | IOException ignored) {
+            // Not recording a failure only costs a repeated request
+        }
+    }
+
+    /**
+     * Forget a string after it was finally translated successfully.
+     */
+    public void clear(String key) {
+        try {
+            store.remove(key);
+        } catch (IOException ignored) {
+            // The entry expires on its own
+        }
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    public void flush() throws IOException {
+        store.flush();
+    }
+
+    private JSONObject read(String key) {
+        try {
+            String value = store.get(key);
+            return value != null ? new JSONObject(value) : null;
+        } catch (JSONException | IOException e) {
+            return null; // A damaged record behaves like no record
+        }
+    }
+}
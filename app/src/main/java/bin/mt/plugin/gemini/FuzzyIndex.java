@@ -0,0 +1,486 @@
+package bin.mt.plugin.gemini;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Fuzzy lookup over previously translated source strings of one language pair.
+ *
+ * Each entry gets a MinHash signature over character 3-grams; signatures are split into
+ * LSH bands so near-duplicates ("Delete this file?" / "Delete this folder?") land in a
+ * shared bucket. Three rows per band keep unrelated strings (Jaccard around 0.05) out of
+ * each other's buckets even with 100k+ entries. Signatures live in a memory-mapped file
+ * and source/translation texts in an append-only data file, so the heap only holds one
+ * sorted long per entry and band. Candidates are ranked by the number of bands they share
+ * with the query, then by estimated Jaccard similarity, and the best are verified with an
+ * edit-distance ratio on the actual texts.
+ *
+ * Every entry records its origin ({@link TranslationMemory#buildOrigin}), so a caller can
+ * tell a translation made by the current engine, model and context from one made under
+ * different settings; matches of any origin are returned.
+ */
+public class FuzzyIndex {
+
+    static final int NUM_HASHES = 32;
+    static final int BANDS = 10;
+    static final int ROWS = NUM_HASHES / BANDS; // the last two hashes only feed the Jaccard estimate
+
+    private static final String SIGNATURE_FILE = "signatures.bin";
+    private static final String DATA_FILE = "entries.dat";
+    private static final int RECORD_BYTES = NUM_HASHES * 4 + 8; // signature + data offset
+    private static final int MAX_TEXT_LENGTH = 500;
+    private static final int MAX_CANDIDATES = 64;
+    private static final int MAX_BUCKET_SCAN = 512; // bounds work on degenerate buckets
+    private static final int MAX_UNSORTED = 1024;
+
+    private static final int[] SEEDS = new int[NUM_HASHES];
+    private static final Map<String, FuzzyIndex> INSTANCES = new HashMap<>();
+
+    static {
+        long state = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < NUM_HASHES; i++) {
+            state += 0x9E3779B97F4A7C15L;
+            long z = state;
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            SEEDS[i] = (int) (z ^ (z >>> 31));
+        }
+    }
+
+    /**
+     * A stored translation similar to the queried text.
+     */
+    public static final class Match {
+        public final String source;
+        public final String translation;
+        public final String origin;
+        public final double similarity;
+
+        Match(String source, String translation, String origin, double similarity) {
+            this.source = source;
+            this.translation = translation;
+            this.origin = origin;
+            this.similarity = similarity;
+        }
+    }
+
+    private final File signatureFile;
+    private final File dataFile;
+
+    // Band keys: (bandHash << 32) | entryId, sorted in [0, sortedCount), appended after that
+    private final long[][] bandKeys = new long[BANDS][];
+    private int keyCount;
+    private int sortedCount;
+
+    private MappedByteBuffer signatures;
+    private int persistedCount;
+    private long dataLength;
+    private RandomAccessFile dataReader;
+
+    private final List<int[]> pendingSignatures = new ArrayList<>();
+    private final List<String[]> pendingEntries = new ArrayList<>();
+
+    private FuzzyIndex(File directory) {
+        this.signatureFile = new File(directory, SIGNATURE_FILE);
+        this.dataFile = new File(directory, DATA_FILE);
+        for (int b = 0; b < BANDS; b++) {
+            bandKeys[b] = new long[256];
+        }
+    }
+
+    /**
+     * Open (or reuse) the process-wide index for a language pair.
+     */
+    public static FuzzyIndex open(File baseDirectory, String sourceLanguage, String targetLanguage) throws IOException {
+        if (baseDirectory == null) {
+            throw new IOException("Plugin files directory unavailable");
+        }
+        File directory = new File(new File(baseDirectory, "fuzzy_index"), sourceLanguage + "_" + targetLanguage);
+        synchronized (INSTANCES) {
+            String path = directory.getAbsolutePath();
+            FuzzyIndex index = INSTANCES.get(path);
+            if (index == null) {
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    throw new IOException("Cannot create " + path);
+                }
+                index = new FuzzyIndex(directory);
+                index.load();
+                INSTANCES.put(path, index);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Delete the index of a language pair. Instances already handed out keep serving their
+     * mapped snapshot; the next {@link #open} starts empty.
+     */
+    public static void delete(File baseDirectory, String sourceLanguage, String targetLanguage) throws IOException {
+        File directory = new File(new File(baseDirectory, "fuzzy_index"), sourceLanguage + "_" + targetLanguage);
+        synchronized (INSTANCES) {
+            INSTANCES.remove(directory.getAbsolutePath());
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (!file.delete()) {
+                        throw new IOException("Cannot delete " + file.getPath());
+                    }
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    public synchronized int size() {
+        return persistedCount + pendingSignatures.size();
+    }
+
+    /**
+     * Add a source string and its translation. Exact duplicates of a source already indexed
+     * with the same origin are ignored.
+     */
+    public synchronized void add(String source, String translation, String origin) {
+        if (source == null || translation == null || origin == null || source.length() > MAX_TEXT_LENGTH) {
+            return;
+        }
+        int[] signature = signature(source);
+        // Exact duplicates share the signature and rank first, one per origin
+        for (Match match : query(source, signature, 4, 1.0)) {
+            if (match.source.equals(source) && match.origin.equals(origin)) {
+                return;
+            }
+        }
+        int id = size();
+        pendingSignatures.add(signature);
+        pendingEntries.add(new String[]{source, translation, origin});
+        addKeys(id, signature);
+    }
+
+    /**
+     * Find stored entries similar to the given text.
+     *
+     * @param text Placeholder-tokenized source text
+     * @param maxResults Maximum number of matches to return
+     * @param minSimilarity Minimum edit-distance similarity (0..1)
+     * @return Matches ordered by descending similarity
+     */
+    public synchronized List<Match> query(String text, int maxResults, double minSimilarity) {
+        if (text == null || text.length() > MAX_TEXT_LENGTH || size() == 0) {
+            return Collections.emptyList();
+        }
+        return query(text, signature(text), maxResults, minSimilarity);
+    }
+
+    /**
+     * Append entries added since the last flush and remap the signature file.
+     */
+    public synchronized void flush() throws IOException {
+        if (pendingSignatures.isEmpty()) {
+            return;
+        }
+        // Data is written first so a signature never points past the end of the data file
+        long offset = dataLength;
+        long[] offsets = new long[pendingEntries.size()];
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(dataFile, true)))) {
+            for (int i = 0; i < pendingEntries.size(); i++) {
+                offsets[i] = offset;
+                byte[] source = pendingEntries.get(i)[0].getBytes(StandardCharsets.UTF_8);
+                byte[] translation = pendingEntries.get(i)[1].getBytes(StandardCharsets.UTF_8);
+                byte[] origin = pendingEntries.get(i)[2].getBytes(StandardCharsets.UTF_8);
+                out.writeInt(source.length);
+                out.write(source);
+                out.writeInt(translation.length);
+                out.write(translation);
+                out.writeInt(origin.length);
+                out.write(origin);
+                offset += 12 + source.length + translation.length + origin.length;
+            }
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(signatureFile, true)))) {
+            for (int i = 0; i < pendingSignatures.size(); i++) {
+                for (int value : pendingSignatures.get(i)) {
+                    out.writeInt(value);
+                }
+                out.writeLong(offsets[i]);
+            }
+        }
+        dataLength = offset;
+        persistedCount += pendingSignatures.size();
+        pendingSignatures.clear();
+        pendingEntries.clear();
+        mapSignatures();
+    }
+
+    private List<Match> query(String text, int[] signature, int maxResults, double minSimilarity) {
+        // Collect LSH candidates (entries sharing at least one full band) with the bands shared
+        Map<Integer, int[]> sharedBands = new HashMap<>();
+        for (int b = 0; b < BANDS; b++) {
+            collectBucket(b, bandHash(signature, b), sharedBands);
+        }
+        if (sharedBands.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Keep the candidates sharing the most bands, so later bands are not crowded out
+        List<int[]> candidates = new ArrayList<>(sharedBands.size());
+        for (Map.Entry<Integer, int[]> e : sharedBands.entrySet()) {
+            candidates.add(new int[]{e.getValue()[0], e.getKey()});
+        }
+        if (candidates.size() > MAX_CANDIDATES) {
+            Collections.sort(candidates, (a, b) -> a[0] != b[0] ? Integer.compare(b[0], a[0]) : Integer.compare(a[1], b[1]));
+            candidates = candidates.subList(0, MAX_CANDIDATES);
+        }
+
+        // Rank by estimated Jaccard similarity, verify the best few on the actual text
+        List<long[]> ranked = new ArrayList<>(candidates.size());
+        for (int[] candidate : candidates) {
+            int id = candidate[1];
+            int agree = 0;
+            for (int k = 0; k < NUM_HASHES; k++) {
+                if (signatureValue(id, k) == signature[k]) agree++;
+            }
+            ranked.add(new long[]{agree, id});
+        }
+        Collections.sort(ranked, (a, b) -> a[0] != b[0] ? Long.compare(b[0], a[0]) : Long.compare(a[1], b[1]));
+
+        String normalized = collapseWhitespace(text);
+        List<Match> matches = new ArrayList<>();
+        int verified = 0;
+        for (long[] entry : ranked) {
+            if (verified++ >= Math.max(4, maxResults * 2)) break;
+            String[] pair = readEntry((int) entry[1]);
+            if (pair == null) continue;
+            double similarity = similarity(normalized, collapseWhitespace(pair[0]));
+            if (similarity >= minSimilarity) {
+                matches.add(new Match(pair[0], pair[1], pair[2], similarity));
+            }
+        }
+        Collections.sort(matches, (a, b) -> Double.compare(b.similarity, a.similarity));
+        return matches.size() > maxResults ? matches.subList(0, maxResults) : matches;
+    }
+
+    private void collectBucket(int band, int hash, Map<Integer, int[]> out) {
+        long[] keys = bandKeys[band];
+        long low = ((long) hash) << 32;
+        // Sorted part: binary search for the first key of this bucket
+        int lo = 0;
+        int hi = sortedCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid] < low) lo = mid + 1; else hi = mid;
+        }
+        int scanned = 0;
+        for (int i = lo; i < sortedCount && (int) (keys[i] >> 32) == hash; i++) {
+            countBand(out, (int) keys[i]);
+            if (++scanned >= MAX_BUCKET_SCAN) return;
+        }
+        // Unsorted tail of recently added entries
+        for (int i = sortedCount; i < keyCount; i++) {
+            if ((int) (keys[i] >> 32) == hash) {
+                countBand(out, (int) keys[i]);
+                if (++scanned >= MAX_BUCKET_SCAN) return;
+            }
+        }
+    }
+
+    private static void countBand(Map<Integer, int[]> sharedBands, int id) {
+        int[] count = sharedBands.get(id);
+        if (count == null) {
+            sharedBands.put(id, new int[]{1});
+        } else {
+            count[0]++;
+        }
+    }
+
+    private void addKeys(int id, int[] signature) {
+        if (keyCount == bandKeys[0].length) {
+            for (int b = 0; b < BANDS; b++) {
+                bandKeys[b] = Arrays.copyOf(bandKeys[b], keyCount * 2);
+            }
+        }
+        for (int b = 0; b < BANDS; b++) {
+            bandKeys[b][keyCount] = (((long) bandHash(signature, b)) << 32) | (id & 0xFFFFFFFFL);
+        }
+        keyCount++;
+        if (keyCount - sortedCount > MAX_UNSORTED) {
+            sortKeys();
+        }
+    }
+
+    private void sortKeys() {
+        for (int b = 0; b < BANDS; b++) {
+            Arrays.sort(bandKeys[b], 0, keyCount);
+        }
+        sortedCount = keyCount;
+    }
+
+    private int signatureValue(int id, int k) {
+        if (id < persistedCount) {
+            return signatures.getInt(id * RECORD_BYTES + k * 4);
+        }
+        return pendingSignatures.get(id - persistedCount)[k];
+    }
+
+    private String[] readEntry(int id) {
+        if (id >= persistedCount) {
+            return pendingEntries.get(id - persistedCount);
+        }
+        long offset = signatures.getLong(id * RECORD_BYTES + NUM_HASHES * 4);
+        if (offset < 0 || offset >= dataLength) {
+            return null;
+        }
+        try {
+            // One handle for the life of the index; appended data is visible through it
+            if (dataReader == null) {
+                dataReader = new RandomAccessFile(dataFile, "r");
+            }
+            dataReader.seek(offset);
+            String source = readString(dataReader);
+            String translation = readString(dataReader);
+            String origin = readString(dataReader);
+            return new String[]{source, translation, origin};
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static String readString(RandomAccessFile raf) throws IOException {
+        int length = raf.readInt();
+        if (length < 0 || length > MAX_TEXT_LENGTH * 16) {
+            throw new IOException("Corrupt fuzzy index entry");
+        }
+        byte[] bytes = new byte[length];
+        raf.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void load() throws IOException {
+        dataLength = dataFile.exists() ? dataFile.length() : 0;
+        mapSignatures();
+        for (int id = 0; id < persistedCount; id++) {
+            if (keyCount == bandKeys[0].length) {
+                for (int b = 0; b < BANDS; b++) {
+                    bandKeys[b] = Arrays.copyOf(bandKeys[b], Math.max(keyCount * 2, persistedCount));
+                }
+            }
+            int[] signature = new int[NUM_HASHES];
+            for (int k = 0; k < NUM_HASHES; k++) {
+                signature[k] = signatures.getInt(id * RECORD_BYTES + k * 4);
+            }
+            for (int b = 0; b < BANDS; b++) {
+                bandKeys[b][keyCount] = (((long) bandHash(signature, b)) << 32) | (id & 0xFFFFFFFFL);
+            }
+            keyCount++;
+        }
+        sortKeys();
+    }
+
+    private void mapSignatures() throws IOException {
+        if (!signatureFile.exists() || signatureFile.length() < RECORD_BYTES) {
+            signatures = null;
+            persistedCount = 0;
+            return;
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(signatureFile, "r")) {
+            // A torn trailing record from an interrupted flush is ignored
+            int records = (int) (raf.length() / RECORD_BYTES);
+            signatures = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, (long) records * RECORD_BYTES);
+            persistedCount = records;
+        }
+    }
+
+    // ── Hashing ──────────────────────────────────────────────────────────────
+
+    static int[] signature(String text) {
+        String normalized = normalize(text);
+        int[] signature = new int[NUM_HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        int shingles = Math.max(1, normalized.length() - 2);
+        for (int i = 0; i < shingles; i++) {
+            int end = Math.min(normalized.length(), i + 3);
+            int shingle = 0;
+            for (int j = i; j < end; j++) {
+                shingle = shingle * 31 + normalized.charAt(j);
+            }
+            for (int k = 0; k < NUM_HASHES; k++) {
+                int value = mix(shingle ^ SEEDS[k]);
+                if (value < signature[k]) {
+                    signature[k] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private static int bandHash(int[] signature, int band) {
+        int hash = 1;
+        for (int r = 0; r < ROWS; r++) {
+            hash = hash * 31 + signature[band * ROWS + r];
+        }
+        return mix(hash ^ band);
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    /**
+     * Shingling ignores case so "Delete file" and "delete file" share a bucket.
+     */
+    static String normalize(String text) {
+        return collapseWhitespace(text).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Verification is case-sensitive: UI strings differing only in case are not interchangeable.
+     */
+    private static String collapseWhitespace(String text) {
+        return Normalizer.normalize(text, Normalizer.Form.NFC).replaceAll("\\s+", " ").trim();
+    }
+
+    /**
+     * Edit-distance similarity: 1 - levenshtein / max(length).
+     */
+    static double similarity(String a, String b) {
+        if (a.equals(b)) return 1.0;
+        int max = Math.max(a.length(), b.length());
+        if (max == 0) return 1.0;
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) previous[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = ca == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return 1.0 - (double) previous[b.length()] / max;
+    }
+}
@@ -15,6 +15,17 @@ public class GeminiConstants {
      */
     public static final String API_BASE_URL = "https://generativelanguage.googleapis.com/v1beta/models";
 
+    /**
+     * Gemini API root, for resources other than models
+     */
+    public static final String API_ROOT_URL = "https://generativelanguage.googleapis.com/v1beta";
+
+    /**
+     * Gemini explicit context caches
+     * Documentation: https://ai.google.dev/gemini-api/docs/caching
+     */
+    public static final String CACHED_CONTENTS_URL = API_ROOT_URL + "/cachedContents";
+
     // ==================== Gemini Model Names (Updated February 2026) ====================
 
     /**
@@ -71,7 +82,19 @@ public class GeminiConstants {
     public static final String PREF_BATCH_ENABLED = "gemini_batch_enabled";
     public static final String PREF_BATCH_SIZE = "gemini_batch_size";
     public static final String PREF_BATCH_MAX_CHARS = "gemini_batch_max_chars";
+    public static final String PREF_ADAPTIVE_BATCH = "ai_adaptive_batch_enabled";
+    public static final String PREF_ADAPTIVE_BATCH_STATE = "ai_adaptive_batch_sizes";
+    public static final String PREF_MAX_CONCURRENT_REQUESTS = "ai_max_concurrent_requests";
+    public static final String PREF_STRUCTURED_OUTPUT = "ai_structured_output";
+    public static final String PREF_STREAM_BATCH = "ai_stream_batch";
+    public static final String PREF_MAX_RESPONSE_KB = "ai_max_response_kb";
+    public static final String PREF_EXTRA_TARGET_LANGUAGES = "ai_extra_target_languages";
     public static final String PREF_BILINGUAL_MODE = "ai_bilingual_mode";
+    public static final String PREF_TRANSLATION_MEMORY = "ai_translation_memory_enabled";
+    public static final String PREF_FUZZY_MATCH = "ai_fuzzy_match_enabled";
+    public static final String PREF_FUZZY_REUSE_THRESHOLD = "ai_fuzzy_reuse_threshold";
+    public static final String PREF_CACHE_HEAP_BUDGET = "ai_cache_heap_budget_mb";
+    public static final String PREF_CACHE_STATISTICS = "ai_cache_statistics";
 
     // OpenAI preference keys
     public static final String PREF_OPENAI_API_KEY = "openai_api_key";
@@ -104,8 +127,38 @@ public class GeminiConstants {
     public static final boolean DEFAULT_ENABLE_DEBUG = false;
     public static final boolean DEFAULT_BATCH_ENABLED = true;
     public static final int DEFAULT_BATCH_SIZE = 25;
-    public static final int DEFAULT_BATCH_MAX_CHARS = 10000;
+    public static final int DEFAULT_BATCH_MAX_CHARS = 0; // 0 = size batches by estimated tokens only
+    public static final int MAX_OUTPUT_TOKENS_PER_REQUEST = 8192;
+    public static final double BATCH_OUTPUT_SAFETY = 0.75; // share of the output budget a batch reply may fill
+    public static final boolean DEFAULT_ADAPTIVE_BATCH = true;
+    public static final int ADAPTIVE_BATCH_MIN_SIZE = 1;
+    public static final int ADAPTIVE_BATCH_MAX_SIZE = 100;
+    public static final int ADAPTIVE_BATCH_GROWTH_STEP = 2;
+    public static final double ADAPTIVE_BATCH_SHRINK_FACTOR = 0.5;
+    public static final boolean DEFAULT_STRUCTURED_OUTPUT = true;
+    public static final boolean DEFAULT_STREAM_BATCH = true; // numbered batch replies are checked while they stream
+    public static final int DEFAULT_MAX_RESPONSE_KB = 2048; // larger response bodies fail instead of filling the heap
+    public static final int MIN_MAX_RESPONSE_KB = 64;
+    public static final String DEFAULT_EXTRA_TARGET_LANGUAGES = ""; // comma-separated codes, e.g. "de,fr,pt-BR"
+    public static final int MAX_EXTRA_TARGET_LANGUAGES = 9; // fan-out targets per request besides the job's own
+    public static final int BATCH_REPAIR_ROUNDS = 2; // re-requests of missing or broken items per batch
+    public static final int DEFAULT_MAX_CONCURRENT_REQUESTS = 3; // in-flight batch requests per provider
+    public static final int MAX_CONCURRENT_REQUESTS_LIMIT = 8;
+    public static final int BATCH_PLANNER_WINDOW_REQUESTS = 4; // requests' worth of strings packed together
+    public static final long RATE_LIMIT_COOLDOWN_MS = 60_000L; // one request at a time after a 429
+    public static final int GEMINI_CACHE_MIN_TOKENS = 4096; // smallest prefix worth an explicit Gemini cache
+    public static final int GEMINI_CACHE_TTL_SECONDS = 600;
     public static final boolean DEFAULT_BILINGUAL_MODE = false;
+    public static final boolean DEFAULT_TRANSLATION_MEMORY = true;
+    public static final boolean DEFAULT_FUZZY_MATCH = true;
+    public static final int DEFAULT_FUZZY_REUSE_THRESHOLD = 0; // percent, 0 disables direct reuse
+    public static final double FUZZY_REFERENCE_MIN_SIMILARITY = 0.6;
+    public static final int FUZZY_MAX_REFERENCES = 8;
+    public static final int FUZZY_REFERENCE_TOKENS = 40; // prompt reserve per reference pair when sizing batches
+    public static final int DEFAULT_CACHE_HEAP_BUDGET_MB = 8;
+    public static final long NEGATIVE_CACHE_BASE_RETRY_MS = 60L * 60 * 1000; // 1 hour after the first failure
+    public static final int NEGATIVE_CACHE_BACKOFF_FACTOR = 4;
+    public static final long NEGATIVE_CACHE_MAX_RETRY_MS = 7L * 24 * 60 * 60 * 1000;
     public static final String CLAUDE_MODEL_FALLBACK = "claude-sonnet-4-5-latest";
     public static final String DEFAULT_CONTEXT_TONE = "Clear and instructional";
 
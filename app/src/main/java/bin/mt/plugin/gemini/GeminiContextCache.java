@@ -0,0 +1,106 @@
+package bin.mt.plugin.gemini;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+
+/**
+ * Explicit Gemini context cache holding the static instructions of a translation job.
+ *
+ * Requests then name the cache instead of repeating the instructions, and the cached tokens
+ * are billed at the reduced rate. Gemini only accepts caches above a minimum size, so the
+ * cache is created only for instructions of at least
+ * {@link GeminiConstants#GEMINI_CACHE_MIN_TOKENS}; shorter prefixes rely on implicit caching.
+ * A cache lives for {@link GeminiConstants#GEMINI_CACHE_TTL_SECONDS}, is replaced when the
+ * instructions change or it is about to expire, and is deleted when the job ends. If it
+ * cannot be created the job carries on without it.
+ */
+public class GeminiContextCache {
+
+    private static final long EXPIRY_MARGIN_MS = 60_000L;
+
+    private final String apiKey;
+    private final String model;
+    private final int timeoutMs;
+
+    private String instructions;
+    private String name;
+    private long expiresAt;
+    private boolean unavailable;
+
+    public GeminiContextCache(String apiKey, String model, int timeoutMs) {
+        this.apiKey = apiKey;
+        this.model = model.startsWith("models/") ? model : "models/" + model;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * The cache holding the given instructions, created on first use.
+     *
+     * @return Cache name for the request's {@code cachedContent}, or null to send the
+     *         instructions inline
+     */
+    public synchronized String nameFor(String instructions) {
+        if (unavailable || TokenEstimator.estimateTokens(instructions) < GeminiConstants.GEMINI_CACHE_MIN_TOKENS) {
+            return null;
+        }
+        if (name != null && instructions.equals(this.instructions)
+                && System.currentTimeMillis() < expiresAt - EXPIRY_MARGIN_MS) {
+            return name;
+        }
+        delete();
+        try {
+            JSONObject request = new JSONObject()
+                    .put("model", model)
+                    .put("systemInstruction", new JSONObject()
+                            .put("parts", new JSONArray().put(new JSONObject().put("text", instructions))))
+                    .put("ttl", GeminiConstants.GEMINI_CACHE_TTL_SECONDS + "s");
+            GeminiHttpUtils.Request httpRequest = GeminiHttpUtils.post(
+                    GeminiConstants.CACHED_CONTENTS_URL + "?key=" + apiKey);
+            httpRequest.setTimeout(timeoutMs);
+            httpRequest.jsonBody(request);
+            String created = httpRequest.executeToJson().optString("name", "");
+            if (created.isEmpty()) {
+                unavailable = true;
+                return null;
+            }
+            this.name = created;
+            this.instructions = instructions;
+            this.expiresAt = System.currentTimeMillis() + GeminiConstants.GEMINI_CACHE_TTL_SECONDS * 1000L;
+            return name;
+        } catch (JSONException | IOException e) {
+            unavailable = true;
+            return null;
+        }
+    }
+
+    /**
+     * Stop using the cache for the rest of the job, e.g. after a request naming it failed.
+     */
+    public synchronized void invalidate() {
+        delete();
+        unavailable = true;
+    }
+
+    /**
+     * Delete the cache so it stops accruing storage time.
+     */
+    public synchronized void delete() {
+        if (name == null) {
+            return;
+        }
+        String doomed = name;
+        name = null;
+        instructions = null;
+        try {
+            GeminiHttpUtils.Request httpRequest = GeminiHttpUtils.delete(
+                    GeminiConstants.API_ROOT_URL + "/" + doomed + "?key=" + apiKey);
+            httpRequest.setTimeout(timeoutMs);
+            httpRequest.execute();
+        } catch (IOException ignored) {
+            // Expires on its own after the TTL
+        }
+    }
+}
@@ -1,14 +1,13 @@
 package bin.mt.plugin.gemini;
 
-import org.json.JSONException;
+import bin.mt.plugin.net.HttpTransport;
+import bin.mt.plugin.net.JsonStreams;
+
 import org.json.JSONObject;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -29,13 +28,29 @@ public class GeminiHttpUtils {
         return new Request(url, "GET");
     }
 
+    public static Request delete(String url) {
+        return new Request(url, "DELETE");
+    }
+
+    /**
+     * Receives the server-sent events of a streamed response as they arrive.
+     */
+    public interface EventListener {
+        /**
+         * @param event Event type from the {@code event:} field, or null if the event had none
+         * @param data  Joined {@code data:} lines of the event
+         */
+        void onEvent(String event, String data) throws IOException;
+    }
+
     public static class Request {
         private final String url;
         private final String method;
         private final Map<String, String> headers;
         private int connectTimeout = GeminiConstants.DEFAULT_TIMEOUT;
         private int readTimeout = GeminiConstants.DEFAULT_TIMEOUT;
-        private byte[] requestBody;
+        private int maxResponseBytes = GeminiConstants.DEFAULT_MAX_RESPONSE_KB * 1024;
+        private JSONObject jsonBody;
 
         private Request(String url, String method) {
             this.url = url;
@@ -55,99 +70,110 @@ public class GeminiHttpUtils {
             return this;
         }
 
+        /**
+         * Largest response body accepted; a longer successful response fails the request and a
+         * longer error response is cut off.
+         */
+        public Request setMaxResponseBytes(int maxBytes) {
+            this.maxResponseBytes = maxBytes;
+            return this;
+        }
+
+        /**
+         * Send {@code json} as the body. It is written straight into the connection when the
+         * request is executed, not copied here.
+         */
         public Request jsonBody(JSONObject json) {
-            this.requestBody = json.toString().getBytes(StandardCharsets.UTF_8);
+            this.jsonBody = json;
             this.headers.put("Content-Type", "application/json; charset=UTF-8");
             return this;
         }
 
         public String execute() throws IOException {
-            HttpURLConnection conn = null;
-            InputStream inputStream = null;
-            InputStream errorStream = null;
-
-            try {
-                conn = createConnection();
-                int responseCode = conn.getResponseCode();
-
-                if (responseCode >= 200 && responseCode < 300) {
-                    inputStream = conn.getInputStream();
-                    return readStream(inputStream);
-                } else {
-                    // Read Retry-After header before disconnect
-                    String retryAfter = (responseCode == 429 || responseCode == 503)
-                            ? conn.getHeaderField("Retry-After") : null;
-                    errorStream = conn.getErrorStream();
-                    String errorBody = errorStream != null ? readStream(errorStream) : "";
-                    String prefix = "HTTP " + responseCode;
-                    if (retryAfter != null && !retryAfter.isEmpty()) {
-                        prefix += " [Retry-After: " + retryAfter + "]";
-                    }
-                    throw new IOException(prefix + ": " + errorBody);
-                }
-
-            } finally {
-                if (inputStream != null) {
-                    try { inputStream.close(); } catch (IOException ignored) {}
-                }
-                if (errorStream != null) {
-                    try { errorStream.close(); } catch (IOException ignored) {}
+            final StringBuilder body = new StringBuilder();
+            send((in, contentType) -> {
+                Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+                char[] chunk = new char[4096];
+                int read;
+                while ((read = reader.read(chunk)) != -1) {
+                    body.append(chunk, 0, read);
                 }
-                if (conn != null) {
-                    conn.disconnect();
-                }
-            }
+            });
+            return body.toString();
         }
 
+        /**
+         * Execute the request and parse the response while it is read from the connection.
+         */
         public JSONObject executeToJson() throws IOException {
-            String responseBody = execute();
-            try {
-                return new JSONObject(responseBody);
-            } catch (JSONException e) {
-                throw new IOException("Failed to parse JSON response: " + e.getMessage(), e);
-            }
+            final JSONObject[] result = new JSONObject[1];
+            send((in, contentType) -> result[0] = JsonStreams.readObject(in));
+            return result[0];
         }
 
-        private HttpURLConnection createConnection() throws IOException {
-            URL urlObject = new URL(url);
-            HttpURLConnection conn = (HttpURLConnection) urlObject.openConnection();
-
-            conn.setRequestMethod(method);
-            conn.setConnectTimeout(connectTimeout);
-            conn.setReadTimeout(readTimeout);
-            conn.setUseCaches(false);
-            conn.setDoInput(true);
-
-            for (Map.Entry<String, String> entry : headers.entrySet()) {
-                conn.setRequestProperty(entry.getKey(), entry.getValue());
+        private void send(HttpTransport.BodyReader reader) throws IOException {
+            HttpTransport.Response response = HttpTransport.send(method, url, headers, body(), reader,
+                    connectTimeout, readTimeout, maxResponseBytes);
+            if (!response.isSuccessful()) {
+                throw httpError(response);
             }
+        }
 
-            if (requestBody != null && requestBody.length > 0) {
-                conn.setDoOutput(true);
-                conn.setFixedLengthStreamingMode(requestBody.length);
-
-                OutputStream out = conn.getOutputStream();
-                try {
-                    out.write(requestBody);
-                    out.flush();
-                } finally {
-                    out.close();
+        /**
+         * Execute the request as a server-sent event stream, calling {@code listener} for each
+         * event while the response is still arriving.
+         *
+         * @return null if the response was an event stream, or the parsed reply of a server that
+         *         ignored the request to stream and answered with plain JSON
+         * @throws IOException On a network error, a non-2xx response or an error thrown by the listener
+         */
+        public JSONObject executeStream(final EventListener listener) throws IOException {
+            headers.put("Accept", "text/event-stream");
+            final StringBuilder data = new StringBuilder();
+            final String[] event = new String[1];
+            final JSONObject[] plain = new JSONObject[1];
+            HttpTransport.Response response = HttpTransport.stream(method, url, headers, body(),
+                    connectTimeout, readTimeout, maxResponseBytes, line -> {
+                        if (line.isEmpty()) {
+                            // A blank line dispatches the event collected so far
+                            if (data.length() > 0) {
+                                listener.onEvent(event[0], data.toString());
+                            }
+                            data.setLength(0);
+                            event[0] = null;
+                        } else if (line.startsWith("data:")) {
+                            if (data.length() > 0) {
+                                data.append('\n');
+                            }
+                            data.append(fieldValue(line, "data:".length()));
+                        } else if (line.startsWith("event:")) {
+                            event[0] = fieldValue(line, "event:".length());
+                        }
+                        // Comments (":") and id/retry fields are not used
+                    }, (in, contentType) -> plain[0] = JsonStreams.readObject(in));
+            if (response.isSuccessful()) {
+                if (data.length() > 0) {
+                    listener.onEvent(event[0], data.toString());
                 }
+                return plain[0];
             }
+            throw httpError(response);
+        }
 
-            return conn;
+        private static String fieldValue(String line, int start) {
+            return line.startsWith(" ", start) ? line.substring(start + 1) : line.substring(start);
         }
 
-        private String readStream(InputStream is) throws IOException {
-            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-            byte[] chunk = new byte[8192];
-            int bytesRead;
+        private HttpTransport.BodyWriter body() {
+            return jsonBody != null ? JsonStreams.writer(jsonBody) : null;
+        }
 
-            while ((bytesRead = is.read(chunk)) != -1) {
-                buffer.write(chunk, 0, bytesRead);
+        private static IOException httpError(HttpTransport.Response response) throws IOException {
+            String prefix = "HTTP " + response.code;
+            if (response.retryAfter != null && !response.retryAfter.isEmpty()) {
+                prefix += " [Retry-After: " + response.retryAfter + "]";
             }
-
-            return buffer.toString("UTF-8");
+            return new IOException(prefix + ": " + response.text("UTF-8"));
         }
     }
 }
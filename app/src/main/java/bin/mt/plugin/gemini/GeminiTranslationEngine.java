@@ -10,9 +10,16 @@ import org.json.JSONObject;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -20,6 +27,9 @@ import bin.mt.plugin.api.LocalString;
 import bin.mt.plugin.api.PluginContext;
 import bin.mt.plugin.api.translation.BaseBatchTranslationEngine;
 import bin.mt.plugin.api.translation.BatchTranslationEngine;
+import bin.mt.plugin.cache.TieredStore;
+import bin.mt.plugin.net.HttpTransport;
+import bin.mt.plugin.net.RequestErrors;
 
 /**
  * Gemini API Translation Engine for MT Manager
@@ -55,7 +65,7 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
      * HTML tags, shell/template variables ($PATH, ${var}),
      * Android escape sequences (\n, \t, \'), and HTML entities (&amp;, &#123;).
      */
-    private static final Pattern PLACEHOLDER_PATTERN = Pattern.compile(
+    static final Pattern PLACEHOLDER_PATTERN = Pattern.compile(
         "(%(?:\\d+\\$)?[-+# 0,(]*\\d*\\.?\\d*[sdfiboxXeEgGcChHnAt%])" +
         "|(\\{\\{[^}]*\\}\\})" +
         "|(\\{[^}]*\\})" +
@@ -66,15 +76,33 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
         "|(&(?:#\\d+|#x[0-9a-fA-F]+|[a-zA-Z]+);)"
     );
 
+    /** Gemini finish reasons that mean the output was withheld by a filter */
+    private static final Set<String> BLOCKED_FINISH_REASONS = new HashSet<>(Arrays.asList(
+        "SAFETY", "RECITATION", "BLOCKLIST", "PROHIBITED_CONTENT", "SPII"
+    ));
+
+    /** Protected token a placeholder is replaced with before translation */
+    private static final Pattern PROTECTED_TOKEN_PATTERN = Pattern.compile("__PH\\d+__");
+
+    /** Words and numbers, which must match exactly before a fuzzy match is reused */
+    private static final Pattern TERM_PATTERN = Pattern.compile("[\\p{L}\\p{M}\\p{N}]+");
+
     /** Pattern for non-translatable strings (only symbols, numbers, whitespace) */
     private static final Pattern NON_TRANSLATABLE_PATTERN = Pattern.compile(
-        "^[\\p{Punct}\\p{Symbol}\\d\\s]*$"
+        "^[\\p{Punct}\\p{S}\\d\\s]*$"
     );
 
+    // Why a batch item has no translation yet; ITEM_PENDING items are worth another batch attempt
+    private static final byte ITEM_PENDING = 0;
+    private static final byte ITEM_ISOLATED = 1;  // isolated by bisection, gets one individual request
+    private static final byte ITEM_BLOCKED = 2;   // blocked by a content filter
+    private static final byte ITEM_GIVEN_UP = 3;  // outage, auth or rate limit; keep the original
+
     private LocalString localString;
     private String apiKey;
     private int maxRetries;
     private int requestTimeout;
+    private int maxResponseBytes;
     private String modelName;
     private String selectedEngine;
 
@@ -95,6 +123,41 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
     private boolean batchEnabled;
     private int batchSize;
     private int batchMaxChars;
+    private TranslationMemory translationMemory;
+    private String contextHash = "0";
+    private Map<String, String> sessionResults;
+    private boolean fuzzyMatchEnabled;
+    private int fuzzyReuseThreshold;
+    private Map<String, FuzzyIndex> fuzzyIndexes;
+    private FailureMemory failureMemory;
+
+    private TokenBatchingStrategy batchingStrategy;
+    private AdaptiveBatchSize adaptiveBatchSize;
+    private int maxConcurrentRequests = 1;
+    private boolean structuredOutputEnabled;
+    private volatile boolean structuredOutputRejected;
+    // Numbered batch replies are streamed and checked as they arrive, until an endpoint rejects streaming
+    private boolean streamBatchEnabled;
+    private volatile boolean streamBatchRejected;
+    private List<String> extraTargetLanguages = Collections.emptyList();
+    // Additional target languages of the running job, asked for alongside its own target
+    private volatile List<String> fanOutTargets = Collections.emptyList();
+    private final ThreadLocal<CallOutcome> callOutcome = new ThreadLocal<CallOutcome>() {
+        @Override
+        protected CallOutcome initialValue() {
+            return new CallOutcome();
+        }
+    };
+    private String lastSourceLanguage;
+    private String lastTargetLanguage;
+    private GeminiContextCache geminiContextCache;
+    // Prompt tokens of this job as reported by the providers, and how many came from their caches
+    private final AtomicLong usagePromptTokens = new AtomicLong();
+    private final AtomicLong usageCachedTokens = new AtomicLong();
+    private final AtomicLong usageCacheWriteTokens = new AtomicLong();
+    // HTTP traffic counters when the job started, to report its gzip savings
+    private HttpTransport.Stats transferBaseline;
+    private CacheStatistics cacheStatistics;
 
     /**
      * Constructor with default configuration
@@ -162,6 +225,8 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
 
         maxRetries = readIntPreference(prefs, GeminiConstants.PREF_MAX_RETRIES, GeminiConstants.DEFAULT_MAX_RETRIES);
         requestTimeout = readIntPreference(prefs, GeminiConstants.PREF_TIMEOUT, GeminiConstants.DEFAULT_TIMEOUT);
+        maxResponseBytes = Math.max(GeminiConstants.MIN_MAX_RESPONSE_KB, readIntPreference(prefs,
+                GeminiConstants.PREF_MAX_RESPONSE_KB, GeminiConstants.DEFAULT_MAX_RESPONSE_KB)) * 1024;
         modelName = prefs.getString(GeminiConstants.PREF_MODEL_NAME, GeminiConstants.DEFAULT_MODEL);
         selectedEngine = prefs.getString(GeminiConstants.PREF_DEFAULT_ENGINE, GeminiConstants.DEFAULT_ENGINE);
         debugLogging = prefs.getBoolean(GeminiConstants.PREF_ENABLE_DEBUG, GeminiConstants.DEFAULT_ENABLE_DEBUG);
@@ -210,23 +275,158 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
         batchSize = readIntPreference(prefs, GeminiConstants.PREF_BATCH_SIZE, GeminiConstants.DEFAULT_BATCH_SIZE);
         batchMaxChars = readIntPreference(prefs, GeminiConstants.PREF_BATCH_MAX_CHARS, GeminiConstants.DEFAULT_BATCH_MAX_CHARS);
         if (batchSize < 1) batchSize = GeminiConstants.DEFAULT_BATCH_SIZE;
-        if (batchMaxChars < 100) batchMaxChars = GeminiConstants.DEFAULT_BATCH_MAX_CHARS;
-        logInfo("Batch config: enabled=" + batchEnabled + ", size=" + batchSize + ", maxChars=" + batchMaxChars);
+        if (batchMaxChars < 100) batchMaxChars = 0; // no character cap, batches are sized by tokens
+        maxConcurrentRequests = readIntPreference(prefs, GeminiConstants.PREF_MAX_CONCURRENT_REQUESTS,
+                GeminiConstants.DEFAULT_MAX_CONCURRENT_REQUESTS);
+        maxConcurrentRequests = Math.max(1, Math.min(GeminiConstants.MAX_CONCURRENT_REQUESTS_LIMIT, maxConcurrentRequests));
+        structuredOutputEnabled = prefs.getBoolean(GeminiConstants.PREF_STRUCTURED_OUTPUT,
+                GeminiConstants.DEFAULT_STRUCTURED_OUTPUT);
+        structuredOutputRejected = false;
+        streamBatchEnabled = prefs.getBoolean(GeminiConstants.PREF_STREAM_BATCH, GeminiConstants.DEFAULT_STREAM_BATCH);
+        streamBatchRejected = false;
+        geminiContextCache = GeminiConstants.ENGINE_GEMINI.equals(selectedEngine)
+                ? new GeminiContextCache(apiKey, modelName, requestTimeout) : null;
+        usagePromptTokens.set(0);
+        usageCachedTokens.set(0);
+        usageCacheWriteTokens.set(0);
+        transferBaseline = HttpTransport.stats();
+        extraTargetLanguages = parseLanguageList(prefs.getString(GeminiConstants.PREF_EXTRA_TARGET_LANGUAGES,
+                GeminiConstants.DEFAULT_EXTRA_TARGET_LANGUAGES));
+        fanOutTargets = Collections.emptyList();
+        adaptiveBatchSize = null;
+        if (batchEnabled && prefs.getBoolean(GeminiConstants.PREF_ADAPTIVE_BATCH, GeminiConstants.DEFAULT_ADAPTIVE_BATCH)) {
+            adaptiveBatchSize = AdaptiveBatchSize.load(prefs, selectedEngine, getActiveModel(), batchSize);
+        }
+        logInfo("Batch config: enabled=" + batchEnabled + ", size=" + batchSize + ", maxChars=" + batchMaxChars
+                + ", concurrency=" + maxConcurrentRequests
+                + (adaptiveBatchSize != null ? ", adaptive size=" + adaptiveBatchSize.get() : ""));
+
+        // Job-scoped results: strings repeated across batches of this job are translated once
+        sessionResults = new ConcurrentHashMap<>();
+
+        // Translation memory: previously paid-for translations are served locally
+        translationMemory = null;
+        contextHash = TranslationMemory.hashContext(userContextDirective);
+        if (prefs.getBoolean(GeminiConstants.PREF_TRANSLATION_MEMORY, GeminiConstants.DEFAULT_TRANSLATION_MEMORY)) {
+            try {
+                translationMemory = TranslationMemory.open(getContext().getFilesDir());
+                int heapBudgetMb = readIntPreference(prefs, GeminiConstants.PREF_CACHE_HEAP_BUDGET,
+                        GeminiConstants.DEFAULT_CACHE_HEAP_BUDGET_MB);
+                translationMemory.setHeapBudget(Math.max(0, heapBudgetMb) * 1024L * 1024L);
+                logInfo("Translation memory loaded: " + translationMemory.size() + " entries");
+            } catch (IOException e) {
+                logWarn("Translation memory unavailable: " + e.getMessage());
+            }
+        }
+
+        // Multi-target fan-out only pays off if the extra translations can be kept for later jobs
+        if (!extraTargetLanguages.isEmpty()) {
+            if (translationMemory == null || !batchEnabled || !structuredOutputEnabled) {
+                logWarn("Extra target languages need batch mode, structured output and the translation memory; ignoring "
+                        + extraTargetLanguages);
+                extraTargetLanguages = Collections.emptyList();
+            } else {
+                logInfo("Extra target languages: " + extraTargetLanguages);
+            }
+        }
+
+        // Fuzzy index: near-duplicates become prompt references or, above the threshold, direct reuse
+        fuzzyMatchEnabled = prefs.getBoolean(GeminiConstants.PREF_FUZZY_MATCH, GeminiConstants.DEFAULT_FUZZY_MATCH);
+        fuzzyReuseThreshold = readIntPreference(prefs, GeminiConstants.PREF_FUZZY_REUSE_THRESHOLD,
+                GeminiConstants.DEFAULT_FUZZY_REUSE_THRESHOLD);
+        fuzzyIndexes = new ConcurrentHashMap<>();
+
+        cacheStatistics = new CacheStatistics();
+
+        // Negative cache: strings that failed validation or were blocked are not re-sent every job
+        failureMemory = null;
+        try {
+            failureMemory = FailureMemory.open(getContext().getFilesDir());
+        } catch (IOException e) {
+            logWarn("Failure memory unavailable: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Called after the translation job ends
+     */
+    @Override
+    public void onFinish() {
+        flushTranslationMemory();
+        if (geminiContextCache != null) {
+            geminiContextCache.delete();
+        }
+        long promptTokens = usagePromptTokens.get();
+        if (promptTokens > 0) {
+            long cachedTokens = usageCachedTokens.get();
+            logInfo(String.format(Locale.US, "Prompt cache: %d of %d prompt tokens cached (%.0f%%), %d written",
+                    cachedTokens, promptTokens, 100.0 * cachedTokens / promptTokens, usageCacheWriteTokens.get()));
+            if (debugLogger != null && debugLogger.isEnabled()) {
+                debugLogger.logLine("🧊", String.format(Locale.US,
+                        "prompt_cache_summary engine=%s model=%s prompt_tokens=%d cached_tokens=%d cache_write_tokens=%d hit_ratio=%.2f",
+                        selectedEngine, getActiveModel(), promptTokens, cachedTokens, usageCacheWriteTokens.get(),
+                        (double) cachedTokens / promptTokens));
+            }
+        }
+        if (transferBaseline != null && debugLogger != null && debugLogger.isEnabled()) {
+            HttpTransport.Stats transfer = HttpTransport.stats().since(transferBaseline);
+            if (transfer.requests > 0) {
+                debugLogger.logLine("📦", "transfer_summary engine=" + selectedEngine + " " + transfer.describe());
+            }
+        }
+        if (translationMemory != null && debugLogger != null && debugLogger.isEnabled()) {
+            TieredStore.Stats stats = translationMemory.getStats();
+            debugLogger.logLine("💾", String.format(Locale.US,
+                    "cache_stats tier=heap hits=%d disk_hits=%d misses=%d evictions=%d evicted_bytes=%d"
+                            + " writes_behind=%d heap_bytes=%d/%d entries=%d",
+                    stats.heapHits, stats.diskHits, stats.misses, stats.evictions, stats.evictedBytes,
+                    stats.writesBehind, stats.heapBytes, stats.maxHeapBytes, stats.heapEntries));
+        }
+        if (cacheStatistics != null && preferences != null) {
+            cacheStatistics.save(preferences);
+        }
+        if (adaptiveBatchSize != null && preferences != null) {
+            adaptiveBatchSize.save(preferences);
+        }
+        sessionResults = null;
+        fuzzyIndexes = null;
     }
 
     /**
      * Configure batch size limits for the translation engine.
-     * Controls how many texts are grouped per API call.
-     * Values are user-configurable via SharedPreferences.
+     * Batches are sized by estimated tokens against the active model's context and output
+     * windows; the item count is the learned adaptive size or the configured batch size, and
+     * the optional character cap still applies. Each limit holds per request, and a batch may
+     * span as many requests as are sent concurrently, but at least a few, so the batch can be
+     * bin-packed into full requests.
      *
-     * @return BatchingStrategy with user-configured maxCount and maxDataSize
+     * @return Token-aware BatchingStrategy for the active model
      */
     @Override
     public BatchTranslationEngine.BatchingStrategy createBatchingStrategy() {
-        if (!batchEnabled) {
-            return new SimpleBatchingStrategy(1, batchMaxChars);
-        }
-        return new SimpleBatchingStrategy(batchSize, batchMaxChars);
+        String model = getActiveModel();
+        String targetLanguage = lastTargetLanguage != null ? lastTargetLanguage : "en";
+        // Fixed per-request overhead: batch instructions, system prompt and fuzzy references
+        int fixedPromptTokens = TokenEstimator.estimateTokens(
+                buildBatchTranslationPrompt(new String[0], "auto", targetLanguage, null, false));
+        if (!GeminiConstants.ENGINE_GEMINI.equals(selectedEngine)) {
+            fixedPromptTokens += TokenEstimator.estimateTokens(buildSystemPrompt("auto", targetLanguage));
+        }
+        if (fuzzyMatchEnabled) {
+            fixedPromptTokens += GeminiConstants.FUZZY_MAX_REFERENCES * GeminiConstants.FUZZY_REFERENCE_TOKENS;
+        }
+        int maxCount = adaptiveBatchSize != null ? adaptiveBatchSize.get() : batchEnabled ? batchSize : 1;
+        // A batch spans several requests; batchTranslate packs it into full ones again
+        int requests = batchEnabled
+                ? Math.max(maxConcurrentRequests, GeminiConstants.BATCH_PLANNER_WINDOW_REQUESTS) : 1;
+        TokenBatchingStrategy strategy = new TokenBatchingStrategy(maxCount, batchMaxChars,
+                ModelLimits.forModel(model), fixedPromptTokens, requests);
+        if (lastTargetLanguage != null) {
+            strategy.setLanguages(lastSourceLanguage, lastTargetLanguage);
+        }
+        strategy.setTargetCount(1 + fanOutTargets.size());
+        batchingStrategy = strategy;
+        return strategy;
     }
 
     /**
@@ -246,7 +446,7 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
      * Java's Locale.getLanguage() returns obsolete codes for some languages:
      * "iw" (Hebrew) → "he", "in" (Indonesian) → "id", "ji" (Yiddish) → "yi".
      */
-    private static String normalizeLanguageCode(String code) {
+    static String normalizeLanguageCode(String code) {
         if (code == null) return code;
         switch (code) {
             case "iw": return "he";
@@ -274,6 +474,30 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
         // Tokenize placeholders for protection
         PlaceholderResult phResult = tokenizePlaceholders(text);
 
+        String remembered = recallSessionResult(phResult.tokenizedText, sourceLanguage, targetLanguage);
+        if (remembered == null) {
+            remembered = recallTranslation(phResult.tokenizedText, sourceLanguage, targetLanguage);
+        }
+        if (remembered == null) {
+            FuzzyIndex.Match match = findReusableMatch(phResult.tokenizedText,
+                    recallSimilar(phResult.tokenizedText, sourceLanguage, targetLanguage));
+            remembered = match != null ? match.translation : null;
+        }
+        String restored = restoreKnownTranslation(text, phResult, remembered);
+        if (restored != null) {
+            logInfo("Translation memory hit: " + TranslationDebugLogger.sanitizePreview(text));
+            recordCacheStatistics(sourceLanguage, targetLanguage, 1, 0, 1,
+                    TokenEstimator.estimateTokens(phResult.tokenizedText) + TokenEstimator.estimateTokens(remembered));
+            return restored;
+        }
+
+        String failureKey = failureKey(text, targetLanguage);
+        FailureMemory.State failureState = failureState(failureKey);
+        if (failureState == FailureMemory.State.SUPPRESSED) {
+            logInfo("Skipping recently failed string: " + TranslationDebugLogger.sanitizePreview(text));
+            return text;
+        }
+
         // Build translation prompt with tokenized text
         String prompt = buildTranslationPrompt(phResult.tokenizedText, sourceLanguage, targetLanguage);
         int inputChars = text.length();
@@ -281,29 +505,41 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
         logInfo("Translate request via " + selectedEngine + " | src=" + sourceLanguage + " -> "
                 + targetLanguage + " | chars=" + text.length());
 
+        recordCacheStatistics(sourceLanguage, targetLanguage, 0, 1, 0, 0);
         String result;
-        switch (selectedEngine) {
-            case GeminiConstants.ENGINE_OPENAI:
-                result = translateWithOpenAI(prompt, sourceLanguage, targetLanguage, inputChars, preview);
-                break;
-            case GeminiConstants.ENGINE_CLAUDE:
-                result = translateWithClaudeWithFallback(prompt, sourceLanguage, targetLanguage, inputChars, preview);
-                break;
-            case GeminiConstants.ENGINE_GEMINI:
-            default:
-                result = translateWithGemini(prompt, sourceLanguage, targetLanguage, inputChars, preview);
-                break;
+        try {
+            switch (selectedEngine) {
+                case GeminiConstants.ENGINE_OPENAI:
+                    result = translateWithOpenAI(null, prompt, sourceLanguage, targetLanguage, inputChars, preview, false, null);
+                    break;
+                case GeminiConstants.ENGINE_CLAUDE:
+                    result = translateWithClaudeWithFallback(null, prompt, sourceLanguage, targetLanguage, inputChars, preview, false, null);
+                    break;
+                case GeminiConstants.ENGINE_GEMINI:
+                default:
+                    result = translateWithGemini(null, prompt, sourceLanguage, targetLanguage, inputChars, preview, false, null);
+                    break;
+            }
+        } catch (ContentBlockedException e) {
+            recordFailure(failureKey, FailureMemory.REASON_BLOCKED);
+            throw e;
         }
+        String tokenizedResult = result;
 
         // Restore placeholders and validate integrity
         if (phResult.hasPlaceholders()) {
             result = restorePlaceholders(result, phResult.placeholders);
             if (!validatePlaceholders(text, result)) {
                 logWarn("Placeholder validation failed, returning original: " + preview);
+                recordFailure(failureKey, FailureMemory.REASON_PLACEHOLDERS);
                 return text;
             }
         }
 
+        if (failureState == FailureMemory.State.RETRY) {
+            failureMemory.clear(failureKey);
+        }
+        rememberTranslation(phResult.tokenizedText, tokenizedResult, sourceLanguage, targetLanguage);
         return result;
     }
 
@@ -327,6 +563,7 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
         targetLanguage = normalizeLanguageCode(targetLanguage);
 
         if (texts.length == 0) return new String[0];
+        rememberLanguagePair(sourceLanguage, targetLanguage);
 
         // Single text optimization: use direct prompt (more precise, no parsing overhead)
         if (texts.length == 1) {
@@ -336,108 +573,944 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
         int count = texts.length;
         String[] results = new String[count];
 
-        // Pre-process: detect non-translatable strings and tokenize placeholders
+        // Pre-process: detect non-translatable strings, tokenize placeholders
+        // and serve already-known strings from the translation memory
         boolean[] needsTranslation = new boolean[count];
         PlaceholderResult[] phResults = new PlaceholderResult[count];
         List<Integer> translatableIndices = new ArrayList<>();
+        int skippedCount = 0;
+        int sessionHits = 0;
+        int memoryHits = 0;
+        int fuzzyHits = 0;
+        int negativeHits = 0;
+        long tokensSaved = 0;
+        List<Integer> retryIndices = new ArrayList<>();
+        Map<String, String> references = new LinkedHashMap<>();
 
         for (int i = 0; i < count; i++) {
             results[i] = texts[i]; // default: keep original
             if (texts[i] == null || texts[i].trim().isEmpty() || isNonTranslatable(texts[i])) {
                 needsTranslation[i] = false;
-            } else {
-                needsTranslation[i] = true;
-                phResults[i] = tokenizePlaceholders(texts[i]);
-                translatableIndices.add(i);
+                skippedCount++;
+                continue;
+            }
+            phResults[i] = tokenizePlaceholders(texts[i]);
+            String remembered = recallSessionResult(phResults[i].tokenizedText, sourceLanguage, targetLanguage);
+            boolean fromSession = remembered != null;
+            if (!fromSession) {
+                remembered = recallTranslation(phResults[i].tokenizedText, sourceLanguage, targetLanguage);
+            }
+            String restored = restoreKnownTranslation(texts[i], phResults[i], remembered);
+            if (restored != null) {
+                results[i] = restored;
+                tokensSaved += TokenEstimator.estimateTokens(phResults[i].tokenizedText)
+                        + TokenEstimator.estimateTokens(remembered);
+                if (fromSession) {
+                    sessionHits++;
+                } else {
+                    memoryHits++;
+                }
+                continue;
+            }
+            List<FuzzyIndex.Match> similar = recallSimilar(phResults[i].tokenizedText, sourceLanguage, targetLanguage);
+            FuzzyIndex.Match reusable = findReusableMatch(phResults[i].tokenizedText, similar);
+            restored = reusable != null ? restoreKnownTranslation(texts[i], phResults[i], reusable.translation) : null;
+            if (restored != null) {
+                results[i] = restored;
+                tokensSaved += TokenEstimator.estimateTokens(phResults[i].tokenizedText)
+                        + TokenEstimator.estimateTokens(reusable.translation);
+                fuzzyHits++;
+                continue;
+            }
+            // Recently failed strings keep the original; expired failures retry on the single-item path
+            FailureMemory.State failureState = failureState(failureKey(texts[i], targetLanguage));
+            if (failureState == FailureMemory.State.SUPPRESSED) {
+                negativeHits++;
+                continue;
             }
+            if (failureState == FailureMemory.State.RETRY) {
+                retryIndices.add(i);
+                continue;
+            }
+            for (FuzzyIndex.Match match : similar) {
+                if (references.size() < GeminiConstants.FUZZY_MAX_REFERENCES) {
+                    references.put(match.source, match.translation);
+                }
+            }
+            needsTranslation[i] = true;
+            translatableIndices.add(i);
         }
 
-        if (translatableIndices.isEmpty()) {
+        if (translatableIndices.isEmpty() && retryIndices.isEmpty()
+                && sessionHits + memoryHits + fuzzyHits + negativeHits == 0) {
             logInfo("All strings are non-translatable, returning originals");
             return results;
         }
 
-        // Build tokenized texts array for batch (only translatable items)
-        String[] tokenizedTexts = new String[translatableIndices.size()];
-        int totalChars = 0;
+        // Build tokenized texts array for batch (only translatable items).
+        // Identical tokenized texts share one prompt slot; slotOf maps each
+        // translatable index to its slot so the result can be fanned back out.
+        int[] slotOf = new int[translatableIndices.size()];
+        Map<String, Integer> slotByText = new LinkedHashMap<>();
         for (int j = 0; j < translatableIndices.size(); j++) {
-            int idx = translatableIndices.get(j);
-            tokenizedTexts[j] = phResults[idx].tokenizedText;
-            if (tokenizedTexts[j] != null) totalChars += tokenizedTexts[j].length();
+            String tokenized = phResults[translatableIndices.get(j)].tokenizedText;
+            Integer slot = slotByText.get(tokenized);
+            if (slot == null) {
+                slot = slotByText.size();
+                slotByText.put(tokenized, slot);
+            }
+            slotOf[j] = slot;
+        }
+        String[] tokenizedTexts = slotByText.keySet().toArray(new String[0]);
+        int dedupSaved = translatableIndices.size() - tokenizedTexts.length;
+        int totalChars = 0;
+        for (String tokenized : tokenizedTexts) {
+            if (tokenized != null) totalChars += tokenized.length();
         }
 
         // Create batch span for structured debug logging
         TranslationDebugLogger.BatchSpan batchSpan = debugLogger.newBatchSpan(
                 selectedEngine, modelName,
                 sourceLanguage, targetLanguage,
-                count, translatableIndices.size(), totalChars);
-        batchSpan.logPreprocess(count - translatableIndices.size());
+                count, tokenizedTexts.length, totalChars);
+        int unresolved = translatableIndices.size() + negativeHits + retryIndices.size();
+        batchSpan.logPreprocess(skippedCount, dedupSaved);
+        batchSpan.logCacheLookup("session", sessionHits, memoryHits + fuzzyHits + unresolved);
+        if (translationMemory != null) {
+            batchSpan.logCacheLookup("memory", memoryHits, fuzzyHits + unresolved);
+        }
+        if (fuzzyMatchEnabled) {
+            batchSpan.logCacheLookup("fuzzy", fuzzyHits, unresolved);
+            batchSpan.logReferences(references.size());
+        }
+        if (failureMemory != null) {
+            batchSpan.logNegativeCache(negativeHits, retryIndices.size());
+        }
+        int localHits = sessionHits + memoryHits + fuzzyHits;
+        boolean servedLocally = translatableIndices.isEmpty() && retryIndices.isEmpty() && localHits > 0;
+        recordCacheStatistics(sourceLanguage, targetLanguage, localHits, translatableIndices.size(),
+                servedLocally ? 1 : 0, tokensSaved);
+
+        if (translatableIndices.isEmpty()) {
+            translateIndividually(retryIndices, texts, results, sourceLanguage, targetLanguage);
+            flushTranslationMemory();
+            batchSpan.markSuccess(0);
+            logSuccess("Batch served entirely from local results: session=" + sessionHits
+                    + ", memory=" + memoryHits + ", fuzzy=" + fuzzyHits + ", suppressed=" + negativeHits
+                    + ", retried individually=" + retryIndices.size());
+            return results;
+        }
 
+        logInfo("Batch translate via " + selectedEngine + " | count=" + tokenizedTexts.length
+                + " | src=" + sourceLanguage + " -> " + targetLanguage
+                + " | totalChars=" + totalChars);
+        byte[] itemFailure = new byte[tokenizedTexts.length];
+        String[] batchResults;
         try {
-            // Build batch prompt with tokenized texts
-            String prompt = buildBatchTranslationPrompt(tokenizedTexts, sourceLanguage, targetLanguage);
-            String preview = "[batch:" + tokenizedTexts.length + "] " + totalChars + " chars";
+            batchResults = dispatchBatch(tokenizedTexts, itemFailure, sourceLanguage, targetLanguage,
+                    references, batchSpan);
+        } catch (IOException e) {
+            batchSpan.markFailure(e.getMessage());
+            throw e;
+        }
+
+        // Repair rounds: re-request only the items that came back missing or with broken
+        // placeholders, as one smaller batch, instead of translating them one by one
+        for (int round = 1; round <= GeminiConstants.BATCH_REPAIR_ROUNDS; round++) {
+            boolean[] broken = new boolean[tokenizedTexts.length];
+            for (int j = 0; j < translatableIndices.size(); j++) {
+                int idx = translatableIndices.get(j);
+                String translated = batchResults[slotOf[j]];
+                if (translated != null && phResults[idx].hasPlaceholders()
+                        && !validatePlaceholders(texts[idx], restorePlaceholders(translated, phResults[idx].placeholders))) {
+                    broken[slotOf[j]] = true;
+                }
+            }
+            List<Integer> repairSlots = new ArrayList<>();
+            for (int slot = 0; slot < tokenizedTexts.length; slot++) {
+                if (broken[slot] || batchResults[slot] == null && itemFailure[slot] == ITEM_PENDING) {
+                    repairSlots.add(slot);
+                }
+            }
+            if (repairSlots.isEmpty()) {
+                break;
+            }
+            String[] repairTexts = new String[repairSlots.size()];
+            for (int k = 0; k < repairTexts.length; k++) {
+                repairTexts[k] = tokenizedTexts[repairSlots.get(k)];
+            }
+            batchSpan.logRepairRound(round, repairTexts.length);
+            logInfo("Batch repair round " + round + ": re-requesting " + repairTexts.length + " item(s)");
+            byte[] repairFailure = new byte[repairTexts.length];
+            String[] repaired;
+            try {
+                repaired = dispatchBatch(repairTexts, repairFailure, sourceLanguage, targetLanguage,
+                        references, batchSpan);
+            } catch (IOException e) {
+                batchSpan.markFailure(e.getMessage());
+                throw e;
+            }
+            for (int k = 0; k < repairTexts.length; k++) {
+                int slot = repairSlots.get(k);
+                if (repaired[k] != null) {
+                    batchResults[slot] = repaired[k];
+                } else if (repairFailure[k] != ITEM_PENDING) {
+                    itemFailure[slot] = repairFailure[k];
+                }
+            }
+        }
+
+        // Map batch results back to original indices and restore placeholders.
+        // Restoration is per index: identical tokenized texts may carry different placeholders.
+        List<Integer> individualIndices = new ArrayList<>();
+        for (int j = 0; j < translatableIndices.size(); j++) {
+            int idx = translatableIndices.get(j);
+            int slot = slotOf[j];
+            String translated = batchResults[slot];
+            if (translated == null) {
+                if (itemFailure[slot] == ITEM_BLOCKED) {
+                    recordFailure(failureKey(texts[idx], targetLanguage), FailureMemory.REASON_BLOCKED);
+                } else if (itemFailure[slot] != ITEM_GIVEN_UP) {
+                    // Still missing after the repair rounds, or isolated by bisection
+                    individualIndices.add(idx);
+                }
+                continue;
+            }
+
+            boolean valid = true;
+
+            // Restore placeholders
+            if (phResults[idx].hasPlaceholders()) {
+                translated = restorePlaceholders(translated, phResults[idx].placeholders);
+                valid = validatePlaceholders(texts[idx], translated);
+                batchSpan.logPlaceholderRestore(slot + 1, valid, valid ? null : "validation failed, keeping original");
+                if (!valid) {
+                    logWarn("Placeholder validation failed for batch item " + (slot + 1) + ", keeping original");
+                    recordFailure(failureKey(texts[idx], targetLanguage), FailureMemory.REASON_PLACEHOLDERS);
+                    translated = texts[idx];
+                }
+            }
+
+            if (valid) {
+                rememberTranslation(tokenizedTexts[slot], batchResults[slot], sourceLanguage, targetLanguage);
+            }
+
+            results[idx] = translated;
+        }
+        individualIndices.addAll(retryIndices);
+        translateIndividually(individualIndices, texts, results, sourceLanguage, targetLanguage);
+        flushTranslationMemory();
+
+        if (individualIndices.size() > retryIndices.size()) {
+            batchSpan.logFallbackToIndividual("unresolved after batch requests",
+                    individualIndices.size() - retryIndices.size());
+        }
+        batchSpan.markSuccess(translatableIndices.size() - (individualIndices.size() - retryIndices.size()));
+        logSuccess("Batch translate complete: " + texts.length + " texts"
+                + (dedupSaved > 0 ? " (" + dedupSaved + " duplicates collapsed)" : "")
+                + (individualIndices.size() > retryIndices.size()
+                ? ", " + (individualIndices.size() - retryIndices.size()) + " translated individually" : ""));
+        return results;
+    }
+
+    /**
+     * Send texts as one or more batch requests, concurrently when they do not fit into one.
+     * A request that fails with anything other than an unreadable reply is bisected.
+     *
+     * @param itemFailure Receives an ITEM_* state for items that are not worth another batch attempt
+     * @return Translations by position, null where an item is missing or its request failed
+     * @throws IOException If the job was interrupted
+     */
+    private String[] dispatchBatch(String[] tokenizedTexts, byte[] itemFailure,
+                                   String sourceLanguage, String targetLanguage,
+                                   Map<String, String> references,
+                                   TranslationDebugLogger.BatchSpan batchSpan) throws IOException {
+        List<int[]> requestItems = planRequests(tokenizedTexts, batchingStrategy);
+        if (requestItems.size() > 1) {
+            batchSpan.logSubBatches(requestItems.size(), maxConcurrentRequests);
+        }
+        List<String[]> requestTexts = new ArrayList<>(requestItems.size());
+        List<RequestDispatcher.Task<String[]>> tasks = new ArrayList<>(requestItems.size());
+        for (int[] items : requestItems) {
+            final String[] texts = new String[items.length];
+            for (int k = 0; k < items.length; k++) {
+                texts[k] = tokenizedTexts[items[k]];
+            }
+            requestTexts.add(texts);
+            tasks.add(() -> requestBatch(texts, sourceLanguage, targetLanguage, references, batchSpan));
+        }
+        List<RequestDispatcher.Result<String[]>> responses =
+                RequestDispatcher.invokeAll(selectedEngine, maxConcurrentRequests, tasks);
+
+        // Reassemble in input order
+        String[] batchResults = new String[tokenizedTexts.length];
+        for (int r = 0; r < requestItems.size(); r++) {
+            int[] items = requestItems.get(r);
+            RequestDispatcher.Result<String[]> response = responses.get(r);
+            String[] requestResults = response.value;
+            if (response.error != null) {
+                logWarn("Batch request failed (" + response.error.getMessage() + ") for "
+                        + items.length + " item(s)");
+                if (response.error instanceof BatchParseException) {
+                    continue;
+                }
+                requestResults = new String[items.length];
+                byte[] requestFailure = new byte[items.length];
+                bisectFailedRequest(requestTexts.get(r), 0, items.length, response.error, requestResults,
+                        requestFailure, sourceLanguage, targetLanguage, references, batchSpan);
+                for (int k = 0; k < items.length; k++) {
+                    itemFailure[items[k]] = requestFailure[k];
+                }
+            }
+            for (int k = 0; k < items.length; k++) {
+                batchResults[items[k]] = requestResults[k];
+            }
+        }
+        return batchResults;
+    }
+
+    /**
+     * Retry a failed request as two halves, recursing into the halves that fail, so a poison
+     * string is isolated in O(log n) extra calls instead of a request per item. Gives up when
+     * the failure is not about the content (auth, including a 400 for a bad key, or rate
+     * limits) or both halves fail for such reasons, which points to an outage rather than a
+     * bad item.
+     */
+    private void bisectFailedRequest(String[] tokenizedTexts, int from, int to, IOException failure,
+                                     String[] batchResults, byte[] itemFailure,
+                                     String sourceLanguage, String targetLanguage,
+                                     Map<String, String> references,
+                                     TranslationDebugLogger.BatchSpan batchSpan) throws IOException {
+        if (isAuthOrRateLimitError(failure)) {
+            Arrays.fill(itemFailure, from, to, ITEM_GIVEN_UP);
+            batchSpan.logBisectAbort(to - from, failure.getMessage());
+            return;
+        }
+        if (to - from == 1) {
+            itemFailure[from] = failure instanceof ContentBlockedException ? ITEM_BLOCKED : ITEM_ISOLATED;
+            batchSpan.logPoisonItem(tokenizedTexts[from], failure.getMessage());
+            logWarn("Bisection isolated a failing item: " + failure.getMessage());
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        final String[] left = Arrays.copyOfRange(tokenizedTexts, from, mid);
+        final String[] right = Arrays.copyOfRange(tokenizedTexts, mid, to);
+        List<RequestDispatcher.Task<String[]>> halves = new ArrayList<>(2);
+        halves.add(() -> requestBatch(left, sourceLanguage, targetLanguage, references, batchSpan));
+        halves.add(() -> requestBatch(right, sourceLanguage, targetLanguage, references, batchSpan));
+        List<RequestDispatcher.Result<String[]>> responses =
+                RequestDispatcher.invokeAll(selectedEngine, maxConcurrentRequests, halves);
+        IOException leftError = responses.get(0).error;
+        IOException rightError = responses.get(1).error;
+        if (leftError != null && rightError != null && !isContentError(leftError) && !isContentError(rightError)) {
+            Arrays.fill(itemFailure, from, to, ITEM_GIVEN_UP);
+            batchSpan.logBisectAbort(to - from, rightError.getMessage());
+            logWarn("Both halves of a failed batch failed (" + rightError.getMessage() + "), keeping originals");
+            return;
+        }
+        int[] bounds = {from, mid, to};
+        for (int h = 0; h < 2; h++) {
+            RequestDispatcher.Result<String[]> response = responses.get(h);
+            if (response.error == null) {
+                System.arraycopy(response.value, 0, batchResults, bounds[h], bounds[h + 1] - bounds[h]);
+            } else if (!(response.error instanceof BatchParseException)) {
+                bisectFailedRequest(tokenizedTexts, bounds[h], bounds[h + 1], response.error, batchResults,
+                        itemFailure, sourceLanguage, targetLanguage, references, batchSpan);
+            }
+        }
+    }
+
+    /**
+     * Pack the distinct texts of a batch into as few requests as fit, so one long string no
+     * longer closes a request that shorter ones could still fill. Texts are placed largest
+     * first, each into the least loaded of k requests that still has room, for the smallest k
+     * that works below the in-order split's m requests. Since in-order splitting needs at most
+     * twice the optimum, k starts at m / 2; if no k below m works the in-order split is kept.
+     * Balancing instead of plain first-fit keeps long texts from crowding the first requests
+     * while the item count limit strands the short ones. Each request keeps its texts in
+     * input order.
+     *
+     * @param strategy Batching strategy of the job, or null to send everything as one request
+     * @return Indices into {@code tokenizedTexts} per request, ascending
+     */
+    static List<int[]> planRequests(String[] tokenizedTexts, TokenBatchingStrategy strategy) {
+        if (strategy == null || tokenizedTexts.length == 1) {
+            int[] all = new int[tokenizedTexts.length];
+            for (int i = 0; i < all.length; i++) {
+                all[i] = i;
+            }
+            List<int[]> single = new ArrayList<>(1);
+            single.add(all);
+            return single;
+        }
+
+        // In-order split: the fallback and the bound for the search
+        int[] requestOf = new int[tokenizedTexts.length];
+        TokenBatchingStrategy splitter = strategy.forSingleRequest();
+        splitter.reset();
+        int inOrderCount = 1;
+        for (int i = 0; i < tokenizedTexts.length; i++) {
+            if (!splitter.tryAdd(tokenizedTexts[i])) {
+                inOrderCount++;
+                splitter.reset();
+                splitter.tryAdd(tokenizedTexts[i]);
+            }
+            requestOf[i] = inOrderCount - 1;
+        }
+        if (inOrderCount > 1 && inOrderCount < tokenizedTexts.length) {
+            packSmaller(inOrderCount, tokenizedTexts, strategy, requestOf);
+        }
+        return groupByRequest(requestOf, tokenizedTexts.length);
+    }
+
+    /**
+     * Look for a packing into fewer than {@code inOrderCount} requests and store it in
+     * {@code requestOf} if one is found.
+     */
+    private static void packSmaller(int inOrderCount, String[] tokenizedTexts, TokenBatchingStrategy strategy,
+                                    int[] requestOf) {
+        final int[] tokens = new int[tokenizedTexts.length];
+        Integer[] order = new Integer[tokenizedTexts.length];
+        for (int i = 0; i < tokenizedTexts.length; i++) {
+            tokens[i] = TokenEstimator.estimateTokens(tokenizedTexts[i]);
+            order[i] = i;
+        }
+        // Largest first; ties keep input order
+        Arrays.sort(order, (a, b) -> tokens[a] != tokens[b] ? Integer.compare(tokens[b], tokens[a]) : Integer.compare(a, b));
+
+        int[] packed = new int[tokenizedTexts.length];
+        for (int requestCount = (inOrderCount + 1) / 2; requestCount < inOrderCount; requestCount++) {
+            if (packInto(requestCount, order, tokenizedTexts, strategy, packed)) {
+                System.arraycopy(packed, 0, requestOf, 0, packed.length);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Turn a request number per text into index lists: requests in the order of their first
+     * item, items in input order.
+     */
+    private static List<int[]> groupByRequest(int[] requestOf, int length) {
+        int requestCount = 0;
+        for (int request : requestOf) {
+            requestCount = Math.max(requestCount, request + 1);
+        }
+        List<int[]> requests = new ArrayList<>(requestCount);
+        int[] sizes = new int[requestCount];
+        int[] renumber = new int[requestCount];
+        Arrays.fill(renumber, -1);
+        for (int i = 0; i < length; i++) {
+            int request = requestOf[i];
+            if (renumber[request] < 0) {
+                renumber[request] = requests.size();
+                requests.add(null);
+            }
+            sizes[renumber[request]]++;
+        }
+        int[] filled = new int[requestCount];
+        for (int i = 0; i < length; i++) {
+            int request = renumber[requestOf[i]];
+            if (requests.get(request) == null) {
+                requests.set(request, new int[sizes[request]]);
+            }
+            requests.get(request)[filled[request]++] = i;
+        }
+        return requests;
+    }
+
+    /**
+     * Try to place every text into one of {@code requestCount} requests.
+     *
+     * @param requestOf Receives the request of each text
+     * @return false if a text fit into none of them
+     */
+    private static boolean packInto(int requestCount, Integer[] order, String[] tokenizedTexts,
+                                    TokenBatchingStrategy strategy, int[] requestOf) {
+        TokenBatchingStrategy[] bins = new TokenBatchingStrategy[requestCount];
+        for (int r = 0; r < requestCount; r++) {
+            bins[r] = strategy.forSingleRequest();
+            bins[r].reset();
+        }
+        for (int index : order) {
+            String text = tokenizedTexts[index];
+            int target = -1;
+            for (int r = 0; r < requestCount; r++) {
+                if (bins[r].fits(text) && (target < 0 || bins[r].getInputTokens() < bins[target].getInputTokens())) {
+                    target = r;
+                }
+            }
+            if (target < 0) {
+                return false;
+            }
+            bins[target].tryAdd(text);
+            requestOf[index] = target;
+        }
+        return true;
+    }
 
-            logInfo("Batch translate via " + selectedEngine + " | count=" + tokenizedTexts.length
-                    + " | src=" + sourceLanguage + " -> " + targetLanguage
-                    + " | totalChars=" + totalChars);
-            batchSpan.logApiCall(prompt.length());
+    /**
+     * Send one batch request and parse its reply. Runs on a dispatcher thread when a batch is
+     * split into several requests. Models that support it are asked for structured JSON; if
+     * the provider rejects the schema, the request is repeated with numbered lines and the
+     * rest of the job stays with those.
+     */
+    private String[] requestBatch(String[] tokenizedTexts, String sourceLanguage, String targetLanguage,
+                                  Map<String, String> references,
+                                  TranslationDebugLogger.BatchSpan batchSpan) throws IOException {
+        boolean structured = structuredOutputEnabled && !structuredOutputRejected
+                && ModelLimits.forModel(getActiveModel()).structuredOutput;
+        try {
+            return requestBatch(tokenizedTexts, sourceLanguage, targetLanguage, references, batchSpan, structured);
+        } catch (IOException e) {
+            if (!structured || e instanceof ContentBlockedException || e instanceof BatchParseException
+                    || !isContentError(e)) {
+                throw e;
+            }
+            logWarn("Structured batch request rejected (" + e.getMessage() + "), retrying with numbered lines");
+            String[] results = requestBatch(tokenizedTexts, sourceLanguage, targetLanguage, references, batchSpan, false);
+            structuredOutputRejected = true;
+            return results;
+        }
+    }
 
+    private String[] requestBatch(String[] tokenizedTexts, String sourceLanguage, String targetLanguage,
+                                  Map<String, String> references,
+                                  TranslationDebugLogger.BatchSpan batchSpan, boolean structured) throws IOException {
+        String instructions = buildBatchInstructions(sourceLanguage, targetLanguage, structured);
+        String items = buildBatchItems(tokenizedTexts, references);
+        int totalChars = 0;
+        for (String tokenized : tokenizedTexts) {
+            if (tokenized != null) totalChars += tokenized.length();
+        }
+        String preview = "[batch:" + tokenizedTexts.length + "] " + totalChars + " chars";
+        batchSpan.logApiCall(instructions.length() + items.length(), tokenizedTexts.length);
+
+        // Numbered replies are checked while they stream; schema-constrained JSON cannot go off format
+        BatchStreamMonitor monitor = !structured && streamBatchEnabled && !streamBatchRejected
+                ? new BatchStreamMonitor(tokenizedTexts) : null;
+        CallOutcome outcome = callOutcome.get();
+        outcome.reset();
+        long startedNanos = System.nanoTime();
+        try {
             String rawResponse;
-            switch (selectedEngine) {
-                case GeminiConstants.ENGINE_OPENAI:
-                    rawResponse = translateWithOpenAI(prompt, sourceLanguage, targetLanguage, totalChars, preview);
-                    break;
-                case GeminiConstants.ENGINE_CLAUDE:
-                    rawResponse = translateWithClaudeWithFallback(prompt, sourceLanguage, targetLanguage, totalChars, preview);
-                    break;
-                case GeminiConstants.ENGINE_GEMINI:
-                default:
-                    rawResponse = translateWithGemini(prompt, sourceLanguage, targetLanguage, totalChars, preview);
-                    break;
+            try {
+                rawResponse = sendBatchRequest(instructions, items, sourceLanguage, targetLanguage, totalChars, preview,
+                        structured, monitor);
+            } catch (IOException e) {
+                if (monitor == null || e instanceof ContentBlockedException || !isContentError(e)) {
+                    throw e;
+                }
+                logWarn("Streamed batch request rejected (" + e.getMessage() + "), sending it unstreamed");
+                streamBatchRejected = true;
+                monitor = null;
+                rawResponse = sendBatchRequest(instructions, items, sourceLanguage, targetLanguage, totalChars, preview,
+                        structured, null);
+            }
+            if (monitor != null && monitor.abortReason() != null) {
+                batchSpan.logStreamAbort(monitor.abortReason(), monitor.acceptedItems(), tokenizedTexts.length,
+                        monitor.text().length());
+            }
+            String[] batchResults = parseBatchResponse(rawResponse, tokenizedTexts, sourceLanguage, batchSpan, structured);
+            adaptBatchSize(tokenizedTexts.length, startedNanos, outcome);
+            return batchResults;
+        } catch (IOException e) {
+            if (outcome.rateLimited > 0 || outcome.truncated || outcome.unparsed) {
+                adaptBatchSize(tokenizedTexts.length, startedNanos, outcome);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Send one batch request to the selected provider.
+     *
+     * @param monitor Checks a streamed numbered reply as it arrives, or null to wait for the whole reply
+     */
+    private String sendBatchRequest(String instructions, String items, String sourceLanguage, String targetLanguage,
+                                    int totalChars, String preview, boolean structured,
+                                    BatchStreamMonitor monitor) throws IOException {
+        switch (selectedEngine) {
+            case GeminiConstants.ENGINE_OPENAI:
+                return translateWithOpenAI(instructions, items, sourceLanguage, targetLanguage, totalChars, preview,
+                        structured, monitor);
+            case GeminiConstants.ENGINE_CLAUDE:
+                return translateWithClaudeWithFallback(instructions, items, sourceLanguage, targetLanguage, totalChars,
+                        preview, structured, monitor);
+            case GeminiConstants.ENGINE_GEMINI:
+            default:
+                return translateWithGemini(instructions, items, sourceLanguage, targetLanguage, totalChars, preview,
+                        structured, monitor);
+        }
+    }
+
+    /**
+     * Translate the given items one request at a time, each distinct text once. Items that
+     * fail keep their original text.
+     */
+    private void translateIndividually(List<Integer> indices, String[] texts, String[] results,
+                                       String sourceLanguage, String targetLanguage) {
+        Map<String, String> individualResults = new HashMap<>();
+        for (int idx : indices) {
+            String known = individualResults.get(texts[idx]);
+            if (known != null) {
+                results[idx] = known; // duplicate of an item already translated individually
+                continue;
+            }
+            try {
+                results[idx] = translateSingle(texts[idx], sourceLanguage, targetLanguage);
+                individualResults.put(texts[idx], results[idx]);
+            } catch (IOException singleError) {
+                logWarn("Individual translation failed for item " + (idx + 1) + ": " + singleError.getMessage());
+                results[idx] = texts[idx]; // keep original
             }
+        }
+    }
+
+    /**
+     * Feed the outcome of a batch request to the adaptive batch size: shrink on missing items,
+     * a truncated reply or rate limits, grow when a full batch came back complete within half
+     * the request timeout. Concurrent requests hit by the same congestion shrink it once.
+     */
+    private void adaptBatchSize(int items, long startedNanos, CallOutcome outcome) {
+        AdaptiveBatchSize adaptive = adaptiveBatchSize;
+        if (adaptive == null) {
+            return;
+        }
+        long latencyMs = (System.nanoTime() - startedNanos) / 1_000_000L;
+        int before = adaptive.get();
+        String reason;
+        boolean changed;
+        if (outcome.rateLimited > 0 || outcome.truncated || outcome.unparsed || outcome.missingItems > 0) {
+            reason = outcome.rateLimited > 0 ? "rate_limited" : outcome.truncated ? "truncated" : "missing_items";
+            changed = adaptive.onOverload(startedNanos);
+        } else {
+            reason = "complete";
+            changed = adaptive.onComplete(items, startedNanos, latencyMs, requestTimeout / 2);
+        }
+        if (!changed) {
+            return;
+        }
+        TokenBatchingStrategy strategy = batchingStrategy;
+        if (strategy != null) {
+            strategy.setMaxCount(adaptive.get());
+        }
+        logInfo("Adaptive batch size " + before + " -> " + adaptive.get() + " (" + reason + ")");
+        if (debugLogger != null && debugLogger.isEnabled()) {
+            debugLogger.logLine("📐", String.format(Locale.US,
+                    "batch_size engine=%s model=%s size=%d->%d reason=%s latency_ms=%d",
+                    selectedEngine, getActiveModel(), before, adaptive.get(), reason, latencyMs));
+        }
+    }
+
+    /**
+     * Size later batches of this job for the language pair it actually translates.
+     */
+    private void rememberLanguagePair(String sourceLanguage, String targetLanguage) {
+        if (targetLanguage == null || targetLanguage.equals(lastTargetLanguage)
+                && (sourceLanguage == null ? lastSourceLanguage == null : sourceLanguage.equals(lastSourceLanguage))) {
+            return;
+        }
+        lastSourceLanguage = sourceLanguage;
+        lastTargetLanguage = targetLanguage;
+        List<String> targets = new ArrayList<>(extraTargetLanguages);
+        targets.remove(targetLanguage);
+        fanOutTargets = targets.isEmpty() ? Collections.<String>emptyList() : Collections.unmodifiableList(targets);
+        TokenBatchingStrategy strategy = batchingStrategy;
+        if (strategy != null) {
+            strategy.setLanguages(sourceLanguage, targetLanguage);
+            strategy.setTargetCount(1 + fanOutTargets.size());
+        }
+    }
+
+    /**
+     * Parse a comma- or space-separated list of language codes, dropping duplicates.
+     */
+    private static List<String> parseLanguageList(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> languages = new ArrayList<>();
+        for (String part : value.split("[,;\\s]+")) {
+            String code = normalizeLanguageCode(part.trim());
+            if (!code.isEmpty() && !"auto".equals(code) && !languages.contains(code)
+                    && languages.size() < GeminiConstants.MAX_EXTRA_TARGET_LANGUAGES) {
+                languages.add(code);
+            }
+        }
+        return languages;
+    }
+
+    // ── Translation memory ────────────────────────────────────────────────────
+
+    private static String sessionKey(String tokenizedText, String sourceLanguage, String targetLanguage) {
+        return sourceLanguage + '\u001F' + targetLanguage + '\u001F' + tokenizedText;
+    }
+
+    /**
+     * Look up a tokenized source string among results produced earlier in this job.
+     */
+    private String recallSessionResult(String tokenizedText, String sourceLanguage, String targetLanguage) {
+        if (sessionResults == null || tokenizedText == null) {
+            return null;
+        }
+        return sessionResults.get(sessionKey(tokenizedText, sourceLanguage, targetLanguage));
+    }
 
-            String[] batchResults = parseBatchResponse(rawResponse, tokenizedTexts, batchSpan);
+    private String memoryKey(String tokenizedText, String sourceLanguage, String targetLanguage) {
+        return TranslationMemory.buildKey(selectedEngine, getActiveModel(),
+                sourceLanguage, targetLanguage, contextHash, tokenizedText);
+    }
+
+    /**
+     * Look up a tokenized source string in the translation memory. Imported human
+     * translations take precedence over results of any engine.
+     *
+     * @return The remembered tokenized translation, or null on a miss
+     */
+    private String recallTranslation(String tokenizedText, String sourceLanguage, String targetLanguage) {
+        if (translationMemory == null || tokenizedText == null) {
+            return null;
+        }
+        String reference = translationMemory.get(TranslationMemory.buildReferenceKey(targetLanguage, tokenizedText));
+        if (reference != null) {
+            return reference;
+        }
+        return translationMemory.get(memoryKey(tokenizedText, sourceLanguage, targetLanguage));
+    }
+
+    /**
+     * Record a validated translation for the rest of this job and, if enabled, the translation
+     * memory and fuzzy index.
+     */
+    private void rememberTranslation(String tokenizedText, String tokenizedTranslation,
+                                     String sourceLanguage, String targetLanguage) {
+        if (tokenizedText == null || tokenizedTranslation == null || tokenizedTranslation.trim().isEmpty()) {
+            return;
+        }
+        if (sessionResults != null) {
+            sessionResults.put(sessionKey(tokenizedText, sourceLanguage, targetLanguage), tokenizedTranslation);
+        }
+        if (translationMemory != null) {
+            translationMemory.put(memoryKey(tokenizedText, sourceLanguage, targetLanguage), tokenizedTranslation);
+        }
+        FuzzyIndex index = fuzzyIndexFor(sourceLanguage, targetLanguage);
+        if (index != null) {
+            index.add(tokenizedText, tokenizedTranslation, fuzzyOrigin());
+        }
+    }
+
+    /**
+     * Store the translations a multi-target reply carried for the other target languages, so
+     * the jobs for those languages are served from the translation memory. Translations that
+     * lost or invented protected tokens are dropped.
+     */
+    private void rememberFanOut(String[] tokenizedTexts, String sourceLanguage, List<String> extraTargets,
+                                String[][] extraResults, TranslationDebugLogger.BatchSpan batchSpan) {
+        TranslationMemory memory = translationMemory;
+        if (memory == null) {
+            return;
+        }
+        int stored = 0;
+        int rejected = 0;
+        for (int t = 0; t < extraTargets.size(); t++) {
+            for (int i = 0; i < tokenizedTexts.length; i++) {
+                String translation = extraResults[t][i];
+                if (translation == null || tokenizedTexts[i] == null) {
+                    continue;
+                }
+                if (!protectedTokens(tokenizedTexts[i]).equals(protectedTokens(translation))) {
+                    rejected++;
+                    continue;
+                }
+                memory.put(memoryKey(tokenizedTexts[i], sourceLanguage, extraTargets.get(t)), translation);
+                stored++;
+            }
+        }
+        batchSpan.logFanOut(extraTargets, stored, rejected);
+    }
+
+    /**
+     * The protected __PHn__ tokens of a tokenized string, sorted.
+     */
+    private static List<String> protectedTokens(String tokenized) {
+        List<String> tokens = new ArrayList<>();
+        Matcher matcher = PROTECTED_TOKEN_PATTERN.matcher(tokenized);
+        while (matcher.find()) {
+            tokens.add(matcher.group());
+        }
+        Collections.sort(tokens);
+        return tokens;
+    }
+
+    /**
+     * Add the token usage a provider reported for one call to the job's totals.
+     *
+     * @param promptTokens     All prompt tokens, cached or not
+     * @param cachedTokens     Prompt tokens read from the provider's cache
+     * @param cacheWriteTokens Prompt tokens written to the cache (Claude)
+     */
+    private void recordUsage(String engineName, int promptTokens, int cachedTokens, int cacheWriteTokens,
+                             int outputTokens) {
+        usagePromptTokens.addAndGet(promptTokens);
+        usageCachedTokens.addAndGet(cachedTokens);
+        usageCacheWriteTokens.addAndGet(cacheWriteTokens);
+        if (debugLogger != null && debugLogger.isEnabled()) {
+            debugLogger.logLine("🧊", String.format(Locale.US,
+                    "usage engine=%s prompt_tokens=%d cached_tokens=%d cache_write_tokens=%d output_tokens=%d",
+                    engineName, promptTokens, cachedTokens, cacheWriteTokens, outputTokens));
+        }
+    }
+
+    private void flushTranslationMemory() {
+        if (fuzzyIndexes != null) {
+            for (FuzzyIndex index : fuzzyIndexes.values()) {
+                try {
+                    index.flush();
+                } catch (IOException e) {
+                    logWarn("Failed to persist fuzzy index: " + e.getMessage());
+                }
+            }
+        }
+        if (failureMemory != null) {
+            try {
+                failureMemory.flush();
+            } catch (IOException e) {
+                logWarn("Failed to persist failure memory: " + e.getMessage());
+            }
+        }
+        if (translationMemory == null) {
+            return;
+        }
+        try {
+            translationMemory.flush();
+        } catch (IOException e) {
+            logWarn("Failed to persist translation memory: " + e.getMessage());
+        }
+    }
+
+    private void recordCacheStatistics(String sourceLanguage, String targetLanguage,
+                                       int hits, int misses, int callsSaved, long tokensSaved) {
+        if (cacheStatistics != null) {
+            cacheStatistics.record(selectedEngine, sourceLanguage, targetLanguage,
+                    hits, misses, callsSaved, tokensSaved);
+        }
+    }
+
+    // ── Negative cache ────────────────────────────────────────────────────────
+
+    private String failureKey(String text, String targetLanguage) {
+        return FailureMemory.buildKey(selectedEngine, getActiveModel(), targetLanguage, text);
+    }
+
+    private FailureMemory.State failureState(String failureKey) {
+        if (failureMemory == null) {
+            return FailureMemory.State.NONE;
+        }
+        return failureMemory.getState(failureKey, System.currentTimeMillis());
+    }
+
+    private void recordFailure(String failureKey, String reason) {
+        if (failureMemory != null) {
+            failureMemory.recordFailure(failureKey, reason, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Restore placeholders in a known tokenized translation.
+     *
+     * @return The restored translation, or null if there is none or it fails validation
+     */
+    private String restoreKnownTranslation(String original, PlaceholderResult phResult, String tokenizedTranslation) {
+        if (tokenizedTranslation == null) {
+            return null;
+        }
+        if (!phResult.hasPlaceholders()) {
+            return tokenizedTranslation;
+        }
+        String restored = restorePlaceholders(tokenizedTranslation, phResult.placeholders);
+        return validatePlaceholders(original, restored) ? restored : null;
+    }
+
+    private FuzzyIndex fuzzyIndexFor(String sourceLanguage, String targetLanguage) {
+        if (!fuzzyMatchEnabled || fuzzyIndexes == null) {
+            return null;
+        }
+        String pair = sourceLanguage + "_" + targetLanguage;
+        FuzzyIndex index = fuzzyIndexes.get(pair);
+        if (index == null) {
+            try {
+                index = FuzzyIndex.open(getContext().getFilesDir(), sourceLanguage, targetLanguage);
+                fuzzyIndexes.put(pair, index);
+            } catch (IOException e) {
+                logWarn("Fuzzy index unavailable: " + e.getMessage());
+                fuzzyMatchEnabled = false;
+            }
+        }
+        return index;
+    }
 
-            // Map batch results back to original indices and restore placeholders
-            for (int j = 0; j < translatableIndices.size(); j++) {
-                int idx = translatableIndices.get(j);
-                String translated = batchResults[j];
-
-                // Restore placeholders
-                if (phResults[idx].hasPlaceholders()) {
-                    translated = restorePlaceholders(translated, phResults[idx].placeholders);
-                    boolean valid = validatePlaceholders(texts[idx], translated);
-                    batchSpan.logPlaceholderRestore(j + 1, valid, valid ? null : "validation failed, keeping original");
-                    if (!valid) {
-                        logWarn("Placeholder validation failed for batch item " + (j + 1) + ", keeping original");
-                        translated = texts[idx];
-                    }
-                }
+    /**
+     * Find previously translated strings similar to a tokenized source string.
+     */
+    private List<FuzzyIndex.Match> recallSimilar(String tokenizedText, String sourceLanguage, String targetLanguage) {
+        FuzzyIndex index = fuzzyIndexFor(sourceLanguage, targetLanguage);
+        if (index == null || tokenizedText == null) {
+            return new ArrayList<>();
+        }
+        return index.query(tokenizedText, 2, GeminiConstants.FUZZY_REFERENCE_MIN_SIMILARITY);
+    }
 
-                results[idx] = translated;
+    /**
+     * Only translations made by this engine, model and context, or imported human translations,
+     * are reused directly; matches of other origins still serve as prompt references. A match
+     * must also have the same words and numbers as the text: "expires in 7 days" and "expires
+     * in 3 days" are similar but not interchangeable.
+     *
+     * @return The best match if it is similar enough to be reused without an API call
+     */
+    private FuzzyIndex.Match findReusableMatch(String tokenizedText, List<FuzzyIndex.Match> matches) {
+        if (fuzzyReuseThreshold <= 0 || matches.isEmpty()) {
+            return null;
+        }
+        String origin = fuzzyOrigin();
+        for (FuzzyIndex.Match match : matches) {
+            if (match.similarity * 100 < fuzzyReuseThreshold) {
+                break;
             }
+            if ((match.origin.equals(origin) || match.origin.equals(TranslationMemory.REFERENCE_ORIGIN))
+                    && terms(match.source).equals(terms(tokenizedText))) {
+                return match;
+            }
+        }
+        return null;
+    }
 
-            batchSpan.markSuccess(translatableIndices.size());
-            logSuccess("Batch translate complete: " + texts.length + " texts in single API call");
-            return results;
-
-        } catch (IOException e) {
-            // Batch failed entirely — fall back to translating each text individually
-            batchSpan.markFailure(e.getMessage());
-            batchSpan.logFallbackToIndividual(e.getMessage());
-            logWarn("Batch translation failed (" + e.getMessage() + "), falling back to individual translation");
+    /**
+     * The words and numbers of a tokenized text in order, without its placeholder tokens, which
+     * are restored from the text itself.
+     */
+    private static List<String> terms(String tokenizedText) {
+        List<String> terms = new ArrayList<>();
+        Matcher matcher = TERM_PATTERN.matcher(PROTECTED_TOKEN_PATTERN.matcher(tokenizedText).replaceAll(" "));
+        while (matcher.find()) {
+            terms.add(matcher.group());
+        }
+        return terms;
+    }
 
-            for (int idx : translatableIndices) {
-                try {
-                    results[idx] = translateSingle(texts[idx], sourceLanguage, targetLanguage);
-                } catch (IOException singleError) {
-                    logWarn("Individual fallback failed for item " + (idx + 1) + ": " + singleError.getMessage());
-                    results[idx] = texts[idx]; // keep original
-                }
-            }
+    /**
+     * Origin of this job's translations in the fuzzy index, keyed like {@link #memoryKey}.
+     */
+    private String fuzzyOrigin() {
+        return TranslationMemory.buildOrigin(selectedEngine, getActiveModel(), contextHash);
+    }
 
-            return results;
+    private String getActiveModel() {
+        switch (selectedEngine) {
+            case GeminiConstants.ENGINE_OPENAI: return openAiModel;
+            case GeminiConstants.ENGINE_CLAUDE: return claudeModel;
+            default: return modelName;
         }
     }
 
@@ -483,9 +1556,20 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
      * @param texts Array of texts to translate
      * @param sourceLanguage Source language code
      * @param targetLanguage Target language code
+     * @param structured Ask for the JSON reply of {@link StructuredBatchOutput} instead of numbered lines
      * @return Combined prompt with numbered texts
      */
-    private String buildBatchTranslationPrompt(String[] texts, String sourceLanguage, String targetLanguage) {
+    private String buildBatchTranslationPrompt(String[] texts, String sourceLanguage, String targetLanguage,
+                                               Map<String, String> references, boolean structured) {
+        return buildBatchInstructions(sourceLanguage, targetLanguage, structured) + buildBatchItems(texts, references);
+    }
+
+    /**
+     * The instruction part of a batch prompt. It depends only on the job's settings, never on
+     * the items, so it is byte-identical across the requests of a job and can be served from
+     * the providers' prompt caches when sent first.
+     */
+    private String buildBatchInstructions(String sourceLanguage, String targetLanguage, boolean structured) {
         String sourceLangName = getLanguageDisplayName(sourceLanguage);
         String targetLangName = getLanguageDisplayName(targetLanguage);
 
@@ -503,14 +1587,46 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
             prompt.append(userContextDirective).append('\n');
         }
         prompt.append("ABSOLUTE RULES:\n");
-        prompt.append("- Return ONLY the translations in the EXACT same numbered format: [N] translated text\n");
-        prompt.append("- You MUST translate ALL ").append(texts.length).append(" items. Do not skip, merge, or reorder any.\n");
-        prompt.append("- Each translation MUST be on its own line starting with [N] where N is the item number.\n");
+        List<String> extraTargets = structured ? fanOutTargets : Collections.<String>emptyList();
+        if (!extraTargets.isEmpty()) {
+            prompt.append("- Return a JSON object whose \"translations\" array holds one entry per item: {\"id\": N, \"text\": translation into ")
+                  .append(targetLangName);
+            for (String language : extraTargets) {
+                prompt.append(", \"").append(StructuredBatchOutput.extraKey(language)).append("\": translation into ")
+                      .append(getLanguageDisplayName(language));
+            }
+            prompt.append("}, where N is the item number. Translate every item into each of these languages independently from the source text.\n");
+            prompt.append("- You MUST translate ALL items. Do not skip, merge, or reorder any.\n");
+        } else if (structured) {
+            prompt.append("- Return a JSON object whose \"translations\" array holds one {\"id\": N, \"text\": translated text} entry per item, where N is the item number.\n");
+            prompt.append("- You MUST translate ALL items. Do not skip, merge, or reorder any.\n");
+        } else {
+            prompt.append("- Return ONLY the translations in the EXACT same numbered format: [N] translated text\n");
+            prompt.append("- You MUST translate ALL items. Do not skip, merge, or reorder any.\n");
+            prompt.append("- Each translation MUST be on its own line starting with [N] where N is the item number.\n");
+        }
         prompt.append("- Tokens like __PH0__, __PH1__ etc. are protected placeholders — keep them EXACTLY as-is (case-sensitive, including double underscores).\n");
         prompt.append("- Do NOT translate, modify, reorder, or remove __PH*__ tokens. Their count and order must match the input.\n");
         prompt.append("- Keep emojis exactly as they appear.\n");
         prompt.append("- Do not add quotes, explanations, notes, or any extra text.\n\n");
+        return prompt.toString();
+    }
+
+    /**
+     * The per-request part of a batch prompt: reference translations and the numbered items.
+     */
+    private String buildBatchItems(String[] texts, Map<String, String> references) {
+        StringBuilder prompt = new StringBuilder();
+        if (references != null && !references.isEmpty()) {
+            prompt.append("Reference translations of similar strings from this app (keep terminology consistent; do NOT output these):\n");
+            for (Map.Entry<String, String> reference : references.entrySet()) {
+                prompt.append("- ").append(escapeForBatchPrompt(reference.getKey()))
+                      .append(" => ").append(escapeForBatchPrompt(reference.getValue())).append('\n');
+            }
+            prompt.append('\n');
+        }
 
+        prompt.append(texts.length).append(texts.length == 1 ? " item:\n" : " items:\n");
         for (int i = 0; i < texts.length; i++) {
             prompt.append('[').append(i + 1).append("] ");
             prompt.append(escapeForBatchPrompt(texts[i] != null ? texts[i] : ""));
@@ -528,14 +1644,16 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
      * [2] Translation two
      * ...
      *
-     * Falls back to original text for any missing translation.
+     * Items the response lacks are left null for the caller to re-request.
      *
      * @param response Raw AI response
-     * @param originalTexts Original texts for fallback
-     * @return Array of translated texts in the same order
-     * @throws IOException If response is completely unparseable
+     * @param originalTexts Texts sent in the batch
+     * @return Array of translated texts in the same order, null where missing
+     * @throws BatchParseException If response is completely unparseable
      */
-    private String[] parseBatchResponse(String response, String[] originalTexts, TranslationDebugLogger.BatchSpan batchSpan) throws IOException {
+    private String[] parseBatchResponse(String response, String[] originalTexts, String sourceLanguage,
+                                        TranslationDebugLogger.BatchSpan batchSpan,
+                                        boolean structured) throws IOException {
         int count = originalTexts.length;
         String[] results = new String[count];
 
@@ -543,107 +1661,87 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
             throw new IOException("Empty batch translation response");
         }
 
-        // Strip markdown code blocks if the model wrapped the response
-        String cleaned = response.trim();
-        if (cleaned.startsWith("```")) {
-            int firstNewline = cleaned.indexOf('\n');
-            int lastFence = cleaned.lastIndexOf("```");
-            if (firstNewline > 0 && lastFence > firstNewline) {
-                cleaned = cleaned.substring(firstNewline + 1, lastFence).trim();
+        // Structured JSON reply; models that ignored the schema fall through to numbered lines
+        String formatUsed = "json";
+        int bestFound = 0;
+        String[] structuredResults = null;
+        if (structured) {
+            // Strip markdown code blocks if the model wrapped the JSON
+            String cleaned = response.trim();
+            if (cleaned.startsWith("```")) {
+                int firstNewline = cleaned.indexOf('\n');
+                int lastFence = cleaned.lastIndexOf("```");
+                if (firstNewline > 0 && lastFence > firstNewline) {
+                    cleaned = cleaned.substring(firstNewline + 1, lastFence).trim();
+                }
+            }
+            List<String> extraTargets = fanOutTargets;
+            String[][] extraResults = new String[extraTargets.size()][count];
+            structuredResults = StructuredBatchOutput.parse(cleaned, count, extraTargets, extraResults);
+            if (structuredResults != null && !extraTargets.isEmpty()) {
+                rememberFanOut(originalTexts, sourceLanguage, extraTargets, extraResults, batchSpan);
             }
         }
-
-        // Try multiple numbered formats in order of preference, pick the best match
-        int bestFound = 0;
-
-        // Format 1: [N] text  (preferred)
-        String[] temp1 = new String[count];
-        Pattern pattern1 = Pattern.compile(
-                "\\[(\\d+)]\\s*(.*?)(?=\\n\\s*\\[\\d+]|$)",
-                Pattern.DOTALL
-        );
-        int found1 = matchBatchEntries(pattern1, cleaned, temp1, count);
-        if (found1 > bestFound) {
-            bestFound = found1;
-            System.arraycopy(temp1, 0, results, 0, count);
-        }
-
-        // Format 2: N. text  (some models use this)
-        if (bestFound < count) {
-            String[] temp2 = new String[count];
-            Pattern pattern2 = Pattern.compile(
-                    "^(\\d+)\\.\\s+(.*?)(?=\\n\\d+\\.|$)",
-                    Pattern.MULTILINE | Pattern.DOTALL
-            );
-            int found2 = matchBatchEntries(pattern2, cleaned, temp2, count);
-            if (found2 > bestFound) {
-                bestFound = found2;
-                System.arraycopy(temp2, 0, results, 0, count);
+        if (structuredResults != null) {
+            for (int i = 0; i < count; i++) {
+                if (structuredResults[i] != null) {
+                    results[i] = structuredResults[i];
+                    bestFound++;
+                }
+            }
+        } else {
+            // [N] text, N. text or N) text in one pass; ties go to the format this model last used
+            String modelKey = selectedEngine + "|" + getActiveModel();
+            BatchResponseScanner.Result scanned = BatchResponseScanner.scan(response, count,
+                    BatchResponseScanner.lastFormat(modelKey));
+            formatUsed = scanned.format.label;
+            bestFound = scanned.found;
+            results = scanned.items;
+            if (bestFound > 0) {
+                BatchResponseScanner.rememberFormat(modelKey, scanned.format);
             }
         }
 
-        // Format 3: N) text
-        if (bestFound < count) {
-            String[] temp3 = new String[count];
-            Pattern pattern3 = Pattern.compile(
-                    "^(\\d+)\\)\\s*(.*?)(?=\\n\\d+\\)|$)",
-                    Pattern.MULTILINE | Pattern.DOTALL
-            );
-            int found3 = matchBatchEntries(pattern3, cleaned, temp3, count);
-            if (found3 > bestFound) {
-                bestFound = found3;
-                System.arraycopy(temp3, 0, results, 0, count);
+        // A truncated reply may end inside its last item; treat that item as missing.
+        // Structured replies only yield complete entries.
+        CallOutcome outcome = callOutcome.get();
+        if (outcome.truncated && structuredResults == null) {
+            for (int i = count - 1; i >= 0; i--) {
+                if (results[i] != null) {
+                    results[i] = null;
+                    bestFound--;
+                    break;
+                }
             }
         }
 
-        // Fill missing translations with originals
+        // Missing translations stay null so the caller can re-request them
         int missing = 0;
         for (int i = 0; i < count; i++) {
-            if (results[i] == null || results[i].isEmpty()) {
-                results[i] = originalTexts[i];
+            if (results[i] != null && results[i].isEmpty()) {
+                results[i] = null;
+            }
+            if (results[i] == null) {
                 missing++;
             }
         }
 
-        // Determine which format was used for logging
-        String formatUsed = bestFound == 0 ? "none" : "numbered";
-        batchSpan.logParseResult(formatUsed, bestFound, count);
+        batchSpan.logParseResult(bestFound == 0 ? "none" : formatUsed, bestFound, count);
 
+        outcome.missingItems = missing;
         if (bestFound == 0) {
-            batchSpan.logParseWarning(count, "No format matched, all kept as originals");
-            throw new IOException("Batch response could not be parsed: no numbered format matched (expected " + count + " items)");
+            outcome.unparsed = true;
+            batchSpan.logParseWarning(count, "No format matched");
+            throw new BatchParseException("Batch response could not be parsed: no " + (structured ? "json or numbered" : "numbered")
+                    + " format matched (expected " + count + " items)");
         } else if (missing > 0) {
-            batchSpan.logParseWarning(missing, missing + "/" + count + " translations missing, kept originals");
-            logWarn("Batch parse: " + missing + "/" + count + " translations missing, kept originals");
+            batchSpan.logParseWarning(missing, missing + "/" + count + " translations missing");
+            logWarn("Batch parse: " + missing + "/" + count + " translations missing");
         }
 
         return results;
     }
 
-    /**
-     * Match numbered entries in a batch response using the given pattern.
-     * Pattern must have group(1) = number, group(2) = text.
-     *
-     * @return Number of successfully matched entries
-     */
-    private int matchBatchEntries(Pattern pattern, String text, String[] results, int count) {
-        Matcher matcher = pattern.matcher(text);
-        int found = 0;
-        while (matcher.find()) {
-            try {
-                int index = Integer.parseInt(matcher.group(1)) - 1; // 0-based
-                String value = matcher.group(2).trim();
-                if (index >= 0 && index < count && !value.isEmpty()) {
-                    results[index] = value;
-                    found++;
-                }
-            } catch (NumberFormatException ignored) {
-                // Skip malformed entries
-            }
-        }
-        return found;
-    }
-
     private String buildSystemPrompt(String sourceLanguage, String targetLanguage) {
         String sourceLangName = "auto".equals(sourceLanguage)
                 ? (localString != null ? localString.get("lang_auto") : "Auto Detect")
@@ -664,7 +1762,12 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
         return sys.toString();
     }
 
-    private JSONObject buildOpenAiRequest(String prompt, String sourceLanguage, String targetLanguage) throws IOException {
+    /**
+     * @param instructions Static instructions sent before the prompt, or null. OpenAI caches
+     *                     long prompt prefixes automatically, so they only need to come first.
+     */
+    private JSONObject buildOpenAiRequest(String instructions, String prompt, String sourceLanguage,
+                                          String targetLanguage, boolean structured) throws IOException {
         try {
             JSONObject request = new JSONObject();
             request.put("model", openAiModel);
@@ -675,10 +1778,18 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
                     .put("content", buildSystemPrompt(sourceLanguage, targetLanguage)));
             messages.put(new JSONObject()
                     .put("role", "user")
-                    .put("content", prompt));
+                    .put("content", instructions != null ? instructions + prompt : prompt));
             request.put("messages", messages);
             request.put("temperature", 0.1);
-            request.put("max_tokens", 2048);
+            request.put("max_tokens", ModelLimits.forModel(openAiModel).requestOutputTokens());
+            if (structured) {
+                request.put("response_format", new JSONObject()
+                        .put("type", "json_schema")
+                        .put("json_schema", new JSONObject()
+                                .put("name", StructuredBatchOutput.SCHEMA_NAME)
+                                .put("strict", true)
+                                .put("schema", StructuredBatchOutput.jsonSchema(fanOutTargets))));
+            }
 
             return request;
         } catch (JSONException e) {
@@ -686,19 +1797,35 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
         }
     }
 
-    private JSONObject buildClaudeRequest(String prompt, String sourceLanguage, String targetLanguage) throws IOException {
+    /**
+     * @param instructions Static instructions sent as a separate block before the prompt, or
+     *                     null. The cache breakpoint goes on the last static block, so tools,
+     *                     system prompt and instructions are read from Claude's prompt cache.
+     */
+    private JSONObject buildClaudeRequest(String instructions, String prompt, String sourceLanguage,
+                                          String targetLanguage, boolean structured) throws IOException {
         try {
             JSONObject request = new JSONObject();
             request.put("model", claudeModel);
-            // Dynamic max_tokens: scale with prompt size (~1 token per 3-4 chars), minimum 2048
-            int estimatedTokens = Math.max(2048, prompt.length() / 3);
-            request.put("max_tokens", estimatedTokens);
-            request.put("system", buildSystemPrompt(sourceLanguage, targetLanguage));
+            request.put("max_tokens", ModelLimits.forModel(claudeModel).requestOutputTokens());
+            JSONObject systemBlock = new JSONObject()
+                    .put("type", "text")
+                    .put("text", buildSystemPrompt(sourceLanguage, targetLanguage));
+            request.put("system", new JSONArray().put(systemBlock));
 
             JSONArray messages = new JSONArray();
             JSONObject userMessage = new JSONObject();
             userMessage.put("role", "user");
             JSONArray content = new JSONArray();
+            JSONObject cacheControl = new JSONObject().put("type", "ephemeral");
+            if (instructions != null) {
+                content.put(new JSONObject()
+                        .put("type", "text")
+                        .put("text", instructions)
+                        .put("cache_control", cacheControl));
+            } else {
+                systemBlock.put("cache_control", cacheControl);
+            }
             JSONObject textBlock = new JSONObject();
             textBlock.put("type", "text");
             textBlock.put("text", prompt);
@@ -707,6 +1834,19 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
             messages.put(userMessage);
             request.put("messages", messages);
 
+            if (structured) {
+                // Forcing the tool call makes the reply its schema-checked input
+                JSONArray tools = new JSONArray();
+                tools.put(new JSONObject()
+                        .put("name", StructuredBatchOutput.TOOL_NAME)
+                        .put("description", "Submit the translation of every numbered item")
+                        .put("input_schema", StructuredBatchOutput.jsonSchema(fanOutTargets)));
+                request.put("tools", tools);
+                request.put("tool_choice", new JSONObject()
+                        .put("type", "tool")
+                        .put("name", StructuredBatchOutput.TOOL_NAME));
+            }
+
             return request;
         } catch (JSONException e) {
             throw new IOException("Failed to build Claude request: " + e.getMessage(), e);
@@ -715,43 +1855,149 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
 
     /**
      * Perform translation with automatic retry
+     *
+     * @param monitor Checks a streamed batch reply as it arrives, or null for a plain request
      */
-    private String translateWithGemini(String prompt,
+    private String translateWithGemini(String instructions,
+                                       String prompt,
                                        String sourceLanguage,
                                        String targetLanguage,
                                        int inputChars,
-                                       String preview) throws IOException {
+                                       String preview,
+                                       boolean structured,
+                                       BatchStreamMonitor monitor) throws IOException {
         return executeWithRetry("gemini", modelName, sourceLanguage, targetLanguage, inputChars, preview, () -> {
-            JSONObject request = buildGeminiRequest(prompt);
+            GeminiContextCache cache = geminiContextCache;
+            String cachedContent = instructions != null && cache != null ? cache.nameFor(instructions) : null;
+            try {
+                return requestGemini(buildGeminiRequest(instructions, prompt, structured, cachedContent), monitor);
+            } catch (IOException e) {
+                if (cachedContent == null || !isCacheReferenceError(e, cachedContent)) {
+                    throw e;
+                }
+                logWarn("Gemini context cache rejected (" + e.getMessage() + "), sending instructions inline");
+                cache.invalidate();
+                return requestGemini(buildGeminiRequest(instructions, prompt, structured, null), monitor);
+            }
+        });
+    }
 
-            String apiUrl = String.format("%s/%s:generateContent?key=%s",
-                GeminiConstants.API_BASE_URL,
-                modelName,
-                apiKey
-            );
+    private String requestGemini(JSONObject request, BatchStreamMonitor monitor) throws IOException {
+        if (monitor != null) {
+            return streamGemini(request, monitor);
+        }
+        String apiUrl = String.format("%s/%s:generateContent?key=%s",
+            GeminiConstants.API_BASE_URL,
+            modelName,
+            apiKey
+        );
 
-            GeminiHttpUtils.Request httpRequest = GeminiHttpUtils.post(apiUrl);
-            httpRequest.setTimeout(requestTimeout);
-            httpRequest.jsonBody(request);
+        GeminiHttpUtils.Request httpRequest = GeminiHttpUtils.post(apiUrl);
+        httpRequest.setTimeout(requestTimeout);
+        httpRequest.setMaxResponseBytes(maxResponseBytes);
+        httpRequest.jsonBody(request);
 
-            JSONObject response = httpRequest.executeToJson();
-            String translation = parseGeminiResponse(response);
-            logSuccess("Gemini response parsed, chars=" + translation.length());
-            return translation;
-        });
+        JSONObject response = httpRequest.executeToJson();
+        String translation = parseGeminiResponse(response);
+        logSuccess("Gemini response parsed, chars=" + translation.length());
+        return translation;
+    }
+
+    /**
+     * Stream a Gemini reply through the monitor. Each server-sent event is a partial
+     * GenerateContentResponse; usage is cumulative, so the last one seen is recorded.
+     */
+    private String streamGemini(JSONObject request, BatchStreamMonitor monitor) throws IOException {
+        String apiUrl = String.format("%s/%s:streamGenerateContent?alt=sse&key=%s",
+            GeminiConstants.API_BASE_URL,
+            modelName,
+            apiKey
+        );
+
+        GeminiHttpUtils.Request httpRequest = GeminiHttpUtils.post(apiUrl);
+        httpRequest.setTimeout(requestTimeout);
+        httpRequest.setMaxResponseBytes(maxResponseBytes);
+        httpRequest.jsonBody(request);
+
+        monitor.reset();
+        final JSONObject[] usage = new JSONObject[1];
+        final String[] finishReason = {""};
+        JSONObject plain;
+        try {
+            plain = httpRequest.executeStream((event, data) -> {
+                JSONObject chunk = parseStreamEvent(data);
+                JSONObject error = chunk.optJSONObject("error");
+                if (error != null) {
+                    throw new IOException("❌ " + formatApiError(error.optInt("code", -1),
+                            error.optString("message", "Unknown error")));
+                }
+                JSONObject feedback = chunk.optJSONObject("promptFeedback");
+                if (feedback != null && feedback.has("blockReason")) {
+                    throw new ContentBlockedException("⚠️ Blocked by Gemini: " + feedback.optString("blockReason"));
+                }
+                if (chunk.optJSONObject("usageMetadata") != null) {
+                    usage[0] = chunk.optJSONObject("usageMetadata");
+                }
+                JSONArray candidates = chunk.optJSONArray("candidates");
+                JSONObject candidate = candidates != null ? candidates.optJSONObject(0) : null;
+                if (candidate == null) {
+                    return;
+                }
+                if (!candidate.optString("finishReason", "").isEmpty()) {
+                    finishReason[0] = candidate.optString("finishReason");
+                }
+                JSONObject content = candidate.optJSONObject("content");
+                JSONArray parts = content != null ? content.optJSONArray("parts") : null;
+                for (int i = 0; parts != null && i < parts.length(); i++) {
+                    JSONObject part = parts.optJSONObject(i);
+                    if (part != null && !part.optBoolean("thought", false) && part.has("text")) {
+                        monitor.append(part.optString("text"));
+                    }
+                }
+            });
+        } catch (BatchStreamMonitor.AbortException e) {
+            return abortedStreamText("Gemini", monitor);
+        } finally {
+            if (usage[0] != null) {
+                recordUsage("gemini", usage[0].optInt("promptTokenCount"), usage[0].optInt("cachedContentTokenCount"), 0,
+                        usage[0].optInt("candidatesTokenCount"));
+            }
+        }
+        if (plain != null) {
+            return unstreamedReply("Gemini", parseGeminiResponse(plain));
+        }
+        String translation = monitor.text().trim();
+        if (translation.isEmpty() && BLOCKED_FINISH_REASONS.contains(finishReason[0])) {
+            throw new ContentBlockedException("⚠️ Blocked by Gemini: " + finishReason[0]);
+        }
+        if (translation.isEmpty()) {
+            throw new IOException("⚠️ Empty translation response");
+        }
+        if ("MAX_TOKENS".equals(finishReason[0])) {
+            callOutcome.get().truncated = true;
+        }
+        logSuccess("Gemini stream parsed, chars=" + translation.length());
+        return translation;
     }
 
-    private String translateWithOpenAI(String prompt,
+    private String translateWithOpenAI(String instructions,
+                                       String prompt,
                                        String sourceLanguage,
                                        String targetLanguage,
                                        int inputChars,
-                                       String preview) throws IOException {
+                                       String preview,
+                                       boolean structured,
+                                       BatchStreamMonitor monitor) throws IOException {
         return executeWithRetry("openai", openAiModel, sourceLanguage, targetLanguage, inputChars, preview, () -> {
-            JSONObject request = buildOpenAiRequest(prompt, sourceLanguage, targetLanguage);
+            JSONObject request = buildOpenAiRequest(instructions, prompt, sourceLanguage, targetLanguage, structured);
 
             GeminiHttpUtils.Request httpRequest = GeminiHttpUtils.post(openAiEndpoint);
             httpRequest.header("Authorization", "Bearer " + openAiApiKey);
             httpRequest.setTimeout(requestTimeout);
+            httpRequest.setMaxResponseBytes(maxResponseBytes);
+            if (monitor != null) {
+                return streamOpenAi(httpRequest, request, monitor);
+            }
             httpRequest.jsonBody(request);
 
             JSONObject response = httpRequest.executeToJson();
@@ -761,18 +2007,104 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
         });
     }
 
-    private String translateWithClaude(String prompt,
+    /**
+     * Stream an OpenAI chat completion through the monitor. Usage arrives in a last chunk
+     * without choices.
+     */
+    private String streamOpenAi(GeminiHttpUtils.Request httpRequest, JSONObject request,
+                                BatchStreamMonitor monitor) throws IOException {
+        try {
+            request.put("stream", true);
+            request.put("stream_options", new JSONObject().put("include_usage", true));
+        } catch (JSONException e) {
+            throw new IOException("Failed to build OpenAI request: " + e.getMessage(), e);
+        }
+        httpRequest.jsonBody(request);
+
+        monitor.reset();
+        final String[] finishReason = {""};
+        final StringBuilder refusal = new StringBuilder();
+        JSONObject plain;
+        try {
+            plain = httpRequest.executeStream((event, data) -> {
+                if ("[DONE]".equals(data.trim())) {
+                    return;
+                }
+                JSONObject chunk = parseStreamEvent(data);
+                JSONObject error = chunk.optJSONObject("error");
+                if (error != null) {
+                    throw new IOException("❌ OpenAI stream error: " + error.optString("message", "Unknown error"));
+                }
+                JSONObject usage = chunk.optJSONObject("usage");
+                if (usage != null) {
+                    JSONObject details = usage.optJSONObject("prompt_tokens_details");
+                    recordUsage("openai", usage.optInt("prompt_tokens"),
+                            details != null ? details.optInt("cached_tokens") : 0, 0, usage.optInt("completion_tokens"));
+                }
+                JSONArray choices = chunk.optJSONArray("choices");
+                JSONObject choice = choices != null ? choices.optJSONObject(0) : null;
+                if (choice == null) {
+                    return;
+                }
+                if (!choice.isNull("finish_reason") && !choice.optString("finish_reason").isEmpty()) {
+                    finishReason[0] = choice.optString("finish_reason");
+                }
+                JSONObject delta = choice.optJSONObject("delta");
+                if (delta == null) {
+                    return;
+                }
+                if (!delta.isNull("refusal")) {
+                    refusal.append(delta.optString("refusal", ""));
+                }
+                if (!delta.isNull("content")) {
+                    String content = delta.optString("content", "");
+                    if (!content.isEmpty()) {
+                        monitor.append(content);
+                    }
+                }
+            });
+        } catch (BatchStreamMonitor.AbortException e) {
+            return abortedStreamText("OpenAI", monitor);
+        }
+        if (plain != null) {
+            return unstreamedReply("OpenAI", parseOpenAiResponse(plain));
+        }
+        if ("content_filter".equals(finishReason[0])) {
+            throw new ContentBlockedException("⚠️ Blocked by OpenAI content filter");
+        }
+        if (refusal.length() > 0) {
+            throw new ContentBlockedException("⚠️ OpenAI refused: " + refusal);
+        }
+        String translation = monitor.text().trim();
+        if (translation.isEmpty()) {
+            throw new IOException("⚠️ OpenAI response was empty");
+        }
+        if ("length".equals(finishReason[0])) {
+            callOutcome.get().truncated = true;
+        }
+        logSuccess("OpenAI stream parsed, chars=" + translation.length());
+        return translation;
+    }
+
+    private String translateWithClaude(String instructions,
+                                       String prompt,
                                        String sourceLanguage,
                                        String targetLanguage,
                                        int inputChars,
-                                       String preview) throws IOException {
+                                       String preview,
+                                       boolean structured,
+                                       BatchStreamMonitor monitor) throws IOException {
         return executeWithRetry("claude", claudeModel, sourceLanguage, targetLanguage, inputChars, preview, () -> {
-            JSONObject request = buildClaudeRequest(prompt, sourceLanguage, targetLanguage);
+            JSONObject request = buildClaudeRequest(instructions, prompt, sourceLanguage, targetLanguage, structured);
 
             GeminiHttpUtils.Request httpRequest = GeminiHttpUtils.post(claudeEndpoint);
             httpRequest.header("x-api-key", claudeApiKey);
             httpRequest.header("anthropic-version", GeminiConstants.CLAUDE_API_VERSION);
             httpRequest.setTimeout(requestTimeout);
+            httpRequest.setMaxResponseBytes(maxResponseBytes);
+            if (monitor != null) {
+                return streamClaude(httpRequest, request, monitor);
+            }
             httpRequest.jsonBody(request);
 
             JSONObject response = httpRequest.executeToJson();
@@ -782,15 +2114,125 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
         });
     }
 
-    private String translateWithClaudeWithFallback(String prompt,
+    /**
+     * Stream a Claude message through the monitor. Input usage comes with message_start,
+     * the stop reason and output usage with message_delta.
+     */
+    private String streamClaude(GeminiHttpUtils.Request httpRequest, JSONObject request,
+                                BatchStreamMonitor monitor) throws IOException {
+        try {
+            request.put("stream", true);
+        } catch (JSONException e) {
+            throw new IOException("Failed to build Claude request: " + e.getMessage(), e);
+        }
+        httpRequest.jsonBody(request);
+
+        monitor.reset();
+        final String[] stopReason = {""};
+        // input, cache read, cache write and output tokens
+        final int[] usage = new int[4];
+        JSONObject plain;
+        try {
+            plain = httpRequest.executeStream((event, data) -> {
+                JSONObject payload = parseStreamEvent(data);
+                if ("error".equals(event)) {
+                    JSONObject error = payload.optJSONObject("error");
+                    throw new IOException("❌ Claude stream error: "
+                            + (error != null ? error.optString("message", data) : data));
+                }
+                if ("message_start".equals(event)) {
+                    JSONObject message = payload.optJSONObject("message");
+                    JSONObject startUsage = message != null ? message.optJSONObject("usage") : null;
+                    if (startUsage != null) {
+                        usage[0] = startUsage.optInt("input_tokens");
+                        usage[1] = startUsage.optInt("cache_read_input_tokens");
+                        usage[2] = startUsage.optInt("cache_creation_input_tokens");
+                    }
+                } else if ("content_block_delta".equals(event)) {
+                    JSONObject delta = payload.optJSONObject("delta");
+                    if (delta != null && "text_delta".equals(delta.optString("type"))) {
+                        monitor.append(delta.optString("text", ""));
+                    }
+                } else if ("message_delta".equals(event)) {
+                    JSONObject delta = payload.optJSONObject("delta");
+                    if (delta != null && !delta.isNull("stop_reason")) {
+                        stopReason[0] = delta.optString("stop_reason", "");
+                    }
+                    JSONObject deltaUsage = payload.optJSONObject("usage");
+                    if (deltaUsage != null) {
+                        usage[3] = deltaUsage.optInt("output_tokens");
+                    }
+                }
+            });
+        } catch (BatchStreamMonitor.AbortException e) {
+            return abortedStreamText("Claude", monitor);
+        } finally {
+            if (usage[0] > 0) {
+                // input_tokens excludes the tokens read from or written to the cache
+                recordUsage("claude", usage[0] + usage[1] + usage[2], usage[1], usage[2], usage[3]);
+            }
+        }
+        if (plain != null) {
+            return unstreamedReply("Claude", parseClaudeResponse(plain));
+        }
+        if ("refusal".equals(stopReason[0])) {
+            throw new ContentBlockedException("⚠️ Claude declined to translate this text");
+        }
+        String translation = monitor.text().trim();
+        if (translation.isEmpty()) {
+            throw new IOException("⚠️ Claude response was empty");
+        }
+        if ("max_tokens".equals(stopReason[0])) {
+            callOutcome.get().truncated = true;
+        }
+        logSuccess("Claude stream parsed, chars=" + translation.length());
+        return translation;
+    }
+
+    /**
+     * A batch reply from a server that ignored the request to stream and answered with plain
+     * JSON. The rest of the job's batches are sent unstreamed.
+     */
+    private String unstreamedReply(String provider, String translation) {
+        if (!streamBatchRejected) {
+            streamBatchRejected = true;
+            logWarn(provider + " endpoint answered a streamed batch request with plain JSON, sending batches unstreamed");
+        }
+        logSuccess(provider + " response parsed, chars=" + translation.length());
+        return translation;
+    }
+
+    /**
+     * The part of an aborted streamed reply to parse: its well-formed items, or everything
+     * received if there are none, so an off-format reply fails to parse like a complete one.
+     */
+    private String abortedStreamText(String provider, BatchStreamMonitor monitor) {
+        logWarn(provider + " batch reply stopped early (" + monitor.abortReason() + ") after "
+                + monitor.text().length() + " chars, keeping " + monitor.acceptedItems() + " item(s)");
+        return monitor.acceptedItems() > 0 ? monitor.acceptedText() : monitor.text();
+    }
+
+    private static JSONObject parseStreamEvent(String data) throws IOException {
+        try {
+            return new JSONObject(data);
+        } catch (JSONException e) {
+            throw new IOException("❌ Failed to parse streamed response: " + e.getMessage(), e);
+        }
+    }
+
+    private String translateWithClaudeWithFallback(String instructions,
+                                                   String prompt,
                                                    String sourceLanguage,
                                                    String targetLanguage,
                                                    int inputChars,
-                                                   String preview) throws IOException {
+                                                   String preview,
+                                                   boolean structured,
+                                                   BatchStreamMonitor monitor) throws IOException {
         boolean retriedWithFallback = false;
         while (true) {
             try {
-                return translateWithClaude(prompt, sourceLanguage, targetLanguage, inputChars, preview);
+                return translateWithClaude(instructions, prompt, sourceLanguage, targetLanguage, inputChars, preview,
+                        structured, monitor);
             } catch (IOException e) {
                 if (!retriedWithFallback && trySwitchClaudeFallbackModel(e)) {
                     retriedWithFallback = true;
@@ -814,10 +2256,23 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
      *     "maxOutputTokens": 1024
      *   }
      * }
+     *
+     * Static instructions go first, as the system instruction, so Gemini's implicit prefix
+     * cache applies; with an explicit context cache the request names it instead.
+     *
+     * @param instructions  Static instructions of the job, or null
+     * @param cachedContent Name of a context cache holding the instructions, or null
      */
-    private JSONObject buildGeminiRequest(String prompt) throws IOException {
+    private JSONObject buildGeminiRequest(String instructions, String prompt, boolean structured,
+                                          String cachedContent) throws IOException {
         try {
             JSONObject request = new JSONObject();
+            if (cachedContent != null) {
+                request.put("cachedContent", cachedContent);
+            } else if (instructions != null) {
+                request.put("systemInstruction", new JSONObject()
+                        .put("parts", new JSONArray().put(new JSONObject().put("text", instructions))));
+            }
 
             // Contents array
             JSONArray contents = new JSONArray();
@@ -833,9 +2288,13 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
             // Generation config for better translation
             JSONObject generationConfig = new JSONObject();
             generationConfig.put("temperature", 0.1); // Low temperature for consistent translation
-            generationConfig.put("maxOutputTokens", 2048); // Allow longer responses
+            generationConfig.put("maxOutputTokens", ModelLimits.forModel(modelName).requestOutputTokens());
             generationConfig.put("topP", 0.8);
             generationConfig.put("topK", 10);
+            if (structured) {
+                generationConfig.put("responseMimeType", "application/json");
+                generationConfig.put("responseSchema", StructuredBatchOutput.geminiSchema(fanOutTargets));
+            }
             request.put("generationConfig", generationConfig);
 
             return request;
@@ -892,6 +2351,10 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
             } catch (IOException e) {
                 lastException = e;
                 logWarn("Attempt " + (attempt + 1) + " failed: " + e.getMessage());
+                if (isRateLimitError(e)) {
+                    callOutcome.get().rateLimited++;
+                    RequestDispatcher.onRateLimited(selectedEngine);
+                }
 
                 boolean willRetry = !(isNonRetryableError(e) || attempt == maxRetries);
                 span.markFailure(e.getMessage(), willRetry);
@@ -962,11 +2425,30 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
             // Extract translation
             JSONArray candidates = json.optJSONArray("candidates");
             if (candidates == null || candidates.length() == 0) {
+                JSONObject feedback = json.optJSONObject("promptFeedback");
+                if (feedback != null && feedback.has("blockReason")) {
+                    throw new ContentBlockedException("⚠️ Blocked by Gemini: " + feedback.optString("blockReason"));
+                }
                 throw new IOException("⚠️ No translation returned from API");
             }
 
             JSONObject candidate = candidates.getJSONObject(0);
-            JSONObject content = candidate.getJSONObject("content");
+            JSONObject content = candidate.optJSONObject("content");
+            String finishReason = candidate.optString("finishReason", "");
+            if (content == null && BLOCKED_FINISH_REASONS.contains(finishReason)) {
+                throw new ContentBlockedException("⚠️ Blocked by Gemini: " + finishReason);
+            }
+            if (content == null) {
+                throw new IOException("⚠️ Empty translation response");
+            }
+            if ("MAX_TOKENS".equals(finishReason)) {
+                callOutcome.get().truncated = true;
+            }
+            JSONObject usage = json.optJSONObject("usageMetadata");
+            if (usage != null) {
+                recordUsage("gemini", usage.optInt("promptTokenCount"), usage.optInt("cachedContentTokenCount"), 0,
+                        usage.optInt("candidatesTokenCount"));
+            }
             JSONArray parts = content.getJSONArray("parts");
 
             if (parts.length() == 0) {
@@ -994,10 +2476,26 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
                 throw new IOException("⚠️ OpenAI response did not include choices");
             }
 
-            JSONObject message = choices.getJSONObject(0).optJSONObject("message");
+            JSONObject choice = choices.getJSONObject(0);
+            if ("content_filter".equals(choice.optString("finish_reason"))) {
+                throw new ContentBlockedException("⚠️ Blocked by OpenAI content filter");
+            }
+            if ("length".equals(choice.optString("finish_reason"))) {
+                callOutcome.get().truncated = true;
+            }
+            JSONObject usage = response.optJSONObject("usage");
+            if (usage != null) {
+                JSONObject details = usage.optJSONObject("prompt_tokens_details");
+                recordUsage("openai", usage.optInt("prompt_tokens"),
+                        details != null ? details.optInt("cached_tokens") : 0, 0, usage.optInt("completion_tokens"));
+            }
+            JSONObject message = choice.optJSONObject("message");
             if (message == null) {
                 throw new IOException("⚠️ OpenAI response missing message payload");
             }
+            if (!message.isNull("refusal") && !message.optString("refusal").isEmpty()) {
+                throw new ContentBlockedException("⚠️ OpenAI refused: " + message.optString("refusal"));
+            }
 
             String translation = extractContentText(message.opt("content"));
             if (translation.isEmpty()) {
@@ -1010,6 +2508,20 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
     }
 
     private String parseClaudeResponse(JSONObject response) throws IOException {
+        if ("refusal".equals(response.optString("stop_reason"))) {
+            throw new ContentBlockedException("⚠️ Claude declined to translate this text");
+        }
+        if ("max_tokens".equals(response.optString("stop_reason"))) {
+            callOutcome.get().truncated = true;
+        }
+        JSONObject usage = response.optJSONObject("usage");
+        if (usage != null) {
+            // input_tokens excludes the tokens read from or written to the cache
+            int cacheRead = usage.optInt("cache_read_input_tokens");
+            int cacheWrite = usage.optInt("cache_creation_input_tokens");
+            recordUsage("claude", usage.optInt("input_tokens") + cacheRead + cacheWrite, cacheRead, cacheWrite,
+                    usage.optInt("output_tokens"));
+        }
         JSONArray contentArray = response.optJSONArray("content");
         if (contentArray == null || contentArray.length() == 0) {
             throw new IOException("⚠️ Claude response did not include content");
@@ -1018,6 +2530,11 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
         StringBuilder builder = new StringBuilder();
         for (int i = 0; i < contentArray.length(); i++) {
             JSONObject block = contentArray.optJSONObject(i);
+            if (block != null && "tool_use".equals(block.optString("type"))) {
+                // Structured batch reply: the tool input is the JSON to parse
+                JSONObject input = block.optJSONObject("input");
+                return input != null ? input.toString() : "";
+            }
             if (block != null && block.has("text")) {
                 builder.append(block.optString("text"));
             }
@@ -1052,10 +2569,53 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
         }
     }
 
+    /**
+     * Failures caused by what was sent, which splitting the batch can isolate.
+     */
+    private boolean isContentError(IOException e) {
+        if (e instanceof ContentBlockedException || e instanceof BatchParseException) {
+            return true;
+        }
+        return RequestErrors.isContentError(e);
+    }
+
+    /**
+     * Whether a request naming a Gemini context cache failed because of the cache, e.g. it
+     * expired or was deleted. Only errors about the cached content itself count; a rejected
+     * schema, an invalid item or an auth failure on the same status codes is left to the caller.
+     */
+    private boolean isCacheReferenceError(IOException e, String cachedContent) {
+        if (e instanceof ContentBlockedException) {
+            return false;
+        }
+        String message = e.getMessage();
+        if (message == null || !(message.contains("(400)") || message.contains("(403)") || message.contains("(404)")
+                || message.contains("HTTP 400") || message.contains("HTTP 403") || message.contains("HTTP 404"))) {
+            return false;
+        }
+        if (message.contains(cachedContent) || message.contains("cachedContents/")) {
+            return true;
+        }
+        // An expired or deleted cache: "CachedContent not found (or permission denied)"
+        return (message.contains("NOT_FOUND") || message.contains("PERMISSION_DENIED"))
+                && message.toLowerCase(Locale.US).contains("cachedcontent");
+    }
+
+    private boolean isAuthOrRateLimitError(IOException e) {
+        return RequestErrors.isAuthOrRateLimitError(e);
+    }
+
+    private boolean isRateLimitError(IOException e) {
+        return RequestErrors.isRateLimitError(e);
+    }
+
     /**
      * Check if error should not be retried
      */
     private boolean isNonRetryableError(IOException e) {
+        if (e instanceof ContentBlockedException) {
+            return true;
+        }
         String message = e.getMessage();
         if (message == null) {
             return false;
@@ -1095,6 +2655,23 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
         return true;
     }
 
+    /**
+     * What the current thread's batch request ran into, for adaptive batch sizing.
+     */
+    private static class CallOutcome {
+        int rateLimited;
+        boolean truncated;
+        boolean unparsed;
+        int missingItems;
+
+        void reset() {
+            rateLimited = 0;
+            truncated = false;
+            unparsed = false;
+            missingItems = 0;
+        }
+    }
+
     // ── Placeholder protection utilities ──────────────────────────────────────
 
     /**
@@ -1374,35 +2951,4 @@ public class GeminiTranslationEngine extends BaseBatchTranslationEngine {
             System.out.println(entry);
         }
     }
-
-    /**
-     * Simple batching strategy that limits batch by count and total text length.
-     */
-    private static class SimpleBatchingStrategy implements BatchTranslationEngine.BatchingStrategy {
-        private final int maxCount;
-        private final int maxTextLength;
-        private int count;
-        private int totalTextLength;
-
-        SimpleBatchingStrategy(int maxCount, int maxTextLength) {
-            this.maxCount = maxCount;
-            this.maxTextLength = maxTextLength;
-        }
-
-        @Override
-        public void reset() {
-            count = 0;
-            totalTextLength = 0;
-        }
-
-        @Override
-        public boolean tryAdd(String text) {
-            if (maxCount > 0 && count >= maxCount) return false;
-            int len = text.length();
-            if (maxTextLength > 0 && totalTextLength + len > maxTextLength) return false;
-            count++;
-            totalTextLength += len;
-            return true;
-        }
-    }
 }
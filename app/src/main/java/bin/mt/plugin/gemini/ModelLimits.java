@@ -0,0 +1,69 @@
+package bin.mt.plugin.gemini;
+
+import java.util.Locale;
+
+/**
+ * Context and output windows of the models the AI engine talks to, and whether they support
+ * schema-constrained output, matched by model-id prefix. Unknown models get conservative
+ * limits so batches never outgrow them, and plain numbered output.
+ */
+public final class ModelLimits {
+
+    public final int contextTokens;
+    public final int maxOutputTokens;
+    public final boolean structuredOutput;
+
+    private ModelLimits(int contextTokens, int maxOutputTokens) {
+        this(contextTokens, maxOutputTokens, true);
+    }
+
+    private ModelLimits(int contextTokens, int maxOutputTokens, boolean structuredOutput) {
+        this.contextTokens = contextTokens;
+        this.maxOutputTokens = maxOutputTokens;
+        this.structuredOutput = structuredOutput;
+    }
+
+    // Most specific prefix first
+    private static final String[] PREFIXES = {
+            "gemini-3", "gemini-2.5", "gemini-2.0", "gemini-1.5",
+            "gpt-5", "gpt-4.1", "gpt-4o", "o4-mini", "o3", "o1",
+            "claude-opus-4-5", "claude-opus-4-6", "claude-opus-4", "claude-sonnet-4", "claude-haiku-4",
+            "claude-3-7-sonnet", "claude-3-5"
+    };
+    private static final ModelLimits[] LIMITS = {
+            new ModelLimits(1_048_576, 65_536), new ModelLimits(1_048_576, 65_536),
+            new ModelLimits(1_048_576, 8_192), new ModelLimits(1_048_576, 8_192),
+            new ModelLimits(400_000, 128_000), new ModelLimits(1_047_576, 32_768),
+            new ModelLimits(128_000, 16_384), new ModelLimits(200_000, 100_000),
+            new ModelLimits(200_000, 100_000), new ModelLimits(200_000, 100_000),
+            new ModelLimits(200_000, 64_000), new ModelLimits(200_000, 128_000),
+            new ModelLimits(200_000, 32_000), new ModelLimits(200_000, 64_000),
+            new ModelLimits(200_000, 64_000),
+            new ModelLimits(200_000, 64_000), new ModelLimits(200_000, 8_192)
+    };
+    private static final ModelLimits FALLBACK = new ModelLimits(32_768, 4_096, false);
+
+    public static ModelLimits forModel(String model) {
+        if (model == null) {
+            return FALLBACK;
+        }
+        String id = model.toLowerCase(Locale.US);
+        if (id.startsWith("models/")) {
+            id = id.substring("models/".length());
+        }
+        for (int i = 0; i < PREFIXES.length; i++) {
+            if (id.startsWith(PREFIXES[i])) {
+                return LIMITS[i];
+            }
+        }
+        return FALLBACK;
+    }
+
+    /**
+     * Output tokens to request per call: the model's window, capped so one reply stays short
+     * enough to arrive well within the request timeout.
+     */
+    public int requestOutputTokens() {
+        return Math.min(maxOutputTokens, GeminiConstants.MAX_OUTPUT_TOKENS_PER_REQUEST);
+    }
+}
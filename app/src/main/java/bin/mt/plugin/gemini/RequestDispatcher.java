@@ -0,0 +1,168 @@
+package bin.mt.plugin.gemini;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the requests of one batch concurrently and returns their outcomes in order.
+ *
+ * Requests run on a small shared pool. Every provider has an in-flight limit that holds
+ * across engine instances, so a concurrency of N never means more than N open requests to
+ * that provider. After a provider answers with a rate limit it gets one request at a time
+ * until {@link GeminiConstants#RATE_LIMIT_COOLDOWN_MS} has passed.
+ */
+public final class RequestDispatcher {
+
+    public interface Task<T> {
+        T call() throws IOException;
+    }
+
+    /**
+     * Outcome of one task: its value, or the exception it failed with.
+     */
+    public static final class Result<T> {
+        public final T value;
+        public final IOException error;
+
+        Result(T value, IOException error) {
+            this.value = value;
+            this.error = error;
+        }
+    }
+
+    private static final ThreadPoolExecutor EXECUTOR;
+
+    static {
+        final AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "TranslateKit-request-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        EXECUTOR = new ThreadPoolExecutor(GeminiConstants.MAX_CONCURRENT_REQUESTS_LIMIT,
+                GeminiConstants.MAX_CONCURRENT_REQUESTS_LIMIT, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), factory);
+        EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private static final Object LOCK = new Object();
+    private static final Map<String, Integer> IN_FLIGHT = new HashMap<>();
+    private static final Map<String, Long> COOLDOWN_UNTIL = new HashMap<>();
+
+    private RequestDispatcher() {
+    }
+
+    /**
+     * Run the tasks with at most {@code maxConcurrency} of them in flight for the provider.
+     * A single task runs on the calling thread.
+     */
+    public static <T> List<Result<T>> invokeAll(final String provider, int maxConcurrency, List<Task<T>> tasks)
+            throws IOException {
+        List<Result<T>> results = new ArrayList<>(tasks.size());
+        if (tasks.size() == 1) {
+            acquire(provider, maxConcurrency);
+            try {
+                results.add(new Result<T>(tasks.get(0).call(), null));
+            } catch (IOException e) {
+                results.add(new Result<T>(null, e));
+            } finally {
+                release(provider);
+            }
+            return results;
+        }
+
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (final Task<T> task : tasks) {
+                acquire(provider, maxConcurrency);
+                try {
+                    futures.add(EXECUTOR.submit(() -> {
+                        try {
+                            return task.call();
+                        } finally {
+                            release(provider);
+                        }
+                    }));
+                } catch (RuntimeException e) {
+                    release(provider);
+                    throw e;
+                }
+            }
+            for (Future<T> future : futures) {
+                try {
+                    results.add(new Result<T>(future.get(), null));
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        results.add(new Result<T>(null, (IOException) cause));
+                    } else if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else {
+                        throw new IOException("Request failed: " + cause, cause);
+                    }
+                }
+            }
+            return results;
+        } catch (InterruptedException e) {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+            Thread.currentThread().interrupt();
+            throw new IOException("Translation interrupted", e);
+        }
+    }
+
+    /**
+     * Limit the provider to one request at a time for the cool-down period.
+     */
+    public static void onRateLimited(String provider) {
+        synchronized (LOCK) {
+            COOLDOWN_UNTIL.put(provider, System.currentTimeMillis() + GeminiConstants.RATE_LIMIT_COOLDOWN_MS);
+        }
+    }
+
+    private static void acquire(String provider, int maxConcurrency) throws IOException {
+        synchronized (LOCK) {
+            while (true) {
+                long now = System.currentTimeMillis();
+                Long cooldownUntil = COOLDOWN_UNTIL.get(provider);
+                int limit = cooldownUntil != null && now < cooldownUntil ? 1 : Math.max(1, maxConcurrency);
+                Integer inFlight = IN_FLIGHT.get(provider);
+                int current = inFlight != null ? inFlight : 0;
+                if (current < limit) {
+                    IN_FLIGHT.put(provider, current + 1);
+                    return;
+                }
+                try {
+                    // Re-check when a request finishes or the cool-down may have ended
+                    LOCK.wait(cooldownUntil != null && now < cooldownUntil ? cooldownUntil - now : 0);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Translation interrupted", e);
+                }
+            }
+        }
+    }
+
+    private static void release(String provider) {
+        synchronized (LOCK) {
+            Integer inFlight = IN_FLIGHT.get(provider);
+            if (inFlight == null || inFlight <= 1) {
+                IN_FLIGHT.remove(provider);
+            } else {
+                IN_FLIGHT.put(provider, inFlight - 1);
+            }
+            LOCK.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package bin.mt.plugin.gemini;
+
+import android.content.SharedPreferences;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+
+/**
+ * Streamed single-text translation for the editor menus.
+ *
+ * Requests a server-sent event stream from the selected provider — Gemini
+ * {@code streamGenerateContent?alt=sse}, OpenAI and Claude with {@code stream: true} — and
+ * reports the translation to a listener as each chunk arrives, so the first words can be shown
+ * long before the reply is complete. An endpoint that ignores the request to stream and answers
+ * with a plain JSON reply is read as such, and the listener gets the whole text at once.
+ */
+public final class StreamingTranslator {
+
+    private static final int MAX_OUTPUT_TOKENS = 2048;
+    private static final double TEMPERATURE = 0.1;
+
+    /**
+     * Receives the translation so far. Called on the requesting thread.
+     */
+    public interface Listener {
+        void onText(String textSoFar);
+    }
+
+    private StreamingTranslator() {
+    }
+
+    /**
+     * Translate a prompt with the given engine, streaming the reply.
+     *
+     * @param engine       One of the {@code GeminiConstants.ENGINE_*} ids
+     * @param systemPrompt Instruction sent as the OpenAI and Claude system prompt; Gemini requests
+     *                     carry only the prompt
+     * @return The complete translation, trimmed
+     * @throws IOException If the key is missing, the request fails or the provider reports an error
+     */
+    public static String translate(String engine, String prompt, String systemPrompt, SharedPreferences prefs,
+                                   int timeout, Listener listener) throws IOException {
+        StringBuilder text = new StringBuilder();
+        try {
+            switch (engine) {
+                case GeminiConstants.ENGINE_OPENAI:
+                    streamOpenAI(prompt, systemPrompt, prefs, timeout, text, listener);
+                    break;
+                case GeminiConstants.ENGINE_CLAUDE:
+                    streamClaude(prompt, systemPrompt, prefs, timeout, text, listener);
+                    break;
+                case GeminiConstants.ENGINE_GEMINI:
+                default:
+                    streamGemini(prompt, systemPrompt, prefs, timeout, text, listener);
+                    break;
+            }
+        } catch (JSONException e) {
+            throw new IOException("Failed to parse streamed response: " + e.getMessage(), e);
+        }
+        String result = text.toString().trim();
+        if (result.isEmpty()) {
+            throw new IOException("Empty translation response");
+        }
+        return result;
+    }
+
+    private static void streamGemini(String prompt, String systemPrompt, SharedPreferences prefs, int timeout,
+                                     final StringBuilder text, final Listener listener)
+            throws IOException, JSONException {
+        String apiKey = prefs.getString(GeminiConstants.PREF_API_KEY, "");
+        String modelName = prefs.getString(GeminiConstants.PREF_MODEL_NAME, GeminiConstants.DEFAULT_MODEL);
+        if (apiKey == null || apiKey.trim().isEmpty()) {
+            throw new IOException("Gemini API key not configured");
+        }
+
+        JSONObject request = new JSONObject()
+                .put("contents", new JSONArray().put(new JSONObject()
+                        .put("role", "user")
+                        .put("parts", new JSONArray().put(new JSONObject().put("text", prompt)))))
+                .put("generationConfig", new JSONObject()
+                        .put("temperature", TEMPERATURE)
+                        .put("maxOutputTokens", MAX_OUTPUT_TOKENS));
+
+        String apiUrl = String.format("%s/%s:streamGenerateContent?alt=sse&key=%s",
+                GeminiConstants.API_BASE_URL, modelName, apiKey.trim());
+        JSONObject plain = GeminiHttpUtils.post(apiUrl)
+                .setTimeout(timeout)
+                .jsonBody(request)
+                .executeStream((event, data) -> {
+                    if (appendGeminiText(parse(data), text)) {
+                        listener.onText(text.toString());
+                    }
+                });
+        // A streamGenerateContent chunk and a complete reply have the same shape
+        if (plain != null && appendGeminiText(plain, text)) {
+            listener.onText(text.toString());
+        }
+    }
+
+    /**
+     * Append the answer text of a GenerateContentResponse.
+     *
+     * @return true if any text was appended
+     */
+    private static boolean appendGeminiText(JSONObject response, StringBuilder text) throws IOException {
+        throwIfError(response);
+        JSONObject feedback = response.optJSONObject("promptFeedback");
+        if (feedback != null && feedback.has("blockReason")) {
+            throw new IOException("Blocked by Gemini: " + feedback.optString("blockReason"));
+        }
+        JSONArray candidates = response.optJSONArray("candidates");
+        JSONObject candidate = candidates != null ? candidates.optJSONObject(0) : null;
+        JSONObject content = candidate != null ? candidate.optJSONObject("content") : null;
+        JSONArray parts = content != null ? content.optJSONArray("parts") : null;
+        if (parts == null) {
+            return false;
+        }
+        boolean changed = false;
+        for (int i = 0; i < parts.length(); i++) {
+            JSONObject part = parts.optJSONObject(i);
+            // Thinking models stream their thoughts as separate parts
+            if (part != null && !part.optBoolean("thought", false) && part.has("text")) {
+                text.append(part.optString("text"));
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static void streamOpenAI(String prompt, String systemPrompt, SharedPreferences prefs, int timeout,
+                                     final StringBuilder text, final Listener listener)
+            throws IOException, JSONException {
+        String apiKey = prefs.getString(GeminiConstants.PREF_OPENAI_API_KEY, "");
+        String model = prefs.getString(GeminiConstants.PREF_OPENAI_MODEL, GeminiConstants.DEFAULT_OPENAI_MODEL);
+        String endpoint = prefs.getString(GeminiConstants.PREF_OPENAI_ENDPOINT, GeminiConstants.DEFAULT_OPENAI_ENDPOINT);
+        if (apiKey == null || apiKey.trim().isEmpty()) {
+            throw new IOException("OpenAI API key not configured");
+        }
+
+        JSONObject request = new JSONObject()
+                .put("model", model)
+                .put("messages", new JSONArray()
+                        .put(new JSONObject().put("role", "system").put("content", systemPrompt))
+                        .put(new JSONObject().put("role", "user").put("content", prompt)))
+                .put("temperature", TEMPERATURE)
+                .put("max_tokens", MAX_OUTPUT_TOKENS)
+                .put("stream", true);
+
+        JSONObject plain = GeminiHttpUtils.post(endpoint)
+                .header("Authorization", "Bearer " + apiKey.trim())
+                .setTimeout(timeout)
+                .jsonBody(request)
+                .executeStream((event, data) -> {
+                    if ("[DONE]".equals(data.trim())) {
+                        return;
+                    }
+                    JSONObject chunk = parse(data);
+                    throwIfError(chunk);
+                    JSONArray choices = chunk.optJSONArray("choices");
+                    JSONObject choice = choices != null ? choices.optJSONObject(0) : null;
+                    JSONObject delta = choice != null ? choice.optJSONObject("delta") : null;
+                    String content = delta != null && !delta.isNull("content") ? delta.optString("content", "") : "";
+                    if (!content.isEmpty()) {
+                        text.append(content);
+                        listener.onText(text.toString());
+                    }
+                });
+        if (plain != null) {
+            throwIfError(plain);
+            JSONArray choices = plain.optJSONArray("choices");
+            JSONObject choice = choices != null ? choices.optJSONObject(0) : null;
+            JSONObject message = choice != null ? choice.optJSONObject("message") : null;
+            if (message != null && !message.isNull("content")) {
+                text.append(message.optString("content", ""));
+                listener.onText(text.toString());
+            }
+        }
+    }
+
+    private static void streamClaude(String prompt, String systemPrompt, SharedPreferences prefs, int timeout,
+                                     final StringBuilder text, final Listener listener)
+            throws IOException, JSONException {
+        String apiKey = prefs.getString(GeminiConstants.PREF_CLAUDE_API_KEY, "");
+        String model = prefs.getString(GeminiConstants.PREF_CLAUDE_MODEL, GeminiConstants.DEFAULT_CLAUDE_MODEL);
+        String endpoint = prefs.getString(GeminiConstants.PREF_CLAUDE_ENDPOINT, GeminiConstants.DEFAULT_CLAUDE_ENDPOINT);
+        if (apiKey == null || apiKey.trim().isEmpty()) {
+            throw new IOException("Claude API key not configured");
+        }
+
+        JSONObject request = new JSONObject()
+                .put("model", model)
+                .put("max_tokens", MAX_OUTPUT_TOKENS)
+                .put("system", systemPrompt)
+                .put("messages", new JSONArray().put(new JSONObject()
+                        .put("role", "user")
+                        .put("content", new JSONArray().put(new JSONObject()
+                                .put("type", "text")
+                                .put("text", prompt)))))
+                .put("stream", true);
+
+        JSONObject plain = GeminiHttpUtils.post(endpoint)
+                .header("x-api-key", apiKey.trim())
+                .header("anthropic-version", GeminiConstants.CLAUDE_API_VERSION)
+                .setTimeout(timeout)
+                .jsonBody(request)
+                .executeStream((event, data) -> {
+                    if ("error".equals(event)) {
+                        throwIfError(parse(data));
+                        throw new IOException("API Error: " + data);
+                    }
+                    if (!"content_block_delta".equals(event)) {
+                        return;
+                    }
+                    JSONObject delta = parse(data).optJSONObject("delta");
+                    if (delta != null && "text_delta".equals(delta.optString("type"))) {
+                        text.append(delta.optString("text", ""));
+                        listener.onText(text.toString());
+                    }
+                });
+        if (plain != null) {
+            throwIfError(plain);
+            JSONArray content = plain.optJSONArray("content");
+            for (int i = 0; content != null && i < content.length(); i++) {
+                JSONObject block = content.optJSONObject(i);
+                if (block != null && "text".equals(block.optString("type"))) {
+                    text.append(block.optString("text", ""));
+                }
+            }
+            listener.onText(text.toString());
+        }
+    }
+
+    private static JSONObject parse(String data) throws IOException {
+        try {
+            return new JSONObject(data);
+        } catch (JSONException e) {
+            throw new IOException("Failed to parse streamed event: " + e.getMessage(), e);
+        }
+    }
+
+    private static void throwIfError(JSONObject chunk) throws IOException {
+        JSONObject error = chunk.optJSONObject("error");
+        if (error != null) {
+            throw new IOException("API Error: " + error.optString("message", "Unknown error"));
+        }
+    }
+}
@@ -0,0 +1,360 @@
+package bin.mt.plugin.gemini;
+
+import android.util.Xml;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+
+/**
+ * Seeds the translation memory with existing human translations from an Android
+ * {@code res} directory.
+ *
+ * The default {@code values} folder is read as the source language; every
+ * {@code values-xx} folder whose qualifier is a plain locale is streamed with a pull
+ * parser and paired with the source entry of the same resource name. Only the source
+ * strings are held in memory, so multi-megabyte translation files import with flat heap
+ * use. Pairs are tokenized the way the engine tokenizes requests; a translation whose
+ * placeholders do not match its source is rejected rather than stored.
+ */
+public class StringsXmlImporter {
+
+    /**
+     * Counters for one import run.
+     */
+    public static class Result {
+        public int languages;
+        public int sourceEntries;
+        public int imported;
+        public int rejected;
+        public int orphaned;
+    }
+
+    private static final int FLUSH_INTERVAL = 2000;
+
+    private final TranslationMemory memory;
+    private final File fuzzyBaseDirectory;
+
+    /**
+     * @param memory             Translation memory receiving the pairs
+     * @param fuzzyBaseDirectory Directory of the fuzzy indexes to seed as well, or null
+     */
+    public StringsXmlImporter(TranslationMemory memory, File fuzzyBaseDirectory) {
+        this.memory = memory;
+        this.fuzzyBaseDirectory = fuzzyBaseDirectory;
+    }
+
+    /**
+     * Import every translated locale found in a {@code res} directory.
+     *
+     * @param resDirectory   The {@code res} directory (or the module directory containing it)
+     * @param sourceLanguage Language code of the default {@code values} folder
+     */
+    public Result importResDirectory(File resDirectory, String sourceLanguage) throws IOException {
+        File res = resDirectory;
+        if (!new File(res, "values").isDirectory() && new File(res, "res/values").isDirectory()) {
+            res = new File(res, "res");
+        }
+        File sourceDir = new File(res, "values");
+        if (!sourceDir.isDirectory()) {
+            throw new IOException("No values folder in " + resDirectory.getPath());
+        }
+
+        Map<String, String> sourceEntries = new HashMap<>();
+        for (File file : listXmlFiles(sourceDir)) {
+            readEntries(file, (name, text) -> sourceEntries.put(name, text));
+        }
+        if (sourceEntries.isEmpty()) {
+            throw new IOException("No string resources in " + sourceDir.getPath());
+        }
+
+        Result result = new Result();
+        result.sourceEntries = sourceEntries.size();
+        File[] folders = res.listFiles();
+        if (folders != null) {
+            Arrays.sort(folders);
+            for (File folder : folders) {
+                String targetLanguage = folder.isDirectory() ? languageForValuesFolder(folder.getName()) : null;
+                if (targetLanguage == null || targetLanguage.equals(sourceLanguage)) {
+                    continue;
+                }
+                importLanguage(folder, sourceEntries, sourceLanguage, targetLanguage, result);
+            }
+        }
+        memory.flush();
+        return result;
+    }
+
+    private void importLanguage(File folder, Map<String, String> sourceEntries, String sourceLanguage,
+                                String targetLanguage, Result result) throws IOException {
+        FuzzyIndex fuzzyIndex = fuzzyBaseDirectory != null
+                ? FuzzyIndex.open(fuzzyBaseDirectory, sourceLanguage, targetLanguage) : null;
+        int before = result.imported;
+        int[] pending = new int[1];
+        for (File file : listXmlFiles(folder)) {
+            readEntries(file, (name, text) -> {
+                String source = sourceEntries.get(name);
+                if (source == null) {
+                    result.orphaned++;
+                    return;
+                }
+                String[] pair = tokenizePair(source, text);
+                if (pair == null) {
+                    result.rejected++;
+                    return;
+                }
+                memory.put(TranslationMemory.buildReferenceKey(targetLanguage, pair[0]), pair[1]);
+                if (fuzzyIndex != null) {
+                    fuzzyIndex.add(pair[0], pair[1], TranslationMemory.REFERENCE_ORIGIN);
+                }
+                result.imported++;
+                if (++pending[0] >= FLUSH_INTERVAL) {
+                    memory.flush();
+                    pending[0] = 0;
+                }
+            });
+        }
+        if (fuzzyIndex != null) {
+            fuzzyIndex.flush();
+        }
+        if (result.imported > before) {
+            result.languages++;
+        }
+    }
+
+    /**
+     * Tokenize a source string and its translation with the same tokens, so the pair can be
+     * looked up and restored like an engine result.
+     *
+     * @return {tokenized source, tokenized translation}, or null when the translation drops,
+     *         duplicates or invents a placeholder, or is blank
+     */
+    static String[] tokenizePair(String source, String translation) {
+        if (source.trim().isEmpty() || translation.trim().isEmpty()) {
+            return null;
+        }
+        List<String> placeholders = new ArrayList<>();
+        Matcher matcher = GeminiTranslationEngine.PLACEHOLDER_PATTERN.matcher(source);
+        StringBuffer tokenizedSource = new StringBuffer();
+        while (matcher.find()) {
+            matcher.appendReplacement(tokenizedSource, "__PH" + placeholders.size() + "__");
+            placeholders.add(matcher.group());
+        }
+        matcher.appendTail(tokenizedSource);
+
+        boolean[] used = new boolean[placeholders.size()];
+        matcher = GeminiTranslationEngine.PLACEHOLDER_PATTERN.matcher(translation);
+        StringBuffer tokenizedTranslation = new StringBuffer();
+        while (matcher.find()) {
+            int index = -1;
+            for (int i = 0; i < placeholders.size(); i++) {
+                if (!used[i] && placeholders.get(i).equals(matcher.group())) {
+                    index = i;
+                    break;
+                }
+            }
+            if (index < 0) {
+                return null;
+            }
+            used[index] = true;
+            matcher.appendReplacement(tokenizedTranslation, "__PH" + index + "__");
+        }
+        matcher.appendTail(tokenizedTranslation);
+        for (boolean u : used) {
+            if (!u) {
+                return null;
+            }
+        }
+        return new String[]{tokenizedSource.toString(), tokenizedTranslation.toString()};
+    }
+
+    /**
+     * Map a resource folder name to the language code the engine receives.
+     *
+     * @return The language code, or null if the folder is not a plain locale folder
+     *         (e.g. {@code values}, {@code values-night}, {@code values-de-v21})
+     */
+    static String languageForValuesFolder(String folderName) {
+        if (!folderName.startsWith("values-")) {
+            return null;
+        }
+        String qualifier = folderName.substring("values-".length());
+        String language;
+        String region = null;
+        if (qualifier.startsWith("b+")) {
+            // BCP 47 form: b+sr+Latn, b+es+419
+            String[] parts = qualifier.substring(2).split("\\+");
+            language = parts[0];
+            if (parts.length > 2) {
+                return null;
+            }
+            if (parts.length == 2) {
+                region = parts[1];
+            }
+        } else {
+            String[] parts = qualifier.split("-");
+            language = parts[0];
+            if (parts.length > 2) {
+                return null;
+            }
+            if (parts.length == 2) {
+                if (!parts[1].matches("r[A-Z]{2}|r\\d{3}")) {
+                    return null;
+                }
+                region = parts[1].substring(1);
+            }
+        }
+        if (!language.matches("[a-z]{2,3}") || "car".equals(language)) {
+            return null;
+        }
+        language = GeminiTranslationEngine.normalizeLanguageCode(language);
+        if ("zh".equals(language)) {
+            // The engine distinguishes Chinese scripts by region
+            return "TW".equals(region) || "HK".equals(region) || "MO".equals(region) || "Hant".equals(region)
+                    ? "zh-TW" : "zh-CN";
+        }
+        return region == null ? language : language + "-" + region;
+    }
+
+    private interface EntryVisitor {
+        void visit(String name, String text) throws IOException;
+    }
+
+    private static List<File> listXmlFiles(File folder) {
+        List<File> files = new ArrayList<>();
+        File[] children = folder.listFiles();
+        if (children != null) {
+            Arrays.sort(children);
+            for (File child : children) {
+                if (child.isFile() && child.getName().toLowerCase(Locale.US).endsWith(".xml")) {
+                    files.add(child);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Stream the string, string-array and plurals entries of one resource file. Array items
+     * are named {@code name[index]} and plural items {@code name:quantity}; entries marked
+     * {@code translatable="false"} are skipped.
+     */
+    private static void readEntries(File file, EntryVisitor visitor) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            XmlPullParser parser = Xml.newPullParser();
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, false);
+            parser.setInput(in, null);
+            String arrayName = null;
+            int arrayIndex = 0;
+            int event;
+            while ((event = parser.next()) != XmlPullParser.END_DOCUMENT) {
+                if (event == XmlPullParser.END_TAG) {
+                    String tag = parser.getName();
+                    if ("string-array".equals(tag) || "plurals".equals(tag)) {
+                        arrayName = null;
+                    }
+                    continue;
+                }
+                if (event != XmlPullParser.START_TAG) {
+                    continue;
+                }
+                String tag = parser.getName();
+                boolean translatable = !"false".equals(parser.getAttributeValue(null, "translatable"));
+                switch (tag) {
+                    case "string": {
+                        String name = parser.getAttributeValue(null, "name");
+                        String text = readInnerText(parser);
+                        if (name != null && translatable) {
+                            visitor.visit(name, text);
+                        }
+                        break;
+                    }
+                    case "string-array":
+                    case "plurals":
+                        arrayName = translatable ? parser.getAttributeValue(null, "name") : null;
+                        arrayIndex = 0;
+                        if (arrayName == null) {
+                            skipElement(parser);
+                        }
+                        break;
+                    case "item":
+                        if (arrayName == null) {
+                            skipElement(parser);
+                            break;
+                        }
+                        String quantity = parser.getAttributeValue(null, "quantity");
+                        String name = quantity != null
+                                ? arrayName + ":" + quantity : arrayName + "[" + arrayIndex++ + "]";
+                        visitor.visit(name, readInnerText(parser));
+                        break;
+                    default:
+                        break;
+                }
+            }
+        } catch (XmlPullParserException e) {
+            throw new IOException("Malformed XML in " + file.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Read the content of the current element, keeping inline markup such as {@code <b>} or
+     * {@code <xliff:g>} as written so it is tokenized like the text MT Manager passes in.
+     */
+    private static String readInnerText(XmlPullParser parser) throws XmlPullParserException, IOException {
+        StringBuilder sb = new StringBuilder();
+        int depth = 1;
+        while (depth > 0) {
+            int event = parser.next();
+            switch (event) {
+                case XmlPullParser.TEXT:
+                    sb.append(parser.getText());
+                    break;
+                case XmlPullParser.START_TAG:
+                    depth++;
+                    sb.append('<').append(parser.getName());
+                    for (int i = 0; i < parser.getAttributeCount(); i++) {
+                        sb.append(' ').append(parser.getAttributeName(i))
+                                .append("=\"").append(parser.getAttributeValue(i)).append('"');
+                    }
+                    sb.append('>');
+                    break;
+                case XmlPullParser.END_TAG:
+                    if (--depth > 0) {
+                        sb.append("</").append(parser.getName()).append('>');
+                    }
+                    break;
+                case XmlPullParser.END_DOCUMENT:
+                    throw new XmlPullParserException("Unexpected end of document");
+                default:
+                    break;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void skipElement(XmlPullParser parser) throws XmlPullParserException, IOException {
+        int depth = 1;
+        while (depth > 0) {
+            int event = parser.next();
+            if (event == XmlPullParser.START_TAG) {
+                depth++;
+            } else if (event == XmlPullParser.END_TAG) {
+                depth--;
+            } else if (event == XmlPullParser.END_DOCUMENT) {
+                throw new XmlPullParserException("Unexpected end of document");
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package bin.mt.plugin.gemini;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Schema-constrained batch replies: an object whose {@code translations} array holds one
+ * {@code {id, text}} entry per numbered input item.
+ *
+ * The same shape is requested from every provider — as a Gemini {@code responseSchema}, an
+ * OpenAI {@code json_schema} response format, and the input schema of a Claude tool the model
+ * is forced to call — so one parser reads all of them.
+ *
+ * For multi-target requests every entry also carries one {@code text_<language>} field per
+ * additional target language next to {@code text}, which holds the job's own target.
+ */
+public final class StructuredBatchOutput {
+
+    public static final String TOOL_NAME = "submit_translations";
+    public static final String SCHEMA_NAME = "batch_translations";
+    private static final String EXTRA_TEXT_PREFIX = "text_";
+
+    // One complete flat entry of id and text fields, for salvaging cut-off replies
+    private static final Pattern ENTRY_PATTERN = Pattern.compile(
+            "\\{\\s*\"(?:id|text\\w*)\"\\s*:\\s*(?:\\d+|\"(?:[^\"\\\\]|\\\\.)*\")"
+                    + "(?:\\s*,\\s*\"(?:id|text\\w*)\"\\s*:\\s*(?:\\d+|\"(?:[^\"\\\\]|\\\\.)*\"))*\\s*}");
+
+    private StructuredBatchOutput() {
+    }
+
+    /**
+     * Field holding the translation into an additional target language, e.g. {@code text_pt_BR}.
+     */
+    public static String extraKey(String language) {
+        return EXTRA_TEXT_PREFIX + language.replace('-', '_');
+    }
+
+    /**
+     * JSON Schema of the reply, strict enough for OpenAI structured outputs and Claude tools.
+     */
+    public static JSONObject jsonSchema() throws JSONException {
+        return jsonSchema(Collections.<String>emptyList());
+    }
+
+    /**
+     * JSON Schema of a reply that also carries the given additional target languages.
+     */
+    public static JSONObject jsonSchema(List<String> extraTargets) throws JSONException {
+        JSONObject properties = new JSONObject()
+                .put("id", new JSONObject().put("type", "integer"))
+                .put("text", new JSONObject().put("type", "string"));
+        JSONArray required = new JSONArray().put("id").put("text");
+        for (String language : extraTargets) {
+            properties.put(extraKey(language), new JSONObject().put("type", "string"));
+            required.put(extraKey(language));
+        }
+        JSONObject item = new JSONObject()
+                .put("type", "object")
+                .put("properties", properties)
+                .put("required", required)
+                .put("additionalProperties", false);
+        return new JSONObject()
+                .put("type", "object")
+                .put("properties", new JSONObject()
+                        .put("translations", new JSONObject()
+                                .put("type", "array")
+                                .put("items", item)))
+                .put("required", new JSONArray().put("translations"))
+                .put("additionalProperties", false);
+    }
+
+    /**
+     * The reply schema in Gemini's OpenAPI subset, which has no {@code additionalProperties}
+     * and orders properties explicitly.
+     */
+    public static JSONObject geminiSchema() throws JSONException {
+        return geminiSchema(Collections.<String>emptyList());
+    }
+
+    /**
+     * Gemini reply schema that also carries the given additional target languages.
+     */
+    public static JSONObject geminiSchema(List<String> extraTargets) throws JSONException {
+        JSONObject properties = new JSONObject()
+                .put("id", new JSONObject().put("type", "INTEGER"))
+                .put("text", new JSONObject().put("type", "STRING"));
+        JSONArray required = new JSONArray().put("id").put("text");
+        for (String language : extraTargets) {
+            properties.put(extraKey(language), new JSONObject().put("type", "STRING"));
+            required.put(extraKey(language));
+        }
+        JSONObject item = new JSONObject()
+                .put("type", "OBJECT")
+                .put("properties", properties)
+                .put("required", required)
+                .put("propertyOrdering", required);
+        return new JSONObject()
+                .put("type", "OBJECT")
+                .put("properties", new JSONObject()
+                        .put("translations", new JSONObject()
+                                .put("type", "ARRAY")
+                                .put("items", item)))
+                .put("required", new JSONArray().put("translations"));
+    }
+
+    /**
+     * Read a structured reply into an array indexed by item (id 1 is index 0). Items the reply
+     * lacks stay null. A reply cut off mid-way still yields its complete entries.
+     *
+     * @return Translations by item, or null if the reply is not structured at all
+     */
+    public static String[] parse(String reply, int count) {
+        return parse(reply, count, Collections.<String>emptyList(), null);
+    }
+
+    /**
+     * Read a multi-target reply. Translations into {@code extraTargets.get(t)} go to
+     * {@code extraResults[t]}, indexed like the returned array.
+     */
+    public static String[] parse(String reply, int count, List<String> extraTargets, String[][] extraResults) {
+        String[] results = new String[count];
+        String trimmed = reply.trim();
+        try {
+            JSONArray entries;
+            if (trimmed.startsWith("[")) {
+                entries = new JSONArray(trimmed);
+            } else {
+                entries = new JSONObject(trimmed).optJSONArray("translations");
+            }
+            if (entries != null) {
+                boolean objects = false;
+                for (int i = 0; i < entries.length(); i++) {
+                    JSONObject entry = entries.optJSONObject(i);
+                    if (entry != null) {
+                        put(results, entry, extraTargets, extraResults);
+                        objects = true;
+                    }
+                }
+                // A numbered reply such as "[1] Hallo" also starts with a parsable array, of numbers
+                if (objects || entries.length() == 0) {
+                    return results;
+                }
+            }
+        } catch (JSONException ignored) {
+            // Fall through to salvaging complete entries
+        }
+        boolean found = false;
+        Matcher matcher = ENTRY_PATTERN.matcher(trimmed);
+        while (matcher.find()) {
+            try {
+                put(results, new JSONObject(matcher.group()), extraTargets, extraResults);
+                found = true;
+            } catch (JSONException ignored) {
+                // Skip a malformed entry
+            }
+        }
+        return found ? results : null;
+    }
+
+    private static void put(String[] results, JSONObject entry, List<String> extraTargets,
+                            String[][] extraResults) {
+        int index = entry.optInt("id", 0) - 1;
+        if (index < 0 || index >= results.length) {
+            return;
+        }
+        String text = entry.optString("text", "").trim();
+        if (!text.isEmpty()) {
+            results[index] = text;
+        }
+        for (int t = 0; t < extraTargets.size(); t++) {
+            String extra = entry.optString(extraKey(extraTargets.get(t)), "").trim();
+            if (!extra.isEmpty()) {
+                extraResults[t][index] = extra;
+            }
+        }
+    }
+}
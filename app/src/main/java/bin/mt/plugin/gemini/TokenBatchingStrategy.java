@@ -0,0 +1,145 @@
+package bin.mt.plugin.gemini;
+
+import bin.mt.plugin.api.translation.BatchTranslationEngine;
+
+/**
+ * Batching strategy that sizes batches by estimated tokens instead of characters.
+ *
+ * A batch is closed when the estimated reply would no longer fit into a safe share of the
+ * model's output budget, or the prompt (fixed instructions plus items) would no longer fit
+ * into the context window next to that reply. Reply size is the items' source tokens scaled
+ * by the language pair's {@link TokenEstimator#outputRatio output ratio}; until the pair is
+ * known a conservative ratio is assumed. An optional item count and character cap still
+ * apply, and the first item of a batch is always accepted. Multi-target requests multiply the
+ * reply by the number of target languages. The item count may be changed
+ * between batches, e.g. by {@link AdaptiveBatchSize}.
+ *
+ * With more than one request per batch every limit is multiplied accordingly; the engine
+ * then packs the batch into requests using one {@link #forSingleRequest()} copy per request
+ * and sends them concurrently.
+ */
+public class TokenBatchingStrategy implements BatchTranslationEngine.BatchingStrategy {
+
+    private static final double UNKNOWN_PAIR_RATIO = 1.6;
+
+    private volatile int maxCount;
+    private final int maxChars;
+    private final int maxInputTokens;
+    private final int maxOutputTokens;
+    private final int requests;
+    private volatile double outputRatio = UNKNOWN_PAIR_RATIO;
+    private volatile int targetCount = 1;
+
+    private int count;
+    private int chars;
+    private int inputTokens;
+    private double outputTokens;
+
+    /**
+     * @param maxCount          Maximum items per batch
+     * @param maxChars          Optional cap on total characters, 0 for none
+     * @param limits            Limits of the model the batches are sent to
+     * @param fixedPromptTokens Tokens of the instructions sent with every batch
+     * @param requests          Requests a batch may be split into, each within the limits
+     */
+    public TokenBatchingStrategy(int maxCount, int maxChars, ModelLimits limits, int fixedPromptTokens,
+                                 int requests) {
+        this(maxCount, maxChars,
+                Math.max(0, limits.contextTokens - limits.requestOutputTokens() - fixedPromptTokens),
+                (int) (limits.requestOutputTokens() * GeminiConstants.BATCH_OUTPUT_SAFETY),
+                Math.max(1, requests));
+    }
+
+    private TokenBatchingStrategy(int maxCount, int maxChars, int maxInputTokens, int maxOutputTokens,
+                                  int requests) {
+        this.maxCount = maxCount;
+        this.maxChars = maxChars;
+        this.maxInputTokens = maxInputTokens;
+        this.maxOutputTokens = maxOutputTokens;
+        this.requests = requests;
+    }
+
+    /**
+     * A fresh strategy with the same per-request limits and language pair, for splitting a
+     * batch into the requests it is sent as.
+     */
+    public TokenBatchingStrategy forSingleRequest() {
+        TokenBatchingStrategy single = new TokenBatchingStrategy(maxCount, maxChars, maxInputTokens,
+                maxOutputTokens, 1);
+        single.outputRatio = outputRatio;
+        single.targetCount = targetCount;
+        return single;
+    }
+
+    /**
+     * Set the language pair of the running job so replies are sized for its target language.
+     */
+    public void setLanguages(String sourceLanguage, String targetLanguage) {
+        outputRatio = targetLanguage != null
+                ? TokenEstimator.outputRatio(sourceLanguage, targetLanguage) : UNKNOWN_PAIR_RATIO;
+    }
+
+    /**
+     * Set the number of target languages each item is translated into per request, which
+     * multiplies the reply size.
+     */
+    public void setTargetCount(int targetCount) {
+        this.targetCount = Math.max(1, targetCount);
+    }
+
+    /**
+     * Set the item count per request.
+     */
+    public void setMaxCount(int maxCount) {
+        this.maxCount = maxCount;
+    }
+
+    @Override
+    public void reset() {
+        count = 0;
+        chars = 0;
+        inputTokens = 0;
+        outputTokens = 0;
+    }
+
+    @Override
+    public boolean tryAdd(String text) {
+        if (!fits(text)) {
+            return false;
+        }
+        count++;
+        chars += text != null ? text.length() : 0;
+        inputTokens += inputTokens(text);
+        outputTokens += replyTokens(text);
+        return true;
+    }
+
+    /**
+     * Whether {@link #tryAdd} would accept the text, without adding it.
+     */
+    public boolean fits(String text) {
+        if (count == 0) {
+            return true;
+        }
+        int length = text != null ? text.length() : 0;
+        if (maxCount > 0 && count >= (long) maxCount * requests) return false;
+        if (maxChars > 0 && chars + length > (long) maxChars * requests) return false;
+        if (inputTokens + inputTokens(text) > (long) maxInputTokens * requests) return false;
+        return outputTokens + replyTokens(text) <= (double) maxOutputTokens * requests;
+    }
+
+    /**
+     * Estimated prompt tokens accepted so far.
+     */
+    public int getInputTokens() {
+        return inputTokens;
+    }
+
+    private static int inputTokens(String text) {
+        return TokenEstimator.estimateTokens(text) + TokenEstimator.ITEM_OVERHEAD_TOKENS;
+    }
+
+    private double replyTokens(String text) {
+        return (TokenEstimator.estimateTokens(text) * outputRatio + TokenEstimator.ITEM_OVERHEAD_TOKENS) * targetCount;
+    }
+}
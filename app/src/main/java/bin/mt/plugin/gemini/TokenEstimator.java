@@ -0,0 +1,108 @@
+package bin.mt.plugin.gemini;
+
+import java.util.Locale;
+
+/**
+ * Offline estimate of LLM token counts.
+ *
+ * Tokenizers pack several Latin characters into one token but often need one or more tokens
+ * per CJK character and several per emoji, so {@code String.length()} is a poor proxy for
+ * cost. Each code point is weighted by its script with ratios typical of current BPE
+ * tokenizers; the result errs slightly high so batches stay within limits.
+ */
+public final class TokenEstimator {
+
+    /** Tokens the [N] prefix and line break add per batch item, in the prompt and the reply */
+    public static final int ITEM_OVERHEAD_TOKENS = 4;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimateTokens(CharSequence text) {
+        if (text == null || text.length() == 0) {
+            return 0;
+        }
+        double tokens = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = Character.codePointAt(text, i);
+            tokens += weight(codePoint);
+            i += Character.charCount(codePoint);
+        }
+        return (int) Math.ceil(tokens);
+    }
+
+    /**
+     * Ratio of reply tokens to source tokens when translating between two languages: the
+     * target's token density relative to the source's. An unknown or {@code auto} source
+     * counts as English.
+     */
+    public static double outputRatio(String sourceLanguage, String targetLanguage) {
+        double ratio = languageDensity(targetLanguage) / languageDensity(sourceLanguage);
+        return Math.max(0.6, Math.min(2.5, ratio));
+    }
+
+    private static double weight(int codePoint) {
+        if (codePoint < 0x80) {
+            if (Character.isLetterOrDigit(codePoint)) return 0.25;
+            if (codePoint == ' ') return 0.1;
+            return 0.5; // punctuation, control characters and line breaks
+        }
+        if (codePoint < 0x0250) return 0.5;                                  // Latin-1, Latin Extended
+        if (codePoint >= 0x0370 && codePoint < 0x0530) return 0.4;           // Greek, Cyrillic
+        if (codePoint >= 0x0530 && codePoint < 0x0780) return 0.5;           // Armenian, Hebrew, Arabic
+        if (codePoint >= 0x0900 && codePoint < 0x1100) return 0.8;           // Indic, Thai, Lao, Myanmar, Georgian
+        if (codePoint >= 0x1100 && codePoint < 0x1200) return 0.9;           // Hangul Jamo
+        if (codePoint >= 0x1E00 && codePoint < 0x1F00) return 0.5;           // Latin Extended Additional (Vietnamese)
+        if (codePoint == 0x200D || codePoint == 0xFE0F) return 1.0;          // emoji joiners and selectors
+        if (codePoint >= 0x2600 && codePoint < 0x27C0) return 2.0;          // dingbats, misc symbols
+        if (codePoint >= 0x3000 && codePoint < 0x3040) return 1.0;           // CJK punctuation
+        if (codePoint >= 0x3040 && codePoint < 0x3100) return 0.8;           // Hiragana, Katakana
+        if (codePoint >= 0x3130 && codePoint < 0x3190) return 0.9;           // Hangul compatibility Jamo
+        if (codePoint >= 0x3400 && codePoint < 0xA000) return 1.1;           // CJK ideographs
+        if (codePoint >= 0xAC00 && codePoint < 0xD7B0) return 0.9;           // Hangul syllables
+        if (codePoint >= 0xF900 && codePoint < 0xFB00) return 1.1;           // CJK compatibility ideographs
+        if (codePoint >= 0xFB50 && codePoint < 0xFF00) return 0.5;           // Arabic presentation forms
+        if (codePoint >= 0xFF00 && codePoint < 0xFFF0) return 1.0;           // fullwidth forms
+        if (codePoint >= 0x1F000 && codePoint < 0x1FB00) return 2.5;         // emoji
+        if (codePoint >= 0x20000) return 1.5;                                // CJK extension planes
+        return 1.0;
+    }
+
+    /**
+     * Tokens a language typically needs for the content of one English token.
+     */
+    private static double languageDensity(String language) {
+        if (language == null || "auto".equals(language)) {
+            return 1.0;
+        }
+        String base = language.toLowerCase(Locale.US);
+        int dash = base.indexOf('-');
+        if (dash > 0) {
+            base = base.substring(0, dash);
+        }
+        switch (base) {
+            case "en":
+                return 1.0;
+            case "es": case "fr": case "it": case "pt": case "nl": case "sv": case "da": case "no":
+            case "nb": case "ro": case "ca": case "id": case "ms":
+                return 1.3;
+            case "de": case "pl": case "cs": case "sk": case "tr": case "hu": case "fi": case "vi":
+            case "hr": case "sl": case "lt": case "lv": case "et":
+                return 1.45;
+            case "zh":
+                return 1.2;
+            case "ja":
+                return 1.4;
+            case "ko":
+                return 1.5;
+            case "ru": case "uk": case "bg": case "sr": case "be": case "el": case "kk":
+                return 1.6;
+            case "ar": case "he": case "fa": case "ur":
+                return 1.7;
+            case "hi": case "bn": case "ta": case "te": case "mr": case "th": case "km": case "my":
+                return 2.5;
+            default:
+                return 1.6;
+        }
+    }
+}
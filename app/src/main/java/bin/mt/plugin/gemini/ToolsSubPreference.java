@@ -1,11 +1,21 @@
 package bin.mt.plugin.gemini;
 
 import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
 import android.os.SystemClock;
 import android.text.format.DateFormat;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
@@ -19,17 +29,20 @@ import bin.mt.plugin.api.ui.PluginView;
 import bin.mt.plugin.api.LocalString;
 import bin.mt.plugin.api.PluginContext;
 import bin.mt.plugin.api.preference.PluginPreference;
+import bin.mt.plugin.api.ui.dialog.LoadingDialog;
+import bin.mt.plugin.cache.TieredStore;
 
 /**
  * Sub-preference screen for Tools & Diagnostics.
  * Contains: Provider Status dashboard, Interactive Provider Test,
- * View Logs, Debug Logging toggle, and hidden Debug Tools menu.
+ * View Logs, Debug Logging toggle, strings.xml import, and hidden Debug Tools menu.
  */
 public class ToolsSubPreference implements PluginPreference {
 
     private PluginContext context;
     private SharedPreferences preferences;
     private final Map<String, ProviderStatus> providerStatusCache = new HashMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
     private static final Pattern PATTERN_GEMINI_API_KEY = Pattern.compile(GeminiConstants.API_KEY_PATTERN);
     private static final Pattern PATTERN_OPENAI_API_KEY = Pattern.compile(GeminiConstants.OPENAI_API_KEY_PATTERN);
@@ -109,6 +122,11 @@ public class ToolsSubPreference implements PluginPreference {
                 .summary("Restore settings from JSON preset")
                 .onClick((pluginUI, item) -> showImportDialog(pluginUI));
 
+        // ==================== Import strings.xml Translations ====================
+        builder.addText("Import strings.xml Translations")
+                .summary("Seed the translation memory from values-xx folders")
+                .onClick((pluginUI, item) -> showStringsImportDialog(pluginUI));
+
         // ==================== Hidden Debug Access ====================
         builder.addText("Plugin Version")
             .summary("v" + GeminiConstants.PLUGIN_VERSION_NAME)
@@ -138,6 +156,16 @@ public class ToolsSubPreference implements PluginPreference {
             GeminiConstants.PREF_BATCH_ENABLED,
             GeminiConstants.PREF_BATCH_SIZE,
             GeminiConstants.PREF_BATCH_MAX_CHARS,
+            GeminiConstants.PREF_ADAPTIVE_BATCH,
+            GeminiConstants.PREF_MAX_CONCURRENT_REQUESTS,
+            GeminiConstants.PREF_STRUCTURED_OUTPUT,
+            GeminiConstants.PREF_STREAM_BATCH,
+            GeminiConstants.PREF_MAX_RESPONSE_KB,
+            GeminiConstants.PREF_EXTRA_TARGET_LANGUAGES,
+            GeminiConstants.PREF_TRANSLATION_MEMORY,
+            GeminiConstants.PREF_FUZZY_MATCH,
+            GeminiConstants.PREF_FUZZY_REUSE_THRESHOLD,
+            GeminiConstants.PREF_CACHE_HEAP_BUDGET,
             GeminiConstants.PREF_CONTEXT_APP_NAME,
             GeminiConstants.PREF_CONTEXT_APP_TYPE,
             GeminiConstants.PREF_CONTEXT_AUDIENCE,
@@ -155,6 +183,11 @@ public class ToolsSubPreference implements PluginPreference {
     private static final Set<String> BOOLEAN_KEYS = new HashSet<>(Arrays.asList(
             GeminiConstants.PREF_ENABLE_CACHE,
             GeminiConstants.PREF_BATCH_ENABLED,
+            GeminiConstants.PREF_ADAPTIVE_BATCH,
+            GeminiConstants.PREF_STRUCTURED_OUTPUT,
+            GeminiConstants.PREF_STREAM_BATCH,
+            GeminiConstants.PREF_TRANSLATION_MEMORY,
+            GeminiConstants.PREF_FUZZY_MATCH,
             GeminiConstants.PREF_ENABLE_DEBUG
     ));
 
@@ -263,6 +296,89 @@ public class ToolsSubPreference implements PluginPreference {
         }
     }
 
+    // ==================== strings.xml Import ====================
+
+    private void showStringsImportDialog(bin.mt.plugin.api.ui.PluginUI pluginUI) {
+        if (!preferences.getBoolean(GeminiConstants.PREF_TRANSLATION_MEMORY, GeminiConstants.DEFAULT_TRANSLATION_MEMORY)) {
+            context.showToast("Enable Translation Memory first");
+            return;
+        }
+        PluginView dialogView = pluginUI.buildVerticalLayout()
+                .addTextView().text("Path of the res folder (or the module containing it):")
+                .textColor(GeminiColorTokens.getSecondaryTextColor(pluginUI))
+                .textSize(13)
+                .addEditBox("resPath").hint("/sdcard/MyApp/app/src/main/res")
+                .addTextView().text("Language of the default values folder:")
+                .textColor(GeminiColorTokens.getSecondaryTextColor(pluginUI))
+                .textSize(13).paddingTopDp(8)
+                .addEditBox("sourceLanguage").text("en")
+                .build();
+
+        pluginUI.buildDialog()
+                .setTitle("Import strings.xml Translations")
+                .setView(dialogView)
+                .setPositiveButton("Import", (dialog, which) -> {
+                    PluginEditText pathText = dialogView.requireViewById("resPath");
+                    PluginEditText languageText = dialogView.requireViewById("sourceLanguage");
+                    String path = pathText.getText().toString().trim();
+                    String sourceLanguage = languageText.getText().toString().trim();
+                    if (path.isEmpty()) {
+                        context.showToast("No path provided");
+                        return;
+                    }
+                    runStringsImport(pluginUI, new File(path), sourceLanguage.isEmpty() ? "en" : sourceLanguage);
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void runStringsImport(bin.mt.plugin.api.ui.PluginUI pluginUI, File resDirectory, String sourceLanguage) {
+        LoadingDialog loadingDialog = new LoadingDialog(pluginUI)
+                .setMessage("Importing...")
+                .setSecondaryMessage(resDirectory.getPath())
+                .show();
+        boolean seedFuzzy = preferences.getBoolean(GeminiConstants.PREF_FUZZY_MATCH, GeminiConstants.DEFAULT_FUZZY_MATCH);
+
+        new Thread(() -> {
+            try {
+                File filesDir = context.getFilesDir();
+                TranslationMemory memory = TranslationMemory.open(filesDir);
+                StringsXmlImporter.Result result = new StringsXmlImporter(memory, seedFuzzy ? filesDir : null)
+                        .importResDirectory(resDirectory, GeminiTranslationEngine.normalizeLanguageCode(sourceLanguage));
+                String message = "Languages: " + result.languages
+                        + "\nSource strings: " + result.sourceEntries
+                        + "\nImported translations: " + result.imported
+                        + "\nRejected (placeholder mismatch): " + result.rejected
+                        + "\nWithout source string: " + result.orphaned;
+                runOnMainThread(() -> {
+                    loadingDialog.dismiss();
+                    pluginUI.buildDialog()
+                            .setTitle(result.imported > 0 ? "✅ Import Complete" : "Nothing Imported")
+                            .setMessage(message)
+                            .setPositiveButton("{ok}", null)
+                            .show();
+                });
+            } catch (IOException e) {
+                runOnMainThread(() -> {
+                    loadingDialog.dismiss();
+                    pluginUI.buildDialog()
+                            .setTitle("❌ Import Failed")
+                            .setMessage("Error: " + e.getMessage())
+                            .setPositiveButton("{ok}", null)
+                            .show();
+                });
+            }
+        }).start();
+    }
+
+    private void runOnMainThread(Runnable runnable) {
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            runnable.run();
+        } else {
+            mainHandler.post(runnable);
+        }
+    }
+
     // ==================== Dashboard Dialog ====================
 
     private void showDashboardCard(bin.mt.plugin.api.ui.PluginUI pluginUI) {
@@ -475,8 +591,16 @@ public class ToolsSubPreference implements PluginPreference {
                     .bold().textColor(primaryTextColor)
                 .addTextView().text(buildCacheControlHint(disableCache)).paddingTopDp(4).textColor(secondaryTextColor)
             )
+            .addTextView().text("Translation Cache").bold().textSize(16).paddingTopDp(8).textColor(primaryTextColor)
+            .addVerticalLayout().paddingDp(12).backgroundColor(cardColor).children(section -> section
+                .addTextView().text("Translation memory size, hit ratios and savings per language pair.")
+                    .textColor(secondaryTextColor)
+                .addButton("cacheDashboard").text("Open Cache Dashboard").widthMatchParent().marginTopDp(8)
+            )
             .build();
 
+        view.requireViewById("cacheDashboard").setOnClickListener(button -> loadCacheDashboard(pluginUI));
+
         pluginUI.buildDialog()
                 .setTitle("Debug Tools")
                 .setView(view)
@@ -496,6 +620,255 @@ public class ToolsSubPreference implements PluginPreference {
                 .show();
     }
 
+    // ==================== Translation Cache Dashboard ====================
+
+    private void loadCacheDashboard(bin.mt.plugin.api.ui.PluginUI pluginUI) {
+        LoadingDialog loadingDialog = new LoadingDialog(pluginUI)
+                .setMessage("Reading translation cache...")
+                .show();
+        new Thread(() -> {
+            try {
+                File filesDir = context.getFilesDir();
+                TranslationMemory memory = TranslationMemory.open(filesDir);
+                List<TranslationMemory.PairSummary> pairs = memory.summarizePairs();
+                int failures = FailureMemory.open(filesDir).size();
+                runOnMainThread(() -> {
+                    loadingDialog.dismiss();
+                    showCacheDashboard(pluginUI, memory, pairs, failures);
+                });
+            } catch (IOException e) {
+                runOnMainThread(() -> {
+                    loadingDialog.dismiss();
+                    context.showToast("Translation cache unavailable: " + e.getMessage());
+                });
+            }
+        }).start();
+    }
+
+    private void showCacheDashboard(bin.mt.plugin.api.ui.PluginUI pluginUI, TranslationMemory memory,
+                                    List<TranslationMemory.PairSummary> pairs, int failures) {
+        int primaryTextColor = GeminiColorTokens.getPrimaryTextColor(pluginUI);
+        int secondaryTextColor = GeminiColorTokens.getSecondaryTextColor(pluginUI);
+        int cardColor = GeminiColorTokens.getCardBackgroundColor(pluginUI);
+
+        TieredStore.Stats heap = memory.getStats();
+        String storage = "Entries: " + memory.size()
+                + "\nOn disk: " + formatBytes(memory.getDiskBytes())
+                + " (reclaimable " + formatBytes(memory.getGarbageBytes()) + ")"
+                + "\nHeap: " + formatBytes(heap.heapBytes) + " of " + formatBytes(heap.maxHeapBytes)
+                + ", " + heap.heapEntries + " entries"
+                + "\nEvictions: " + heap.evictions + " (" + formatBytes(heap.evictedBytes) + ")"
+                + "\nNegative cache: " + failures + " strings";
+
+        StringBuilder pairText = new StringBuilder();
+        for (TranslationMemory.PairSummary pair : pairs) {
+            if (pairText.length() > 0) pairText.append('\n');
+            pairText.append(formatPair(pair)).append(": ").append(pair.entries);
+        }
+
+        List<CacheStatistics.Row> rows = CacheStatistics.load(preferences);
+        StringBuilder ratioText = new StringBuilder();
+        long callsSaved = 0;
+        long tokensSaved = 0;
+        for (CacheStatistics.Row row : rows) {
+            if (ratioText.length() > 0) ratioText.append('\n');
+            ratioText.append(String.format(Locale.US, "%s %s → %s: %.0f%% (%d/%d)",
+                    row.engine, row.sourceLanguage, row.targetLanguage,
+                    row.hitRatio() * 100, row.hits, row.hits + row.misses));
+            callsSaved += row.callsSaved;
+            tokensSaved += row.tokensSaved;
+        }
+        String savings = "API calls saved: " + callsSaved
+                + "\nTokens saved: ~" + tokensSaved;
+
+        PluginView view = pluginUI
+            .buildVerticalLayout()
+            .addTextView().text("Storage").bold().textSize(16).textColor(primaryTextColor)
+            .addVerticalLayout().paddingDp(12).marginTopDp(8).backgroundColor(cardColor).children(section -> section
+                .addTextView().text(storage).textColor(secondaryTextColor)
+            )
+            .addTextView().text("Entries per Language Pair").bold().textSize(16).paddingTopDp(12).textColor(primaryTextColor)
+            .addVerticalLayout().paddingDp(12).marginTopDp(8).backgroundColor(cardColor).children(section -> section
+                .addTextView().text(pairText.length() > 0 ? pairText.toString() : "No entries yet")
+                    .textColor(secondaryTextColor)
+            )
+            .addTextView().text("Hit Ratio").bold().textSize(16).paddingTopDp(12).textColor(primaryTextColor)
+            .addVerticalLayout().paddingDp(12).marginTopDp(8).backgroundColor(cardColor).children(section -> section
+                .addTextView().text(ratioText.length() > 0 ? ratioText.toString() : "No lookups recorded yet")
+                    .textColor(secondaryTextColor)
+                .addTextView().text(savings).paddingTopDp(8).textColor(primaryTextColor)
+            )
+            .build();
+
+        pluginUI.buildDialog()
+                .setTitle("Cache Dashboard")
+                .setView(view)
+                .setPositiveButton("{close}", null)
+                .setNegativeButton("Compact", (dialog, which) -> compactTranslationCache(pluginUI, memory))
+                .setNeutralButton("More", (dialog, which) -> showCacheActions(pluginUI, memory, pairs))
+                .show();
+    }
+
+    private void showCacheActions(bin.mt.plugin.api.ui.PluginUI pluginUI, TranslationMemory memory,
+                                  List<TranslationMemory.PairSummary> pairs) {
+        CharSequence[] actions = {"Clear Language Pair", "Export as TSV", "Reset Statistics"};
+        pluginUI.buildDialog()
+                .setTitle("Cache Actions")
+                .setItems(actions, (dialog, which) -> {
+                    dialog.dismiss();
+                    switch (which) {
+                        case 0:
+                            showClearPairDialog(pluginUI, memory, pairs);
+                            break;
+                        case 1:
+                            showCacheExportDialog(pluginUI, memory);
+                            break;
+                        default:
+                            CacheStatistics.clear(preferences, null, null);
+                            context.showToast("Cache statistics reset");
+                            break;
+                    }
+                })
+                .setNegativeButton("{cancel}", null)
+                .show();
+    }
+
+    private void showClearPairDialog(bin.mt.plugin.api.ui.PluginUI pluginUI, TranslationMemory memory,
+                                     List<TranslationMemory.PairSummary> pairs) {
+        if (pairs.isEmpty()) {
+            context.showToast("Translation memory is empty");
+            return;
+        }
+        CharSequence[] labels = new CharSequence[pairs.size()];
+        for (int i = 0; i < pairs.size(); i++) {
+            labels[i] = formatPair(pairs.get(i)) + " (" + pairs.get(i).entries + ")";
+        }
+        pluginUI.buildDialog()
+                .setTitle("Clear Language Pair")
+                .setItems(labels, (dialog, which) -> {
+                    dialog.dismiss();
+                    TranslationMemory.PairSummary pair = pairs.get(which);
+                    pluginUI.buildDialog()
+                            .setTitle("Clear " + formatPair(pair) + "?")
+                            .setMessage(pair.entries + " cached translations will be removed.")
+                            .setPositiveButton("Clear", (confirm, button) -> clearLanguagePair(pluginUI, memory, pair))
+                            .setNegativeButton("{cancel}", null)
+                            .show();
+                })
+                .setNegativeButton("{cancel}", null)
+                .show();
+    }
+
+    private void clearLanguagePair(bin.mt.plugin.api.ui.PluginUI pluginUI, TranslationMemory memory,
+                                   TranslationMemory.PairSummary pair) {
+        LoadingDialog loadingDialog = new LoadingDialog(pluginUI)
+                .setMessage("Clearing " + formatPair(pair) + "...")
+                .show();
+        new Thread(() -> {
+            try {
+                int removed = memory.removeLanguagePair(pair.sourceLanguage, pair.targetLanguage);
+                if (pair.sourceLanguage != null) {
+                    FuzzyIndex.delete(context.getFilesDir(), pair.sourceLanguage, pair.targetLanguage);
+                    CacheStatistics.clear(preferences, pair.sourceLanguage, pair.targetLanguage);
+                }
+                runOnMainThread(() -> {
+                    loadingDialog.dismiss();
+                    context.showToast("Removed " + removed + " entries");
+                });
+            } catch (IOException e) {
+                runOnMainThread(() -> {
+                    loadingDialog.dismiss();
+                    context.showToast("Clear failed: " + e.getMessage());
+                });
+            }
+        }).start();
+    }
+
+    private void compactTranslationCache(bin.mt.plugin.api.ui.PluginUI pluginUI, TranslationMemory memory) {
+        LoadingDialog loadingDialog = new LoadingDialog(pluginUI)
+                .setMessage("Compacting...")
+                .show();
+        new Thread(() -> {
+            try {
+                long before = memory.getDiskBytes();
+                memory.compact();
+                long reclaimed = before - memory.getDiskBytes();
+                runOnMainThread(() -> {
+                    loadingDialog.dismiss();
+                    context.showToast("Reclaimed " + formatBytes(Math.max(0, reclaimed)));
+                });
+            } catch (IOException e) {
+                runOnMainThread(() -> {
+                    loadingDialog.dismiss();
+                    context.showToast("Compaction failed: " + e.getMessage());
+                });
+            }
+        }).start();
+    }
+
+    private void showCacheExportDialog(bin.mt.plugin.api.ui.PluginUI pluginUI, TranslationMemory memory) {
+        PluginView dialogView = pluginUI.buildVerticalLayout()
+                .addTextView().text("Export file path:")
+                .textColor(GeminiColorTokens.getSecondaryTextColor(pluginUI))
+                .textSize(13)
+                .addEditBox("exportPath").text("/sdcard/TranslateKit/translation_memory.tsv")
+                .build();
+
+        pluginUI.buildDialog()
+                .setTitle("Export Translation Memory")
+                .setView(dialogView)
+                .setPositiveButton("Export", (dialog, which) -> {
+                    PluginEditText pathText = dialogView.requireViewById("exportPath");
+                    String path = pathText.getText().toString().trim();
+                    if (path.isEmpty()) {
+                        context.showToast("No path provided");
+                        return;
+                    }
+                    exportTranslationCache(pluginUI, memory, new File(path));
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void exportTranslationCache(bin.mt.plugin.api.ui.PluginUI pluginUI, TranslationMemory memory, File file) {
+        LoadingDialog loadingDialog = new LoadingDialog(pluginUI)
+                .setMessage("Exporting...")
+                .setSecondaryMessage(file.getPath())
+                .show();
+        new Thread(() -> {
+            try {
+                File parent = file.getParentFile();
+                if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+                    throw new IOException("Cannot create " + parent.getPath());
+                }
+                int exported;
+                try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                        new FileOutputStream(file), StandardCharsets.UTF_8))) {
+                    exported = memory.export(writer);
+                }
+                runOnMainThread(() -> {
+                    loadingDialog.dismiss();
+                    context.showToast("Exported " + exported + " entries");
+                });
+            } catch (IOException e) {
+                runOnMainThread(() -> {
+                    loadingDialog.dismiss();
+                    context.showToast("Export failed: " + e.getMessage());
+                });
+            }
+        }).start();
+    }
+
+    private static String formatPair(TranslationMemory.PairSummary pair) {
+        return (pair.sourceLanguage != null ? pair.sourceLanguage : "imported") + " → " + pair.targetLanguage;
+    }
+
+    private static String formatBytes(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format(Locale.US, "%.1f KB", bytes / 1024.0);
+        return String.format(Locale.US, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+
     // ==================== Helper Methods ====================
 
     private String getActiveProviderName() {
@@ -2,6 +2,7 @@ package bin.mt.plugin.gemini;
 
 import androidx.annotation.Nullable;
 
+import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
 
@@ -223,17 +224,90 @@ public class TranslationDebugLogger {
         }
 
         public void logPreprocess(int skippedCount) {
+            logPreprocess(skippedCount, 0);
+        }
+
+        public void logPreprocess(int skippedCount, int dedupSaved) {
+            if (!isEnabled()) return;
+            parent.emit(String.format(Locale.US,
+                    "🔧 [TranslateKit] batch_preprocess translatable=%d skipped=%d deduped=%d total=%d",
+                    translatableCount, skippedCount, dedupSaved, totalTexts));
+        }
+
+        public void logCacheLookup(String tier, int hits, int misses) {
             if (!isEnabled()) return;
             parent.emit(String.format(Locale.US,
-                    "🔧 [TranslateKit] batch_preprocess translatable=%d skipped=%d total=%d",
-                    translatableCount, skippedCount, totalTexts));
+                    "💾 [TranslateKit] batch_cache tier=%s hits=%d misses=%d",
+                    tier, hits, misses));
+        }
+
+        public void logNegativeCache(int suppressed, int retriedIndividually) {
+            if (!isEnabled()) return;
+            parent.emit(String.format(Locale.US,
+                    "🚫 [TranslateKit] batch_negative_cache hits=%d retry_single=%d",
+                    suppressed, retriedIndividually));
+        }
+
+        public void logReferences(int pairCount) {
+            if (!isEnabled()) return;
+            parent.emit(String.format(Locale.US,
+                    "📎 [TranslateKit] batch_references pairs=%d",
+                    pairCount));
         }
 
         public void logApiCall(int promptChars) {
+            logApiCall(promptChars, translatableCount);
+        }
+
+        public void logApiCall(int promptChars, int items) {
             if (!isEnabled()) return;
             parent.emit(String.format(Locale.US,
                     "🌐 [TranslateKit] batch_api_call engine=%s prompt_chars=%d items=%d",
-                    engine, promptChars, translatableCount));
+                    engine, promptChars, items));
+        }
+
+        public void logSubBatches(int requests, int concurrency) {
+            if (!isEnabled()) return;
+            parent.emit(String.format(Locale.US,
+                    "🔀 [TranslateKit] batch_split requests=%d concurrency=%d items=%d",
+                    requests, concurrency, translatableCount));
+        }
+
+        public void logPoisonItem(String text, String error) {
+            if (!isEnabled()) return;
+            parent.emit(String.format(Locale.US,
+                    "☣️ [TranslateKit] batch_poison_item engine=%s preview=\"%s\" error=\"%s\"",
+                    engine, sanitizePreview(text),
+                    error == null ? "" : error.replace('\n', ' ')));
+        }
+
+        public void logBisectAbort(int items, String error) {
+            if (!isEnabled()) return;
+            parent.emit(String.format(Locale.US,
+                    "🛑 [TranslateKit] batch_bisect_abort engine=%s items=%d error=\"%s\"",
+                    engine, items,
+                    error == null ? "" : error.replace('\n', ' ')));
+        }
+
+        public void logRepairRound(int round, int items) {
+            if (!isEnabled()) return;
+            parent.emit(String.format(Locale.US,
+                    "🩹 [TranslateKit] batch_repair round=%d items=%d",
+                    round, items));
+        }
+
+        public void logFanOut(List<String> targets, int stored, int rejected) {
+            if (!isEnabled()) return;
+            parent.emit(String.format(Locale.US,
+                    "🌐 [TranslateKit] batch_fan_out targets=%s stored=%d rejected=%d",
+                    targets, stored, rejected));
+        }
+
+        public void logStreamAbort(String reason, int keptItems, int expectedCount, int receivedChars) {
+            if (!isEnabled()) return;
+            parent.emit(String.format(Locale.US,
+                    "✂️ [TranslateKit] batch_stream_abort reason=\"%s\" kept=%d expected=%d received_chars=%d",
+                    reason, keptItems, expectedCount, receivedChars));
         }
 
         public void logParseResult(String formatUsed, int matchedCount, int expectedCount) {
@@ -268,10 +342,14 @@ public class TranslationDebugLogger {
         }
 
         public void logFallbackToIndividual(String reason) {
+            logFallbackToIndividual(reason, totalTexts);
+        }
+
+        public void logFallbackToIndividual(String reason, int items) {
             if (!isEnabled()) return;
             parent.emit(String.format(Locale.US,
                     "🔄 [TranslateKit] batch_fallback_individual engine=%s items=%d reason=\"%s\"",
-                    engine, totalTexts,
+                    engine, items,
                     reason == null ? "" : reason.replace('\n', ' ')));
         }
 
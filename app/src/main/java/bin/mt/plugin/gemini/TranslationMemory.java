@@ -0,0 +1,300 @@
+package bin.mt.plugin.gemini;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import bin.mt.plugin.cache.SegmentStore;
+import bin.mt.plugin.cache.TieredStore;
+
+/**
+ * On-device translation memory that sits in front of the AI providers.
+ *
+ * Entries map a placeholder-tokenized source string to its tokenized translation and are
+ * keyed by engine, model, language pair and a hash of the user context directive, so a
+ * change in any of them never serves a stale result. The memory is persisted in a
+ * {@link SegmentStore} in the plugin's files directory and therefore survives plugin
+ * restarts. A byte-bounded {@link TieredStore} keeps recently used entries on the heap
+ * and writes new ones behind, at the latest on {@link #flush()}. Human translations
+ * imported by {@link StringsXmlImporter} are stored under engine-independent reference keys.
+ */
+public class TranslationMemory {
+
+    private static final String STORE_DIR = "translation_memory";
+    private static final char KEY_SEPARATOR = '\u001F';
+    private static final String REFERENCE_PREFIX = "human";
+
+    /** Origin of imported human translations, see {@link #buildOrigin}. */
+    public static final String REFERENCE_ORIGIN = REFERENCE_PREFIX;
+
+    private static final Map<String, TranslationMemory> INSTANCES = new HashMap<>();
+
+    /**
+     * Number of entries stored for one language pair.
+     */
+    public static class PairSummary {
+        /** Source language, or null for imported human translations */
+        public final String sourceLanguage;
+        public final String targetLanguage;
+        public final int entries;
+
+        PairSummary(String sourceLanguage, String targetLanguage, int entries) {
+            this.sourceLanguage = sourceLanguage;
+            this.targetLanguage = targetLanguage;
+            this.entries = entries;
+        }
+    }
+
+    private final TieredStore store;
+
+    private TranslationMemory(SegmentStore store) {
+        this.store = new TieredStore(store, GeminiConstants.DEFAULT_CACHE_HEAP_BUDGET_MB * 1024L * 1024L);
+    }
+
+    /**
+     * Open (or reuse) the process-wide memory stored in the given directory.
+     */
+    public static TranslationMemory open(File directory) throws IOException {
+        if (directory == null) {
+            throw new IOException("Plugin files directory unavailable");
+        }
+        synchronized (INSTANCES) {
+            String path = directory.getAbsolutePath();
+            TranslationMemory memory = INSTANCES.get(path);
+            if (memory == null) {
+                memory = new TranslationMemory(SegmentStore.open(new File(directory, STORE_DIR)));
+                INSTANCES.put(path, memory);
+            }
+            return memory;
+        }
+    }
+
+    /**
+     * Build a lookup key. The source text is normalized so visually identical strings
+     * coming from differently encoded resource files share one entry.
+     */
+    public static String buildKey(String engine, String model, String sourceLanguage,
+                                  String targetLanguage, String contextHash, String sourceText) {
+        return engine + KEY_SEPARATOR + model + KEY_SEPARATOR
+                + sourceLanguage + KEY_SEPARATOR + targetLanguage + KEY_SEPARATOR
+                + contextHash + KEY_SEPARATOR + normalize(sourceText);
+    }
+
+    /**
+     * Build the key of an imported human translation. It is shared by all engines, models and
+     * source languages, since a reviewed translation stays valid regardless of who asks.
+     */
+    public static String buildReferenceKey(String targetLanguage, String sourceText) {
+        return REFERENCE_PREFIX + KEY_SEPARATOR + targetLanguage + KEY_SEPARATOR + normalize(sourceText);
+    }
+
+    /**
+     * Identify what produced a translation by the key fields besides language pair and text,
+     * for stores such as {@link FuzzyIndex} that are kept per language pair.
+     */
+    public static String buildOrigin(String engine, String model, String contextHash) {
+        return engine + KEY_SEPARATOR + model + KEY_SEPARATOR + contextHash;
+    }
+
+    public static String hashContext(String directive) {
+        if (directive == null || directive.isEmpty()) {
+            return "0";
+        }
+        return Integer.toHexString(directive.hashCode()).toLowerCase(Locale.US);
+    }
+
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String unified = text.replace("\r\n", "\n").replace('\r', '\n');
+        return Normalizer.normalize(unified, Normalizer.Form.NFC);
+    }
+
+    /**
+     * Set the heap budget of the in-memory tier; shrinking it evicts immediately.
+     */
+    public void setHeapBudget(long bytes) {
+        try {
+            store.setMaxHeapBytes(bytes);
+        } catch (IOException ignored) {
+            // Evicted entries that failed to write stay dirty until the next flush
+        }
+    }
+
+    public String get(String key) {
+        if (key == null) {
+            return null;
+        }
+        try {
+            return store.get(key);
+        } catch (IOException e) {
+            return null; // A damaged record behaves like a miss
+        }
+    }
+
+    public void put(String key, String value) {
+        if (key == null || value == null) {
+            return;
+        }
+        try {
+            store.put(key, value);
+        } catch (IOException ignored) {
+            // Only an eviction write can fail here; the entry is retried on flush
+        }
+    }
+
+    public int size() {
+        return store.getStore().size();
+    }
+
+    public TieredStore.Stats getStats() {
+        return store.getStats();
+    }
+
+    public long getDiskBytes() {
+        return store.getStore().diskBytes();
+    }
+
+    public long getGarbageBytes() {
+        return store.getStore().garbageBytes();
+    }
+
+    /**
+     * Rewrite segments to reclaim space held by overwritten and removed entries.
+     */
+    public void compact() throws IOException {
+        store.flush();
+        store.getStore().compact();
+    }
+
+    /**
+     * Count entries per language pair, across engines and models.
+     */
+    public List<PairSummary> summarizePairs() throws IOException {
+        store.flush();
+        Map<String, int[]> counts = new TreeMap<>();
+        store.getStore().forEach((key, value) -> {
+            String[] fields = splitKey(key);
+            if (fields != null) {
+                String pair = (fields[2] != null ? fields[2] : "") + KEY_SEPARATOR + fields[3];
+                int[] count = counts.get(pair);
+                if (count == null) {
+                    counts.put(pair, new int[]{1});
+                } else {
+                    count[0]++;
+                }
+            }
+        });
+        List<PairSummary> summaries = new ArrayList<>(counts.size());
+        for (Map.Entry<String, int[]> entry : counts.entrySet()) {
+            int separator = entry.getKey().indexOf(KEY_SEPARATOR);
+            String source = entry.getKey().substring(0, separator);
+            summaries.add(new PairSummary(source.isEmpty() ? null : source,
+                    entry.getKey().substring(separator + 1), entry.getValue()[0]));
+        }
+        return summaries;
+    }
+
+    /**
+     * Remove every entry of a language pair.
+     *
+     * @param sourceLanguage Source language, or null to remove imported human translations
+     * @return Number of removed entries
+     */
+    public int removeLanguagePair(String sourceLanguage, String targetLanguage) throws IOException {
+        store.flush();
+        List<String> keys = new ArrayList<>();
+        store.getStore().forEach((key, value) -> {
+            String[] fields = splitKey(key);
+            if (fields != null && targetLanguage.equals(fields[3])
+                    && (sourceLanguage == null ? fields[2] == null : sourceLanguage.equals(fields[2]))) {
+                keys.add(key);
+            }
+        });
+        // Through the heap tier, so its copies go too and concurrent puts are kept
+        for (String key : keys) {
+            store.remove(key);
+        }
+        store.flush();
+        store.getStore().flush();
+        return keys.size();
+    }
+
+    /**
+     * Write all entries as tab-separated lines: engine, model, source language, target
+     * language, tokenized source, tokenized translation. Imported human translations have
+     * engine {@code human} and empty model and source language.
+     *
+     * @return Number of exported entries
+     */
+    public int export(PrintWriter writer) throws IOException {
+        store.flush();
+        int[] count = new int[1];
+        writer.println("engine\tmodel\tsource_language\ttarget_language\tsource\ttranslation");
+        store.getStore().forEach((key, value) -> {
+            String[] fields = splitKey(key);
+            if (fields == null) {
+                return;
+            }
+            writer.print(fields[0]);
+            writer.print('\t');
+            writer.print(fields[1] != null ? fields[1] : "");
+            writer.print('\t');
+            writer.print(fields[2] != null ? fields[2] : "");
+            writer.print('\t');
+            writer.print(fields[3]);
+            writer.print('\t');
+            writer.print(escape(fields[5]));
+            writer.print('\t');
+            writer.println(escape(value));
+            count[0]++;
+        });
+        writer.flush();
+        if (writer.checkError()) {
+            throw new IOException("Failed to write export");
+        }
+        return count[0];
+    }
+
+    /**
+     * Write entries recorded since the last flush to the backing store.
+     */
+    public void flush() throws IOException {
+        store.flush();
+    }
+
+    /**
+     * Split a key into engine, model, source language, target language, context hash and
+     * source text. Fields that reference keys do not have are null.
+     */
+    private static String[] splitKey(String key) {
+        String[] parts = key.split(String.valueOf(KEY_SEPARATOR), 6);
+        if (parts.length == 3 && REFERENCE_PREFIX.equals(parts[0])) {
+            return new String[]{parts[0], null, null, parts[1], null, parts[2]};
+        }
+        return parts.length == 6 ? parts : null;
+    }
+
+    private static String escape(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                default: sb.append(c); break;
+            }
+        }
+        return sb.toString();
+    }
+}
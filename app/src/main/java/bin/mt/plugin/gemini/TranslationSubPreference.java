@@ -8,7 +8,8 @@ import bin.mt.plugin.api.preference.PluginPreference;
 
 /**
  * Sub-preference screen for Translation Settings.
- * Contains: Default AI Engine, Request Timeout, Max Retry Attempts.
+ * Contains: Default AI Engine, Request Timeout, Max Retry Attempts,
+ * batch options, translation memory and fuzzy matching.
  */
 public class TranslationSubPreference implements PluginPreference {
 
@@ -61,11 +62,62 @@ public class TranslationSubPreference implements PluginPreference {
                 .valueAsSummary()
                 .inputType(InputType.TYPE_CLASS_NUMBER);
 
+        builder.addSwitch(localString.get("pref_adaptive_batch"), GeminiConstants.PREF_ADAPTIVE_BATCH)
+                .defaultValue(GeminiConstants.DEFAULT_ADAPTIVE_BATCH)
+                .summary(localString.get("pref_adaptive_batch_summary"));
+
+        builder.addInput(localString.get("pref_max_concurrent_requests"), GeminiConstants.PREF_MAX_CONCURRENT_REQUESTS)
+                .defaultValue(String.valueOf(GeminiConstants.DEFAULT_MAX_CONCURRENT_REQUESTS))
+                .summary(localString.get("pref_max_concurrent_requests_summary"))
+                .valueAsSummary()
+                .inputType(InputType.TYPE_CLASS_NUMBER);
+
+        builder.addSwitch(localString.get("pref_structured_output"), GeminiConstants.PREF_STRUCTURED_OUTPUT)
+                .defaultValue(GeminiConstants.DEFAULT_STRUCTURED_OUTPUT)
+                .summary(localString.get("pref_structured_output_summary"));
+
+        builder.addSwitch(localString.get("pref_stream_batch"), GeminiConstants.PREF_STREAM_BATCH)
+                .defaultValue(GeminiConstants.DEFAULT_STREAM_BATCH)
+                .summary(localString.get("pref_stream_batch_summary"));
+
+        builder.addInput(localString.get("pref_max_response_kb"), GeminiConstants.PREF_MAX_RESPONSE_KB)
+                .defaultValue(String.valueOf(GeminiConstants.DEFAULT_MAX_RESPONSE_KB))
+                .summary(localString.get("pref_max_response_kb_summary"))
+                .valueAsSummary()
+                .inputType(InputType.TYPE_CLASS_NUMBER);
+
+        builder.addInput(localString.get("pref_extra_target_languages"), GeminiConstants.PREF_EXTRA_TARGET_LANGUAGES)
+                .defaultValue(GeminiConstants.DEFAULT_EXTRA_TARGET_LANGUAGES)
+                .summary(localString.get("pref_extra_target_languages_summary"))
+                .valueAsSummary();
+
         // Bilingual output mode
         builder.addSwitch(localString.get("pref_bilingual_mode"), GeminiConstants.PREF_BILINGUAL_MODE)
                 .defaultValue(GeminiConstants.DEFAULT_BILINGUAL_MODE)
                 .summary(localString.get("pref_bilingual_mode_summary"));
 
+        // Translation memory
+        builder.addSwitch(localString.get("pref_translation_memory"), GeminiConstants.PREF_TRANSLATION_MEMORY)
+                .defaultValue(GeminiConstants.DEFAULT_TRANSLATION_MEMORY)
+                .summary(localString.get("pref_translation_memory_summary"));
+
+        builder.addInput(localString.get("pref_cache_heap_budget"), GeminiConstants.PREF_CACHE_HEAP_BUDGET)
+                .defaultValue(String.valueOf(GeminiConstants.DEFAULT_CACHE_HEAP_BUDGET_MB))
+                .summary(localString.get("pref_cache_heap_budget_summary"))
+                .valueAsSummary()
+                .inputType(InputType.TYPE_CLASS_NUMBER);
+
+        // Fuzzy matching of near-duplicate strings
+        builder.addSwitch(localString.get("pref_fuzzy_match"), GeminiConstants.PREF_FUZZY_MATCH)
+                .defaultValue(GeminiConstants.DEFAULT_FUZZY_MATCH)
+                .summary(localString.get("pref_fuzzy_match_summary"));
+
+        builder.addInput(localString.get("pref_fuzzy_reuse_threshold"), GeminiConstants.PREF_FUZZY_REUSE_THRESHOLD)
+                .defaultValue(String.valueOf(GeminiConstants.DEFAULT_FUZZY_REUSE_THRESHOLD))
+                .summary(localString.get("pref_fuzzy_reuse_threshold_summary"))
+                .valueAsSummary()
+                .inputType(InputType.TYPE_CLASS_NUMBER);
+
         // Preference change callback
         builder.onPreferenceChange((pluginUI, preferenceItem, newValue) -> {
             String key = preferenceItem.getKey();
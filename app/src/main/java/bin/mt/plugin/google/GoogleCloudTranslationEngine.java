@@ -14,12 +14,15 @@ import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import bin.mt.plugin.api.LocalString;
 import bin.mt.plugin.api.translation.BaseBatchTranslationEngine;
 import bin.mt.plugin.api.translation.BatchTranslationEngine;
+import bin.mt.plugin.net.HttpTransport;
+import bin.mt.plugin.net.RequestErrors;
 
 /**
  * Google Cloud Translation API Engine for MT Manager
@@ -75,7 +78,7 @@ public class GoogleCloudTranslationEngine extends BaseBatchTranslationEngine {
 
     // Pattern for non-translatable strings (only symbols, numbers, whitespace)
     private static final Pattern NON_TRANSLATABLE_PATTERN = Pattern.compile(
-        "^[\\p{Punct}\\p{Symbol}\\d\\s]*$"
+        "^[\\p{Punct}\\p{S}\\d\\s]*$"
     );
 
     private LocalString localString;
@@ -85,6 +88,10 @@ public class GoogleCloudTranslationEngine extends BaseBatchTranslationEngine {
     private boolean useAdvancedModel;
     private int batchSize;
     private int batchMaxChars;
+    private GoogleTranslationCache cache;
+    private Map<String, String> sessionResults;
+    // HTTP traffic counters when the job started, to report its gzip savings
+    private HttpTransport.Stats transferBaseline;
 
     /**
      * Constructor with default configuration
@@ -188,6 +195,40 @@ public class GoogleCloudTranslationEngine extends BaseBatchTranslationEngine {
         if (batchSize < 1) batchSize = GoogleConstants.DEFAULT_BATCH_SIZE;
         if (batchMaxChars < 100) batchMaxChars = GoogleConstants.DEFAULT_BATCH_MAX_CHARS;
         android.util.Log.i("GoogleTranslate", "Batch config: size=" + batchSize + ", maxChars=" + batchMaxChars);
+
+        // Job-scoped results: strings repeated across batches of this job are translated once
+        sessionResults = new ConcurrentHashMap<>();
+        transferBaseline = HttpTransport.stats();
+
+        // Result cache (TTL in minutes, stored as text by the preference input)
+        cache = null;
+        if (GoogleConstants.FEATURE_CACHE && prefs.getBoolean(GoogleConstants.PREF_ENABLE_CACHE, false)) {
+            int expiration = readIntPreference(prefs, GoogleConstants.PREF_CACHE_EXPIRATION,
+                    GoogleConstants.DEFAULT_CACHE_EXPIRATION);
+            try {
+                cache = new GoogleTranslationCache(prefs, getContext().getFilesDir(), expiration, useAdvancedModel);
+            } catch (IOException e) {
+                android.util.Log.w("GoogleTranslate", "Translation cache unavailable: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Called after the translation job ends
+     * Persists any cache entries and statistics still pending
+     */
+    @Override
+    public void onFinish() {
+        if (cache != null) {
+            cache.flush();
+        }
+        if (transferBaseline != null) {
+            HttpTransport.Stats transfer = HttpTransport.stats().since(transferBaseline);
+            if (transfer.requests > 0) {
+                android.util.Log.i("GoogleTranslate", "Transfer: " + transfer.describe());
+            }
+        }
+        sessionResults = null;
     }
 
     /**
@@ -241,20 +282,24 @@ public class GoogleCloudTranslationEngine extends BaseBatchTranslationEngine {
         // Tokenize placeholders for protection
         PlaceholderResult phResult = tokenizePlaceholders(text);
 
-        // Build API request URL with tokenized text
-        String apiUrl = buildApiUrl(phResult.tokenizedText, sourceLanguage, targetLanguage);
+        String cached = lookupLocalResult(phResult.tokenizedText, sourceLanguage, targetLanguage);
+        String translated = cached;
+        if (translated == null) {
+            // Build API request URL with tokenized text
+            String apiUrl = buildApiUrl(phResult.tokenizedText, sourceLanguage, targetLanguage);
 
-        // Perform translation with retry logic
-        String result = performTranslationWithRetry(apiUrl, phResult.tokenizedText);
+            // Perform translation with retry logic
+            translated = performTranslationWithRetry(apiUrl, phResult.tokenizedText);
+        }
 
         // Restore placeholders and validate
-        if (phResult.hasPlaceholders()) {
-            result = restorePlaceholders(result, phResult.placeholders);
-            if (!validatePlaceholders(text, result)) {
-                return text; // Placeholder validation failed, return original
-            }
+        String result = restoreValidated(text, translated, phResult);
+        if (result == null) {
+            return text; // Placeholder validation failed, return original
+        }
+        if (cached == null) {
+            storeResult(phResult.tokenizedText, sourceLanguage, targetLanguage, translated);
         }
-
         return result;
     }
 
@@ -291,11 +336,24 @@ public class GoogleCloudTranslationEngine extends BaseBatchTranslationEngine {
 
         if (texts.length == 0) return new String[0];
 
-        // Single text: use the simpler GET path
-        if (texts.length == 1) {
-            return new String[]{ translateSingle(texts[0], sourceLanguage, targetLanguage) };
+        try {
+            // Single text: use the simpler GET path
+            if (texts.length == 1) {
+                return new String[]{ translateSingle(texts[0], sourceLanguage, targetLanguage) };
+            }
+            return translateMultiple(texts, sourceLanguage, targetLanguage);
+        } finally {
+            // One preference transaction per batch instead of one per string
+            if (cache != null) {
+                cache.flush();
+            }
         }
+    }
 
+    /**
+     * Translate two or more texts with one POST request, serving cached entries locally
+     */
+    private String[] translateMultiple(String[] texts, String sourceLanguage, String targetLanguage) throws IOException {
         int count = texts.length;
         String[] results = new String[count];
 
@@ -307,7 +365,12 @@ public class GoogleCloudTranslationEngine extends BaseBatchTranslationEngine {
             results[i] = texts[i]; // default: keep original
             if (texts[i] != null && !texts[i].trim().isEmpty() && !isNonTranslatable(texts[i])) {
                 phResults[i] = tokenizePlaceholders(texts[i]);
-                translatableIndices.add(i);
+                String cached = lookupLocalResult(phResults[i].tokenizedText, sourceLanguage, targetLanguage);
+                if (cached != null) {
+                    results[i] = finishTranslation(texts[i], cached, phResults[i]);
+                } else {
+                    translatableIndices.add(i);
+                }
             }
         }
 
@@ -315,48 +378,164 @@ public class GoogleCloudTranslationEngine extends BaseBatchTranslationEngine {
             return results;
         }
 
-        // Build tokenized texts array for batch
-        String[] tokenizedTexts = new String[translatableIndices.size()];
+        // Build tokenized texts array for batch; identical tokenized texts share one
+        // "q" entry and slotOf maps each translatable index back to it
+        int[] slotOf = new int[translatableIndices.size()];
+        Map<String, Integer> slotByText = new LinkedHashMap<>();
         for (int j = 0; j < translatableIndices.size(); j++) {
-            tokenizedTexts[j] = phResults[translatableIndices.get(j)].tokenizedText;
+            String tokenized = phResults[translatableIndices.get(j)].tokenizedText;
+            Integer slot = slotByText.get(tokenized);
+            if (slot == null) {
+                slot = slotByText.size();
+                slotByText.put(tokenized, slot);
+            }
+            slotOf[j] = slot;
+        }
+        String[] tokenizedTexts = slotByText.keySet().toArray(new String[0]);
+        int dedupSaved = translatableIndices.size() - tokenizedTexts.length;
+        if (dedupSaved > 0) {
+            android.util.Log.i("GoogleTranslate", "Batch dedup: " + dedupSaved + " duplicate texts collapsed");
         }
 
+        String[] batchResults = new String[tokenizedTexts.length];
         try {
-            // Build JSON body with tokenized texts
-            JSONObject body = buildBatchRequestBody(tokenizedTexts, sourceLanguage, targetLanguage);
-
-            // Execute with retry
-            String[] batchResults = performBatchTranslationWithRetry(body, tokenizedTexts);
-
-            // Map back and restore placeholders
-            for (int j = 0; j < translatableIndices.size(); j++) {
-                int idx = translatableIndices.get(j);
-                String translated = (j < batchResults.length && batchResults[j] != null && !batchResults[j].isEmpty())
-                        ? batchResults[j] : texts[idx];
-
-                if (phResults[idx].hasPlaceholders()) {
-                    translated = restorePlaceholders(translated, phResults[idx].placeholders);
-                    if (!validatePlaceholders(texts[idx], translated)) {
-                        translated = texts[idx]; // keep original on validation failure
-                    }
-                }
+            String[] received = requestBatch(tokenizedTexts, sourceLanguage, targetLanguage);
+            System.arraycopy(received, 0, batchResults, 0, Math.min(received.length, batchResults.length));
+        } catch (IOException e) {
+            // Batch failed — bisect instead of sending one request per item
+            bisectFailedBatch(tokenizedTexts, 0, tokenizedTexts.length, e, batchResults, sourceLanguage, targetLanguage);
+        }
 
-                results[idx] = translated;
+        // Map back and restore placeholders (per index, since duplicates may differ in placeholders);
+        // only results whose placeholders survive are remembered
+        boolean[] stored = new boolean[tokenizedTexts.length];
+        for (int j = 0; j < translatableIndices.size(); j++) {
+            int idx = translatableIndices.get(j);
+            int slot = slotOf[j];
+            if (batchResults[slot] == null || batchResults[slot].isEmpty()) {
+                continue; // keeps the original
+            }
+            String restored = restoreValidated(texts[idx], batchResults[slot], phResults[idx]);
+            if (restored == null) {
+                continue;
+            }
+            results[idx] = restored;
+            if (!stored[slot]) {
+                stored[slot] = true;
+                storeResult(tokenizedTexts[slot], sourceLanguage, targetLanguage, batchResults[slot]);
             }
+        }
 
-            return results;
+        return results;
+    }
 
-        } catch (IOException e) {
-            // Batch failed — fall back to individual translation
-            for (int idx : translatableIndices) {
-                try {
-                    results[idx] = translateSingle(texts[idx], sourceLanguage, targetLanguage);
-                } catch (IOException singleError) {
-                    results[idx] = texts[idx]; // keep original
-                }
+    private String[] requestBatch(String[] tokenizedTexts, String sourceLanguage, String targetLanguage) throws IOException {
+        JSONObject body = buildBatchRequestBody(tokenizedTexts, sourceLanguage, targetLanguage);
+        return performBatchTranslationWithRetry(body, tokenizedTexts);
+    }
+
+    /**
+     * Retry a failed batch as two halves, recursing into the halves that fail, so a poison
+     * string costs O(log n) extra requests instead of one request per item. Gives up when the
+     * failure is not about the content (auth, rate limits, interruption) or both halves fail
+     * for such reasons, which points to an outage. Items left without a result keep their
+     * original text.
+     */
+    private void bisectFailedBatch(String[] tokenizedTexts, int from, int to, IOException failure,
+                                   String[] batchResults, String sourceLanguage, String targetLanguage) throws IOException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw failure;
+        }
+        if (isAuthOrRateLimitError(failure)) {
+            android.util.Log.w("GoogleTranslate", "Batch of " + (to - from) + " failed, not bisecting: " + failure.getMessage());
+            return;
+        }
+        if (to - from == 1) {
+            android.util.Log.w("GoogleTranslate", "Poison item isolated by bisection: \""
+                    + preview(tokenizedTexts[from]) + "\" - " + failure.getMessage());
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        int[] bounds = {from, mid, to};
+        IOException[] errors = new IOException[2];
+        for (int h = 0; h < 2; h++) {
+            try {
+                String[] received = requestBatch(Arrays.copyOfRange(tokenizedTexts, bounds[h], bounds[h + 1]),
+                        sourceLanguage, targetLanguage);
+                System.arraycopy(received, 0, batchResults, bounds[h], bounds[h + 1] - bounds[h]);
+            } catch (IOException e) {
+                errors[h] = e;
             }
-            return results;
         }
+        if (errors[0] != null && errors[1] != null && !isContentError(errors[0]) && !isContentError(errors[1])) {
+            android.util.Log.w("GoogleTranslate", "Both halves of a failed batch failed, keeping originals: "
+                    + errors[1].getMessage());
+            return;
+        }
+        for (int h = 0; h < 2; h++) {
+            if (errors[h] != null) {
+                bisectFailedBatch(tokenizedTexts, bounds[h], bounds[h + 1], errors[h], batchResults,
+                        sourceLanguage, targetLanguage);
+            }
+        }
+    }
+
+    private static String preview(String text) {
+        String singleLine = text.replace('\n', ' ');
+        return singleLine.length() <= 60 ? singleLine : singleLine.substring(0, 57) + "...";
+    }
+
+    /**
+     * Look up a tokenized text among this job's results, then in the persistent cache
+     *
+     * @return Tokenized translation, or null if it has to be requested
+     */
+    private String lookupLocalResult(String tokenizedText, String sourceLanguage, String targetLanguage) {
+        String key = sourceLanguage + '\u001F' + targetLanguage + '\u001F' + tokenizedText;
+        String result = sessionResults != null ? sessionResults.get(key) : null;
+        if (result == null && cache != null) {
+            result = cache.get(tokenizedText, sourceLanguage, targetLanguage);
+            if (result != null && sessionResults != null) {
+                sessionResults.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Record a tokenized translation for the rest of this job and in the persistent cache
+     */
+    private void storeResult(String tokenizedText, String sourceLanguage, String targetLanguage, String result) {
+        if (result == null || result.isEmpty()) {
+            return;
+        }
+        if (sessionResults != null) {
+            sessionResults.put(sourceLanguage + '\u001F' + targetLanguage + '\u001F' + tokenizedText, result);
+        }
+        if (cache != null) {
+            cache.put(tokenizedText, sourceLanguage, targetLanguage, result);
+        }
+    }
+
+    /**
+     * Restore placeholders in a tokenized translation, keeping the original on validation failure
+     */
+    private String finishTranslation(String original, String translated, PlaceholderResult phResult) {
+        String restored = restoreValidated(original, translated, phResult);
+        return restored != null ? restored : original;
+    }
+
+    /**
+     * Restore placeholders in a tokenized translation
+     *
+     * @return The restored translation, or null if its placeholders do not match the original
+     */
+    private String restoreValidated(String original, String translated, PlaceholderResult phResult) {
+        if (!phResult.hasPlaceholders()) {
+            return translated;
+        }
+        String restored = restorePlaceholders(translated, phResult.placeholders);
+        return validatePlaceholders(original, restored) ? restored : null;
     }
 
     /**
@@ -766,6 +945,20 @@ public class GoogleCloudTranslationEngine extends BaseBatchTranslationEngine {
                message.contains("(403)");
     }
 
+    /**
+     * Failures caused by what was sent, which splitting the batch can isolate
+     */
+    private boolean isContentError(IOException e) {
+        return RequestErrors.isContentError(e);
+    }
+
+    /**
+     * Failures no split can fix; an invalid key is answered with HTTP 400
+     */
+    private boolean isAuthOrRateLimitError(IOException e) {
+        return RequestErrors.isAuthOrRateLimitError(e);
+    }
+
     /**
      * Parse Retry-After value from error message.
      * Looks for pattern [Retry-After: N] embedded by HttpUtils.
@@ -786,6 +979,25 @@ public class GoogleCloudTranslationEngine extends BaseBatchTranslationEngine {
         return -1;
     }
 
+    /**
+     * Read an int preference that may have been stored as text by an input preference
+     */
+    private static int readIntPreference(SharedPreferences prefs, String key, int defaultValue) {
+        try {
+            return prefs.getInt(key, defaultValue);
+        } catch (ClassCastException ignored) {
+            String value = prefs.getString(key, null);
+            if (value != null && !value.trim().isEmpty()) {
+                try {
+                    return Integer.parseInt(value.trim());
+                } catch (NumberFormatException e) {
+                    android.util.Log.w("GoogleTranslate", "Failed to parse int preference " + key + ": " + value);
+                }
+            }
+        }
+        return defaultValue;
+    }
+
     /**
      * Handle translation errors
      * Override to provide custom error handling or logging
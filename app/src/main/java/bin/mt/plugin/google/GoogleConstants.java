@@ -162,6 +162,16 @@ public class GoogleConstants {
      */
     public static final String CACHE_KEY_PREFIX = "google_translate_cache_";
 
+    /**
+     * Directory under the plugin files directory holding the cache store
+     */
+    public static final String CACHE_STORE_DIR = "google_translate_cache";
+
+    /**
+     * Heap budget of the in-memory cache tier in bytes
+     */
+    public static final long CACHE_HEAP_BYTES = 4L * 1024 * 1024;
+
     /**
      * Preference key for cache hit statistics
      */
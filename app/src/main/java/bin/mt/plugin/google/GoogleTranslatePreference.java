@@ -3,6 +3,7 @@ package bin.mt.plugin.google;
 import android.content.SharedPreferences;
 import android.text.InputType;
 
+import java.io.IOException;
 import java.util.regex.Pattern;
 
 import bin.mt.plugin.api.LocalString;
@@ -251,18 +252,12 @@ public class GoogleTranslatePreference implements PluginPreference {
      * Clear translation cache
      */
     private void clearCache() {
-        SharedPreferences prefs = context.getPreferences();
-        SharedPreferences.Editor editor = prefs.edit();
-
-        // Remove all cache entries
-        for (String key : prefs.getAll().keySet()) {
-            if (key.startsWith(GoogleConstants.CACHE_KEY_PREFIX)) {
-                editor.remove(key);
-            }
+        try {
+            GoogleTranslationCache.clear(context.getPreferences(), context.getFilesDir());
+            context.showToast(localString.get("msg_cache_cleared"));
+        } catch (IOException e) {
+            context.showToast(e.getMessage());
         }
-
-        editor.apply();
-        context.showToast(localString.get("msg_cache_cleared"));
     }
 
     /**
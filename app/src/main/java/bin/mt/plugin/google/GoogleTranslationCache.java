@@ -0,0 +1,223 @@
+package bin.mt.plugin.google;
+
+import android.content.SharedPreferences;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+import bin.mt.plugin.cache.SegmentStore;
+import bin.mt.plugin.cache.TieredStore;
+
+/**
+ * TTL cache for Google Cloud Translation results
+ *
+ * Entries are stored in a {@link SegmentStore} under the plugin files directory, keyed by
+ * {@link GoogleConstants#CACHE_KEY_PREFIX} plus model, language pair and a hash of the
+ * text. A {@link TieredStore} keeps recent entries on the heap and writes new entries and
+ * expired-entry removals behind; {@link #flush()} writes the rest and commits the hit/miss
+ * counters to SharedPreferences in one editor transaction. The heap tier is shared by every
+ * instance using the same directory, so {@link #clear} also empties what live instances hold.
+ *
+ * @author MT Manager Plugin Developer
+ * @version 1.0.0
+ */
+public class GoogleTranslationCache {
+
+    private static final String FIELD_CACHED_AT = "cached_at";
+    private static final String FIELD_TEXT = "text";
+
+    private static final Map<String, TieredStore> STORES = new HashMap<>();
+
+    private final SharedPreferences prefs;
+    private final TieredStore store;
+    private final long ttlMs;
+    private final String modelTag;
+
+    private int pendingHits;
+    private int pendingMisses;
+
+    /**
+     * @param prefs Plugin preferences holding the hit/miss statistics
+     * @param filesDir Plugin files directory
+     * @param expirationMinutes Entry lifetime in minutes, 0 or less to never expire
+     * @param advancedModel Whether the NMT model is requested (kept apart from base results)
+     * @throws IOException If the backing store cannot be opened
+     */
+    public GoogleTranslationCache(SharedPreferences prefs, File filesDir, int expirationMinutes,
+                                  boolean advancedModel) throws IOException {
+        this.prefs = prefs;
+        this.store = openStore(filesDir);
+        this.ttlMs = expirationMinutes > 0 ? expirationMinutes * 60_000L : 0L;
+        this.modelTag = advancedModel ? "nmt" : "base";
+        removeLegacyEntries(prefs);
+    }
+
+    /**
+     * Remove every cached translation
+     */
+    public static void clear(SharedPreferences prefs, File filesDir) throws IOException {
+        removeLegacyEntries(prefs);
+        openStore(filesDir).clear();
+    }
+
+    private static TieredStore openStore(File filesDir) throws IOException {
+        if (filesDir == null) {
+            throw new IOException("Plugin files directory unavailable");
+        }
+        synchronized (STORES) {
+            File directory = new File(filesDir, GoogleConstants.CACHE_STORE_DIR);
+            String path = directory.getAbsolutePath();
+            TieredStore store = STORES.get(path);
+            if (store == null) {
+                store = new TieredStore(SegmentStore.open(directory), GoogleConstants.CACHE_HEAP_BYTES);
+                STORES.put(path, store);
+            }
+            return store;
+        }
+    }
+
+    /**
+     * Earlier builds kept entries in SharedPreferences; drop them so the XML file stays small
+     */
+    private static void removeLegacyEntries(SharedPreferences prefs) {
+        SharedPreferences.Editor editor = null;
+        for (String key : prefs.getAll().keySet()) {
+            if (key.startsWith(GoogleConstants.CACHE_KEY_PREFIX)) {
+                if (editor == null) editor = prefs.edit();
+                editor.remove(key);
+            }
+        }
+        if (editor != null) {
+            editor.apply();
+        }
+    }
+
+    /**
+     * Look up a cached translation
+     *
+     * @param text Placeholder-tokenized source text
+     * @param sourceLanguage Source language code
+     * @param targetLanguage Target language code
+     * @return Cached tokenized translation, or null on miss or expiry
+     */
+    public synchronized String get(String text, String sourceLanguage, String targetLanguage) {
+        String key = buildKey(text, sourceLanguage, targetLanguage);
+        String raw = readStored(key);
+        String value = raw != null ? decode(key, raw) : null;
+        if (value == null) {
+            pendingMisses++;
+            return null;
+        }
+        pendingHits++;
+        return value;
+    }
+
+    /**
+     * Stage a translation for storage; persisted on the next {@link #flush()}
+     */
+    public synchronized void put(String text, String sourceLanguage, String targetLanguage, String translation) {
+        if (translation == null || translation.isEmpty()) {
+            return;
+        }
+        try {
+            JSONObject payload = new JSONObject();
+            payload.put(FIELD_CACHED_AT, System.currentTimeMillis());
+            payload.put(FIELD_TEXT, translation);
+            store.put(buildKey(text, sourceLanguage, targetLanguage), payload.toString());
+        } catch (JSONException | IOException ignored) {
+            // Only an eviction write can fail here; the entry stays dirty until flush
+        }
+    }
+
+    /**
+     * Write staged entries and removals to the store and commit statistics in one
+     * preference transaction
+     */
+    public synchronized void flush() {
+        try {
+            store.flush();
+        } catch (IOException e) {
+            android.util.Log.w("GoogleTranslate", "Failed to persist translation cache: " + e.getMessage());
+        }
+        if (pendingHits == 0 && pendingMisses == 0) {
+            return;
+        }
+        SharedPreferences.Editor editor = prefs.edit();
+        if (pendingHits > 0) {
+            editor.putInt(GoogleConstants.PREF_CACHE_HITS,
+                    prefs.getInt(GoogleConstants.PREF_CACHE_HITS, 0) + pendingHits);
+        }
+        if (pendingMisses > 0) {
+            editor.putInt(GoogleConstants.PREF_CACHE_MISSES,
+                    prefs.getInt(GoogleConstants.PREF_CACHE_MISSES, 0) + pendingMisses);
+        }
+        editor.apply();
+
+        pendingHits = 0;
+        pendingMisses = 0;
+    }
+
+    private String readStored(String key) {
+        try {
+            return store.get(key);
+        } catch (IOException e) {
+            return null; // A damaged record behaves like a miss
+        }
+    }
+
+    private void removeStored(String key) {
+        try {
+            store.remove(key);
+        } catch (IOException ignored) {
+            // Retried on flush
+        }
+    }
+
+    /**
+     * Decode a stored entry, scheduling its removal if it has expired
+     */
+    private String decode(String key, String raw) {
+        try {
+            JSONObject payload = new JSONObject(raw);
+            long cachedAt = payload.optLong(FIELD_CACHED_AT, 0);
+            if (ttlMs > 0 && System.currentTimeMillis() - cachedAt > ttlMs) {
+                removeStored(key);
+                return null;
+            }
+            String text = payload.optString(FIELD_TEXT, "");
+            return text.isEmpty() ? null : text;
+        } catch (JSONException e) {
+            removeStored(key);
+            return null;
+        }
+    }
+
+    private String buildKey(String text, String sourceLanguage, String targetLanguage) {
+        return GoogleConstants.CACHE_KEY_PREFIX + modelTag + "_" + sourceLanguage + "_" + targetLanguage
+                + "_" + sha1Hex(text != null ? text : "");
+    }
+
+    private static String sha1Hex(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-1 is guaranteed on Android; fall back to a weaker but stable key
+            return Integer.toHexString(text.hashCode()) + "_" + text.length();
+        }
+    }
+}
@@ -1,14 +1,11 @@
 package bin.mt.plugin.google;
 
+import bin.mt.plugin.net.HttpTransport;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -26,7 +23,7 @@ import java.util.Map;
  * - JSON response parsing
  * - Custom header support
  * - Form data encoding
- * - Connection pooling
+ * - Keep-alive connection reuse (see {@link HttpTransport})
  *
  * @author MT Manager Plugin Developer
  * @version 1.0.0
@@ -195,51 +192,25 @@ public class HttpUtils {
          * @throws IOException If network error or non-2xx response code
          */
         public String execute() throws IOException {
-            HttpURLConnection conn = null;
-            InputStream inputStream = null;
-            InputStream errorStream = null;
-
-            try {
-                // Create and configure connection
-                conn = createConnection();
-
-                // Get response code
-                int responseCode = conn.getResponseCode();
-
-                // Read response body
-                if (responseCode >= 200 && responseCode < 300) {
-                    // Success response
-                    inputStream = conn.getInputStream();
-                    return readStream(inputStream, charset);
-                } else {
-                    // Read Retry-After header before disconnect
-                    String retryAfter = (responseCode == 429 || responseCode == 503)
-                            ? conn.getHeaderField("Retry-After") : null;
-                    // Error response - try to read error body
-                    errorStream = conn.getErrorStream();
-                    String errorBody = errorStream != null ? readStream(errorStream, charset) : "";
-
-                    // Try to parse error as JSON for better error messages
-                    String errorMessage = extractErrorMessage(errorBody, responseCode);
-                    String prefix = "HTTP " + responseCode;
-                    if (retryAfter != null && !retryAfter.isEmpty()) {
-                        prefix += " [Retry-After: " + retryAfter + "]";
-                    }
-                    throw new IOException(prefix + ": " + errorMessage);
-                }
+            Map<String, String> requestHeaders = headers;
+            if (requestBody != null && requestBody.length > 0 && contentType != null) {
+                requestHeaders = new LinkedHashMap<>(headers);
+                requestHeaders.put("Content-Type", contentType);
+            }
+            HttpTransport.Response response = HttpTransport.execute(method, url, requestHeaders, requestBody,
+                    connectTimeout, readTimeout);
+            String body = response.text(charset);
+            if (response.isSuccessful()) {
+                return body;
+            }
 
-            } finally {
-                // Clean up resources
-                if (inputStream != null) {
-                    try { inputStream.close(); } catch (IOException ignored) {}
-                }
-                if (errorStream != null) {
-                    try { errorStream.close(); } catch (IOException ignored) {}
-                }
-                if (conn != null) {
-                    conn.disconnect();
-                }
+            // Try to parse error as JSON for better error messages
+            String errorMessage = extractErrorMessage(body, response.code);
+            String prefix = "HTTP " + response.code;
+            if (response.retryAfter != null && !response.retryAfter.isEmpty()) {
+                prefix += " [Retry-After: " + response.retryAfter + "]";
             }
+            throw new IOException(prefix + ": " + errorMessage);
         }
 
         /**
@@ -258,69 +229,6 @@ public class HttpUtils {
             }
         }
 
-        /**
-         * Create and configure HttpURLConnection
-         *
-         * @return Configured HttpURLConnection
-         * @throws IOException If connection cannot be established
-         */
-        private HttpURLConnection createConnection() throws IOException {
-            URL urlObject = new URL(url);
-            HttpURLConnection conn = (HttpURLConnection) urlObject.openConnection();
-
-            // Configure connection
-            conn.setRequestMethod(method);
-            conn.setConnectTimeout(connectTimeout);
-            conn.setReadTimeout(readTimeout);
-            conn.setUseCaches(false);
-            conn.setDoInput(true);
-
-            // Set headers
-            for (Map.Entry<String, String> entry : headers.entrySet()) {
-                conn.setRequestProperty(entry.getKey(), entry.getValue());
-            }
-
-            // Configure request body
-            if (requestBody != null && requestBody.length > 0) {
-                conn.setDoOutput(true);
-                if (contentType != null) {
-                    conn.setRequestProperty("Content-Type", contentType);
-                }
-                conn.setFixedLengthStreamingMode(requestBody.length);
-
-                // Write request body
-                OutputStream out = conn.getOutputStream();
-                try {
-                    out.write(requestBody);
-                    out.flush();
-                } finally {
-                    out.close();
-                }
-            }
-
-            return conn;
-        }
-
-        /**
-         * Read entire input stream into String
-         *
-         * @param is Input stream to read
-         * @param charset Character encoding
-         * @return Stream content as String
-         * @throws IOException If read error occurs
-         */
-        private String readStream(InputStream is, String charset) throws IOException {
-            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-            byte[] chunk = new byte[8192];
-            int bytesRead;
-
-            while ((bytesRead = is.read(chunk)) != -1) {
-                buffer.write(chunk, 0, bytesRead);
-            }
-
-            return buffer.toString(charset);
-        }
-
         /**
          * Extract meaningful error message from HTTP error response
          *
@@ -0,0 +1,647 @@
+package bin.mt.plugin.net;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Process-wide HTTP transport shared by all engines, preference screens and menus.
+ *
+ * Connections come from the platform's keep-alive pool: a response body is always read to
+ * the end and its stream closed, which hands the socket back for the next request to the
+ * same host, and {@link HttpURLConnection#disconnect()} is only called when a connection
+ * failed mid-exchange and cannot be reused. The pool evicts idle sockets on its own. Requests
+ * to one host are limited to {@link #MAX_CONNECTIONS_PER_HOST} at a time, so concurrent
+ * batches reuse a few warm connections instead of opening new ones.
+ *
+ * Bodies are gzip-compressed in both directions where the endpoint allows it. Every request
+ * asks for a gzip response, which is decoded here. Request bodies are only compressed for
+ * hosts known to accept {@code Content-Encoding: gzip} (see {@link #acceptsGzipRequests}); a
+ * host that rejects one is sent plain bodies from then on. Bytes before and after
+ * compression are counted in {@link #stats()}.
+ *
+ * {@link #send} writes a request body straight into the connection and hands the response
+ * over as a stream, so large JSON payloads are never held as a String or byte array; its
+ * bodies go out with chunked transfer encoding (or buffered once for a host that demands a
+ * length) and its responses are cut off at a size limit. {@link #stream} builds on it to
+ * hand a response over line by line while it is still arriving, for the server-sent events
+ * of streaming model replies.
+ */
+public final class HttpTransport {
+
+    public static final int MAX_CONNECTIONS_PER_HOST = 8;
+
+    // Smaller bodies fit in a packet or two either way
+    public static final int MIN_GZIP_REQUEST_BYTES = 1024;
+
+    // Hosts whose endpoints accept gzip-encoded request bodies
+    private static final String[] GZIP_REQUEST_HOST_SUFFIXES = {".googleapis.com"};
+
+    private static final Map<String, Semaphore> HOST_PERMITS = new ConcurrentHashMap<>();
+    private static final Set<String> GZIP_REJECTED_HOSTS =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    // Hosts that answered a chunked request body with 411 Length Required
+    private static final Set<String> CHUNKED_REJECTED_HOSTS =
+            Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private static final AtomicLong STAT_REQUESTS = new AtomicLong();
+    private static final AtomicLong STAT_REQUEST_BYTES = new AtomicLong();
+    private static final AtomicLong STAT_REQUEST_WIRE_BYTES = new AtomicLong();
+    private static final AtomicLong STAT_RESPONSE_BYTES = new AtomicLong();
+    private static final AtomicLong STAT_RESPONSE_WIRE_BYTES = new AtomicLong();
+
+    private HttpTransport() {
+    }
+
+    /**
+     * Receives a successful streamed response line by line, without line terminators.
+     */
+    public interface LineHandler {
+        void onLine(String line) throws IOException;
+    }
+
+    /**
+     * Writes a request body into the connection. May be called more than once for one request,
+     * when it has to be sent again.
+     */
+    public interface BodyWriter {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Reads a successful response body, already gzip-decoded, from the connection.
+     */
+    public interface BodyReader {
+        /**
+         * @param contentType Content-Type header of the response, or null if it had none
+         */
+        void readFrom(InputStream in, String contentType) throws IOException;
+    }
+
+    /**
+     * A complete response: status code, body and the Retry-After header of 429 and 503
+     * responses.
+     */
+    public static final class Response {
+        public final int code;
+        public final byte[] body;
+        public final String retryAfter;
+        // Response body size as received, before gzip decoding
+        public final int wireBytes;
+        // The body was cut off at the response size limit
+        public final boolean truncated;
+
+        Response(int code, byte[] body, String retryAfter, int wireBytes, boolean truncated) {
+            this.code = code;
+            this.body = body;
+            this.retryAfter = retryAfter;
+            this.wireBytes = wireBytes;
+            this.truncated = truncated;
+        }
+
+        public boolean isSuccessful() {
+            return code >= 200 && code < 300;
+        }
+
+        public String text(String charset) throws UnsupportedEncodingException {
+            return new String(body, charset);
+        }
+    }
+
+    /**
+     * Body bytes sent and received since the process started, before and after compression.
+     * Subtract an earlier snapshot to get the traffic of one job.
+     */
+    public static final class Stats {
+        public final long requests;
+        public final long requestBytes;
+        public final long requestWireBytes;
+        public final long responseBytes;
+        public final long responseWireBytes;
+
+        Stats(long requests, long requestBytes, long requestWireBytes, long responseBytes, long responseWireBytes) {
+            this.requests = requests;
+            this.requestBytes = requestBytes;
+            this.requestWireBytes = requestWireBytes;
+            this.responseBytes = responseBytes;
+            this.responseWireBytes = responseWireBytes;
+        }
+
+        public Stats since(Stats earlier) {
+            return new Stats(requests - earlier.requests, requestBytes - earlier.requestBytes,
+                    requestWireBytes - earlier.requestWireBytes, responseBytes - earlier.responseBytes,
+                    responseWireBytes - earlier.responseWireBytes);
+        }
+
+        public long savedBytes() {
+            return requestBytes - requestWireBytes + responseBytes - responseWireBytes;
+        }
+
+        /**
+         * One debug-log line with the compression ratio (wire / plain) of each direction.
+         */
+        public String describe() {
+            return String.format(Locale.US,
+                    "requests=%d request_bytes=%d request_wire_bytes=%d request_ratio=%.2f"
+                            + " response_bytes=%d response_wire_bytes=%d response_ratio=%.2f saved_bytes=%d",
+                    requests, requestBytes, requestWireBytes, ratio(requestWireBytes, requestBytes),
+                    responseBytes, responseWireBytes, ratio(responseWireBytes, responseBytes), savedBytes());
+        }
+
+        private static double ratio(long wire, long plain) {
+            return plain > 0 ? (double) wire / plain : 1.0;
+        }
+    }
+
+    public static Stats stats() {
+        return new Stats(STAT_REQUESTS.get(), STAT_REQUEST_BYTES.get(), STAT_REQUEST_WIRE_BYTES.get(),
+                STAT_RESPONSE_BYTES.get(), STAT_RESPONSE_WIRE_BYTES.get());
+    }
+
+    /**
+     * Whether request bodies to this host are sent gzip-compressed.
+     */
+    public static boolean acceptsGzipRequests(String host) {
+        if (host == null || GZIP_REJECTED_HOSTS.contains(host)) {
+            return false;
+        }
+        String lower = host.toLowerCase(Locale.US);
+        for (String suffix : GZIP_REQUEST_HOST_SUFFIXES) {
+            if (lower.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Send a request and read its response, successful or not, to the end.
+     *
+     * @param headers Request headers, including Content-Type when there is a body
+     * @param body    Request body, or null
+     * @throws IOException If the request could not be sent or the response not read
+     */
+    public static Response execute(String method, String url, Map<String, String> headers, byte[] body,
+                                   int connectTimeoutMs, int readTimeoutMs) throws IOException {
+        URL target = new URL(url);
+        Semaphore permits = permitsFor(target.getHost());
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Request interrupted", e);
+        }
+        try {
+            String host = target.getHost();
+            byte[] wireBody = body;
+            if (body != null && body.length >= MIN_GZIP_REQUEST_BYTES && acceptsGzipRequests(host)) {
+                byte[] compressed = gzip(body);
+                if (compressed.length < body.length) {
+                    wireBody = compressed;
+                }
+            }
+            Response response = exchange(method, target, headers, wireBody, wireBody != body,
+                    connectTimeoutMs, readTimeoutMs);
+            if (wireBody != body && rejectsGzip(response)) {
+                GZIP_REJECTED_HOSTS.add(host);
+                wireBody = body;
+                response = exchange(method, target, headers, body, false, connectTimeoutMs, readTimeoutMs);
+            }
+            STAT_REQUESTS.incrementAndGet();
+            STAT_REQUEST_BYTES.addAndGet(body != null ? body.length : 0);
+            STAT_REQUEST_WIRE_BYTES.addAndGet(wireBody != null ? wireBody.length : 0);
+            STAT_RESPONSE_BYTES.addAndGet(response.body.length);
+            STAT_RESPONSE_WIRE_BYTES.addAndGet(response.wireBytes);
+            return response;
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Send a request whose body is written straight into the connection and hand a successful
+     * response to {@code reader} while it arrives, without buffering either side.
+     *
+     * The body goes out with chunked transfer encoding, gzip-compressed for hosts that accept
+     * it. A host that insists on a length (411) is sent the body buffered once, and from then
+     * on. A successful body longer than {@code maxResponseBytes} once decoded fails the request;
+     * an error body is cut off at that size and returned like {@link #execute} does. A successful
+     * response is returned with an empty body. If the reader throws, the connection is dropped
+     * at once, which also stops the server from generating the rest of the reply.
+     *
+     * @param body             Request body, or null
+     * @param maxResponseBytes Largest response body accepted, after gzip decoding
+     * @throws IOException If the request failed, the response was too large or the reader threw
+     */
+    public static Response send(String method, String url, Map<String, String> headers, BodyWriter body,
+                                BodyReader reader, int connectTimeoutMs, int readTimeoutMs, int maxResponseBytes)
+            throws IOException {
+        URL target = new URL(url);
+        Semaphore permits = permitsFor(target.getHost());
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Request interrupted", e);
+        }
+        try {
+            String host = target.getHost();
+            boolean gzipBody = body != null && acceptsGzipRequests(host);
+            boolean chunked = body != null && !CHUNKED_REJECTED_HOSTS.contains(host);
+            Traffic traffic = new Traffic();
+            Response response = sendOnce(method, target, headers, body, gzipBody, chunked, reader,
+                    connectTimeoutMs, readTimeoutMs, maxResponseBytes, traffic);
+            if (gzipBody && rejectsGzip(response)) {
+                GZIP_REJECTED_HOSTS.add(host);
+                gzipBody = false;
+                response = sendOnce(method, target, headers, body, false, chunked, reader,
+                        connectTimeoutMs, readTimeoutMs, maxResponseBytes, traffic);
+            }
+            if (chunked && response.code == 411) {
+                CHUNKED_REJECTED_HOSTS.add(host);
+                response = sendOnce(method, target, headers, body, gzipBody, false, reader,
+                        connectTimeoutMs, readTimeoutMs, maxResponseBytes, traffic);
+            }
+            STAT_REQUESTS.incrementAndGet();
+            STAT_REQUEST_BYTES.addAndGet(traffic.requestBytes);
+            STAT_REQUEST_WIRE_BYTES.addAndGet(traffic.requestWireBytes);
+            STAT_RESPONSE_BYTES.addAndGet(traffic.responseBytes);
+            STAT_RESPONSE_WIRE_BYTES.addAndGet(response.wireBytes);
+            return response;
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Send a request and hand a successful response to {@code handler} line by line as it
+     * arrives, for server-sent events. Otherwise behaves like {@link #send}.
+     *
+     * @param otherwise Reads a successful response that is not {@code text/event-stream}, as
+     *                  sent by servers that ignore a request to stream
+     * @throws IOException If the request failed, the stream broke off or the handler threw
+     */
+    public static Response stream(String method, String url, Map<String, String> headers, BodyWriter body,
+                                  int connectTimeoutMs, int readTimeoutMs, int maxResponseBytes,
+                                  final LineHandler handler, final BodyReader otherwise) throws IOException {
+        return send(method, url, headers, body, (in, contentType) -> {
+            if (!isEventStream(contentType)) {
+                otherwise.readFrom(in, contentType);
+                return;
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                handler.onLine(line);
+            }
+        }, connectTimeoutMs, readTimeoutMs, maxResponseBytes);
+    }
+
+    /**
+     * A response without a Content-Type is taken for the event stream that was asked for.
+     */
+    private static boolean isEventStream(String contentType) {
+        return contentType == null || contentType.trim().toLowerCase(Locale.US).startsWith("text/event-stream");
+    }
+
+    private static Response sendOnce(String method, URL target, Map<String, String> headers, final BodyWriter body,
+                                     final boolean gzipBody, boolean chunked, BodyReader reader,
+                                     int connectTimeoutMs, int readTimeoutMs, int maxResponseBytes,
+                                     final Traffic traffic) throws IOException {
+        BodyWriter wireBody = null;
+        int length = -1;
+        if (body != null) {
+            wireBody = out -> {
+                CountingOutputStream wire = new CountingOutputStream(out);
+                GZIPOutputStream compressed = gzipBody ? new GZIPOutputStream(wire, 8192) : null;
+                CountingOutputStream plain = new CountingOutputStream(compressed != null ? compressed : wire);
+                body.writeTo(plain);
+                if (compressed != null) {
+                    compressed.finish();
+                }
+                plain.flush();
+                traffic.requestBytes = plain.count;
+                traffic.requestWireBytes = wire.count;
+            };
+            if (!chunked) {
+                ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+                wireBody.writeTo(buffer);
+                final byte[] bytes = buffer.toByteArray();
+                wireBody = out -> out.write(bytes);
+                length = bytes.length;
+            }
+        }
+
+        HttpURLConnection conn = null;
+        boolean reusable = false;
+        try {
+            conn = open(method, target, headers, wireBody, length, gzipBody, connectTimeoutMs, readTimeoutMs);
+            int code = conn.getResponseCode();
+            Response response;
+            if (code >= 200 && code < 300) {
+                CountingInputStream wire = new CountingInputStream(conn.getInputStream());
+                InputStream decoded = "gzip".equalsIgnoreCase(conn.getContentEncoding())
+                        ? new GZIPInputStream(wire) : wire;
+                LimitedInputStream plain = new LimitedInputStream(decoded, maxResponseBytes);
+                boolean complete = false;
+                try {
+                    reader.readFrom(plain, conn.getContentType());
+                    // Whatever the reader left, such as a trailing newline, keeps the connection busy
+                    skipRest(plain);
+                    skipRest(wire);
+                    complete = true;
+                } finally {
+                    if (!complete) {
+                        // Drop the connection first, so closing does not read the rest of an abandoned reply
+                        conn.disconnect();
+                    }
+                    try {
+                        plain.close();
+                    } catch (IOException e) {
+                        if (complete) {
+                            throw e;
+                        }
+                    }
+                }
+                response = new Response(code, new byte[0], null, (int) wire.count, false);
+                traffic.responseBytes = plain.count;
+            } else {
+                response = readResponse(conn, code, maxResponseBytes);
+                traffic.responseBytes = response.body.length;
+            }
+            reusable = !response.truncated;
+            return response;
+        } finally {
+            if (conn != null && !reusable) {
+                conn.disconnect();
+            }
+        }
+    }
+
+    private static Response exchange(String method, URL target, Map<String, String> headers, final byte[] body,
+                                     boolean gzipBody, int connectTimeoutMs, int readTimeoutMs) throws IOException {
+        HttpURLConnection conn = null;
+        boolean reusable = false;
+        try {
+            BodyWriter writer = body != null && body.length > 0 ? out -> out.write(body) : null;
+            conn = open(method, target, headers, writer, writer != null ? body.length : -1, gzipBody,
+                    connectTimeoutMs, readTimeoutMs);
+            Response response = readResponse(conn, conn.getResponseCode(), Integer.MAX_VALUE);
+            reusable = !response.truncated;
+            return response;
+        } finally {
+            if (conn != null && !reusable) {
+                conn.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Open a connection and send the request.
+     *
+     * @param length Body length, or -1 to send the body in chunks
+     */
+    private static HttpURLConnection open(String method, URL target, Map<String, String> headers, BodyWriter body,
+                                          int length, boolean gzipBody, int connectTimeoutMs, int readTimeoutMs)
+            throws IOException {
+        Map<String, String> requestHeaders = new LinkedHashMap<>(headers);
+        requestHeaders.put("Accept-Encoding", "gzip");
+        if (gzipBody) {
+            requestHeaders.put("Content-Encoding", "gzip");
+        }
+        HttpURLConnection conn = (HttpURLConnection) target.openConnection();
+        boolean sent = false;
+        try {
+            conn.setRequestMethod(method);
+            conn.setConnectTimeout(connectTimeoutMs);
+            conn.setReadTimeout(readTimeoutMs);
+            conn.setUseCaches(false);
+            conn.setDoInput(true);
+            for (Map.Entry<String, String> entry : requestHeaders.entrySet()) {
+                conn.setRequestProperty(entry.getKey(), entry.getValue());
+            }
+            if (body != null) {
+                conn.setDoOutput(true);
+                if (length >= 0) {
+                    conn.setFixedLengthStreamingMode(length);
+                } else {
+                    conn.setChunkedStreamingMode(0);
+                }
+                OutputStream out = conn.getOutputStream();
+                try {
+                    body.writeTo(out);
+                    out.flush();
+                } finally {
+                    out.close();
+                }
+            }
+            sent = true;
+            return conn;
+        } finally {
+            if (!sent) {
+                conn.disconnect();
+            }
+        }
+    }
+
+    /**
+     * Read a whole response, decoding gzip, and cut it off after {@code maxBytes}. A cut-off
+     * response leaves its connection unusable.
+     */
+    private static Response readResponse(HttpURLConnection conn, int code, int maxBytes) throws IOException {
+        String retryAfter = code == 429 || code == 503 ? conn.getHeaderField("Retry-After") : null;
+        InputStream in = code >= 200 && code < 300 ? conn.getInputStream() : conn.getErrorStream();
+        if (in == null) {
+            return new Response(code, new byte[0], retryAfter, 0, false);
+        }
+        CountingInputStream wire = new CountingInputStream(in);
+        boolean truncated = false;
+        try {
+            InputStream decoded = wire;
+            if ("gzip".equalsIgnoreCase(conn.getContentEncoding())) {
+                try {
+                    decoded = new GZIPInputStream(wire);
+                } catch (EOFException e) {
+                    // An empty body has no gzip header
+                    if (wire.count > 0) {
+                        throw e;
+                    }
+                    return new Response(code, new byte[0], retryAfter, 0, false);
+                }
+            }
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            byte[] chunk = new byte[8192];
+            int read;
+            while ((read = decoded.read(chunk)) != -1) {
+                if (read > maxBytes - buffer.size()) {
+                    buffer.write(chunk, 0, maxBytes - buffer.size());
+                    truncated = true;
+                    break;
+                }
+                buffer.write(chunk, 0, read);
+            }
+            if (!truncated) {
+                skipRest(wire);
+            }
+            return new Response(code, buffer.toByteArray(), retryAfter, (int) wire.count, truncated);
+        } finally {
+            if (!truncated) {
+                // Closing a fully read stream returns its connection to the pool
+                wire.close();
+            }
+        }
+    }
+
+    /**
+     * Whether the server refused a request because its body was gzip-encoded.
+     */
+    private static boolean rejectsGzip(Response response) throws UnsupportedEncodingException {
+        if (response.code == 415) {
+            return true;
+        }
+        if (response.code != 400) {
+            return false;
+        }
+        String message = response.text("UTF-8").toLowerCase(Locale.US);
+        return message.contains("gzip") || message.contains("content-encoding");
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(data.length / 4 + 64);
+        GZIPOutputStream out = new GZIPOutputStream(buffer);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        return buffer.toByteArray();
+    }
+
+    private static Semaphore permitsFor(String host) {
+        Semaphore permits = HOST_PERMITS.get(host);
+        if (permits == null) {
+            Semaphore created = new Semaphore(MAX_CONNECTIONS_PER_HOST, true);
+            permits = HOST_PERMITS.putIfAbsent(host, created);
+            if (permits == null) {
+                permits = created;
+            }
+        }
+        return permits;
+    }
+
+    /**
+     * Read a stream to its end, discarding what is left.
+     */
+    private static void skipRest(InputStream in) throws IOException {
+        byte[] chunk = new byte[1024];
+        while (in.read(chunk) != -1) {
+            // Discard
+        }
+    }
+
+    /**
+     * Bytes of one request and response, for {@link #stats()}.
+     */
+    private static final class Traffic {
+        long requestBytes;
+        long requestWireBytes;
+        long responseBytes;
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Fails a read once more than {@code limit} bytes came through.
+     */
+    private static final class LimitedInputStream extends CountingInputStream {
+        private final int limit;
+
+        LimitedInputStream(InputStream in, int limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            checkLimit();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            checkLimit();
+            return read;
+        }
+
+        private void checkLimit() throws IOException {
+            if (count > limit) {
+                throw new IOException("Response larger than " + limit / 1024 + " KB");
+            }
+        }
+    }
+
+    private static final class CountingOutputStream extends FilterOutputStream {
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+            count += length;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package bin.mt.plugin.net;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+
+/**
+ * Moves org.json trees to and from HTTP bodies with the platform's streaming
+ * {@link JsonWriter} and {@link JsonReader}.
+ *
+ * A request is serialised token by token into the connection instead of through
+ * {@code toString()} and {@code getBytes()}, and a response is built into a
+ * {@link JSONObject} as it is read off the socket instead of from a String holding the
+ * whole body. Values come out as {@code new JSONObject(String)} would produce them:
+ * integers that fit are Integer, other integers Long, other numbers Double, and JSON null
+ * is {@link JSONObject#NULL}.
+ */
+public final class JsonStreams {
+
+    private static final int WRITE_BUFFER_CHARS = 8192;
+
+    private JsonStreams() {
+    }
+
+    /**
+     * A request body that writes {@code json} as UTF-8 when the request is sent. Changes to the
+     * object before then are included.
+     */
+    public static HttpTransport.BodyWriter writer(final JSONObject json) {
+        return out -> {
+            JsonWriter writer = new JsonWriter(new BufferedWriter(
+                    new OutputStreamWriter(out, StandardCharsets.UTF_8), WRITE_BUFFER_CHARS));
+            write(writer, json);
+            // Not closed: the transport owns the connection stream
+            writer.flush();
+        };
+    }
+
+    /**
+     * Read one JSON object from a UTF-8 stream. Anything after the object is left unread.
+     *
+     * @throws IOException If the stream does not hold a well-formed JSON object
+     */
+    public static JSONObject readObject(InputStream in) throws IOException {
+        JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            JsonToken token = reader.peek();
+            if (token != JsonToken.BEGIN_OBJECT) {
+                throw new IOException("Failed to parse JSON response: expected an object but found " + token);
+            }
+            return (JSONObject) readValue(reader);
+        } catch (JSONException | IllegalStateException e) {
+            throw new IOException("Failed to parse JSON response: " + e.getMessage(), e);
+        }
+    }
+
+    private static void write(JsonWriter writer, Object value) throws IOException {
+        if (value == null || value == JSONObject.NULL) {
+            writer.nullValue();
+        } else if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            writer.beginObject();
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                writer.name(key);
+                write(writer, object.opt(key));
+            }
+            writer.endObject();
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            writer.beginArray();
+            for (int i = 0; i < array.length(); i++) {
+                write(writer, array.opt(i));
+            }
+            writer.endArray();
+        } else if (value instanceof Boolean) {
+            writer.value((Boolean) value);
+        } else if (value instanceof Number) {
+            writer.value((Number) value);
+        } else {
+            // Strings, and anything else the way JSONObject.toString() writes it
+            writer.value(value.toString());
+        }
+    }
+
+    private static Object readValue(JsonReader reader) throws IOException, JSONException {
+        JsonToken token = reader.peek();
+        switch (token) {
+            case BEGIN_OBJECT: {
+                JSONObject object = new JSONObject();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    object.put(name, readValue(reader));
+                }
+                reader.endObject();
+                return object;
+            }
+            case BEGIN_ARRAY: {
+                JSONArray array = new JSONArray();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    array.put(readValue(reader));
+                }
+                reader.endArray();
+                return array;
+            }
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                return parseNumber(reader.nextString());
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            default:
+                throw new IOException("Failed to parse JSON response: unexpected " + token);
+        }
+    }
+
+    private static Object parseNumber(String literal) {
+        if (literal.indexOf('.') < 0 && literal.indexOf('e') < 0 && literal.indexOf('E') < 0) {
+            try {
+                long value = Long.parseLong(literal);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    return (int) value;
+                }
+                return value;
+            } catch (NumberFormatException ignored) {
+                // Too long for a long
+            }
+        }
+        try {
+            return Double.valueOf(literal);
+        } catch (NumberFormatException e) {
+            return literal;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package bin.mt.plugin.net;
+
+import java.io.IOException;
+
+/**
+ * Classifies failed API requests by their error message, for the engines' retry and
+ * bisection decisions.
+ *
+ * Messages carry the HTTP status either as {@code HTTP 400} (transport errors) or as
+ * {@code (400)} (errors formatted by the engines). Google APIs answer a bad or restricted
+ * key with 400 INVALID_ARGUMENT rather than 401, so a 400 only counts as a content error
+ * when it does not name the key or a permission.
+ */
+public final class RequestErrors {
+
+    private static final String[] AUTH_MARKERS = {
+            "API_KEY_INVALID",
+            "API key not valid",
+            "API key expired",
+            "API_KEY_SERVICE_BLOCKED",
+            "PERMISSION_DENIED",
+    };
+
+    private RequestErrors() {
+    }
+
+    /**
+     * Whether the message reports the given HTTP status.
+     */
+    public static boolean hasStatus(String message, int status) {
+        return message != null && (message.contains("(" + status + ")") || message.contains("HTTP " + status));
+    }
+
+    /**
+     * Failures of the key or its permissions, which no change to the request content can fix.
+     */
+    public static boolean isAuthError(IOException e) {
+        String message = e.getMessage();
+        if (hasStatus(message, 401) || hasStatus(message, 403)) {
+            return true;
+        }
+        if (!hasStatus(message, 400)) {
+            return false;
+        }
+        for (String marker : AUTH_MARKERS) {
+            if (message.contains(marker)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static boolean isRateLimitError(IOException e) {
+        return hasStatus(e.getMessage(), 429);
+    }
+
+    public static boolean isAuthOrRateLimitError(IOException e) {
+        return isAuthError(e) || isRateLimitError(e);
+    }
+
+    /**
+     * Failures caused by what was sent, which splitting the request can isolate.
+     */
+    public static boolean isContentError(IOException e) {
+        return hasStatus(e.getMessage(), 400) && !isAuthError(e);
+    }
+}
@@ -0,0 +1,216 @@
+package bin.mt.plugin.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SegmentStoreTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void putGetOverwriteRemove() throws IOException {
+        SegmentStore store = SegmentStore.open(temp.getRoot());
+        store.put("a", "1");
+        store.put("b", "2");
+        store.put("a", "3");
+        assertEquals("3", store.get("a"));
+        assertEquals("2", store.get("b"));
+        assertEquals(2, store.size());
+        assertTrue(store.garbageBytes() > 0);
+
+        store.remove("b");
+        assertNull(store.get("b"));
+        assertNull(store.get("missing"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void growsPastInitialIndexCapacity() throws IOException {
+        SegmentStore store = SegmentStore.open(temp.getRoot());
+        for (int i = 0; i < 5000; i++) {
+            store.put("key" + i, "value" + i);
+        }
+        assertEquals(5000, store.size());
+        for (int i = 0; i < 5000; i++) {
+            assertEquals("value" + i, store.get("key" + i));
+        }
+    }
+
+    @Test
+    public void reopensFromIndex() throws IOException {
+        SegmentStore store = SegmentStore.open(temp.getRoot());
+        store.put("greeting", "Merhaba");
+        store.put("farewell", "Hoşça kal");
+        store.remove("farewell");
+        store.flush();
+
+        SegmentStore reopened = SegmentStore.open(copyOf(temp.getRoot(), true));
+        assertEquals("Merhaba", reopened.get("greeting"));
+        assertNull(reopened.get("farewell"));
+        assertEquals(1, reopened.size());
+    }
+
+    @Test
+    public void replaysRecordsWrittenAfterIndexUpdate() throws IOException {
+        SegmentStore store = SegmentStore.open(temp.getRoot());
+        store.put("a", "1");
+        store.put("b", "2");
+        store.flush();
+        File staleIndex = new File(temp.newFolder(), "index.bin");
+        Files.copy(new File(temp.getRoot(), "index.bin").toPath(), staleIndex.toPath());
+        store.put("c", "3");
+        store.remove("a");
+        store.flush();
+
+        // Segments from after the writes, index from before them
+        File copy = copyOf(temp.getRoot(), false);
+        Files.copy(staleIndex.toPath(), new File(copy, "index.bin").toPath());
+        SegmentStore reopened = SegmentStore.open(copy);
+        assertNull(reopened.get("a"));
+        assertEquals("2", reopened.get("b"));
+        assertEquals("3", reopened.get("c"));
+        assertEquals(2, reopened.size());
+    }
+
+    @Test
+    public void rebuildsMissingIndexFromSegments() throws IOException {
+        SegmentStore store = SegmentStore.open(temp.getRoot());
+        for (int i = 0; i < 100; i++) {
+            store.put("key" + i, "value" + i);
+        }
+        store.put("key7", "changed");
+        store.remove("key8");
+        store.flush();
+
+        SegmentStore reopened = SegmentStore.open(copyOf(temp.getRoot(), false));
+        assertEquals(99, reopened.size());
+        assertEquals("changed", reopened.get("key7"));
+        assertNull(reopened.get("key8"));
+        assertEquals("value99", reopened.get("key99"));
+    }
+
+    @Test
+    public void dropsRecordWithBadChecksumAndEverythingAfterIt() throws IOException {
+        SegmentStore store = SegmentStore.open(temp.getRoot());
+        store.put("a", "first");
+        store.put("b", "second");
+        store.put("c", "third");
+        store.flush();
+
+        File copy = copyOf(temp.getRoot(), false);
+        File segment = new File(copy, "seg-00001.dat");
+        long length = segment.length();
+        // Flip the last byte of "second" (record b ends 14 + 1 + 5 bytes before record c)
+        long corrupt = length - (14 + 1 + 5) - 1;
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            raf.seek(corrupt);
+            byte b = raf.readByte();
+            raf.seek(corrupt);
+            raf.writeByte(b ^ 0x01);
+        }
+
+        SegmentStore reopened = SegmentStore.open(copy);
+        assertEquals("first", reopened.get("a"));
+        assertNull(reopened.get("b"));
+        assertNull(reopened.get("c"));
+        assertEquals(1, reopened.size());
+        assertEquals(14 + 1 + 5, segment.length());
+
+        // The truncated segment takes new writes
+        reopened.put("d", "fourth");
+        assertEquals("fourth", reopened.get("d"));
+    }
+
+    @Test
+    public void dropsTornTail() throws IOException {
+        SegmentStore store = SegmentStore.open(temp.getRoot());
+        store.put("a", "first");
+        store.put("b", "second");
+        store.flush();
+
+        File copy = copyOf(temp.getRoot(), false);
+        File segment = new File(copy, "seg-00001.dat");
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        SegmentStore reopened = SegmentStore.open(copy);
+        assertEquals("first", reopened.get("a"));
+        assertNull(reopened.get("b"));
+        assertEquals(14 + 1 + 5, segment.length());
+    }
+
+    @Test
+    public void compactKeepsLiveEntriesAndReleasesGarbage() throws IOException {
+        SegmentStore store = SegmentStore.open(temp.getRoot());
+        Map<String, String> expected = new HashMap<>();
+        for (int round = 0; round < 20; round++) {
+            for (int i = 0; i < 50; i++) {
+                String value = "value" + i + "-" + round;
+                store.put("key" + i, value);
+                expected.put("key" + i, value);
+            }
+        }
+        store.remove("key0");
+        expected.remove("key0");
+        long before = store.diskBytes();
+
+        store.compact();
+
+        assertTrue(store.diskBytes() < before);
+        assertEquals(0, store.garbageBytes());
+        assertEquals(expected.size(), store.size());
+        Map<String, String> seen = new HashMap<>();
+        store.forEach(seen::put);
+        assertEquals(expected, seen);
+
+        store.flush();
+        SegmentStore reopened = SegmentStore.open(copyOf(temp.getRoot(), true));
+        for (Map.Entry<String, String> e : expected.entrySet()) {
+            assertEquals(e.getValue(), reopened.get(e.getKey()));
+        }
+        assertNull(reopened.get("key0"));
+    }
+
+    @Test
+    public void clearRemovesEverything() throws IOException {
+        SegmentStore store = SegmentStore.open(temp.getRoot());
+        store.put("a", "1");
+        store.clear();
+        assertEquals(0, store.size());
+        assertNull(store.get("a"));
+        store.put("b", "2");
+        store.flush();
+
+        SegmentStore reopened = SegmentStore.open(copyOf(temp.getRoot(), true));
+        assertNull(reopened.get("a"));
+        assertEquals("2", reopened.get("b"));
+    }
+
+    /**
+     * Stores are cached per directory, so reopening cold needs a copy of the files.
+     */
+    private File copyOf(File directory, boolean withIndex) throws IOException {
+        File copy = temp.newFolder();
+        for (File file : directory.listFiles()) {
+            String name = file.getName();
+            if (name.startsWith("seg-") || (withIndex && name.equals("index.bin"))) {
+                Files.copy(file.toPath(), new File(copy, name).toPath());
+            }
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,149 @@
+package bin.mt.plugin.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TieredStoreTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private SegmentStore disk;
+
+    @Before
+    public void setUp() throws IOException {
+        disk = SegmentStore.open(temp.getRoot());
+    }
+
+    @Test
+    public void writesBehindUntilFlush() throws IOException {
+        TieredStore store = new TieredStore(disk, 1024 * 1024);
+        store.put("a", "1");
+        assertEquals("1", store.get("a"));
+        assertNull(disk.get("a"));
+
+        store.flush();
+        assertEquals("1", disk.get("a"));
+        assertEquals(1, store.getStats().writesBehind);
+
+        // Nothing dirty left: a second flush writes nothing
+        store.flush();
+        assertEquals(1, store.getStats().writesBehind);
+    }
+
+    @Test
+    public void countsHeapHitsDiskHitsAndMisses() throws IOException {
+        disk.put("a", "1");
+        TieredStore store = new TieredStore(disk, 1024 * 1024);
+
+        assertEquals("1", store.get("a"));
+        assertEquals("1", store.get("a"));
+        assertNull(store.get("b"));
+        assertNull(store.get("b"));
+
+        TieredStore.Stats stats = store.getStats();
+        assertEquals(1, stats.diskHits);
+        assertEquals(1, stats.misses);
+        assertEquals(2, stats.heapHits);
+    }
+
+    @Test
+    public void remembersMissesUntilPut() throws IOException {
+        TieredStore store = new TieredStore(disk, 1024 * 1024);
+        assertNull(store.get("a"));
+        disk.put("a", "behind the tier's back");
+        assertNull(store.get("a"));
+
+        store.put("a", "1");
+        assertEquals("1", store.get("a"));
+    }
+
+    @Test
+    public void unchangedPutIsNotALookupOrAWrite() throws IOException {
+        TieredStore store = new TieredStore(disk, 1024 * 1024);
+        store.put("a", "1");
+        store.flush();
+        store.put("a", "1");
+        store.flush();
+
+        TieredStore.Stats stats = store.getStats();
+        assertEquals(0, stats.heapHits + stats.diskHits + stats.misses);
+        assertEquals(1, stats.writesBehind);
+
+        store.put("a", "2");
+        store.flush();
+        assertEquals("2", disk.get("a"));
+    }
+
+    @Test
+    public void removalIsWrittenBehind() throws IOException {
+        disk.put("a", "1");
+        TieredStore store = new TieredStore(disk, 1024 * 1024);
+        store.remove("a");
+        assertNull(store.get("a"));
+        assertEquals("1", disk.get("a"));
+
+        store.flush();
+        assertNull(disk.get("a"));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedAndWritesDirtyEntriesThrough() throws IOException {
+        // Each entry is 96 + 2 * (1 + 1) = 100 estimated bytes
+        TieredStore store = new TieredStore(disk, 300);
+        store.put("a", "1");
+        store.put("b", "2");
+        store.put("c", "3");
+        store.get("a");
+        store.put("d", "4");
+
+        TieredStore.Stats stats = store.getStats();
+        assertEquals(1, stats.evictions);
+        assertEquals(100, stats.evictedBytes);
+        assertEquals(300, stats.heapBytes);
+        assertEquals(3, stats.heapEntries);
+        // "b" was least recently used and went to disk on eviction
+        assertEquals("2", disk.get("b"));
+        assertNull(disk.get("a"));
+        assertEquals("2", store.get("b"));
+        assertEquals(1, store.getStats().diskHits);
+    }
+
+    @Test
+    public void shrinkingTheBudgetEvicts() throws IOException {
+        TieredStore store = new TieredStore(disk, 1024 * 1024);
+        for (int i = 0; i < 10; i++) {
+            store.put("k" + i, "v" + i);
+        }
+        store.setMaxHeapBytes(0);
+
+        TieredStore.Stats stats = store.getStats();
+        assertEquals(0, stats.heapEntries);
+        assertEquals(0, stats.heapBytes);
+        assertTrue(stats.evictions >= 10);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("v" + i, disk.get("k" + i));
+        }
+    }
+
+    @Test
+    public void clearDropsPendingWrites() throws IOException {
+        disk.put("a", "1");
+        TieredStore store = new TieredStore(disk, 1024 * 1024);
+        store.put("b", "2");
+        store.clear();
+        store.flush();
+
+        assertNull(store.get("a"));
+        assertNull(store.get("b"));
+        assertEquals(0, disk.size());
+    }
+}
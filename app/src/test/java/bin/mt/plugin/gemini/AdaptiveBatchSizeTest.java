@@ -0,0 +1,134 @@
+package bin.mt.plugin.gemini;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.content.SharedPreferences;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class AdaptiveBatchSizeTest {
+
+    private static final long TARGET_MS = 30_000;
+
+    @Test
+    public void growsOnFastFullBatches() {
+        AdaptiveBatchSize size = AdaptiveBatchSize.load(preferences(new HashMap<>()), "gemini", "m", 20);
+        assertEquals(20, size.get());
+        assertTrue(size.onComplete(20, System.nanoTime(), 1000, TARGET_MS));
+        assertEquals(20 + GeminiConstants.ADAPTIVE_BATCH_GROWTH_STEP, size.get());
+    }
+
+    @Test
+    public void doesNotGrowOnPartialOrSlowBatches() {
+        AdaptiveBatchSize size = AdaptiveBatchSize.load(preferences(new HashMap<>()), "gemini", "m", 20);
+        assertFalse(size.onComplete(19, System.nanoTime(), 1000, TARGET_MS));
+        assertFalse(size.onComplete(20, System.nanoTime(), TARGET_MS, TARGET_MS));
+        assertEquals(20, size.get());
+    }
+
+    @Test
+    public void staysWithinBounds() {
+        AdaptiveBatchSize size = AdaptiveBatchSize.load(preferences(new HashMap<>()), "gemini", "m", 1000);
+        assertEquals(GeminiConstants.ADAPTIVE_BATCH_MAX_SIZE, size.get());
+        assertFalse(size.onComplete(size.get(), System.nanoTime(), 1000, TARGET_MS));
+
+        size = AdaptiveBatchSize.load(preferences(new HashMap<>()), "gemini", "m", 1);
+        assertFalse(size.onOverload(System.nanoTime()));
+        assertEquals(GeminiConstants.ADAPTIVE_BATCH_MIN_SIZE, size.get());
+    }
+
+    @Test
+    public void shrinksOncePerEpisode() {
+        AdaptiveBatchSize size = AdaptiveBatchSize.load(preferences(new HashMap<>()), "gemini", "m", 40);
+        long inFlight = System.nanoTime();
+        long alsoInFlight = System.nanoTime();
+        assertTrue(size.onOverload(inFlight));
+        assertEquals(20, size.get());
+
+        // Requests sent before the shrink neither shrink again nor grow it back
+        assertFalse(size.onOverload(alsoInFlight));
+        assertFalse(size.onComplete(40, alsoInFlight, 1000, TARGET_MS));
+        assertEquals(20, size.get());
+
+        assertTrue(size.onOverload(System.nanoTime()));
+        assertEquals(10, size.get());
+    }
+
+    @Test
+    public void persistsPerEngineAndModel() {
+        Map<String, Object> values = new HashMap<>();
+        SharedPreferences preferences = preferences(values);
+        AdaptiveBatchSize size = AdaptiveBatchSize.load(preferences, "gemini", "a", 40);
+        size.onOverload(System.nanoTime());
+        size.save(preferences);
+
+        assertEquals(20, AdaptiveBatchSize.load(preferences, "gemini", "a", 40).get());
+        assertEquals(40, AdaptiveBatchSize.load(preferences, "gemini", "b", 40).get());
+        assertEquals(40, AdaptiveBatchSize.load(preferences, "openai", "a", 40).get());
+    }
+
+    @Test
+    public void changedSettingStartsOver() {
+        SharedPreferences preferences = preferences(new HashMap<>());
+        AdaptiveBatchSize size = AdaptiveBatchSize.load(preferences, "gemini", "a", 40);
+        size.onOverload(System.nanoTime());
+        size.save(preferences);
+
+        assertEquals(30, AdaptiveBatchSize.load(preferences, "gemini", "a", 30).get());
+    }
+
+    @Test
+    public void savesOnlyWhenChanged() {
+        Map<String, Object> values = new HashMap<>();
+        SharedPreferences preferences = preferences(values);
+        AdaptiveBatchSize.load(preferences, "gemini", "a", 40).save(preferences);
+        assertNull(values.get(GeminiConstants.PREF_ADAPTIVE_BATCH_STATE));
+    }
+
+    @Test
+    public void ignoresCorruptState() {
+        Map<String, Object> values = new HashMap<>();
+        values.put(GeminiConstants.PREF_ADAPTIVE_BATCH_STATE, "{not json");
+        assertEquals(40, AdaptiveBatchSize.load(preferences(values), "gemini", "a", 40).get());
+    }
+
+    /**
+     * SharedPreferences over a map; only the calls AdaptiveBatchSize makes are supported.
+     */
+    private static SharedPreferences preferences(Map<String, Object> values) {
+        SharedPreferences.Editor editor = (SharedPreferences.Editor) Proxy.newProxyInstance(
+                AdaptiveBatchSizeTest.class.getClassLoader(), new Class<?>[]{SharedPreferences.Editor.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "putString":
+                            values.put((String) args[0], args[1]);
+                            return proxy;
+                        case "apply":
+                            return null;
+                        case "commit":
+                            return true;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+        return (SharedPreferences) Proxy.newProxyInstance(
+                AdaptiveBatchSizeTest.class.getClassLoader(), new Class<?>[]{SharedPreferences.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getString":
+                            return values.containsKey(args[0]) ? values.get(args[0]) : args[1];
+                        case "edit":
+                            return editor;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+}
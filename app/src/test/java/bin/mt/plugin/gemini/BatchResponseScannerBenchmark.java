@@ -0,0 +1,52 @@
+package bin.mt.plugin.gemini;
+
+import java.util.Locale;
+
+/**
+ * Times {@link BatchResponseScanner} against the regex parser it replaced. Not a unit test;
+ * run {@link #main} directly.
+ *
+ * Replies use the N) format with every fifth item missing, the worst case for the regex
+ * parser, which then tries all three patterns.
+ */
+public final class BatchResponseScannerBenchmark {
+
+    private static final int WARM_UP = 2000;
+    private static final int ITERATIONS = 200;
+
+    public static void main(String[] args) {
+        for (int count : new int[]{20, 100, 400}) {
+            String reply = reply(count);
+            for (int i = 0; i < WARM_UP; i++) {
+                LegacyBatchParser.parse(reply, count);
+                BatchResponseScanner.scan(reply, count, null);
+            }
+            long regex = time(() -> LegacyBatchParser.parse(reply, count));
+            long scanner = time(() -> BatchResponseScanner.scan(reply, count, null));
+            System.out.println(String.format(Locale.US, "%4d items / %5.1f KB: regex %4d us, scanner %4d us",
+                    count, reply.length() / 1024.0, regex / 1000, scanner / 1000));
+        }
+    }
+
+    static String reply(int count) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 1; i <= count; i++) {
+            if (i % 5 == 0) {
+                continue;
+            }
+            sb.append(i).append(") Übersetzung des Eintrags ").append(i).append(" mit etwas Text\n");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return Mean nanoseconds per run
+     */
+    private static long time(Runnable run) {
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            run.run();
+        }
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+}
@@ -0,0 +1,124 @@
+package bin.mt.plugin.gemini;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads the reply shapes in {@code batch_replies.txt} with the scanner and with the regex
+ * parser it replaced. Shapes are read identically unless the file records why they differ
+ * and what the scanner returns instead.
+ */
+public class BatchResponseScannerEquivalenceTest {
+
+    static final class Reply {
+        final String name;
+        final int count;
+        final String text;
+        final String difference;
+        final String[] expected;
+
+        Reply(String name, int count, String text, String difference, String[] expected) {
+            this.name = name;
+            this.count = count;
+            this.text = text;
+            this.difference = difference;
+            this.expected = expected;
+        }
+    }
+
+    @Test
+    public void scannerMatchesRegexParser() throws IOException, JSONException {
+        List<Reply> replies = load();
+        assertTrue(replies.size() >= 48);
+        StringBuilder failures = new StringBuilder();
+        int identical = 0;
+        for (Reply reply : replies) {
+            String[] scanned = BatchResponseScanner.scan(reply.text, reply.count, null).items;
+            String[] legacy = LegacyBatchParser.parse(reply.text, reply.count);
+            if (reply.difference == null) {
+                if (Arrays.equals(scanned, legacy)) {
+                    identical++;
+                } else {
+                    failures.append(reply.name).append(": scanner ").append(Arrays.toString(scanned))
+                            .append(", regex ").append(Arrays.toString(legacy)).append('\n');
+                }
+            } else if (Arrays.equals(scanned, legacy) || !Arrays.equals(scanned, reply.expected)) {
+                failures.append(reply.name).append(" (").append(reply.difference).append("): scanner ")
+                        .append(Arrays.toString(scanned)).append(", regex ").append(Arrays.toString(legacy))
+                        .append(", expected ").append(Arrays.toString(reply.expected)).append('\n');
+            }
+        }
+        assertEquals(failures.toString(), "", failures.toString());
+        assertTrue(identical > replies.size() / 2);
+    }
+
+    @Test
+    public void scannerMatchesRegexParserOnBenchmarkReplies() {
+        for (int count : new int[]{20, 100, 400}) {
+            String reply = BatchResponseScannerBenchmark.reply(count);
+            assertArrayEquals(LegacyBatchParser.parse(reply, count), BatchResponseScanner.scan(reply, count, null).items);
+        }
+    }
+
+    static List<Reply> load() throws IOException, JSONException {
+        List<Reply> replies = new ArrayList<>();
+        try (InputStream in = BatchResponseScannerEquivalenceTest.class.getResourceAsStream("batch_replies.txt");
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String name = null;
+            int count = 0;
+            StringBuilder text = null;
+            String difference = null;
+            String[] expected = null;
+            boolean expectItems = false;
+            String line;
+            while (true) {
+                line = reader.readLine();
+                if (line == null || line.startsWith("=== ")) {
+                    if (name != null) {
+                        String body = text.toString().replaceAll("\n+$", "");
+                        if (name.endsWith("-crlf")) {
+                            body = body.replace("\n", "\r\n");
+                        }
+                        replies.add(new Reply(name, count, body, difference, expected));
+                    }
+                    if (line == null) {
+                        break;
+                    }
+                    String[] header = line.substring(4).trim().split(" ");
+                    name = header[0];
+                    count = Integer.parseInt(header[1]);
+                    text = new StringBuilder();
+                    difference = null;
+                    expected = null;
+                } else if (line.startsWith("--- differs: ")) {
+                    difference = line.substring("--- differs: ".length());
+                    expectItems = true;
+                } else if (expectItems) {
+                    JSONArray items = new JSONArray(line);
+                    expected = new String[items.length()];
+                    for (int i = 0; i < items.length(); i++) {
+                        expected[i] = items.isNull(i) ? null : items.getString(i);
+                    }
+                    expectItems = false;
+                } else if (name != null && difference == null) {
+                    text.append(line).append('\n');
+                }
+            }
+        }
+        return replies;
+    }
+}
@@ -0,0 +1,78 @@
+package bin.mt.plugin.gemini;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class BatchResponseScannerTest {
+
+    @Test
+    public void readsEachFormat() {
+        assertScan("[1] a\n[2] b", BatchResponseScanner.Format.BRACKET, "a", "b");
+        assertScan("1. a\n2. b", BatchResponseScanner.Format.DOT, "a", "b");
+        assertScan("1) a\n2) b", BatchResponseScanner.Format.PAREN, "a", "b");
+    }
+
+    @Test
+    public void mostItemsWin() {
+        assertScan("1. a\n[1] x\n2. b", BatchResponseScanner.Format.DOT, "a\n[1] x", "b");
+    }
+
+    @Test
+    public void preferredFormatWinsTies() {
+        String reply = "1. a\n2) b";
+        assertEquals(BatchResponseScanner.Format.DOT, BatchResponseScanner.scan(reply, 2, null).format);
+        BatchResponseScanner.Result paren = BatchResponseScanner.scan(reply, 2, BatchResponseScanner.Format.PAREN);
+        assertEquals(BatchResponseScanner.Format.PAREN, paren.format);
+        assertArrayEquals(new String[]{null, "b"}, paren.items);
+        assertEquals(1, paren.found);
+    }
+
+    @Test
+    public void rememberedFormatIsPerModel() {
+        BatchResponseScanner.rememberFormat("gemini|test-model", BatchResponseScanner.Format.PAREN);
+        assertEquals(BatchResponseScanner.Format.PAREN, BatchResponseScanner.lastFormat("gemini|test-model"));
+        assertNull(BatchResponseScanner.lastFormat("gemini|other-model"));
+    }
+
+    @Test
+    public void dotMarkerNeedsWhitespace() {
+        BatchResponseScanner.Result result = BatchResponseScanner.scan("1.5 liters\n2. b", 2, null);
+        assertArrayEquals(new String[]{null, "b"}, result.items);
+    }
+
+    @Test
+    public void skipsPreambleAndFences() {
+        assertScan("Translations:\n```\n[1] a\n[2] b\n```\nDone.", BatchResponseScanner.Format.BRACKET, "a", "b");
+    }
+
+    @Test
+    public void countsRepeatedItemOnce() {
+        BatchResponseScanner.Result result = BatchResponseScanner.scan("[1] a\n[1] b\n[2] c", 2, null);
+        assertArrayEquals(new String[]{"b", "c"}, result.items);
+        assertEquals(2, result.found);
+    }
+
+    @Test
+    public void recognisesMarkers() {
+        int[] marker = new int[2];
+        assertEquals(BatchResponseScanner.Format.BRACKET, BatchResponseScanner.markerAt("[12] x", 0, 6, marker));
+        assertArrayEquals(new int[]{12, 4}, marker);
+        assertEquals(BatchResponseScanner.Format.DOT, BatchResponseScanner.markerAt("3.", 0, 2, marker));
+        assertArrayEquals(new int[]{3, 2}, marker);
+        assertEquals(BatchResponseScanner.Format.BRACKET, BatchResponseScanner.markerAt("[1234567] x", 0, 11, marker));
+        assertEquals(Integer.MAX_VALUE, marker[0]);
+        assertNull(BatchResponseScanner.markerAt("[1) x", 0, 5, marker));
+        assertNull(BatchResponseScanner.markerAt("x1. y", 0, 5, marker));
+        assertNull(BatchResponseScanner.markerAt("[]", 0, 2, marker));
+    }
+
+    private static void assertScan(String reply, BatchResponseScanner.Format format, String... items) {
+        BatchResponseScanner.Result result = BatchResponseScanner.scan(reply, items.length, null);
+        assertEquals(format, result.format);
+        assertArrayEquals(items, result.items);
+        assertEquals(items.length, result.found);
+    }
+}
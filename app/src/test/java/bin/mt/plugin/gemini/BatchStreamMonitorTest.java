@@ -0,0 +1,146 @@
+package bin.mt.plugin.gemini;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+public class BatchStreamMonitorTest {
+
+    private static final String[] SOURCES = {"one", "two", "three"};
+
+    @Test
+    public void acceptsWellFormedReplyInAnyChunking() {
+        String reply = "Here are the translations:\n[1] eins\n[2] zwei\nmit zweiter Zeile\n[3] drei\n\n";
+        for (int chunk = 1; chunk <= reply.length(); chunk++) {
+            BatchStreamMonitor monitor = new BatchStreamMonitor(SOURCES);
+            assertNull("chunk " + chunk, stream(monitor, reply, chunk));
+            assertEquals(reply, monitor.text());
+        }
+    }
+
+    @Test
+    public void toleratesFencesAndLinesOfOtherFormats() {
+        String reply = "```\n1. Schritte:\n[1] öffnen\n2. zwei\n3. drei\n```\n";
+        assertNull(stream(new BatchStreamMonitor(SOURCES), reply, 5));
+    }
+
+    @Test
+    public void abortsOnProse() {
+        BatchStreamMonitor monitor = new BatchStreamMonitor(SOURCES);
+        String prose = "I am sorry, but I cannot help with translating these strings because ";
+        StringBuilder reply = new StringBuilder();
+        while (reply.length() <= BatchStreamMonitor.MAX_PREAMBLE_CHARS) {
+            reply.append(prose);
+        }
+        assertEquals("prose instead of numbered items", stream(monitor, reply.toString(), 16));
+        assertEquals(0, monitor.acceptedItems());
+        assertEquals("", monitor.acceptedText());
+    }
+
+    @Test
+    public void abortsOnSkippedItem() {
+        BatchStreamMonitor monitor = new BatchStreamMonitor(SOURCES);
+        assertEquals("items 2-2 skipped", stream(monitor, "[1] eins\n[3] drei\n", 4));
+        assertEquals(1, monitor.acceptedItems());
+        assertEquals("[1] eins\n", monitor.acceptedText());
+    }
+
+    @Test
+    public void abortsOnRepeatedItem() {
+        BatchStreamMonitor monitor = new BatchStreamMonitor(SOURCES);
+        assertEquals("item 1 repeated", stream(monitor, "1. eins\n2. zwei\n1. eins\n", 4));
+        assertEquals(2, monitor.acceptedItems());
+        assertEquals("1. eins\n2. zwei\n", monitor.acceptedText());
+    }
+
+    @Test
+    public void abortsOnItemBeyondBatch() {
+        BatchStreamMonitor monitor = new BatchStreamMonitor(SOURCES);
+        assertEquals("item 4 beyond the 3 sent", stream(monitor, "1) a\n2) b\n3) c\n4) d\n", 4));
+        assertEquals(3, monitor.acceptedItems());
+    }
+
+    @Test
+    public void abortsWhenFirstItemIsNotOne() {
+        BatchStreamMonitor monitor = new BatchStreamMonitor(SOURCES);
+        assertEquals("first item numbered 2", stream(monitor, "[2] zwei\n", 4));
+        assertEquals(0, monitor.acceptedItems());
+    }
+
+    @Test
+    public void abortsRunawayItemBeforeItsLineEnds() {
+        BatchStreamMonitor monitor = new BatchStreamMonitor(SOURCES);
+        StringBuilder reply = new StringBuilder("[1] eins\n[2] ");
+        for (int i = 0; i < 100; i++) {
+            reply.append("und so weiter ");
+        }
+        assertEquals("item 2 runs on", stream(monitor, reply.toString(), 32));
+        assertEquals(1, monitor.acceptedItems());
+        assertEquals("[1] eins\n", monitor.acceptedText());
+    }
+
+    @Test
+    public void runawayLimitScalesWithSource() {
+        StringBuilder source = new StringBuilder();
+        StringBuilder translation = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            source.append("word ");
+            translation.append("Wort ");
+        }
+        BatchStreamMonitor monitor = new BatchStreamMonitor(new String[]{source.toString()});
+        assertNull(stream(monitor, "[1] " + translation + "\n", 32));
+    }
+
+    @Test
+    public void longFirstItemIsNotPreamble() {
+        StringBuilder item = new StringBuilder();
+        while (item.length() <= BatchStreamMonitor.MAX_PREAMBLE_CHARS) {
+            item.append("Wort ");
+        }
+        // Checked while its line is still arriving
+        BatchStreamMonitor monitor = new BatchStreamMonitor(new String[]{item.toString()});
+        assertNull(stream(monitor, "[1] " + item + "\n", 8));
+    }
+
+    @Test
+    public void abortsOnCommentaryAfterLastItem() {
+        BatchStreamMonitor monitor = new BatchStreamMonitor(SOURCES);
+        String items = "[1] eins\n[2] zwei\n[3] drei\n\n";
+        assertEquals("text after the last item", stream(monitor, items + "Note: these are informal.\n", 4));
+        assertEquals(3, monitor.acceptedItems());
+        assertEquals(items, monitor.acceptedText());
+    }
+
+    @Test
+    public void resetForgetsReply() {
+        BatchStreamMonitor monitor = new BatchStreamMonitor(SOURCES);
+        assertEquals("items 2-2 skipped", stream(monitor, "[1] eins\n[3] drei\n", 4));
+        monitor.reset();
+        assertNull(monitor.abortReason());
+        assertNull(stream(monitor, "[1] eins\n[2] zwei\n[3] drei\n", 4));
+        assertTrue(monitor.text().startsWith("[1] eins"));
+    }
+
+    /**
+     * Feed the reply in chunks of the given size.
+     *
+     * @return The abort reason, or null if the whole reply was accepted
+     */
+    private static String stream(BatchStreamMonitor monitor, String reply, int chunk) {
+        try {
+            for (int i = 0; i < reply.length(); i += chunk) {
+                monitor.append(reply.substring(i, Math.min(reply.length(), i + chunk)));
+            }
+            return null;
+        } catch (BatchStreamMonitor.AbortException e) {
+            assertEquals("Batch reply went off format: " + monitor.abortReason(), e.getMessage());
+            return monitor.abortReason();
+        } catch (RuntimeException e) {
+            fail(e.toString());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package bin.mt.plugin.gemini;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FuzzyIndexTest {
+
+    private static final String[] WORDS = {
+            "open", "close", "file", "folder", "delete", "copy", "move", "rename", "archive", "extract",
+            "cannot", "failed", "to", "the", "selected", "item", "items", "permission", "storage", "network",
+            "settings", "backup", "restore", "download", "upload", "share", "search", "sort", "by", "name",
+            "size", "date", "type", "hidden", "show", "create", "new", "empty", "read", "write",
+    };
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void findsNearDuplicatesOnly() throws IOException {
+        FuzzyIndex index = FuzzyIndex.open(temp.getRoot(), "en", "tr");
+        index.add("Delete the selected file?", "Seçili dosya silinsin mi?", "gemini");
+        index.add("Network connection lost", "Ağ bağlantısı kesildi", "gemini");
+
+        List<FuzzyIndex.Match> matches = index.query("Delete the selected files?", 3, 0.8);
+        assertEquals(1, matches.size());
+        assertEquals("Seçili dosya silinsin mi?", matches.get(0).translation);
+        assertTrue(matches.get(0).similarity < 1.0);
+
+        assertTrue(index.query("Sort by date", 3, 0.5).isEmpty());
+    }
+
+    @Test
+    public void verificationIsCaseSensitive() throws IOException {
+        FuzzyIndex index = FuzzyIndex.open(temp.getRoot(), "en", "tr");
+        index.add("Delete file", "Dosyayı sil", "gemini");
+
+        List<FuzzyIndex.Match> matches = index.query("DELETE FILE", 1, 0.0);
+        assertEquals(1, matches.size());
+        assertTrue(matches.get(0).similarity < 0.5);
+        assertEquals(1.0, index.query("Delete   file", 1, 0.0).get(0).similarity, 0.0);
+    }
+
+    @Test
+    public void ignoresExactDuplicatesPerOrigin() throws IOException {
+        FuzzyIndex index = FuzzyIndex.open(temp.getRoot(), "en", "tr");
+        index.add("Rename", "Yeniden adlandır", "gemini");
+        index.add("Rename", "Yeniden adlandır", "gemini");
+        assertEquals(1, index.size());
+        index.add("Rename", "Ad değiştir", "import");
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void reloadsFlushedEntries() throws IOException {
+        FuzzyIndex index = FuzzyIndex.open(temp.getRoot(), "en", "tr");
+        index.add("Copy to clipboard", "Panoya kopyala", "gemini");
+        index.flush();
+        index.add("Paste from clipboard", "Panodan yapıştır", "gemini");
+        index.flush();
+
+        // Instances are cached per directory, so load a copy of the files cold
+        File copy = temp.newFolder("copy");
+        File from = new File(temp.getRoot(), "fuzzy_index/en_tr");
+        File to = new File(copy, "fuzzy_index/en_tr");
+        assertTrue(to.mkdirs());
+        for (File file : from.listFiles()) {
+            Files.copy(file.toPath(), new File(to, file.getName()).toPath());
+        }
+
+        FuzzyIndex reopened = FuzzyIndex.open(copy, "en", "tr");
+        assertEquals(2, reopened.size());
+        List<FuzzyIndex.Match> matches = reopened.query("Paste from the clipboard", 1, 0.8);
+        assertEquals(1, matches.size());
+        assertEquals("Panodan yapıştır", matches.get(0).translation);
+        assertEquals("gemini", matches.get(0).origin);
+    }
+
+    @Test
+    public void deleteStartsEmpty() throws IOException {
+        FuzzyIndex index = FuzzyIndex.open(temp.getRoot(), "en", "tr");
+        index.add("Share", "Paylaş", "gemini");
+        index.flush();
+        FuzzyIndex.delete(temp.getRoot(), "en", "tr");
+        assertEquals(0, FuzzyIndex.open(temp.getRoot(), "en", "tr").size());
+    }
+
+    @Test
+    public void keepsRecallInLargeIndexOfSimilarStrings() throws IOException {
+        // Strings drawn from a small vocabulary crowd the same buckets, as UI strings do
+        Random random = new Random(42);
+        int count = 100_000;
+        String[] sources = new String[count];
+        FuzzyIndex index = FuzzyIndex.open(temp.getRoot(), "en", "tr");
+        for (int i = 0; i < count; i++) {
+            StringBuilder sb = new StringBuilder();
+            int words = 4 + random.nextInt(5);
+            for (int w = 0; w < words; w++) {
+                if (w > 0) sb.append(' ');
+                sb.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            sources[i] = sb.append(' ').append(i % 1000).toString();
+            index.add(sources[i], "t" + i, "gemini");
+        }
+        index.flush();
+
+        int queries = 200;
+        int found = 0;
+        for (int q = 0; q < queries; q++) {
+            int id = random.nextInt(count);
+            String query = sources[id] + "s";
+            for (FuzzyIndex.Match match : index.query(query, 3, 0.85)) {
+                if (match.source.equals(sources[id])) {
+                    found++;
+                    break;
+                }
+            }
+        }
+        assertTrue("recall " + found + "/" + queries, found >= queries * 9 / 10);
+    }
+}
@@ -0,0 +1,87 @@
+package bin.mt.plugin.gemini;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The regex-based numbered reply parser that {@link BatchResponseScanner} replaced, kept as
+ * the reference for the equivalence test and the benchmark.
+ */
+final class LegacyBatchParser {
+
+    private LegacyBatchParser() {
+    }
+
+    static String[] parse(String response, int count) {
+        String[] results = new String[count];
+        int bestFound = 0;
+
+        // Strip markdown code blocks if the model wrapped the response
+        String cleaned = response.trim();
+        if (cleaned.startsWith("```")) {
+            int firstNewline = cleaned.indexOf('\n');
+            int lastFence = cleaned.lastIndexOf("```");
+            if (firstNewline > 0 && lastFence > firstNewline) {
+                cleaned = cleaned.substring(firstNewline + 1, lastFence).trim();
+            }
+        }
+
+        // Format 1: [N] text  (preferred)
+        String[] temp1 = new String[count];
+        Pattern pattern1 = Pattern.compile(
+                "\\[(\\d+)]\\s*(.*?)(?=\\n\\s*\\[\\d+]|$)",
+                Pattern.DOTALL
+        );
+        int found1 = matchBatchEntries(pattern1, cleaned, temp1, count);
+        if (found1 > bestFound) {
+            bestFound = found1;
+            System.arraycopy(temp1, 0, results, 0, count);
+        }
+
+        // Format 2: N. text  (some models use this)
+        if (bestFound < count) {
+            String[] temp2 = new String[count];
+            Pattern pattern2 = Pattern.compile(
+                    "^(\\d+)\\.\\s+(.*?)(?=\\n\\d+\\.|$)",
+                    Pattern.MULTILINE | Pattern.DOTALL
+            );
+            int found2 = matchBatchEntries(pattern2, cleaned, temp2, count);
+            if (found2 > bestFound) {
+                bestFound = found2;
+                System.arraycopy(temp2, 0, results, 0, count);
+            }
+        }
+
+        // Format 3: N) text
+        if (bestFound < count) {
+            String[] temp3 = new String[count];
+            Pattern pattern3 = Pattern.compile(
+                    "^(\\d+)\\)\\s*(.*?)(?=\\n\\d+\\)|$)",
+                    Pattern.MULTILINE | Pattern.DOTALL
+            );
+            int found3 = matchBatchEntries(pattern3, cleaned, temp3, count);
+            if (found3 > bestFound) {
+                System.arraycopy(temp3, 0, results, 0, count);
+            }
+        }
+        return results;
+    }
+
+    private static int matchBatchEntries(Pattern pattern, String text, String[] results, int count) {
+        Matcher matcher = pattern.matcher(text);
+        int found = 0;
+        while (matcher.find()) {
+            try {
+                int index = Integer.parseInt(matcher.group(1)) - 1; // 0-based
+                String value = matcher.group(2).trim();
+                if (index >= 0 && index < count && !value.isEmpty()) {
+                    results[index] = value;
+                    found++;
+                }
+            } catch (NumberFormatException ignored) {
+                // Skip malformed entries
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,122 @@
+package bin.mt.plugin.gemini;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Packing of a batch into requests by {@link GeminiTranslationEngine#planRequests}.
+ */
+public class RequestPackingTest {
+
+    private static final ModelLimits LIMITS = ModelLimits.forModel("unknown-model");
+
+    @Test
+    public void withoutStrategySendsOneRequest() {
+        List<int[]> requests = GeminiTranslationEngine.planRequests(texts(10, 20, 30), null);
+        assertEquals(1, requests.size());
+        assertArrayEquals(new int[]{0, 1, 2}, requests.get(0));
+    }
+
+    @Test
+    public void keepsBatchThatFitsOneRequest() {
+        List<int[]> requests = GeminiTranslationEngine.planRequests(texts(10, 20, 30), strategy(0, 100));
+        assertEquals(1, requests.size());
+        assertArrayEquals(new int[]{0, 1, 2}, requests.get(0));
+    }
+
+    @Test
+    public void longTextNoLongerClosesHalfEmptyRequest() {
+        // In document order: [70] [40 60] [30]; packed largest first: [70 30] [40 60]
+        List<int[]> requests = GeminiTranslationEngine.planRequests(texts(70, 40, 60, 30), strategy(0, 100));
+        assertEquals(2, requests.size());
+        assertArrayEquals(new int[]{0, 3}, requests.get(0));
+        assertArrayEquals(new int[]{1, 2}, requests.get(1));
+    }
+
+    @Test
+    public void keepsInOrderSplitWhenPackingCannotSaveRequests() {
+        List<int[]> requests = GeminiTranslationEngine.planRequests(texts(60, 50, 40, 30, 20), strategy(0, 100));
+        assertEquals(3, requests.size());
+        assertArrayEquals(new int[]{0}, requests.get(0));
+        assertArrayEquals(new int[]{1, 2}, requests.get(1));
+        assertArrayEquals(new int[]{3, 4}, requests.get(2));
+    }
+
+    @Test
+    public void respectsItemCount() {
+        List<int[]> requests = GeminiTranslationEngine.planRequests(texts(1, 1, 1, 1, 1, 1), strategy(2, 0));
+        assertEquals(3, requests.size());
+        for (int[] request : requests) {
+            assertEquals(2, request.length);
+        }
+    }
+
+    @Test
+    public void packedRequestsStayWithinLimits() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            int[] lengths = new int[2 + random.nextInt(40)];
+            for (int i = 0; i < lengths.length; i++) {
+                lengths[i] = 1 + random.nextInt(random.nextBoolean() ? 20 : 100);
+            }
+            String[] texts = texts(lengths);
+            List<int[]> requests = GeminiTranslationEngine.planRequests(texts, strategy(8, 150));
+
+            boolean[] seen = new boolean[texts.length];
+            for (int[] request : requests) {
+                int chars = 0;
+                for (int i = 0; i < request.length; i++) {
+                    assertFalse(seen[request[i]]);
+                    seen[request[i]] = true;
+                    assertTrue(i == 0 || request[i] > request[i - 1]);
+                    chars += lengths[request[i]];
+                }
+                assertTrue(request.length <= 8);
+                assertTrue(request.length == 1 || chars <= 150);
+            }
+            for (boolean s : seen) {
+                assertTrue(s);
+            }
+            assertTrue(requests.size() <= inOrderRequests(lengths, 8, 150));
+        }
+    }
+
+    private static int inOrderRequests(int[] lengths, int maxCount, int maxChars) {
+        int requests = 1;
+        int count = 0;
+        int chars = 0;
+        for (int length : lengths) {
+            if (count > 0 && (count == maxCount || chars + length > maxChars)) {
+                requests++;
+                count = 0;
+                chars = 0;
+            }
+            count++;
+            chars += length;
+        }
+        return requests;
+    }
+
+    private static TokenBatchingStrategy strategy(int maxCount, int maxChars) {
+        return new TokenBatchingStrategy(maxCount, maxChars, LIMITS, 500, 4);
+    }
+
+    private static String[] texts(int... lengths) {
+        String[] texts = new String[lengths.length];
+        for (int i = 0; i < lengths.length; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int c = 0; c < lengths[i]; c++) {
+                sb.append((char) ('a' + (i + c) % 26));
+            }
+            texts[i] = sb.toString();
+        }
+        return texts;
+    }
+}
@@ -0,0 +1,73 @@
+package bin.mt.plugin.gemini;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+public class StringsXmlImporterTest {
+
+    @Test
+    public void mapsPlainLocaleFolders() {
+        assertEquals("de", StringsXmlImporter.languageForValuesFolder("values-de"));
+        assertEquals("pt-BR", StringsXmlImporter.languageForValuesFolder("values-pt-rBR"));
+        assertEquals("es-419", StringsXmlImporter.languageForValuesFolder("values-es-r419"));
+        assertEquals("fil", StringsXmlImporter.languageForValuesFolder("values-fil"));
+    }
+
+    @Test
+    public void mapsBcp47Folders() {
+        assertEquals("sr-Latn", StringsXmlImporter.languageForValuesFolder("values-b+sr+Latn"));
+        assertEquals("es-419", StringsXmlImporter.languageForValuesFolder("values-b+es+419"));
+        assertEquals("fr", StringsXmlImporter.languageForValuesFolder("values-b+fr"));
+        assertNull(StringsXmlImporter.languageForValuesFolder("values-b+zh+Hant+TW"));
+    }
+
+    @Test
+    public void normalizesLegacyLanguageCodes() {
+        assertEquals("he", StringsXmlImporter.languageForValuesFolder("values-iw"));
+        assertEquals("id", StringsXmlImporter.languageForValuesFolder("values-in"));
+        assertEquals("yi", StringsXmlImporter.languageForValuesFolder("values-ji"));
+    }
+
+    @Test
+    public void distinguishesChineseScriptsByRegion() {
+        assertEquals("zh-CN", StringsXmlImporter.languageForValuesFolder("values-zh"));
+        assertEquals("zh-CN", StringsXmlImporter.languageForValuesFolder("values-zh-rCN"));
+        assertEquals("zh-TW", StringsXmlImporter.languageForValuesFolder("values-zh-rTW"));
+        assertEquals("zh-TW", StringsXmlImporter.languageForValuesFolder("values-zh-rHK"));
+        assertEquals("zh-TW", StringsXmlImporter.languageForValuesFolder("values-b+zh+Hant"));
+    }
+
+    @Test
+    public void rejectsFoldersThatAreNotPlainLocales() {
+        assertNull(StringsXmlImporter.languageForValuesFolder("values"));
+        assertNull(StringsXmlImporter.languageForValuesFolder("values-night"));
+        assertNull(StringsXmlImporter.languageForValuesFolder("values-land"));
+        assertNull(StringsXmlImporter.languageForValuesFolder("values-car"));
+        assertNull(StringsXmlImporter.languageForValuesFolder("values-v21"));
+        assertNull(StringsXmlImporter.languageForValuesFolder("values-de-v21"));
+        assertNull(StringsXmlImporter.languageForValuesFolder("values-de-rDE-v21"));
+        assertNull(StringsXmlImporter.languageForValuesFolder("values-de-rde"));
+        assertNull(StringsXmlImporter.languageForValuesFolder("values-sw600dp"));
+        assertNull(StringsXmlImporter.languageForValuesFolder("drawable-de"));
+    }
+
+    @Test
+    public void tokenizesPairsWithMatchingPlaceholders() {
+        assertArrayEquals(new String[]{"Delete __PH0__ files?", "__PH0__ dosya silinsin mi?"},
+                StringsXmlImporter.tokenizePair("Delete %d files?", "%d dosya silinsin mi?"));
+        // Reordered placeholders keep their source token
+        assertArrayEquals(new String[]{"__PH0__ of __PH1__", "__PH1__ içinde __PH0__"},
+                StringsXmlImporter.tokenizePair("%1$s of %2$s", "%2$s içinde %1$s"));
+    }
+
+    @Test
+    public void rejectsPairsWithBrokenPlaceholders() {
+        assertNull(StringsXmlImporter.tokenizePair("Delete %d files?", "Dosyalar silinsin mi?"));
+        assertNull(StringsXmlImporter.tokenizePair("Delete %d files?", "%d %d dosya silinsin mi?"));
+        assertNull(StringsXmlImporter.tokenizePair("Delete files?", "%s dosya silinsin mi?"));
+        assertNull(StringsXmlImporter.tokenizePair("Delete files?", "  "));
+    }
+}
@@ -0,0 +1,83 @@
+package bin.mt.plugin.gemini;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class StructuredBatchOutputTest {
+
+    @Test
+    public void readsTranslationsObject() {
+        String reply = "{\"translations\":[{\"id\":1,\"text\":\"Hallo\"},{\"id\":2,\"text\":\" Welt \"}]}";
+        assertArrayEquals(new String[]{"Hallo", "Welt"}, StructuredBatchOutput.parse(reply, 2));
+    }
+
+    @Test
+    public void readsBareArrayInAnyOrder() {
+        String reply = "[{\"id\":3,\"text\":\"drei\"},{\"id\":1,\"text\":\"eins\"}]";
+        assertArrayEquals(new String[]{"eins", null, "drei"}, StructuredBatchOutput.parse(reply, 3));
+    }
+
+    @Test
+    public void skipsOutOfRangeAndEmptyEntries() {
+        String reply = "{\"translations\":[{\"id\":0,\"text\":\"null\"},{\"id\":2,\"text\":\"  \"},"
+                + "{\"id\":3,\"text\":\"zu viel\"},{\"text\":\"ohne id\"},{\"id\":1,\"text\":\"eins\"}]}";
+        assertArrayEquals(new String[]{"eins", null}, StructuredBatchOutput.parse(reply, 2));
+    }
+
+    @Test
+    public void salvagesCompleteEntriesOfCutOffReply() {
+        String reply = "{\"translations\":[{\"id\":1,\"text\":\"eins\"},{\"id\":2,\"text\":\"mit \\\"Zitat\\\" und }\"},"
+                + "{\"id\":3,\"text\":\"abgesch";
+        assertArrayEquals(new String[]{"eins", "mit \"Zitat\" und }", null},
+                StructuredBatchOutput.parse(reply, 3));
+    }
+
+    @Test
+    public void returnsNullForUnstructuredReplies() {
+        assertNull(StructuredBatchOutput.parse("1. Hallo\n2. Welt", 2));
+        assertNull(StructuredBatchOutput.parse("Here are the translations:", 2));
+        assertNull(StructuredBatchOutput.parse("{\"translation\":\"Hallo\"}", 1));
+    }
+
+    @Test
+    public void numberedReplyInBracketFormIsNotStructured() {
+        // "[1] Hallo" starts with a parsable JSON array of one number
+        assertNull(StructuredBatchOutput.parse("[1] Hallo\n[2] Welt", 2));
+    }
+
+    @Test
+    public void readsExtraTargets() {
+        List<String> extras = Arrays.asList("fr", "pt-BR");
+        String[][] extraResults = new String[2][2];
+        String reply = "{\"translations\":["
+                + "{\"id\":1,\"text\":\"Hallo\",\"text_fr\":\"Bonjour\",\"text_pt_BR\":\"Olá\"},"
+                + "{\"id\":2,\"text\":\"Welt\",\"text_fr\":\"Monde\"}]}";
+        assertArrayEquals(new String[]{"Hallo", "Welt"}, StructuredBatchOutput.parse(reply, 2, extras, extraResults));
+        assertArrayEquals(new String[]{"Bonjour", "Monde"}, extraResults[0]);
+        assertArrayEquals(new String[]{"Olá", null}, extraResults[1]);
+    }
+
+    @Test
+    public void schemasRequireExtraTargetFields() throws JSONException {
+        List<String> extras = Arrays.asList("pt-BR");
+        assertEquals("text_pt_BR", StructuredBatchOutput.extraKey("pt-BR"));
+
+        JSONObject item = StructuredBatchOutput.jsonSchema(extras).getJSONObject("properties")
+                .getJSONObject("translations").getJSONObject("items");
+        assertEquals("[\"id\",\"text\",\"text_pt_BR\"]", item.getJSONArray("required").toString());
+        assertTrue(item.getJSONObject("properties").has("text_pt_BR"));
+
+        JSONObject geminiItem = StructuredBatchOutput.geminiSchema(extras).getJSONObject("properties")
+                .getJSONObject("translations").getJSONObject("items");
+        assertEquals("[\"id\",\"text\",\"text_pt_BR\"]", geminiItem.getJSONArray("propertyOrdering").toString());
+    }
+}
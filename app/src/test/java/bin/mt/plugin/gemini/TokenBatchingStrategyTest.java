@@ -0,0 +1,126 @@
+package bin.mt.plugin.gemini;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class TokenBatchingStrategyTest {
+
+    // Unknown models get 32k context and 4096 output tokens
+    private static final ModelLimits LIMITS = ModelLimits.forModel("unknown-model");
+    private static final int OUTPUT_BUDGET = (int) (LIMITS.requestOutputTokens() * GeminiConstants.BATCH_OUTPUT_SAFETY);
+
+    private static final String ITEM = repeat("word ", 20);
+
+    @Test
+    public void closesBatchAtOutputBudget() {
+        TokenBatchingStrategy strategy = new TokenBatchingStrategy(0, 0, LIMITS, 500, 1);
+        double reply = TokenEstimator.estimateTokens(ITEM) * 1.6 + TokenEstimator.ITEM_OVERHEAD_TOKENS;
+        assertEquals((int) (OUTPUT_BUDGET / reply), fill(strategy, ITEM));
+    }
+
+    @Test
+    public void sizesReplyForLanguagePair() {
+        TokenBatchingStrategy unknown = new TokenBatchingStrategy(0, 0, LIMITS, 500, 1);
+        TokenBatchingStrategy pair = new TokenBatchingStrategy(0, 0, LIMITS, 500, 1);
+        pair.setLanguages("en", "de");
+        double ratio = TokenEstimator.outputRatio("en", "de");
+        double reply = TokenEstimator.estimateTokens(ITEM) * ratio + TokenEstimator.ITEM_OVERHEAD_TOKENS;
+        int filled = fill(pair, ITEM);
+        assertEquals((int) (OUTPUT_BUDGET / reply), filled);
+        assertTrue(ratio < 1.6);
+        assertTrue(filled > fill(unknown, ITEM));
+    }
+
+    @Test
+    public void multipliesReplyByTargetCount() {
+        TokenBatchingStrategy one = new TokenBatchingStrategy(0, 0, LIMITS, 500, 1);
+        TokenBatchingStrategy three = new TokenBatchingStrategy(0, 0, LIMITS, 500, 1);
+        three.setTargetCount(3);
+        int single = fill(one, ITEM);
+        int triple = fill(three, ITEM);
+        assertTrue(triple <= single / 3);
+        assertTrue(triple >= single / 3 - 1);
+    }
+
+    @Test
+    public void closesBatchAtContextWindow() {
+        // Instructions leave room for roughly 100 input tokens next to the reply
+        int fixed = LIMITS.contextTokens - LIMITS.requestOutputTokens() - 100;
+        TokenBatchingStrategy strategy = new TokenBatchingStrategy(0, 0, LIMITS, fixed, 1);
+        int input = TokenEstimator.estimateTokens(ITEM) + TokenEstimator.ITEM_OVERHEAD_TOKENS;
+        assertEquals(100 / input, fill(strategy, ITEM));
+    }
+
+    @Test
+    public void appliesCountAndCharacterCaps() {
+        assertEquals(5, fill(new TokenBatchingStrategy(5, 0, LIMITS, 500, 1), "a"));
+        assertEquals(10, fill(new TokenBatchingStrategy(0, 100, LIMITS, 500, 1), "0123456789"));
+
+        TokenBatchingStrategy strategy = new TokenBatchingStrategy(5, 0, LIMITS, 500, 1);
+        fill(strategy, "a");
+        strategy.setMaxCount(8);
+        assertTrue(strategy.tryAdd("a"));
+    }
+
+    @Test
+    public void alwaysAcceptsFirstItem() {
+        TokenBatchingStrategy strategy = new TokenBatchingStrategy(1, 10, LIMITS, 500, 1);
+        String huge = repeat("x", 100_000);
+        assertTrue(strategy.fits(huge));
+        assertTrue(strategy.tryAdd(huge));
+        assertFalse(strategy.tryAdd("a"));
+    }
+
+    @Test
+    public void fitsDoesNotAdd() {
+        TokenBatchingStrategy strategy = new TokenBatchingStrategy(2, 0, LIMITS, 500, 1);
+        assertTrue(strategy.tryAdd("a"));
+        assertTrue(strategy.fits("b"));
+        assertTrue(strategy.fits("b"));
+        assertTrue(strategy.tryAdd("b"));
+        assertFalse(strategy.fits("c"));
+    }
+
+    @Test
+    public void resetStartsNewBatch() {
+        TokenBatchingStrategy strategy = new TokenBatchingStrategy(2, 0, LIMITS, 500, 1);
+        fill(strategy, "a");
+        assertTrue(strategy.getInputTokens() > 0);
+        strategy.reset();
+        assertEquals(0, strategy.getInputTokens());
+        assertEquals(2, fill(strategy, "a"));
+    }
+
+    @Test
+    public void scalesLimitsByRequestsAndSplitsBack() {
+        TokenBatchingStrategy batch = new TokenBatchingStrategy(0, 0, LIMITS, 500, 4);
+        batch.setLanguages("en", "de");
+        TokenBatchingStrategy single = batch.forSingleRequest();
+        int perRequest = fill(single, ITEM);
+        int total = fill(batch, ITEM);
+        assertTrue(total >= 4 * perRequest);
+        assertTrue(total < 4 * (perRequest + 1));
+
+        assertEquals(12, fill(new TokenBatchingStrategy(3, 0, LIMITS, 500, 4), "a"));
+        assertEquals(3, fill(new TokenBatchingStrategy(3, 0, LIMITS, 500, 4).forSingleRequest(), "a"));
+    }
+
+    private static int fill(TokenBatchingStrategy strategy, String text) {
+        int count = 0;
+        while (count < 100_000 && strategy.tryAdd(text)) {
+            count++;
+        }
+        return count;
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,47 @@
+package bin.mt.plugin.net;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+public class RequestErrorsTest {
+
+    @Test
+    public void badKeyIsNotContentError() {
+        IOException e = new IOException("Gemini API error (400): API key not valid. Please pass a valid API key.");
+        assertTrue(RequestErrors.isAuthError(e));
+        assertFalse(RequestErrors.isContentError(e));
+
+        e = new IOException("HTTP 400: {\"error\":{\"status\":\"INVALID_ARGUMENT\",\"reason\":\"API_KEY_INVALID\"}}");
+        assertTrue(RequestErrors.isAuthOrRateLimitError(e));
+        assertFalse(RequestErrors.isContentError(e));
+    }
+
+    @Test
+    public void plainBadRequestIsContentError() {
+        IOException e = new IOException("Google Translate API error (400): Invalid Value");
+        assertTrue(RequestErrors.isContentError(e));
+        assertFalse(RequestErrors.isAuthOrRateLimitError(e));
+    }
+
+    @Test
+    public void classifiesByStatus() {
+        assertTrue(RequestErrors.isAuthError(new IOException("HTTP 401")));
+        assertTrue(RequestErrors.isAuthError(new IOException("Claude API error (403): forbidden")));
+        assertTrue(RequestErrors.isRateLimitError(new IOException("OpenAI API error (429): slow down")));
+        assertFalse(RequestErrors.isContentError(new IOException("HTTP 500")));
+        assertFalse(RequestErrors.isAuthOrRateLimitError(new IOException("timeout")));
+        assertFalse(RequestErrors.isContentError(new IOException()));
+    }
+
+    @Test
+    public void statusMustBeMarked() {
+        assertFalse(RequestErrors.hasStatus("Request of 4000 bytes failed", 400));
+        assertTrue(RequestErrors.hasStatus("error (400)", 400));
+        assertTrue(RequestErrors.hasStatus("HTTP 400 Bad Request", 400));
+        assertFalse(RequestErrors.hasStatus(null, 400));
+    }
+}